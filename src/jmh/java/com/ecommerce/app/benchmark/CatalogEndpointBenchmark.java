@@ -0,0 +1,118 @@
+package com.ecommerce.app.benchmark;
+
+import com.ecommerce.app.controller.ProductController;
+import com.ecommerce.app.model.Product;
+import com.ecommerce.app.service.CatalogResponseCache;
+import com.ecommerce.app.service.FirebaseService;
+import com.ecommerce.app.service.ProductCatalog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Requests per second for an unconditional GET /api/products, with the catalog
+ * serialized by Jackson on every request ("jackson") versus written from the
+ * pre-encoded response cache ("cached"), for the same response encoding.
+ *
+ * The controller runs in-process through MockMvc with Firebase stubbed out, so the
+ * numbers isolate the per-request serialization cost. With gzip, the "jackson" mode
+ * compresses each body the way server.compression would, so both modes send gzip and
+ * the difference is the cost of caching rather than of compressing. MockMvc's
+ * response stream copies byte by byte, so absolute numbers are well below what
+ * Tomcat reaches; compare the modes within one encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogEndpointBenchmark {
+
+    @Param({"100", "1000"})
+    private int productCount;
+
+    @Param({"jackson", "cached"})
+    private String mode;
+
+    @Param({"identity", "gzip"})
+    private String acceptEncoding;
+
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Product> products = new ArrayList<>();
+        for (int i = 1; i <= productCount; i++) {
+            products.add(new Product(String.format("PRD-%04d", i), "Product " + i,
+                    "Description for product " + i, 5.0 + (i % 500), i % 7,
+                    "https://example.com/images/" + i + ".png", "Category " + (i % 12),
+                    List.of("tag" + (i % 5), "tag" + (i % 9))));
+        }
+        ProductCatalog catalog = new ProductCatalog();
+        catalog.replaceAll(products);
+
+        FirebaseService firebaseService = mock(FirebaseService.class);
+        when(firebaseService.getProductCatalog())
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(catalog.snapshot()));
+
+        CatalogResponseCache responseCache = new CatalogResponseCache();
+        ReflectionTestUtils.setField(responseCache, "productCatalog", catalog);
+        ReflectionTestUtils.setField(responseCache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(responseCache, "enabled", mode.equals("cached"));
+        responseCache.init();
+
+        ProductController controller = new ProductController();
+        ReflectionTestUtils.setField(controller, "firebaseService", firebaseService);
+        ReflectionTestUtils.setField(controller, "responseCache", responseCache);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        // The first request schedules the background rebuild; wait for it before measuring
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (mode.equals("cached") && responseCache.get(catalog.snapshot()) == null) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Response cache did not warm up");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Benchmark
+    public byte[] getAllProducts() throws Exception {
+        MvcResult pending = mockMvc.perform(get("/api/products")
+                        .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(pending)).andReturn();
+        byte[] body = result.getResponse().getContentAsByteArray();
+        if (acceptEncoding.equals("gzip") && result.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING) == null) {
+            // Response compression, as the servlet container would apply it to the Jackson body
+            return gzip(body);
+        }
+        return body;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ecommerce.app.benchmark;
+
+import com.ecommerce.app.codec.Codecs;
+import com.ecommerce.app.model.Order;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.TestSnapshots;
+import com.google.firebase.database.utilities.encoding.CustomClassMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a getAllOrders-sized snapshot and encoding orders for setValue, with the
+ * SDK's reflective bean mapping ("reflective") versus the explicit codecs ("codec").
+ *
+ * Snapshots are real SDK DataSnapshots built from the same values Firebase would
+ * deliver, so both paths include the SDK's own node-to-map conversion.
+ * Run with -prof gc to compare allocation per operation as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityCodecBenchmark {
+
+    @Param({"100", "2000"})
+    private int orderCount;
+
+    @Param({"1", "8"})
+    private int itemsPerOrder;
+
+    private DataSnapshot orders;
+    private List<Order> decoded;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        for (int i = 1; i <= orderCount; i++) {
+            List<Object> items = new ArrayList<>();
+            for (int j = 1; j <= itemsPerOrder; j++) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("productId", String.format("PRD-%04d", j));
+                item.put("productName", "Product " + j);
+                item.put("quantity", (long) (j % 3 + 1));
+                item.put("price", j % 2 == 0 ? (Object) (long) (j * 10) : j * 10.5);
+                items.add(item);
+            }
+            Map<String, Object> order = new HashMap<>();
+            order.put("id", String.format("ORD-%04d", i));
+            order.put("userId", String.format("USR-%04d", i % 50));
+            order.put("items", items);
+            order.put("totalAmount", i * 12.75);
+            order.put("status", i % 3 == 0 ? "SHIPPED" : "PENDING");
+            order.put("timestamp", 1700000000000L + i);
+            order.put("createdAt", "2024-01-01T10:00:00");
+            order.put("updatedAt", "2024-01-02T10:00:00");
+            value.put(String.format("ORD-%04d", i), order);
+        }
+        orders = TestSnapshots.dataSnapshot(TestSnapshots.reference("orders"), value);
+        decoded = Codecs.ORDER.decodeChildren(orders);
+    }
+
+    @Benchmark
+    public List<Order> decodeReflective() {
+        List<Order> result = new ArrayList<>();
+        for (DataSnapshot snapshot : orders.getChildren()) {
+            Order order = snapshot.getValue(Order.class);
+            order.setId(snapshot.getKey());
+            result.add(order);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Order> decodeCodec() {
+        return Codecs.ORDER.decodeChildren(orders);
+    }
+
+    @Benchmark
+    public void encodeReflective(Blackhole blackhole) {
+        for (Order order : decoded) {
+            blackhole.consume(CustomClassMapper.convertToPlainJavaTypes(order));
+        }
+    }
+
+    @Benchmark
+    public void encodeCodec(Blackhole blackhole) {
+        for (Order order : decoded) {
+            blackhole.consume(Codecs.ORDER.toMap(order));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.ecommerce.app.benchmark;
+
+import com.ecommerce.app.service.IdGeneratorService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting a counter value as an entity ID, as done for every generated ID.
+ * "stringFormat" is the previous String.format implementation, kept as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdFormatBenchmark {
+
+    @Param({"7", "4821", "1048576"})
+    private long number;
+
+    @Benchmark
+    public String stringFormat() {
+        return String.format("%s-%04d", "ORD", number);
+    }
+
+    @Benchmark
+    public String formatSequentialId() {
+        return IdGeneratorService.formatSequentialId("ORD", number);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ecommerce.app.benchmark;
+
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderItem;
+import com.ecommerce.app.model.OrderStatus;
+import com.ecommerce.app.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the product and order lists returned by
+ * GET /api/products, GET /api/orders/my-orders and GET /api/admin/orders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<Product> products;
+    private List<Order> orders;
+
+    @Setup
+    public void setUp() {
+        products = new ArrayList<>(size);
+        orders = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            products.add(new Product(String.format("PRD-%04d", i), "Product " + i,
+                    "Description for product " + i, 5.0 + (i % 500), i % 7,
+                    "https://example.com/images/" + i + ".png", "Category " + (i % 12),
+                    List.of("tag" + (i % 5), "tag" + (i % 9))));
+
+            List<OrderItem> items = new ArrayList<>();
+            for (int j = 1; j <= 3; j++) {
+                items.add(new OrderItem(String.format("PRD-%04d", j), "Product " + j, j, 9.99 * j));
+            }
+            Order order = new Order("USR-" + (i % 50), items, 59.94);
+            order.setId(String.format("ORD-%04d", i));
+            order.setStatus(OrderStatus.values()[i % OrderStatus.values().length]);
+            orders.add(order);
+        }
+    }
+
+    @Benchmark
+    public byte[] products() throws Exception {
+        return objectMapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] orders() throws Exception {
+        return objectMapper.writeValueAsBytes(orders);
+    }
+}
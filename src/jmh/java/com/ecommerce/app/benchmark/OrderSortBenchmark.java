@@ -0,0 +1,53 @@
+package com.ecommerce.app.benchmark;
+
+import com.ecommerce.app.model.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting a user's orders newest first, as getOrdersByUserId does after every read.
+ * Firebase returns orders in key order, which is nearly the reverse of the target
+ * order ("keyOrder"); "shuffled" is the worst case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderSortBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    @Param({"keyOrder", "shuffled"})
+    private String input;
+
+    private List<Order> orders;
+
+    @Setup
+    public void setUp() {
+        orders = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            Order order = new Order();
+            order.setId(String.format("ORD-%04d", i));
+            order.setTimestamp(1700000000000L + i * 60_000L);
+            orders.add(order);
+        }
+        if (input.equals("shuffled")) {
+            Collections.shuffle(orders, new Random(42));
+        }
+    }
+
+    @Benchmark
+    public List<Order> sortNewestFirst() {
+        List<Order> copy = new ArrayList<>(orders);
+        copy.sort(Order.NEWEST_FIRST);
+        return copy;
+    }
+}
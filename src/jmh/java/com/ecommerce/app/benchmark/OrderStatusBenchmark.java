@@ -0,0 +1,39 @@
+package com.ecommerce.app.benchmark;
+
+import com.ecommerce.app.model.OrderStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status parsing and transition checks done by PUT /api/admin/orders/{id}/status,
+ * over the spellings clients actually send.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderStatusBenchmark {
+
+    private static final String[] INPUTS = {"PENDING", "confirmed", " Shipped ", "DELIVERED", "shipped"};
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    @Benchmark
+    public void fromString(Blackhole blackhole) {
+        for (String input : INPUTS) {
+            blackhole.consume(OrderStatus.fromString(input));
+        }
+    }
+
+    @Benchmark
+    public void canTransitionTo(Blackhole blackhole) {
+        for (OrderStatus from : STATUSES) {
+            for (OrderStatus to : STATUSES) {
+                blackhole.consume(from.canTransitionTo(to));
+            }
+        }
+    }
+}
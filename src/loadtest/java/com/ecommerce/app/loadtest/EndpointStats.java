@@ -0,0 +1,116 @@
+package com.ecommerce.app.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counts per endpoint. Nothing is recorded until
+ * {@link #startMeasuring()} is called, so warm-up traffic stays out of the report.
+ */
+final class EndpointStats {
+
+    private static final long MAX_MICROS = 120_000_000L;
+
+    private static final class Endpoint {
+        final Histogram latencyMicros = new ConcurrentHistogram(MAX_MICROS, 3);
+        final LongAdder shed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile boolean measuring;
+    private volatile long measureStartNanos;
+
+    void startMeasuring() {
+        endpoints.clear();
+        measureStartNanos = System.nanoTime();
+        measuring = true;
+    }
+
+    /**
+     * @param endpoint Method and route template, e.g. "GET /api/products/{id}"
+     * @param startNanos System.nanoTime() before the request was sent
+     * @param status HTTP status, or -1 when the request failed without a response
+     */
+    void record(String endpoint, long startNanos, int status) {
+        if (!measuring) {
+            return;
+        }
+        long micros = Math.min(MAX_MICROS, Math.max(1, (System.nanoTime() - startNanos) / 1000));
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, key -> new Endpoint());
+        stats.latencyMicros.recordValue(micros);
+        if (status == 503 || status == 429) {
+            stats.shed.increment();
+        } else if (status < 200 || status >= 300) {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * Prints the per-endpoint table and writes the same rows as CSV
+     * @param out Console stream
+     * @param csv CSV file to write, or null to skip
+     */
+    void report(PrintStream out, Path csv) throws IOException {
+        double seconds = (System.nanoTime() - measureStartNanos) / 1e9;
+        measuring = false;
+
+        List<String> rows = new ArrayList<>();
+        rows.add("endpoint,count,throughput_rps,shed,errors,p50_ms,p95_ms,p99_ms,max_ms");
+        out.printf(Locale.ROOT, "%n%-36s %8s %8s %6s %6s %9s %9s %9s %9s%n",
+                "Endpoint", "Count", "Req/s", "Shed", "Errors", "p50 ms", "p95 ms", "p99 ms", "Max ms");
+
+        Histogram total = new Histogram(MAX_MICROS, 3);
+        long totalShed = 0;
+        long totalErrors = 0;
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+            Endpoint stats = entry.getValue();
+            Histogram histogram = stats.latencyMicros.copy();
+            total.add(histogram);
+            totalShed += stats.shed.sum();
+            totalErrors += stats.errors.sum();
+            rows.add(row(out, entry.getKey(), histogram, stats.shed.sum(), stats.errors.sum(), seconds));
+        }
+        rows.add(row(out, "TOTAL", total, totalShed, totalErrors, seconds));
+        out.printf(Locale.ROOT, "%nMeasured %.1f s; shed = 503/429 responses, errors = other non-2xx or no response%n", seconds);
+
+        if (csv != null) {
+            Path parent = csv.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(csv, rows, StandardCharsets.UTF_8);
+            out.println("Wrote " + csv);
+        }
+    }
+
+    private static String row(PrintStream out, String name, Histogram histogram, long shed, long errors, double seconds) {
+        long count = histogram.getTotalCount();
+        double rps = count / seconds;
+        double p50 = millis(histogram, 50);
+        double p95 = millis(histogram, 95);
+        double p99 = millis(histogram, 99);
+        double max = count > 0 ? histogram.getMaxValue() / 1000.0 : 0;
+        out.printf(Locale.ROOT, "%-36s %8d %8.1f %6d %6d %9.1f %9.1f %9.1f %9.1f%n",
+                name, count, rps, shed, errors, p50, p95, p99, max);
+        return String.format(Locale.ROOT, "\"%s\",%d,%.2f,%d,%d,%.2f,%.2f,%.2f,%.2f",
+                name, count, rps, shed, errors, p50, p95, p99, max);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getTotalCount() > 0 ? histogram.getValueAtPercentile(percentile) / 1000.0 : 0;
+    }
+}
@@ -0,0 +1,385 @@
+package com.ecommerce.app.loadtest;
+
+import com.ecommerce.app.EcommerceAppApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.firebase.database.InMemoryDatabase;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpClient;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Offline end-to-end load test. Boots the application with an {@link InMemoryDatabase}
+ * in place of Firebase, seeds admins and products, then runs closed-loop customer and
+ * admin sessions over HTTP and prints throughput and p50/p95/p99 latency per endpoint.
+ *
+ * Customers register once, then browse, view products, check out and list their
+ * orders with exponentially distributed think time, logging out and back in every
+ * few actions. Admins move the orders customers placed through CONFIRMED, SHIPPED and
+ * DELIVERED. Options are {@code --name=value} arguments (see {@link #DEFAULTS}); any
+ * other argument is passed to Spring, e.g. {@code --load-shedding.enabled=false}.
+ */
+public final class LoadHarness {
+
+    static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("sessions", "200");
+        DEFAULTS.put("admins", "2");
+        DEFAULTS.put("warmup", "15");
+        DEFAULTS.put("duration", "60");
+        DEFAULTS.put("latency-ms", "20");
+        DEFAULTS.put("jitter-ms", "10");
+        DEFAULTS.put("think-ms", "250");
+        DEFAULTS.put("products", "200");
+        DEFAULTS.put("actions-per-login", "25");
+        DEFAULTS.put("mix", "browse:35,product:25,checkout:15,my-orders:25");
+        DEFAULTS.put("report", "target/loadtest-report.csv");
+    }
+
+    private static final String PASSWORD = "load-test-password";
+    private static final String[] CATEGORIES = {"electronics", "books", "clothing", "home", "toys"};
+    private static final String[] STATUSES = {"CONFIRMED", "SHIPPED", "DELIVERED"};
+
+    private static final String REGISTER = "POST /api/auth/register";
+    private static final String LOGIN = "POST /api/auth/login";
+    private static final String LOGOUT = "POST /api/auth/logout";
+    private static final String CATALOG = "GET /api/products";
+    private static final String FILTERED = "GET /api/products?category";
+    private static final String PRODUCT = "GET /api/products/{id}";
+    private static final String CHECKOUT = "POST /api/orders";
+    private static final String CART_ITEM = "PUT /api/cart/items/{id}";
+    private static final String CART_CHECKOUT = "POST /api/cart/checkout";
+    private static final String MY_ORDERS = "GET /api/orders/my-orders";
+    private static final String ORDER_STATUS = "PUT /api/admin/orders/{id}/status";
+
+    private static final class PlacedOrder {
+        final String id;
+        final int stage;
+
+        PlacedOrder(String id, int stage) {
+            this.id = id;
+            this.stage = stage;
+        }
+    }
+
+    private final Map<String, String> options;
+    private final String baseUrl;
+    private final EndpointStats stats = new EndpointStats();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final List<JsonNode> products = new ArrayList<>();
+    private final Queue<PlacedOrder> placedOrders = new ConcurrentLinkedQueue<>();
+    private final String[] actions;
+    private final int[] cumulativeWeights;
+    private volatile boolean running = true;
+
+    LoadHarness(Map<String, String> options, String baseUrl) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        String[] mix = options.get("mix").split(",");
+        this.actions = new String[mix.length];
+        this.cumulativeWeights = new int[mix.length];
+        int total = 0;
+        for (int i = 0; i < mix.length; i++) {
+            String[] parts = mix[i].trim().split(":");
+            actions[i] = parts[0];
+            total += Integer.parseInt(parts[1]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        List<String> springArgs = new ArrayList<>(List.of(
+                "--firebase.enabled=false",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--server.servlet.session.persistent=false",
+                "--tracing.sample-rate=0",
+                // Every simulated user logs in from the same address, far more often than a person would
+                "--auth.rate-limit.enabled=false",
+                "--journal.directory=target/loadtest-journal",
+                "--outbox.file.path=target/loadtest-outbox.jsonl",
+                "--logging.level.root=WARN",
+                "--logging.level.com.ecommerce.app=WARN",
+                "--logging.level.org.springframework.security=WARN",
+                "--logging.level.org.springframework.web.cors=WARN",
+                "--logging.level.org.springframework.session=WARN",
+                "--logging.level.org.apache.catalina.session=WARN"));
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name != null && options.containsKey(name)) {
+                options.put(name, arg.substring(equals + 1));
+            } else {
+                springArgs.add(arg);
+            }
+        }
+
+        InMemoryDatabase database = new InMemoryDatabase(
+                Double.parseDouble(options.get("latency-ms")), Double.parseDouble(options.get("jitter-ms")));
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(EcommerceAppApplication.class)
+                .initializers(context -> context.getBeanFactory()
+                        .registerSingleton("databaseReference", database.getReference()))
+                .run(springArgs.toArray(new String[0]));
+        try {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            System.out.println("Load test options: " + options);
+            new LoadHarness(options, "http://127.0.0.1:" + port).run();
+        } finally {
+            app.close();
+            database.shutdown();
+        }
+    }
+
+    void run() throws Exception {
+        seed();
+
+        int sessions = intOption("sessions");
+        int admins = intOption("admins");
+        long warmupMillis = intOption("warmup") * 1000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            int index = i;
+            // Spread first requests over the warm-up so registrations do not arrive as one burst
+            long startDelay = warmupMillis * i / Math.max(1, sessions);
+            threads.add(start("load-customer-" + i, () -> customer(index, startDelay)));
+        }
+        for (int i = 0; i < admins; i++) {
+            int index = i;
+            threads.add(start("load-admin-" + i, () -> admin(index)));
+        }
+
+        System.out.printf("Running %d customer and %d admin sessions: %d s warm-up, %d s measured%n",
+                sessions, admins, intOption("warmup"), intOption("duration"));
+        Thread.sleep(warmupMillis);
+        stats.startMeasuring();
+        Thread.sleep(intOption("duration") * 1000L);
+        stats.report(System.out, options.get("report").isEmpty() ? null : Paths.get(options.get("report")));
+
+        running = false;
+        for (Thread thread : threads) {
+            thread.join(35_000);
+        }
+    }
+
+    private void seed() {
+        LoadSession admin = new LoadSession(client, baseUrl, stats);
+        for (int i = 0; i < intOption("admins") || i == 0; i++) {
+            admin.post("seed", "/api/auth/register-admin", Map.of(
+                    "username", "admin-" + i, "email", adminEmail(i), "password", PASSWORD));
+        }
+        if (!signIn(admin, adminEmail(0), false)) {
+            throw new IllegalStateException("Cannot log in as the seeded admin");
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < intOption("products"); i++) {
+            Map<String, Object> product = new LinkedHashMap<>();
+            product.put("name", "Load test product " + i);
+            product.put("description", "Seeded by the load test");
+            product.put("price", Math.round(random.nextDouble(5, 500) * 100) / 100.0);
+            product.put("quantity", random.nextInt(0, 1000));
+            product.put("category", CATEGORIES[i % CATEGORIES.length]);
+            product.put("tags", List.of("load", "tag-" + (i % 10)));
+            LoadSession.Response response = admin.post("seed", "/api/admin/products", product);
+            if (response.ok() && response.body != null) {
+                products.add(response.body);
+            }
+        }
+        if (products.isEmpty()) {
+            throw new IllegalStateException("Seeding products failed");
+        }
+        System.out.printf("Seeded %d admins and %d products%n", Math.max(1, intOption("admins")), products.size());
+    }
+
+    private void customer(int index, long startDelayMillis) {
+        LoadSession session = new LoadSession(client, baseUrl, stats);
+        String email = "customer-" + index + "@loadtest.local";
+        sleep(startDelayMillis);
+
+        String userId = null;
+        boolean registered = false;
+        int actionsLeft = 0;
+        while (running) {
+            if (userId == null) {
+                LoadSession.Response response = registered
+                        ? session.post(LOGIN, "/api/auth/login", Map.of("email", email, "password", PASSWORD))
+                        : session.post(REGISTER, "/api/auth/register",
+                                Map.of("username", "customer-" + index, "email", email, "password", PASSWORD));
+                // A 400 on register means an earlier attempt created the account after all
+                registered |= response.ok() || response.status == 400;
+                userId = response.ok() && response.body != null ? response.body.path("user").path("id").asText(null) : null;
+                actionsLeft = intOption("actions-per-login");
+            } else if (actionsLeft-- <= 0) {
+                session.post(LOGOUT, "/api/auth/logout", Map.of());
+                session.clearCredentials();
+                userId = null;
+            } else {
+                customerAction(session, userId);
+            }
+            think();
+        }
+    }
+
+    private void customerAction(LoadSession session, String userId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        String action = actions[actions.length - 1];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                action = actions[i];
+                break;
+            }
+        }
+
+        switch (action) {
+            case "browse":
+                if (random.nextBoolean()) {
+                    session.get(CATALOG, "/api/products");
+                } else {
+                    session.get(FILTERED, "/api/products?category=" + CATEGORIES[random.nextInt(CATEGORIES.length)]
+                            + "&sort=price_asc&page=0&size=20");
+                }
+                break;
+            case "product":
+                session.get(PRODUCT, "/api/products/" + randomProduct().path("id").asText());
+                break;
+            case "checkout":
+                checkout(session, userId);
+                break;
+            case "cart":
+                cartCheckout(session);
+                break;
+            case "my-orders":
+                session.get(MY_ORDERS, "/api/orders/my-orders");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown action in --mix: " + action);
+        }
+    }
+
+    private void checkout(LoadSession session, String userId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Map<String, Object>> items = new ArrayList<>();
+        double total = 0;
+        for (int i = random.nextInt(1, 4); i > 0; i--) {
+            JsonNode product = randomProduct();
+            int quantity = random.nextInt(1, 3);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("productId", product.path("id").asText());
+            item.put("productName", product.path("name").asText());
+            item.put("quantity", quantity);
+            item.put("price", product.path("price").asDouble());
+            items.add(item);
+            total += quantity * product.path("price").asDouble();
+        }
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("userId", userId);
+        order.put("items", items);
+        order.put("totalAmount", total);
+
+        // Like the mobile client, a checkout carries a fresh key that its retries would reuse
+        LoadSession.Response response = session.post(CHECKOUT, "/api/orders", order, UUID.randomUUID().toString());
+        if (response.ok() && response.body != null && response.body.hasNonNull("id")) {
+            placedOrders.add(new PlacedOrder(response.body.get("id").asText(), 0));
+        }
+    }
+
+    // Fills the server-side cart, then checks it out
+    private void cartCheckout(LoadSession session) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = random.nextInt(1, 4); i > 0; i--) {
+            JsonNode product = randomProduct();
+            // Out-of-stock products are refused with 409, which is not what this measures
+            if (product.path("quantity").asInt() < 2) {
+                continue;
+            }
+            think();
+            session.put(CART_ITEM, "/api/cart/items/" + product.path("id").asText(),
+                    Map.of("quantity", random.nextInt(1, 3)));
+        }
+        LoadSession.Response response = session.post(CART_CHECKOUT, "/api/cart/checkout", Map.of(),
+                UUID.randomUUID().toString());
+        if (response.ok() && response.body != null && response.body.hasNonNull("id")) {
+            placedOrders.add(new PlacedOrder(response.body.get("id").asText(), 0));
+        }
+    }
+
+    private void admin(int index) {
+        LoadSession session = new LoadSession(client, baseUrl, stats);
+        boolean signedIn = false;
+        while (running) {
+            if (!signedIn) {
+                signedIn = signIn(session, adminEmail(index), true);
+            } else {
+                PlacedOrder order = placedOrders.poll();
+                if (order != null) {
+                    LoadSession.Response response = session.put(ORDER_STATUS,
+                            "/api/admin/orders/" + order.id + "/status", Map.of("status", STATUSES[order.stage]));
+                    if (response.ok() && order.stage + 1 < STATUSES.length) {
+                        placedOrders.add(new PlacedOrder(order.id, order.stage + 1));
+                    } else if (response.status == 401 || response.status == 403) {
+                        signedIn = false;
+                        placedOrders.add(order);
+                    }
+                }
+            }
+            think();
+        }
+    }
+
+    private boolean signIn(LoadSession session, String email, boolean timed) {
+        LoadSession.Response response = session.post(timed ? LOGIN : "seed", "/api/auth/login",
+                Map.of("email", email, "password", PASSWORD));
+        return response.ok();
+    }
+
+    private JsonNode randomProduct() {
+        return products.get(ThreadLocalRandom.current().nextInt(products.size()));
+    }
+
+    private void think() {
+        double mean = Double.parseDouble(options.get("think-ms"));
+        // Exponential think time, capped so one unlucky draw cannot idle a session for long
+        double millis = Math.min(mean * 10, -mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        sleep((long) millis);
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private static String adminEmail(int index) {
+        return "admin-" + index + "@loadtest.local";
+    }
+
+    private static Thread start(String name, Runnable body) {
+        Thread thread = new Thread(body, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
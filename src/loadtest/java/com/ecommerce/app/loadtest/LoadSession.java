@@ -0,0 +1,130 @@
+package com.ecommerce.app.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * One simulated client: a JSESSIONID cookie, or a bearer token when the app runs
+ * with auth.mode=stateless, plus JSON helpers over a shared HttpClient. Every call is
+ * timed and recorded under the given endpoint name.
+ */
+final class LoadSession {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Status and parsed body of a call; the body is null unless the call succeeded with JSON
+     */
+    static final class Response {
+        final int status;
+        final JsonNode body;
+
+        Response(int status, JsonNode body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        boolean ok() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final EndpointStats stats;
+    private String sessionCookie;
+    private String accessToken;
+
+    LoadSession(HttpClient client, String baseUrl, EndpointStats stats) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.stats = stats;
+    }
+
+    Response get(String endpoint, String path) {
+        return send(endpoint, request(path).GET());
+    }
+
+    Response post(String endpoint, String path, Object body) {
+        return send(endpoint, request(path).POST(json(body)));
+    }
+
+    Response post(String endpoint, String path, Object body, String idempotencyKey) {
+        return send(endpoint, request(path).header("Idempotency-Key", idempotencyKey).POST(json(body)));
+    }
+
+    Response put(String endpoint, String path, Object body) {
+        return send(endpoint, request(path).PUT(json(body)));
+    }
+
+    void clearCredentials() {
+        sessionCookie = null;
+        accessToken = null;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .header("Accept-Encoding", "identity");
+        if (sessionCookie != null) {
+            builder.header("Cookie", sessionCookie);
+        }
+        if (accessToken != null) {
+            builder.header("Authorization", "Bearer " + accessToken);
+        }
+        return builder;
+    }
+
+    private Response send(String endpoint, HttpRequest.Builder builder) {
+        long started = System.nanoTime();
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            stats.record(endpoint, started, -1);
+            return new Response(-1, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(-1, null);
+        }
+        stats.record(endpoint, started, response.statusCode());
+
+        // Login rotates the session id, so always keep the latest one
+        for (String cookie : response.headers().allValues("Set-Cookie")) {
+            if (cookie.startsWith("JSESSIONID=")) {
+                int end = cookie.indexOf(';');
+                sessionCookie = end > 0 ? cookie.substring(0, end) : cookie;
+            }
+        }
+
+        JsonNode body = null;
+        if (response.statusCode() >= 200 && response.statusCode() < 300 && response.body().length > 0) {
+            try {
+                body = MAPPER.readTree(response.body());
+                if (body.hasNonNull("accessToken")) {
+                    accessToken = body.get("accessToken").asText();
+                }
+            } catch (IOException e) {
+                // Not JSON; callers only read bodies they expect to be JSON
+            }
+        }
+        return new Response(response.statusCode(), body);
+    }
+
+    private static HttpRequest.BodyPublisher json(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot serialize request body", e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.google.firebase.database;
+
+import com.google.firebase.database.core.Path;
+import com.google.firebase.database.snapshot.ChildKey;
+import com.google.firebase.database.snapshot.EmptyNode;
+import com.google.firebase.database.snapshot.IndexedNode;
+import com.google.firebase.database.snapshot.NamedNode;
+import com.google.firebase.database.snapshot.Node;
+import com.google.firebase.database.snapshot.NodeUtilities;
+import com.google.firebase.database.utilities.encoding.CustomClassMapper;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for the Realtime Database, for load tests that must run offline.
+ *
+ * Data is held as the SDK's own immutable Node tree, so snapshots, ordering and
+ * POJO mapping behave as they do against the real database. Every operation is
+ * applied after an injected round-trip delay (fixed part plus uniform jitter) and its
+ * callback is delivered on a single event thread, like the SDK's run loop. Only the
+ * subset of the API the services use is implemented; see {@link InMemoryReference}
+ * and {@link InMemoryQuery}.
+ */
+public final class InMemoryDatabase {
+
+    private final long latencyMicros;
+    private final long jitterMicros;
+    private final ScheduledExecutorService network = Executors.newSingleThreadScheduledExecutor(daemon("memory-db-network"));
+    private final ExecutorService events = Executors.newSingleThreadExecutor(daemon("memory-db-events"));
+    private final List<ChildSubscription> childSubscriptions = new CopyOnWriteArrayList<>();
+
+    // Only touched on the network thread, so writes and transactions are serialized
+    private Node root = EmptyNode.Empty();
+
+    /**
+     * @param latencyMillis Fixed round-trip delay added to every operation
+     * @param jitterMillis Upper bound of the uniform random delay added on top
+     */
+    public InMemoryDatabase(double latencyMillis, double jitterMillis) {
+        this.latencyMicros = (long) (latencyMillis * 1000);
+        this.jitterMicros = (long) (jitterMillis * 1000);
+    }
+
+    /**
+     * @return Reference to the root of the in-memory tree
+     */
+    public DatabaseReference getReference() {
+        return new InMemoryReference(this, Path.getEmptyPath());
+    }
+
+    public void shutdown() {
+        network.shutdownNow();
+        events.shutdownNow();
+    }
+
+    void read(InMemoryQuery query, ValueEventListener listener) {
+        afterRoundTrip(() -> {
+            DataSnapshot snapshot = query.snapshot(root.getChild(query.getPath()));
+            events.execute(() -> listener.onDataChange(snapshot));
+        });
+    }
+
+    void write(DatabaseReference reference, Map<Path, Object> values, DatabaseReference.CompletionListener listener) {
+        Map<Path, Node> nodes = new LinkedHashMap<>();
+        try {
+            values.forEach((path, value) ->
+                    nodes.put(path, NodeUtilities.NodeFromJSON(CustomClassMapper.convertToPlainJavaTypes(value))));
+        } catch (RuntimeException e) {
+            throw new DatabaseException("Failed to parse value: " + e.getMessage(), e);
+        }
+        afterRoundTrip(() -> {
+            Node before = root;
+            nodes.forEach((path, node) -> root = root.updateChild(path, node));
+            notifyChildSubscriptions(before, nodes.keySet());
+            if (listener != null) {
+                events.execute(() -> listener.onComplete(null, reference));
+            }
+        });
+    }
+
+    void transaction(DatabaseReference reference, Transaction.Handler handler) {
+        Path path = reference.getPath();
+        afterRoundTrip(() -> {
+            Node before = root;
+            Transaction.Result result;
+            try {
+                result = handler.doTransaction(new MutableData(root.getChild(path)));
+            } catch (Throwable e) {
+                DatabaseError error = DatabaseError.fromException(e);
+                events.execute(() -> handler.onComplete(error, false, null));
+                return;
+            }
+            if (result.isSuccess()) {
+                root = root.updateChild(path, result.getNode());
+                notifyChildSubscriptions(before, List.of(path));
+            }
+            DataSnapshot snapshot = new DataSnapshot(reference, IndexedNode.from(root.getChild(path)));
+            events.execute(() -> handler.onComplete(null, result.isSuccess(), snapshot));
+        });
+    }
+
+    void subscribe(InMemoryQuery query, ChildEventListener listener) {
+        ChildSubscription subscription = new ChildSubscription(query, listener);
+        afterRoundTrip(() -> {
+            childSubscriptions.add(subscription);
+            DataSnapshot initial = query.snapshot(root.getChild(query.getPath()));
+            events.execute(() -> {
+                String previous = null;
+                for (DataSnapshot child : initial.getChildren()) {
+                    listener.onChildAdded(child, previous);
+                    previous = child.getKey();
+                }
+            });
+        });
+    }
+
+    void unsubscribe(ChildEventListener listener) {
+        network.execute(() -> childSubscriptions.removeIf(subscription -> subscription.listener == listener));
+    }
+
+    private void notifyChildSubscriptions(Node before, Iterable<Path> written) {
+        for (ChildSubscription subscription : childSubscriptions) {
+            Path listened = subscription.query.getPath();
+            for (Path path : written) {
+                if (listened.contains(path) || path.contains(listened)) {
+                    subscription.diff(before.getChild(listened), root.getChild(listened));
+                    break;
+                }
+            }
+        }
+    }
+
+    private void afterRoundTrip(Runnable operation) {
+        long delay = latencyMicros + (jitterMicros > 0 ? ThreadLocalRandom.current().nextLong(jitterMicros + 1) : 0);
+        network.schedule(operation, delay, TimeUnit.MICROSECONDS);
+    }
+
+    private final class ChildSubscription {
+        final InMemoryQuery query;
+        final ChildEventListener listener;
+
+        ChildSubscription(InMemoryQuery query, ChildEventListener listener) {
+            this.query = query;
+            this.listener = listener;
+        }
+
+        void diff(Node before, Node after) {
+            Map<ChildKey, Node> old = children(query.filter(before));
+            DataSnapshot current = query.snapshot(after);
+            String previous = null;
+            for (DataSnapshot child : current.getChildren()) {
+                Node was = old.remove(ChildKey.fromString(child.getKey()));
+                Node now = after.getImmediateChild(ChildKey.fromString(child.getKey()));
+                String previousKey = previous;
+                if (was == null) {
+                    events.execute(() -> listener.onChildAdded(child, previousKey));
+                } else if (!was.equals(now)) {
+                    events.execute(() -> listener.onChildChanged(child, previousKey));
+                }
+                previous = child.getKey();
+            }
+            DatabaseReference parent = new InMemoryReference(InMemoryDatabase.this, query.getPath());
+            old.forEach((key, node) -> {
+                DataSnapshot removed = new DataSnapshot(parent.child(key.asString()), IndexedNode.from(node));
+                events.execute(() -> listener.onChildRemoved(removed));
+            });
+        }
+
+        private Map<ChildKey, Node> children(Node node) {
+            Map<ChildKey, Node> children = new LinkedHashMap<>();
+            for (NamedNode child : node) {
+                children.put(child.getName(), child.getNode());
+            }
+            return children;
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
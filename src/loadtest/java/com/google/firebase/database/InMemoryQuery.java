@@ -0,0 +1,205 @@
+package com.google.firebase.database;
+
+import com.google.firebase.database.core.Path;
+import com.google.firebase.database.snapshot.ChildKey;
+import com.google.firebase.database.snapshot.EmptyNode;
+import com.google.firebase.database.snapshot.Index;
+import com.google.firebase.database.snapshot.IndexedNode;
+import com.google.firebase.database.snapshot.KeyIndex;
+import com.google.firebase.database.snapshot.NamedNode;
+import com.google.firebase.database.snapshot.Node;
+import com.google.firebase.database.snapshot.NodeUtilities;
+import com.google.firebase.database.snapshot.PathIndex;
+
+import java.util.Iterator;
+
+/**
+ * Query over the {@link InMemoryDatabase}: one ordering (key or child path), optional
+ * start/end bounds and an optional first/last limit, evaluated with the SDK's own
+ * index comparators. Instances are immutable; every builder call returns a copy.
+ */
+final class InMemoryQuery extends Query {
+
+    private final InMemoryDatabase database;
+    private final Index index;
+    private final Object startValue;
+    private final String startKey;
+    private final Object endValue;
+    private final String endKey;
+    private final boolean bounded;
+    private final int limit;
+    private final boolean limitToLast;
+
+    InMemoryQuery(InMemoryDatabase database, Path path) {
+        this(database, path, KeyIndex.getInstance(), null, null, null, null, false, 0, false);
+    }
+
+    private InMemoryQuery(InMemoryDatabase database, Path path, Index index, Object startValue, String startKey,
+                          Object endValue, String endKey, boolean bounded, int limit, boolean limitToLast) {
+        super(null, path);
+        this.database = database;
+        this.index = index;
+        this.startValue = startValue;
+        this.startKey = startKey;
+        this.endValue = endValue;
+        this.endKey = endKey;
+        this.bounded = bounded;
+        this.limit = limit;
+        this.limitToLast = limitToLast;
+    }
+
+    @Override
+    public Query orderByKey() {
+        return ordered(KeyIndex.getInstance());
+    }
+
+    @Override
+    public Query orderByChild(String path) {
+        return ordered(new PathIndex(new Path(path)));
+    }
+
+    @Override
+    public Query startAt(String value) {
+        return startAt(value, null);
+    }
+
+    @Override
+    public Query startAt(double value) {
+        return between(value, null, endValue, endKey);
+    }
+
+    @Override
+    public Query startAt(String value, String key) {
+        return between(value, key, endValue, endKey);
+    }
+
+    @Override
+    public Query endAt(String value) {
+        return endAt(value, null);
+    }
+
+    @Override
+    public Query endAt(double value) {
+        return between(startValue, startKey, value, null);
+    }
+
+    @Override
+    public Query endAt(String value, String key) {
+        return between(startValue, startKey, value, key);
+    }
+
+    @Override
+    public Query equalTo(String value) {
+        return between(value, null, value, null);
+    }
+
+    @Override
+    public Query equalTo(String value, String key) {
+        return between(value, key, value, key);
+    }
+
+    @Override
+    public Query equalTo(double value) {
+        return between(value, null, value, null);
+    }
+
+    @Override
+    public Query equalTo(boolean value) {
+        return between(value, null, value, null);
+    }
+
+    @Override
+    public Query limitToFirst(int limit) {
+        return new InMemoryQuery(database, getPath(), index, startValue, startKey, endValue, endKey, bounded, limit, false);
+    }
+
+    @Override
+    public Query limitToLast(int limit) {
+        return new InMemoryQuery(database, getPath(), index, startValue, startKey, endValue, endKey, bounded, limit, true);
+    }
+
+    @Override
+    public void addListenerForSingleValueEvent(ValueEventListener listener) {
+        database.read(this, listener);
+    }
+
+    @Override
+    public ChildEventListener addChildEventListener(ChildEventListener listener) {
+        database.subscribe(this, listener);
+        return listener;
+    }
+
+    @Override
+    public void removeEventListener(ChildEventListener listener) {
+        database.unsubscribe(listener);
+    }
+
+    @Override
+    public ValueEventListener addValueEventListener(ValueEventListener listener) {
+        throw new UnsupportedOperationException("Persistent value listeners are not supported by the in-memory database");
+    }
+
+    @Override
+    public DatabaseReference getRef() {
+        return new InMemoryReference(database, getPath());
+    }
+
+    /**
+     * @param node Current value at this query's path
+     * @return Snapshot of the matching children, iterated in query order
+     */
+    DataSnapshot snapshot(Node node) {
+        return new DataSnapshot(getRef(), IndexedNode.from(filter(node), index));
+    }
+
+    /**
+     * @param node Current value at this query's path
+     * @return The node with only the children this query selects
+     */
+    Node filter(Node node) {
+        boolean constrained = bounded || limit > 0;
+        if (!constrained) {
+            return node;
+        }
+        if (node.isLeafNode()) {
+            return EmptyNode.Empty();
+        }
+        NamedNode lower = startValue != null ? post(startValue, startKey, ChildKey.getMinName()) : null;
+        NamedNode upper = endValue != null ? post(endValue, endKey, ChildKey.getMaxName()) : null;
+
+        IndexedNode indexed = IndexedNode.from(node, index);
+        Iterator<NamedNode> children = limitToLast ? indexed.reverseIterator() : indexed.iterator();
+        Node result = EmptyNode.Empty();
+        int matched = 0;
+        while (children.hasNext() && (limit <= 0 || matched < limit)) {
+            NamedNode child = children.next();
+            if (lower != null && index.compare(child, lower) < 0) {
+                if (limitToLast) {
+                    break;
+                }
+                continue;
+            }
+            if (upper != null && index.compare(child, upper) > 0) {
+                if (limitToLast) {
+                    continue;
+                }
+                break;
+            }
+            result = result.updateImmediateChild(child.getName(), child.getNode());
+            matched++;
+        }
+        return result;
+    }
+
+    private Query ordered(Index index) {
+        return new InMemoryQuery(database, getPath(), index, startValue, startKey, endValue, endKey, bounded, limit, limitToLast);
+    }
+
+    private Query between(Object startValue, String startKey, Object endValue, String endKey) {
+        return new InMemoryQuery(database, getPath(), index, startValue, startKey, endValue, endKey, true, limit, limitToLast);
+    }
+
+    private NamedNode post(Object value, String key, ChildKey defaultKey) {
+        return index.makePost(key != null ? ChildKey.fromString(key) : defaultKey, NodeUtilities.NodeFromJSON(value));
+    }
+}
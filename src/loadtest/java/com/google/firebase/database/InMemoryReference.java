@@ -0,0 +1,145 @@
+package com.google.firebase.database;
+
+import com.google.firebase.database.core.Path;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reference into the {@link InMemoryDatabase}. Lives in the SDK package because the
+ * DatabaseReference and Query constructors are package-private; it has no Repo, so
+ * every method the services call is overridden here.
+ */
+final class InMemoryReference extends DatabaseReference {
+
+    private final InMemoryDatabase database;
+
+    InMemoryReference(InMemoryDatabase database, Path path) {
+        super(null, path);
+        this.database = database;
+    }
+
+    @Override
+    public DatabaseReference child(String pathString) {
+        if (pathString == null) {
+            throw new NullPointerException("Can't pass null for argument 'pathString' in child()");
+        }
+        return new InMemoryReference(database, getPath().child(new Path(pathString)));
+    }
+
+    @Override
+    public DatabaseReference getParent() {
+        Path parent = getPath().getParent();
+        return parent != null ? new InMemoryReference(database, parent) : null;
+    }
+
+    @Override
+    public DatabaseReference getRoot() {
+        return new InMemoryReference(database, Path.getEmptyPath());
+    }
+
+    @Override
+    public void setValue(Object value, CompletionListener listener) {
+        database.write(this, Collections.singletonMap(getPath(), value), listener);
+    }
+
+    @Override
+    public void setValue(Object value, Object priority, CompletionListener listener) {
+        setValue(value, listener);
+    }
+
+    @Override
+    public void removeValue(CompletionListener listener) {
+        database.write(this, Collections.singletonMap(getPath(), null), listener);
+    }
+
+    @Override
+    public void updateChildren(Map<String, Object> update, CompletionListener listener) {
+        if (update == null) {
+            throw new NullPointerException("Can't pass null for argument 'update' in updateChildren()");
+        }
+        Map<Path, Object> values = new LinkedHashMap<>();
+        update.forEach((key, value) -> values.put(getPath().child(new Path(key)), value));
+        database.write(this, values, listener);
+    }
+
+    @Override
+    public void runTransaction(Transaction.Handler handler) {
+        database.transaction(this, handler);
+    }
+
+    @Override
+    public void runTransaction(Transaction.Handler handler, boolean fireLocalEvents) {
+        database.transaction(this, handler);
+    }
+
+    @Override
+    public Query orderByKey() {
+        return query().orderByKey();
+    }
+
+    @Override
+    public Query orderByChild(String path) {
+        return query().orderByChild(path);
+    }
+
+    @Override
+    public Query startAt(String value) {
+        return query().startAt(value);
+    }
+
+    @Override
+    public Query endAt(String value) {
+        return query().endAt(value);
+    }
+
+    @Override
+    public Query equalTo(String value) {
+        return query().equalTo(value);
+    }
+
+    @Override
+    public Query limitToFirst(int limit) {
+        return query().limitToFirst(limit);
+    }
+
+    @Override
+    public Query limitToLast(int limit) {
+        return query().limitToLast(limit);
+    }
+
+    @Override
+    public void addListenerForSingleValueEvent(ValueEventListener listener) {
+        query().addListenerForSingleValueEvent(listener);
+    }
+
+    @Override
+    public ChildEventListener addChildEventListener(ChildEventListener listener) {
+        return query().addChildEventListener(listener);
+    }
+
+    @Override
+    public void removeEventListener(ChildEventListener listener) {
+        query().removeEventListener(listener);
+    }
+
+    @Override
+    public ValueEventListener addValueEventListener(ValueEventListener listener) {
+        return query().addValueEventListener(listener);
+    }
+
+    @Override
+    public DatabaseReference getRef() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "memory:" + getPath();
+    }
+
+    private InMemoryQuery query() {
+        return new InMemoryQuery(database, getPath());
+    }
+}
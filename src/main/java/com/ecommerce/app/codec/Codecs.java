@@ -0,0 +1,15 @@
+package com.ecommerce.app.codec;
+
+/**
+ * Shared codec instances; codecs hold no state
+ */
+public final class Codecs {
+
+    public static final UserCodec USER = new UserCodec();
+    public static final ProductCodec PRODUCT = new ProductCodec();
+    public static final OrderItemCodec ORDER_ITEM = new OrderItemCodec();
+    public static final OrderCodec ORDER = new OrderCodec(ORDER_ITEM);
+
+    private Codecs() {
+    }
+}
@@ -0,0 +1,53 @@
+package com.ecommerce.app.codec;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts an entity to and from the plain values Firebase stores, with no
+ * reflection. {@link #toMap} produces the same keys as the SDK's bean mapping,
+ * so data written either way reads back the same.
+ */
+public interface EntityCodec<T> {
+
+    /**
+     * @param id The node's key, or null for nested values
+     * @param map The node's value as returned by {@link DataSnapshot#getValue()}
+     * @return The entity
+     */
+    T fromMap(String id, Map<String, Object> map);
+
+    /**
+     * @param value The entity
+     * @return Plain values for {@code setValue} or {@code updateChildren}; null fields are left out
+     */
+    Map<String, Object> toMap(T value);
+
+    /**
+     * @param snapshot Snapshot of one entity node
+     * @return The entity with its id set from the key, or null if the node does not exist
+     */
+    @SuppressWarnings("unchecked")
+    default T decode(DataSnapshot snapshot) {
+        Object value = snapshot.getValue();
+        return value instanceof Map ? fromMap(snapshot.getKey(), (Map<String, Object>) value) : null;
+    }
+
+    /**
+     * @param parent Snapshot of a list node such as "orders" or a query result
+     * @return The children in snapshot order, skipping any that are not objects
+     */
+    default List<T> decodeChildren(DataSnapshot parent) {
+        List<T> values = new ArrayList<>((int) parent.getChildrenCount());
+        for (DataSnapshot child : parent.getChildren()) {
+            T value = decode(child);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ecommerce.app.codec;
+
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderItem;
+import com.ecommerce.app.model.OrderStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class OrderCodec implements EntityCodec<Order> {
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private final OrderItemCodec itemCodec;
+
+    OrderCodec(OrderItemCodec itemCodec) {
+        this.itemCodec = itemCodec;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Order fromMap(String id, Map<String, Object> map) {
+        Order order = new Order();
+        order.setId(id != null ? id : Values.string(map.get("id")));
+        order.setUserId(Values.string(map.get("userId")));
+        order.setTotalAmount(Values.doubleValue(map.get("totalAmount")));
+        order.setTimestamp(Values.longValue(map.get("timestamp")));
+        order.setCreatedAt(Values.string(map.get("createdAt")));
+        order.setUpdatedAt(Values.string(map.get("updatedAt")));
+
+        Object status = map.get("status");
+        if (status != null) {
+            order.setStatus(status(status.toString()));
+        }
+
+        Collection<?> elements = Values.elements(map.get("items"));
+        if (elements != null) {
+            List<OrderItem> items = new ArrayList<>(elements.size());
+            for (Object element : elements) {
+                if (element instanceof Map) {
+                    items.add(itemCodec.fromMap(null, (Map<String, Object>) element));
+                }
+            }
+            order.setItems(items);
+        }
+        return order;
+    }
+
+    @Override
+    public Map<String, Object> toMap(Order order) {
+        Map<String, Object> map = new HashMap<>(12);
+        Values.putIfNotNull(map, "id", order.getId());
+        Values.putIfNotNull(map, "userId", order.getUserId());
+        if (order.getItems() != null) {
+            List<Map<String, Object>> items = new ArrayList<>(order.getItems().size());
+            for (OrderItem item : order.getItems()) {
+                items.add(itemCodec.toMap(item));
+            }
+            map.put("items", items);
+        }
+        map.put("totalAmount", order.getTotalAmount());
+        if (order.getStatus() != null) {
+            map.put("status", order.getStatus().name());
+        }
+        map.put("timestamp", order.getTimestamp());
+        Values.putIfNotNull(map, "createdAt", order.getCreatedAt());
+        Values.putIfNotNull(map, "updatedAt", order.getUpdatedAt());
+        return map;
+    }
+
+    // Stored values are enum names; match them without valueOf's exception path, then fall back to the lenient parser
+    private static OrderStatus status(String value) {
+        for (OrderStatus status : STATUSES) {
+            if (status.name().equals(value)) {
+                return status;
+            }
+        }
+        return OrderStatus.fromString(value);
+    }
+}
@@ -0,0 +1,31 @@
+package com.ecommerce.app.codec;
+
+import com.ecommerce.app.model.OrderItem;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class OrderItemCodec implements EntityCodec<OrderItem> {
+
+    OrderItemCodec() {
+    }
+
+    @Override
+    public OrderItem fromMap(String id, Map<String, Object> map) {
+        return new OrderItem(
+                Values.string(map.get("productId")),
+                Values.string(map.get("productName")),
+                Values.intValue(map.get("quantity")),
+                Values.doubleValue(map.get("price")));
+    }
+
+    @Override
+    public Map<String, Object> toMap(OrderItem item) {
+        Map<String, Object> map = new HashMap<>(8);
+        Values.putIfNotNull(map, "productId", item.getProductId());
+        Values.putIfNotNull(map, "productName", item.getProductName());
+        map.put("quantity", item.getQuantity());
+        map.put("price", item.getPrice());
+        return map;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ecommerce.app.codec;
+
+import com.ecommerce.app.model.Product;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class ProductCodec implements EntityCodec<Product> {
+
+    ProductCodec() {
+    }
+
+    @Override
+    public Product fromMap(String id, Map<String, Object> map) {
+        Product product = new Product();
+        product.setId(id != null ? id : Values.string(map.get("id")));
+        product.setName(Values.string(map.get("name")));
+        product.setDescription(Values.string(map.get("description")));
+        product.setPrice(Values.doubleValue(map.get("price")));
+        product.setQuantity(Values.intValue(map.get("quantity")));
+        product.setImageUrl(Values.string(map.get("imageUrl")));
+        product.setCategory(Values.string(map.get("category")));
+        product.setTags(Values.strings(map.get("tags")));
+        return product;
+    }
+
+    @Override
+    public Map<String, Object> toMap(Product product) {
+        Map<String, Object> map = new HashMap<>(12);
+        Values.putIfNotNull(map, "id", product.getId());
+        Values.putIfNotNull(map, "name", product.getName());
+        Values.putIfNotNull(map, "description", product.getDescription());
+        map.put("price", product.getPrice());
+        map.put("quantity", product.getQuantity());
+        Values.putIfNotNull(map, "imageUrl", product.getImageUrl());
+        Values.putIfNotNull(map, "category", product.getCategory());
+        Values.putIfNotNull(map, "tags", product.getTags());
+        return map;
+    }
+}
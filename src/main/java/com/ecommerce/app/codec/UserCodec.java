@@ -0,0 +1,34 @@
+package com.ecommerce.app.codec;
+
+import com.ecommerce.app.model.User;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class UserCodec implements EntityCodec<User> {
+
+    UserCodec() {
+    }
+
+    @Override
+    public User fromMap(String id, Map<String, Object> map) {
+        User user = new User();
+        user.setId(id != null ? id : Values.string(map.get("id")));
+        user.setUsername(Values.string(map.get("username")));
+        user.setEmail(Values.string(map.get("email")));
+        user.setPassword(Values.string(map.get("password")));
+        user.setRole(Values.string(map.get("role")));
+        return user;
+    }
+
+    @Override
+    public Map<String, Object> toMap(User user) {
+        Map<String, Object> map = new HashMap<>(8);
+        Values.putIfNotNull(map, "id", user.getId());
+        Values.putIfNotNull(map, "username", user.getUsername());
+        Values.putIfNotNull(map, "email", user.getEmail());
+        Values.putIfNotNull(map, "password", user.getPassword());
+        Values.putIfNotNull(map, "role", user.getRole());
+        return map;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ecommerce.app.codec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads plain Firebase values leniently. Numbers may arrive as Long or Double
+ * whatever the field's Java type, and arrays with gaps arrive as maps.
+ */
+final class Values {
+
+    private Values() {
+    }
+
+    static String string(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    static double doubleValue(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    static int intValue(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    static long longValue(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * @param value A List, or a Map of index to element for sparse arrays
+     * @return The elements, or null if the value is neither
+     */
+    static Collection<?> elements(Object value) {
+        if (value instanceof List) {
+            return (List<?>) value;
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).values();
+        }
+        return null;
+    }
+
+    static List<String> strings(Object value) {
+        Collection<?> elements = elements(value);
+        if (elements == null) {
+            return null;
+        }
+        List<String> strings = new ArrayList<>(elements.size());
+        for (Object element : elements) {
+            if (element != null) {
+                strings.add(element.toString());
+            }
+        }
+        return strings;
+    }
+
+    static void putIfNotNull(Map<String, Object> map, String key, Object value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+}
@@ -3,15 +3,29 @@ package com.ecommerce.app.config;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
 
+/**
+ * Connects to the Realtime Database and exposes its root reference to the services.
+ * Setting firebase.enabled=false skips the connection entirely, for runs that supply
+ * their own DatabaseReference bean such as the offline load test.
+ */
 @Configuration
+@ConditionalOnProperty(name = "firebase.enabled", havingValue = "true", matchIfMissing = true)
 public class FirebaseConfig {
 
+    @Value("${firebase.database.url:https://ecommerce-app-ef02e-default-rtdb.asia-southeast1.firebasedatabase.app/}")
+    private String databaseUrl;
+
     @PostConstruct
     public void initialize() {
         try {
@@ -27,7 +41,7 @@ public class FirebaseConfig {
 
             FirebaseOptions options = FirebaseOptions.builder()
                     .setCredentials(GoogleCredentials.fromStream(serviceAccount.getInputStream()))
-                    .setDatabaseUrl("https://ecommerce-app-ef02e-default-rtdb.asia-southeast1.firebasedatabase.app/")
+                    .setDatabaseUrl(databaseUrl)
                     .build();
 
             FirebaseApp.initializeApp(options);
@@ -38,4 +52,12 @@ public class FirebaseConfig {
             throw new RuntimeException("Firebase initialization failed", e);
         }
     }
+
+    /**
+     * @return Reference to the database root, shared by every service
+     */
+    @Bean
+    public DatabaseReference databaseReference() {
+        return FirebaseDatabase.getInstance().getReference();
+    }
 }
@@ -1,7 +1,12 @@
 package com.ecommerce.app.config;
 
 import com.ecommerce.app.security.AuthService;
+import com.ecommerce.app.security.PrincipalRevocations;
+import com.ecommerce.app.security.RevokedPrincipalFilter;
+import com.ecommerce.app.security.TokenAuthenticationFilter;
+import com.ecommerce.app.security.TokenService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -14,6 +19,8 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.servletapi.SecurityContextHolderAwareRequestFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -28,9 +35,22 @@ public class SecurityConfig {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private PrincipalRevocations principalRevocations;
+
+    // "session" keeps the HttpSession login; "stateless" authenticates every request from a signed token
+    @Value("${auth.mode:session}")
+    private String authMode;
+
+    @Value("${auth.bcrypt.cost:10}")
+    private int bcryptCost;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptCost);
     }
 
     @Bean
@@ -61,7 +81,7 @@ public class SecurityConfig {
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
         configuration.setAllowCredentials(true);
-        configuration.setExposedHeaders(Arrays.asList("Set-Cookie"));
+        configuration.setExposedHeaders(Arrays.asList("Set-Cookie", "X-Total-Count", "ETag", "Last-Modified"));
         configuration.setMaxAge(3600L);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -80,15 +100,24 @@ public class SecurityConfig {
                 .requestMatchers("/api/orders").authenticated()
                 .requestMatchers("/api/orders/my-orders").authenticated()
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
-            .sessionManagement(session -> session
+            .authenticationProvider(authenticationProvider())
+            .addFilterAfter(new RevokedPrincipalFilter(principalRevocations), SecurityContextHolderAwareRequestFilter.class);
+
+        if ("stateless".equalsIgnoreCase(authMode)) {
+            http.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class);
+        } else {
+            http.sessionManagement(session -> session
                 .sessionCreationPolicy(SessionCreationPolicy.ALWAYS)
                 .sessionFixation().changeSessionId()
                 .maximumSessions(10)
                 .maxSessionsPreventsLogin(false)
-            )
-            .authenticationProvider(authenticationProvider());
+            );
+        }
 
         return http.build();
     }
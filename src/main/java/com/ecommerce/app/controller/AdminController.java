@@ -2,9 +2,13 @@ package com.ecommerce.app.controller;
 
 import com.ecommerce.app.dto.ProductRequest;
 import com.ecommerce.app.dto.OrderStatusUpdateRequest;
+import com.ecommerce.app.journal.JournalEvent;
+import com.ecommerce.app.journal.OrderJournal;
+import com.ecommerce.app.metrics.TransactionProfiler;
 import com.ecommerce.app.model.Product;
 import com.ecommerce.app.model.User;
 import com.ecommerce.app.model.Order;
+import com.ecommerce.app.security.PrincipalRevocations;
 import com.ecommerce.app.service.FirebaseService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -12,6 +16,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 @RestController
@@ -23,6 +28,15 @@ public class AdminController {
     @Autowired
     private FirebaseService firebaseService;
 
+    @Autowired
+    private PrincipalRevocations principalRevocations;
+
+    @Autowired
+    private TransactionProfiler transactionProfiler;
+
+    @Autowired
+    private OrderJournal orderJournal;
+
     @PostMapping("/products")
     public CompletableFuture<ResponseEntity<Product>> createProduct(@RequestBody ProductRequest request) {
         Product product = new Product();
@@ -31,6 +45,8 @@ public class AdminController {
         product.setPrice(request.getPrice());
         product.setQuantity(request.getQuantity());
         product.setImageUrl(request.getImageUrl());
+        product.setCategory(request.getCategory());
+        product.setTags(request.getTags());
 
         return firebaseService.saveProduct(product)
                 .thenApply(savedProduct -> {
@@ -70,6 +86,8 @@ public class AdminController {
         product.setPrice(request.getPrice());
         product.setQuantity(request.getQuantity());
         product.setImageUrl(request.getImageUrl());
+        product.setCategory(request.getCategory());
+        product.setTags(request.getTags());
 
         return firebaseService.updateProduct(id, product)
                 .thenApply(updatedProduct -> {
@@ -103,20 +121,22 @@ public class AdminController {
         }
 
         return firebaseService.updateUserRole(userId, role)
-                .thenApply(updatedUser -> {
+                // Sessions and tokens still carry the old role; make the user sign in again
+                .thenCompose(updatedUser -> principalRevocations.revoke(userId).thenApply(stored -> {
                     if (updatedUser != null) {
                         return ResponseEntity.ok(updatedUser);
                     } else {
                         return ResponseEntity.internalServerError().<User>build();
                     }
-                })
+                }))
                 .exceptionally(throwable -> ResponseEntity.internalServerError().<User>build());
     }
 
     @DeleteMapping("/users/{userId}")
     public CompletableFuture<ResponseEntity<Object>> deleteUser(@PathVariable String userId) {
         return firebaseService.deleteUser(userId)
-                .thenApply(aVoid -> ResponseEntity.ok((Object) "User deleted successfully"))
+                .thenCompose(aVoid -> principalRevocations.revoke(userId))
+                .thenApply(stored -> ResponseEntity.ok((Object) "User deleted successfully"))
                 .exceptionally(throwable -> ResponseEntity.internalServerError().body("Failed to delete user"));
     }
 
@@ -147,6 +167,21 @@ public class AdminController {
                 .exceptionally(throwable -> ResponseEntity.internalServerError().<Order>build());
     }
 
+    /**
+     * Replays this node's order journal for one order's creation and status changes
+     * @param orderId The order
+     * @return The journaled events, oldest first; empty if this node never handled the order
+     */
+    @GetMapping("/orders/{orderId}/history")
+    public CompletableFuture<ResponseEntity<List<JournalEvent>>> getOrderHistory(@PathVariable String orderId) {
+        if (!orderJournal.isEnabled()) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().<List<JournalEvent>>build());
+        }
+        return orderJournal.history(orderId)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(throwable -> ResponseEntity.internalServerError().<List<JournalEvent>>build());
+    }
+
     @PutMapping("/orders/{orderId}/status")
     public CompletableFuture<ResponseEntity<Order>> updateOrderStatus(
             @PathVariable String orderId, 
@@ -175,4 +210,10 @@ public class AdminController {
                     }
                 });
     }
+
+    // Diagnostics
+    @GetMapping("/diagnostics/transactions")
+    public ResponseEntity<Map<String, Map<String, Object>>> getTransactionDiagnostics() {
+        return ResponseEntity.ok(transactionProfiler.snapshot());
+    }
 }
@@ -1,10 +1,19 @@
 package com.ecommerce.app.controller;
 
 import com.ecommerce.app.dto.LoginRequest;
+import com.ecommerce.app.dto.RefreshTokenRequest;
 import com.ecommerce.app.dto.RegisterRequest;
 import com.ecommerce.app.model.User;
 import com.ecommerce.app.security.AuthService;
+import com.ecommerce.app.security.AuthenticatedUser;
+import com.ecommerce.app.security.LoginRateLimiter;
+import com.ecommerce.app.security.PasswordHasher;
+import com.ecommerce.app.security.TokenService;
+import com.ecommerce.app.tracing.Tracer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -19,6 +28,9 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -30,103 +42,105 @@ public class AuthController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private LoginRateLimiter loginRateLimiter;
+
+    @Autowired
+    private Tracer tracer;
+
+    @Value("${auth.mode:session}")
+    private String authMode;
+
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody RegisterRequest request, HttpServletRequest httpRequest) {
-        try {
-            User user = authService.registerUser(
-                    request.getUsername(),
-                    request.getEmail(),
-                    request.getPassword()
-            );
-            
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody RegisterRequest request, HttpServletRequest httpRequest) {
+        return authService.registerUser(
+                request.getUsername(),
+                request.getEmail(),
+                request.getPassword()
+        ).<ResponseEntity<?>>thenApply(tracer.wrapFunction(user -> {
             logger.info("User registered successfully: {}", user.getEmail());
-            
+
+            if (isStateless()) {
+                return ResponseEntity.ok(tokenResponse(user, "User registered and logged in successfully"));
+            }
+
             // Automatically log in the newly registered user
-            HttpSession session = httpRequest.getSession(true);
-            logger.info("Created session for new user with ID: {}", session.getId());
-            
-            // Set up Spring Security authentication in session
-            org.springframework.security.core.userdetails.UserDetails userDetails = 
-                authService.loadUserByUsername(user.getEmail());
-            
-            Authentication authentication = new UsernamePasswordAuthenticationToken(
-                userDetails, null, userDetails.getAuthorities());
-            
-            SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
-            securityContext.setAuthentication(authentication);
-            SecurityContextHolder.setContext(securityContext);
-            
-            // Store security context in session
-            session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, securityContext);
-            
+            HttpSession session = startSession(httpRequest, user);
             logger.info("Session established for new user: {} with role: {}", user.getEmail(), user.getRole());
-            
+
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("user", user);
             response.put("message", "User registered and logged in successfully");
             response.put("sessionId", session.getId()); // For debugging only
-            
+
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Registration failed for email: {}", request.getEmail(), e);
+        })).exceptionally(throwable -> {
+            if (PasswordHasher.isBusy(throwable)) {
+                return hashingBusy();
+            }
+            Throwable cause = unwrap(throwable);
+            logger.error("Registration failed for email: {}", request.getEmail(), cause);
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
-            errorResponse.put("message", e.getMessage());
+            errorResponse.put("message", cause.getMessage());
             return ResponseEntity.badRequest().body(errorResponse);
-        }
+        });
     }
 
     @PostMapping("/register-admin")
-    public ResponseEntity<?> registerAdmin(@RequestBody RegisterRequest request) {
-        try {
-            User user = authService.registerAdmin(
-                    request.getUsername(),
-                    request.getEmail(),
-                    request.getPassword()
-            );
-            
+    public CompletableFuture<ResponseEntity<?>> registerAdmin(@RequestBody RegisterRequest request) {
+        return authService.registerAdmin(
+                request.getUsername(),
+                request.getEmail(),
+                request.getPassword()
+        ).<ResponseEntity<?>>thenApply(user -> {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("user", user);
             response.put("message", "Admin user registered successfully");
-            
+
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
-        }
+        }).exceptionally(throwable -> {
+            if (PasswordHasher.isBusy(throwable)) {
+                return hashingBusy();
+            }
+            return ResponseEntity.badRequest().body(unwrap(throwable).getMessage());
+        });
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request, HttpServletRequest httpRequest) {
-        try {
-            logger.info("Login attempt for email: {}", request.getEmail());
-            logger.info("Request Origin: {}", httpRequest.getHeader("Origin"));
-            logger.info("User-Agent: {}", httpRequest.getHeader("User-Agent"));
-            
-            User user = authService.authenticateUser(
-                    request.getEmail(),
-                    request.getPassword()
-            );
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest request, HttpServletRequest httpRequest) {
+        // Throttle before the user lookup and the password hash, which are what an attacker wants to spend
+        long retryAfterNanos = loginRateLimiter.tryAcquire(request.getEmail(), httpRequest.getRemoteAddr());
+        if (retryAfterNanos > 0) {
+            logger.warn("Login throttled for email: {} from {}", request.getEmail(), httpRequest.getRemoteAddr());
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Too many login attempts, try again later");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER,
+                            Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999))))
+                    .body(errorResponse));
+        }
+
+        logger.info("Login attempt for email: {}", request.getEmail());
+        logger.info("Request Origin: {}", httpRequest.getHeader("Origin"));
+        logger.info("User-Agent: {}", httpRequest.getHeader("User-Agent"));
+
+        return authService.authenticateUser(
+                request.getEmail(),
+                request.getPassword()
+        ).<ResponseEntity<?>>thenApply(tracer.wrapFunction(user -> {
+            if (isStateless()) {
+                return ResponseEntity.ok(tokenResponse(user, "Login successful"));
+            }
 
             // Create session and set authentication
-            HttpSession session = httpRequest.getSession(true);
-            logger.info("Created session with ID: {}", session.getId());
-            
-            // Set up Spring Security authentication in session
-            org.springframework.security.core.userdetails.UserDetails userDetails = 
-                authService.loadUserByUsername(user.getEmail());
-            
-            Authentication authentication = new UsernamePasswordAuthenticationToken(
-                userDetails, null, userDetails.getAuthorities());
-            
-            SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
-            securityContext.setAuthentication(authentication);
-            SecurityContextHolder.setContext(securityContext);
-            
-            // Store security context in session
-            session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, securityContext);
-            
+            HttpSession session = startSession(httpRequest, user);
             logger.info("Session established for user: {} with role: {}", user.getEmail(), user.getRole());
             logger.info("Session cookie will be sent with name: JSESSIONID");
 
@@ -137,12 +151,47 @@ public class AuthController {
             response.put("sessionId", session.getId()); // For debugging only
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Login failed for email: {}", request.getEmail(), e);
+        })).exceptionally(throwable -> {
+            if (PasswordHasher.isBusy(throwable)) {
+                logger.warn("Login rejected for email: {}: password hashing is saturated", request.getEmail());
+                return hashingBusy();
+            }
+            logger.error("Login failed for email: {}", request.getEmail(), unwrap(throwable));
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
             errorResponse.put("message", "Invalid credentials");
             return ResponseEntity.badRequest().body(errorResponse);
+        });
+    }
+
+    /**
+     * Exchanges a refresh token for a new access and refresh token pair (stateless mode)
+     * @param request Body with the refresh token
+     * @return New tokens, or 401 if the refresh token is invalid, expired or its user is gone
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody RefreshTokenRequest request) {
+        TokenService.Claims claims = tokenService.verify(request.getRefreshToken(), TokenService.REFRESH);
+        if (claims == null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Invalid or expired refresh token");
+            return ResponseEntity.status(401).body(errorResponse);
+        }
+
+        try {
+            // Read the user again so role changes and deletions take effect at the next refresh
+            User user = authService.getUserById(claims.getUserId());
+            if (user == null) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "User no longer exists");
+                return ResponseEntity.status(401).body(errorResponse);
+            }
+            return ResponseEntity.ok(tokenResponse(user, "Token refreshed"));
+        } catch (Exception e) {
+            logger.error("Token refresh failed for user: {}", claims.getUserId(), e);
+            return ResponseEntity.internalServerError().build();
         }
     }
 
@@ -206,4 +255,53 @@ public class AuthController {
         logger.info("Session status check: {}", response);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    private boolean isStateless() {
+        return "stateless".equalsIgnoreCase(authMode);
+    }
+
+    // Stores the user's authentication in a new session. This runs on the thread that completed the
+    // password check, so the context goes only into the session and not into that thread's holder
+    private HttpSession startSession(HttpServletRequest httpRequest, User user) {
+        HttpSession session = httpRequest.getSession(true);
+        logger.info("Created session with ID: {}", session.getId());
+
+        // The principal carries id and role
+        AuthenticatedUser principal = AuthenticatedUser.from(user);
+
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+            principal, null, principal.getAuthorities());
+
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(authentication);
+        session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, securityContext);
+        return session;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+    }
+
+    // No request thread waits for the hashing pool; when that pool is saturated, shed the request
+    private ResponseEntity<?> hashingBusy() {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", "Too many sign-in attempts, try again shortly");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponse);
+    }
+
+    private Map<String, Object> tokenResponse(User user, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("user", user);
+        response.put("message", message);
+        response.put("tokenType", "Bearer");
+        response.put("accessToken", tokenService.issueAccessToken(user));
+        response.put("expiresIn", tokenService.getAccessTtlSeconds());
+        response.put("refreshToken", tokenService.issueRefreshToken(user));
+        return response;
+    }
+}
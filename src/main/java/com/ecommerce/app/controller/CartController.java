@@ -0,0 +1,141 @@
+package com.ecommerce.app.controller;
+
+import com.ecommerce.app.codec.Codecs;
+import com.ecommerce.app.dto.CartItemRequest;
+import com.ecommerce.app.security.AuthService;
+import com.ecommerce.app.service.CartException;
+import com.ecommerce.app.service.CartService;
+import com.ecommerce.app.service.IdempotencyConflictException;
+import com.ecommerce.app.service.IdempotencyService;
+import com.ecommerce.app.tracing.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+@RestController
+@RequestMapping("/api/cart")
+@CrossOrigin(origins = "*")
+public class CartController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartController.class);
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private Tracer tracer;
+
+    @GetMapping
+    public CompletableFuture<ResponseEntity<?>> getCart() {
+        return forCurrentUser(userId -> cartService.getCart(userId));
+    }
+
+    /**
+     * Sets a product's quantity in the cart; 0 removes it
+     * @param productId The product
+     * @param request Body with the new quantity
+     * @return The updated cart priced from the current catalog
+     */
+    @PutMapping("/items/{productId}")
+    public CompletableFuture<ResponseEntity<?>> setItem(@PathVariable String productId,
+                                                       @RequestBody CartItemRequest request) {
+        return forCurrentUser(userId -> cartService.setQuantity(userId, productId, request.getQuantity()));
+    }
+
+    @DeleteMapping("/items/{productId}")
+    public CompletableFuture<ResponseEntity<?>> removeItem(@PathVariable String productId) {
+        return forCurrentUser(userId -> cartService.setQuantity(userId, productId, 0));
+    }
+
+    @DeleteMapping
+    public CompletableFuture<ResponseEntity<?>> clearCart() {
+        return forCurrentUser(userId -> cartService.clear(userId));
+    }
+
+    /**
+     * Places an order for everything in the cart at current catalog prices and empties it
+     * @param idempotencyKey Optional key that makes retries return the same order
+     * @return The created order
+     */
+    @PostMapping("/checkout")
+    public CompletableFuture<ResponseEntity<?>> checkout(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            return CompletableFuture.completedFuture(error(HttpStatus.BAD_REQUEST, "Invalid Idempotency-Key header"));
+        }
+        // A retry after a successful checkout finds the cart empty; its null fingerprint replays the order
+        return forCurrentUser(userId -> idempotencyKey == null
+                ? cartService.checkout(userId)
+                : cartService.fingerprint(userId).thenCompose(fingerprint ->
+                        idempotencyService.execute(userId, idempotencyKey, fingerprint, Codecs.ORDER,
+                                completion -> cartService.checkout(userId, completion))));
+    }
+
+    // Resolves the signed-in user's id, runs the action and maps its failures to responses
+    private CompletableFuture<ResponseEntity<?>> forCurrentUser(Function<String, CompletableFuture<?>> action) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() ||
+            authentication.getName().equals("anonymousUser")) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).build());
+        }
+
+        return authService.resolvePrincipal(authentication).thenCompose(tracer.wrapFunction(principal -> {
+                    if (principal == null) {
+                        return CompletableFuture.completedFuture(ResponseEntity.status(404).<Object>build());
+                    }
+                    return action.apply(principal.getUserId()).<ResponseEntity<?>>thenApply(ResponseEntity::ok);
+                }))
+                .exceptionally(throwable -> {
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause() : throwable;
+                    if (cause instanceof CartException) {
+                        return error(statusOf(((CartException) cause).getReason()), cause.getMessage());
+                    }
+                    if (cause instanceof IdempotencyConflictException) {
+                        boolean inProgress = ((IdempotencyConflictException) cause).getReason()
+                                == IdempotencyConflictException.Reason.IN_PROGRESS;
+                        return error(inProgress ? HttpStatus.CONFLICT : HttpStatus.UNPROCESSABLE_ENTITY, cause.getMessage());
+                    }
+                    logger.error("Cart request failed for user {}", authentication.getName(), throwable);
+                    return ResponseEntity.internalServerError().build();
+                });
+    }
+
+    private static HttpStatus statusOf(CartException.Reason reason) {
+        switch (reason) {
+            case PRODUCT_NOT_FOUND:
+                return HttpStatus.NOT_FOUND;
+            case OUT_OF_STOCK:
+            case CHECKOUT_IN_PROGRESS:
+                return HttpStatus.CONFLICT;
+            default:
+                return HttpStatus.BAD_REQUEST;
+        }
+    }
+
+    private static ResponseEntity<?> error(HttpStatus status, String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", message);
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+}
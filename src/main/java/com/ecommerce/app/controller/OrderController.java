@@ -1,19 +1,28 @@
 package com.ecommerce.app.controller;
 
+import com.ecommerce.app.codec.Codecs;
 import com.ecommerce.app.model.Order;
-import com.ecommerce.app.model.User;
+import com.ecommerce.app.model.OrderItem;
 import com.ecommerce.app.service.FirebaseService;
+import com.ecommerce.app.service.IdempotencyConflictException;
+import com.ecommerce.app.service.IdempotencyService;
+import com.ecommerce.app.service.OrderEventService;
 import com.ecommerce.app.security.AuthService;
+import com.ecommerce.app.tracing.Tracer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -22,14 +31,26 @@ public class OrderController {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
 
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     @Autowired
     private FirebaseService firebaseService;
     
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @PostMapping
-    public CompletableFuture<ResponseEntity<Order>> createOrder(@RequestBody Order order) {
+    public CompletableFuture<ResponseEntity<Order>> createOrder(@RequestBody Order order,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             // Get the current authenticated user
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -59,6 +80,13 @@ public class OrderController {
                 return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
             }
             
+            if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+                logger.error("Order creation failed: Invalid Idempotency-Key header");
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+            }
+            // Taken before the server fills in timestamps, so a retry of the same order matches
+            String fingerprint = fingerprint(order);
+            
             // Set order metadata
             order.setTimestamp(System.currentTimeMillis());
             if (order.getStatus() == null) {
@@ -75,7 +103,12 @@ public class OrderController {
             logger.info("Processing order creation - userId: {}, itemCount: {}, total: {}", 
                 order.getUserId(), order.getItems().size(), order.getTotalAmount());
 
-            return firebaseService.saveOrder(order)
+            CompletableFuture<Order> saved = idempotencyKey == null
+                    ? firebaseService.saveOrder(order)
+                    : idempotencyService.execute(currentUserEmail, idempotencyKey, fingerprint, Codecs.ORDER,
+                            completion -> firebaseService.saveOrder(order, completion));
+
+            return saved
                     .thenApply(savedOrder -> {
                         if (savedOrder != null) {
                             logger.info("Order created successfully with ID: {}", savedOrder.getId());
@@ -86,6 +119,15 @@ public class OrderController {
                         }
                     })
                     .exceptionally(throwable -> {
+                        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                                ? throwable.getCause() : throwable;
+                        if (cause instanceof IdempotencyConflictException) {
+                            logger.warn("Order creation refused for user {}: {}", currentUserEmail, cause.getMessage());
+                            boolean inProgress = ((IdempotencyConflictException) cause).getReason()
+                                    == IdempotencyConflictException.Reason.IN_PROGRESS;
+                            return ResponseEntity.status(inProgress ? HttpStatus.CONFLICT : HttpStatus.UNPROCESSABLE_ENTITY)
+                                    .<Order>build();
+                        }
                         logger.error("Order creation failed with exception: ", throwable);
                         return ResponseEntity.internalServerError().<Order>build();
                     });
@@ -95,6 +137,19 @@ public class OrderController {
         }
     }
 
+    // What a retry must repeat for its Idempotency-Key to be honoured
+    private static String fingerprint(Order order) {
+        StringBuilder fingerprint = new StringBuilder()
+                .append(order.getUserId()).append('|')
+                .append(order.getTotalAmount());
+        for (OrderItem item : order.getItems()) {
+            fingerprint.append('|').append(item.getProductId())
+                    .append(':').append(item.getQuantity())
+                    .append(':').append(item.getPrice());
+        }
+        return fingerprint.toString();
+    }
+
     @GetMapping("/my-orders")
     public CompletableFuture<ResponseEntity<List<Order>>> getMyOrders() {
         try {
@@ -110,26 +165,20 @@ public class OrderController {
             String currentUserEmail = authentication.getName();
             logger.info("Fetching orders for authenticated user: {}", currentUserEmail);
             
-            // Get user by email to find userId
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    return authService.getUserByEmail(currentUserEmail);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }).thenCompose(user -> {
-                    if (user == null) {
+            // The principal already carries the user id
+            return authService.resolvePrincipal(authentication).thenCompose(tracer.wrapFunction(principal -> {
+                    if (principal == null) {
                         logger.error("User not found for email: {}", currentUserEmail);
                         return CompletableFuture.completedFuture(ResponseEntity.status(404).<List<Order>>build());
                     }
                     
                     // Get orders by userId
-                    return firebaseService.getOrdersByUserId(user.getId())
+                    return firebaseService.getOrdersByUserId(principal.getUserId())
                         .thenApply(orders -> {
                             logger.info("Found {} orders for user: {}", orders.size(), currentUserEmail);
                             return ResponseEntity.ok(orders);
                         });
-                })
+                }))
                 .exceptionally(throwable -> {
                     logger.error("Failed to fetch orders for user: " + currentUserEmail, throwable);
                     return ResponseEntity.internalServerError().<List<Order>>build();
@@ -139,4 +188,33 @@ public class OrderController {
             return CompletableFuture.completedFuture(ResponseEntity.internalServerError().<List<Order>>build());
         }
     }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public CompletableFuture<ResponseEntity<SseEmitter>> streamMyOrders(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null || !authentication.isAuthenticated() ||
+            authentication.getName().equals("anonymousUser")) {
+            logger.error("Order stream failed: User not authenticated");
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).build());
+        }
+
+        String currentUserEmail = authentication.getName();
+        return authService.resolvePrincipal(authentication).thenApply(tracer.wrapFunction(principal -> {
+                    if (principal == null) {
+                        logger.error("User not found for email: {}", currentUserEmail);
+                        return ResponseEntity.status(404).<SseEmitter>build();
+                    }
+                    logger.debug("Opening order stream for user: {} (resume from {})", principal.getUserId(), lastEventId);
+                    // Proxies must not buffer the stream
+                    return ResponseEntity.ok()
+                            .header("X-Accel-Buffering", "no")
+                            .body(orderEventService.subscribe(principal.getUserId(), lastEventId));
+                }))
+                .exceptionally(throwable -> {
+                    logger.error("Order stream failed for user: " + currentUserEmail, throwable);
+                    return ResponseEntity.internalServerError().<SseEmitter>build();
+                });
+    }
 }
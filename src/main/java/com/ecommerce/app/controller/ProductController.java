@@ -1,9 +1,19 @@
 package com.ecommerce.app.controller;
 
+import com.ecommerce.app.dto.CatalogFacets;
+import com.ecommerce.app.dto.ProductPage;
+import com.ecommerce.app.dto.ProductQuery;
 import com.ecommerce.app.dto.ProductRequest;
+import com.ecommerce.app.dto.ProductSort;
 import com.ecommerce.app.model.Product;
+import com.ecommerce.app.service.CatalogResponseCache;
+import com.ecommerce.app.service.CatalogSnapshot;
 import com.ecommerce.app.service.FirebaseService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -16,9 +26,16 @@ import java.util.concurrent.CompletableFuture;
 @CrossOrigin(origins = "*")
 public class ProductController {
 
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private FirebaseService firebaseService;
 
+    @Autowired
+    private CatalogResponseCache responseCache;
+
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public CompletableFuture<ResponseEntity<Object>> createProduct(@RequestBody ProductRequest request) {
@@ -28,6 +45,8 @@ public class ProductController {
         product.setPrice(request.getPrice());
         product.setQuantity(request.getQuantity());
         product.setImageUrl(request.getImageUrl());
+        product.setCategory(request.getCategory());
+        product.setTags(request.getTags());
 
         return firebaseService.saveProduct(product)
                 .thenApply(savedProduct -> ResponseEntity.ok((Object) savedProduct))
@@ -35,18 +54,115 @@ public class ProductController {
     }
 
     @GetMapping
-    public CompletableFuture<ResponseEntity<List<Product>>> getAllProducts() {
-        return firebaseService.getAllProducts()
-                .thenApply(products -> ResponseEntity.ok(products))
+    public CompletableFuture<ResponseEntity<Object>> getAllProducts(
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) String category,
+            @RequestParam(name = "tag", required = false) List<String> tags,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (minPrice == null && maxPrice == null && inStock == null && category == null && tags == null
+                && sort == null && page == null && size == null) {
+            return firebaseService.getProductCatalog()
+                    .thenApply(catalog -> {
+                        if (matchesEtag(ifNoneMatch, catalog.getEtag())) {
+                            return notModified(catalog.getEtag(), catalog.getLastModified()).build();
+                        }
+                        // Serve the pre-encoded bytes when the cache has caught up with this catalog version
+                        CatalogResponseCache.Entry cached = responseCache.get(catalog);
+                        if (cached != null) {
+                            CatalogResponseCache.Encoding encoding = CatalogResponseCache.Encoding.negotiate(acceptEncoding);
+                            ResponseEntity.BodyBuilder response = cacheable(catalog.getEtag(), catalog.getLastModified())
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .varyBy(HttpHeaders.ACCEPT_ENCODING);
+                            if (encoding.getHeaderValue() != null) {
+                                response.header(HttpHeaders.CONTENT_ENCODING, encoding.getHeaderValue());
+                            }
+                            return response.body((Object) cached.getBody(encoding));
+                        }
+                        return cacheable(catalog.getEtag(), catalog.getLastModified()).body((Object) catalog.getProducts());
+                    })
+                    .exceptionally(throwable -> ResponseEntity.internalServerError().build());
+        }
+
+        ProductQuery query = toQuery(minPrice, maxPrice, inStock, category, tags);
+        try {
+            query.setSort(ProductSort.fromString(sort));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        if ((page != null && page < 0) || (size != null && (size <= 0 || size > MAX_PAGE_SIZE))) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        if (page != null || size != null) {
+            query.setPage(page != null ? page : 0);
+            query.setSize(size != null ? size : DEFAULT_PAGE_SIZE);
+        }
+
+        return firebaseService.getProductCatalog()
+                .thenApply(catalog -> {
+                    // The result is a pure function of the URL and the catalog, so the catalog ETag applies
+                    if (matchesEtag(ifNoneMatch, catalog.getEtag())) {
+                        return notModified(catalog.getEtag(), catalog.getLastModified()).build();
+                    }
+                    ProductPage result = catalog.query(query);
+                    return cacheable(catalog.getEtag(), catalog.getLastModified())
+                            .header(TOTAL_COUNT_HEADER, String.valueOf(result.getTotal()))
+                            .body((Object) result.getItems());
+                })
                 .exceptionally(throwable -> ResponseEntity.internalServerError().build());
     }
 
+    @GetMapping("/facets")
+    public CompletableFuture<ResponseEntity<CatalogFacets>> getFacets(
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) String category,
+            @RequestParam(name = "tag", required = false) List<String> tags,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ProductQuery query = toQuery(minPrice, maxPrice, inStock, category, tags);
+
+        return firebaseService.getProductCatalog()
+                .thenApply(catalog -> {
+                    if (matchesEtag(ifNoneMatch, catalog.getEtag())) {
+                        return notModified(catalog.getEtag(), catalog.getLastModified()).<CatalogFacets>build();
+                    }
+                    return cacheable(catalog.getEtag(), catalog.getLastModified()).body(catalog.facets(query));
+                })
+                .exceptionally(throwable -> ResponseEntity.internalServerError().<CatalogFacets>build());
+    }
+
     @GetMapping("/{id}")
-    public CompletableFuture<ResponseEntity<Object>> getProduct(@PathVariable String id) {
+    public CompletableFuture<ResponseEntity<Object>> getProduct(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Answer from the in-memory catalog when it is fresh, without a Firebase round trip
+        CatalogSnapshot catalog = firebaseService.peekProductCatalog();
+        if (catalog != null) {
+            Product product = catalog.getProduct(id);
+            if (product == null) {
+                return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+            }
+            String etag = catalog.getProductEtag(id);
+            if (matchesEtag(ifNoneMatch, etag)) {
+                return CompletableFuture.completedFuture(notModified(etag, catalog.getLastModified()).build());
+            }
+            return CompletableFuture.completedFuture(cacheable(etag, catalog.getLastModified()).body((Object) product));
+        }
+
         return firebaseService.getProductById(id)
                 .thenApply(product -> {
                     if (product != null) {
-                        return ResponseEntity.ok((Object) product);
+                        String etag = CatalogSnapshot.etagOf(product);
+                        if (matchesEtag(ifNoneMatch, etag)) {
+                            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                        }
+                        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body((Object) product);
                     }
                     return ResponseEntity.notFound().build();
                 })
@@ -62,6 +178,8 @@ public class ProductController {
         product.setPrice(request.getPrice());
         product.setQuantity(request.getQuantity());
         product.setImageUrl(request.getImageUrl());
+        product.setCategory(request.getCategory());
+        product.setTags(request.getTags());
 
         return firebaseService.updateProduct(id, product)
                 .thenApply(aVoid -> ResponseEntity.ok().build())
@@ -75,4 +193,45 @@ public class ProductController {
                 .thenApply(aVoid -> ResponseEntity.ok().build())
                 .exceptionally(throwable -> ResponseEntity.internalServerError().body("Failed to delete product"));
     }
+
+    private static ProductQuery toQuery(Double minPrice, Double maxPrice, Boolean inStock, String category, List<String> tags) {
+        ProductQuery query = new ProductQuery();
+        query.setMinPrice(minPrice);
+        query.setMaxPrice(maxPrice);
+        query.setInStockOnly(Boolean.TRUE.equals(inStock));
+        query.setCategory(category != null && !category.trim().isEmpty() ? category : null);
+        query.setTags(tags);
+        return query;
+    }
+
+    // Weak comparison, as required for If-None-Match (RFC 9110 section 13.1.2)
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ResponseEntity.BodyBuilder cacheable(String etag, long lastModified) {
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.noCache());
+    }
+
+    private static ResponseEntity.BodyBuilder notModified(String etag, long lastModified) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.noCache());
+    }
 }
\ No newline at end of file
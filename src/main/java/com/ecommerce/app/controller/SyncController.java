@@ -0,0 +1,56 @@
+package com.ecommerce.app.controller;
+
+import com.ecommerce.app.dto.SyncResponse;
+import com.ecommerce.app.security.AuthService;
+import com.ecommerce.app.service.ChangeLogService;
+import com.ecommerce.app.tracing.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/sync")
+@CrossOrigin(origins = "*")
+public class SyncController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncController.class);
+
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private Tracer tracer;
+
+    @GetMapping
+    public CompletableFuture<ResponseEntity<SyncResponse>> sync(@RequestParam(defaultValue = "0") long since) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() ||
+            authentication.getName().equals("anonymousUser")) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).build());
+        }
+        if (since < 0) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        String currentUserEmail = authentication.getName();
+        return authService.resolvePrincipal(authentication).thenCompose(tracer.wrapFunction(principal -> {
+            if (principal == null) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(404).<SyncResponse>build());
+            }
+            return changeLogService.changesSince(since, principal.getUserId())
+                    .thenApply(ResponseEntity::ok);
+        })).exceptionally(throwable -> {
+            logger.error("Sync failed for user: " + currentUserEmail, throwable);
+            return ResponseEntity.internalServerError().<SyncResponse>build();
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package com.ecommerce.app.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class CartItemRequest {
+    private int quantity; // 0 removes the product from the cart
+}
@@ -0,0 +1,17 @@
+package com.ecommerce.app.dto;
+
+import com.ecommerce.app.model.OrderItem;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class CartView {
+    private String userId;
+    private List<OrderItem> items = new ArrayList<>(); // Names and prices from the current catalog
+    private int itemCount;
+    private double totalAmount;
+}
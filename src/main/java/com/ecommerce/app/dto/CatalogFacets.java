@@ -0,0 +1,28 @@
+package com.ecommerce.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogFacets {
+    private int total;
+    private Map<String, Integer> categories;
+    private Map<String, Integer> tags;
+    private List<PriceBucket> priceBuckets;
+    private int inStock;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceBucket {
+        private Double min; // inclusive, null = unbounded
+        private Double max; // exclusive, null = unbounded
+        private int count;
+    }
+}
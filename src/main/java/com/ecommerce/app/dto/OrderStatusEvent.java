@@ -0,0 +1,16 @@
+package com.ecommerce.app.dto;
+
+import com.ecommerce.app.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusEvent {
+    private String orderId;
+    private OrderStatus status;
+    private OrderStatus previousStatus; // null when the order is new to this node
+    private String updatedAt;
+}
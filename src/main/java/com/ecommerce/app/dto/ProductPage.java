@@ -0,0 +1,16 @@
+package com.ecommerce.app.dto;
+
+import com.ecommerce.app.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPage {
+    private List<Product> items;
+    private int total; // matches before pagination
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductQuery {
+    private Double minPrice;
+    private Double maxPrice;
+    private boolean inStockOnly;
+    private String category;
+    private List<String> tags;
+    private ProductSort sort = ProductSort.PRICE_ASC;
+    private Integer page; // null = no pagination
+    private Integer size;
+}
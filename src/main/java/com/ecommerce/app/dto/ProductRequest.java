@@ -2,6 +2,8 @@ package com.ecommerce.app.dto;
 
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class ProductRequest {
     private String name;
@@ -9,4 +11,6 @@ public class ProductRequest {
     private double price;
     private int quantity;
     private String imageUrl;
+    private String category;
+    private List<String> tags;
 }
\ No newline at end of file
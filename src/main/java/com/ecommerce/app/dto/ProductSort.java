@@ -0,0 +1,30 @@
+package com.ecommerce.app.dto;
+
+public enum ProductSort {
+    PRICE_ASC("price_asc"),
+    PRICE_DESC("price_desc");
+
+    private final String value;
+
+    ProductSort(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static ProductSort fromString(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return PRICE_ASC;
+        }
+
+        for (ProductSort sort : ProductSort.values()) {
+            if (sort.value.equalsIgnoreCase(value.trim())) {
+                return sort;
+            }
+        }
+
+        throw new IllegalArgumentException("Invalid product sort: " + value);
+    }
+}
@@ -0,0 +1,8 @@
+package com.ecommerce.app.dto;
+
+import lombok.Data;
+
+@Data
+public class RefreshTokenRequest {
+    private String refreshToken;
+}
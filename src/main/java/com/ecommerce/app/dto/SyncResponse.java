@@ -0,0 +1,23 @@
+package com.ecommerce.app.dto;
+
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.Product;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class SyncResponse {
+    private long since;
+    private long next; // Pass as ?since= on the next sync
+    private boolean hasMore;
+    private boolean resetRequired; // since is older than the compacted log, do a full download
+    private long retryAfterMs; // > 0: newer entries are still being written, sync again after this long
+    private List<Product> products = new ArrayList<>();
+    private List<String> deletedProducts = new ArrayList<>();
+    private List<Order> orders = new ArrayList<>();
+    private List<String> deletedOrders = new ArrayList<>();
+}
@@ -0,0 +1,208 @@
+package com.ecommerce.app.invalidation;
+
+import com.google.firebase.database.*;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Invalidation transport over the invalidations/ node.
+ *
+ * Each batch is one child, keyed "{13-digit millis}-{node}-{counter}" so children sort
+ * by time, holding {@code {from, items}} where items is the batch's comma-separated
+ * wire form. Every node keeps one child listener on the node, starting
+ * {@code invalidation.retention-ms} back so a node that just started catches up on
+ * recent revocations. If Firebase cancels the listener, it is attached again after
+ * a backoff doubling from {@code invalidation.resubscribe-min-ms} up to
+ * {@code invalidation.resubscribe-max-ms}, resuming from the last batch received.
+ * The invalidation.listening gauge is 1 while the listener is attached. Set
+ * {@code invalidation.transport} to something else to supply another transport bean.
+ */
+@Component
+@ConditionalOnProperty(name = "invalidation.transport", havingValue = "firebase", matchIfMissing = true)
+public class FirebaseInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(FirebaseInvalidationTransport.class);
+
+    static final String BUS = "invalidations";
+    private static final int TRIM_BATCH = 500;
+
+    @Autowired
+    private DatabaseReference databaseReference;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Value("${invalidation.retention-ms:600000}")
+    private long retentionMs = 600000;
+
+    @Value("${invalidation.resubscribe-min-ms:1000}")
+    private long resubscribeMinMs = 1000;
+
+    @Value("${invalidation.resubscribe-max-ms:60000}")
+    private long resubscribeMaxMs = 60000;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong counter = new AtomicLong();
+    private final ScheduledExecutorService resubscriber = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "invalidation-resubscribe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Cancellations since a batch was last received
+    private final AtomicInteger cancellations = new AtomicInteger();
+    private volatile String lastKey;
+    private volatile boolean listening;
+
+    @PostConstruct
+    public void registerMeters() {
+        Gauge.builder("invalidation.listening", this, transport -> transport.listening ? 1 : 0)
+                .description("1 while this node's invalidation listener is attached")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resubscriber.shutdownNow();
+    }
+
+    /**
+     * @return True while the listener is attached, false before subscribing and while waiting to resubscribe
+     */
+    public boolean isListening() {
+        return listening;
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(List<Invalidation> batch) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("from", nodeId);
+        message.put("items", batch.stream().map(Invalidation::encode).collect(Collectors.joining(",")));
+        String key = String.format("%013d", System.currentTimeMillis()) + "-" + nodeId + "-"
+                + String.format("%010d", counter.incrementAndGet());
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        databaseReference.child(BUS).child(key).setValue(message, (databaseError, reference) -> {
+            if (databaseError != null) {
+                future.completeExceptionally(databaseError.toException());
+            } else {
+                future.complete(null);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void subscribe(Consumer<List<Invalidation>> listener) {
+        listen(listener);
+    }
+
+    private void listen(Consumer<List<Invalidation>> listener) {
+        String from = String.format("%013d", System.currentTimeMillis() - retentionMs);
+        // Resumes at the last batch received; it is delivered again and ignored as already applied
+        String resumeAt = lastKey;
+        if (resumeAt != null && resumeAt.compareTo(from) > 0) {
+            from = resumeAt;
+        }
+        listening = true;
+        databaseReference.child(BUS).orderByKey().startAt(from).addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                lastKey = snapshot.getKey();
+                cancellations.set(0);
+                if (nodeId.equals(snapshot.child("from").getValue())) {
+                    return;
+                }
+                Object items = snapshot.child("items").getValue();
+                if (!(items instanceof String)) {
+                    return;
+                }
+                List<Invalidation> batch = new ArrayList<>();
+                for (String item : ((String) items).split(",")) {
+                    Invalidation invalidation = Invalidation.decode(item);
+                    if (invalidation != null) {
+                        batch.add(invalidation);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    listener.accept(batch);
+                }
+            }
+
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+            }
+
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                listening = false;
+                int attempt = Math.min(cancellations.getAndIncrement(), 20);
+                long delay = Math.min(resubscribeMaxMs, resubscribeMinMs << attempt);
+                logger.warn("Invalidation listener cancelled, resubscribing in {} ms: {}", delay,
+                        databaseError.getMessage());
+                resubscriber.schedule(() -> listen(listener), delay, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> trim(long before) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        databaseReference.child(BUS).orderByKey().endAt(String.format("%013d", before) + "~").limitToFirst(TRIM_BATCH)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        Map<String, Object> removals = new HashMap<>();
+                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                            removals.put(snapshot.getKey(), null);
+                        }
+                        if (removals.isEmpty()) {
+                            future.complete(0);
+                            return;
+                        }
+                        databaseReference.child(BUS).updateChildren(removals, (databaseError, reference) -> {
+                            if (databaseError != null) {
+                                future.completeExceptionally(databaseError.toException());
+                            } else {
+                                future.complete(removals.size());
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        future.completeExceptionally(databaseError.toException());
+                    }
+                });
+        return future;
+    }
+}
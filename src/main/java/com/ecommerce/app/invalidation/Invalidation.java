@@ -0,0 +1,78 @@
+package com.ecommerce.app.invalidation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tells other nodes that their cached copy of one entity is out of date.
+ *
+ * The version is the writer's clock when the change was stored; a node that already
+ * applied the same or a newer version of an entity ignores the message.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Invalidation {
+
+    public enum Entity {
+        PRODUCT("p"),
+        USER("u"),
+        CART("c");
+
+        private final String code;
+
+        Entity(String code) {
+            this.code = code;
+        }
+
+        static Entity fromCode(String code) {
+            for (Entity entity : values()) {
+                if (entity.code.equals(code)) {
+                    return entity;
+                }
+            }
+            return null;
+        }
+    }
+
+    private Entity entity;
+    private String id;
+    private long version;
+
+    /**
+     * @return Key shared by every version of the same entity, e.g. "p:PRD-0001"
+     */
+    public String key() {
+        return entity.code + ":" + id;
+    }
+
+    /**
+     * @return Compact wire form, e.g. "p:PRD-0001:1705314600000"
+     */
+    public String encode() {
+        return key() + ":" + version;
+    }
+
+    /**
+     * Parses the compact wire form
+     * @param value Encoded invalidation
+     * @return The invalidation, or null if it is malformed or names an entity this node does not know
+     */
+    public static Invalidation decode(String value) {
+        int first = value.indexOf(':');
+        int last = value.lastIndexOf(':');
+        if (first <= 0 || last <= first + 1) {
+            return null;
+        }
+        Entity entity = Entity.fromCode(value.substring(0, first));
+        if (entity == null) {
+            return null;
+        }
+        try {
+            return new Invalidation(entity, value.substring(first + 1, last), Long.parseLong(value.substring(last + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ecommerce.app.invalidation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Keeps per-node caches in step when another node changes an entity.
+ *
+ * Writers call {@link #publish} after a change is stored and their own caches are
+ * updated. Invalidations are collected for {@code invalidation.flush-interval-ms} and
+ * sent as one batch, keeping only the newest version of each entity. Received
+ * invalidations are passed to the handlers registered for their entity unless the
+ * same or a newer version was already applied. Batches older than
+ * {@code invalidation.retention-ms} are trimmed from the transport.
+ *
+ * Meters: invalidation.published, invalidation.publish.failures and
+ * invalidation.received (tagged outcome=applied|duplicate).
+ */
+@Component
+public class InvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidationBus.class);
+
+    private final InvalidationTransport transport;
+    private final Map<String, Invalidation> pending = new ConcurrentHashMap<>();
+    private final Map<String, Long> applied = new ConcurrentHashMap<>();
+    private final Map<Invalidation.Entity, List<Consumer<Invalidation>>> handlers = new ConcurrentHashMap<>();
+    private boolean subscribed;
+
+    private final Counter published;
+    private final Counter publishFailures;
+    private final Counter receivedApplied;
+    private final Counter receivedDuplicate;
+
+    @Value("${invalidation.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${invalidation.max-batch:500}")
+    private int maxBatch = 500;
+
+    @Value("${invalidation.retention-ms:600000}")
+    private long retentionMs = 600000;
+
+    @Autowired
+    public InvalidationBus(InvalidationTransport transport, MeterRegistry registry) {
+        this.transport = transport;
+        this.published = registry.counter("invalidation.published");
+        this.publishFailures = registry.counter("invalidation.publish.failures");
+        this.receivedApplied = registry.counter("invalidation.received", "outcome", "applied");
+        this.receivedDuplicate = registry.counter("invalidation.received", "outcome", "duplicate");
+    }
+
+    /**
+     * Queues an invalidation for the next batch
+     * @param entity Kind of entity that changed
+     * @param id ID of the entity
+     * @param version Time the change was stored, in epoch milliseconds
+     */
+    public void publish(Invalidation.Entity entity, String id, long version) {
+        if (!enabled) {
+            return;
+        }
+        Invalidation invalidation = new Invalidation(entity, id, version);
+        pending.merge(invalidation.key(), invalidation,
+                (queued, newer) -> newer.getVersion() >= queued.getVersion() ? newer : queued);
+    }
+
+    /**
+     * Registers a handler for invalidations of one entity published by other nodes.
+     * Handlers run on the transport's thread and must hand any slow work off.
+     * @param entity Kind of entity to handle
+     * @param handler Called with each invalidation to apply
+     */
+    public void addHandler(Invalidation.Entity entity, Consumer<Invalidation> handler) {
+        handlers.computeIfAbsent(entity, key -> new CopyOnWriteArrayList<>()).add(handler);
+        synchronized (this) {
+            // Subscribed on first use, so nothing arrives before a handler exists
+            if (enabled && !subscribed) {
+                subscribed = true;
+                transport.subscribe(this::receive);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${invalidation.flush-interval-ms:100}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Invalidation> batch = new ArrayList<>();
+        for (Map.Entry<String, Invalidation> entry : pending.entrySet()) {
+            // A newer version queued meanwhile stays for the next flush
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                batch.add(entry.getValue());
+            }
+            if (batch.size() == maxBatch) {
+                send(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${invalidation.trim-interval-ms:60000}",
+            initialDelayString = "${invalidation.trim-interval-ms:60000}")
+    public void trim() {
+        long before = System.currentTimeMillis() - retentionMs;
+        applied.values().removeIf(version -> version < before);
+        transport.trim(before).whenComplete((removed, throwable) -> {
+            if (throwable != null) {
+                logger.warn("Failed to trim invalidations: {}", throwable.getMessage());
+            } else if (removed > 0) {
+                logger.debug("Trimmed {} invalidation batches", removed);
+            }
+        });
+    }
+
+    private void send(List<Invalidation> batch) {
+        transport.publish(batch).whenComplete((ignored, throwable) -> {
+            if (throwable == null) {
+                published.increment(batch.size());
+                return;
+            }
+            publishFailures.increment();
+            logger.warn("Failed to publish {} invalidations, retrying: {}", batch.size(), throwable.getMessage());
+            for (Invalidation invalidation : batch) {
+                pending.merge(invalidation.key(), invalidation,
+                        (queued, failed) -> queued.getVersion() >= failed.getVersion() ? queued : failed);
+            }
+        });
+    }
+
+    synchronized void receive(List<Invalidation> batch) {
+        for (Invalidation invalidation : batch) {
+            Long seen = applied.get(invalidation.key());
+            if (seen != null && seen >= invalidation.getVersion()) {
+                receivedDuplicate.increment();
+                continue;
+            }
+            applied.put(invalidation.key(), invalidation.getVersion());
+            receivedApplied.increment();
+            for (Consumer<Invalidation> handler : handlers.getOrDefault(invalidation.getEntity(), List.of())) {
+                try {
+                    handler.accept(invalidation);
+                } catch (RuntimeException e) {
+                    logger.warn("Invalidation handler failed for {}: {}", invalidation.key(), e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ecommerce.app.invalidation;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Carries batches of invalidations between nodes for {@link InvalidationBus}.
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Sends one batch to every other node
+     * @param batch Invalidations to send, at most one per entity
+     * @return CompletableFuture completed once the batch is stored, or failed if it was not
+     */
+    CompletableFuture<Void> publish(List<Invalidation> batch);
+
+    /**
+     * Starts delivering batches published by other nodes. Batches from this node are not delivered.
+     * @param listener Called with each received batch, on the transport's thread
+     */
+    void subscribe(Consumer<List<Invalidation>> listener);
+
+    /**
+     * Deletes stored batches published before a point in time
+     * @param before Epoch milliseconds
+     * @return CompletableFuture containing the number of batches deleted
+     */
+    CompletableFuture<Integer> trim(long before);
+}
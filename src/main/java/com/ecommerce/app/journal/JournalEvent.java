@@ -0,0 +1,46 @@
+package com.ecommerce.app.journal;
+
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One order transition in the {@link OrderJournal}. The sequence number and
+ * timestamp are assigned by the journal when the event is written.
+ */
+@Data
+@NoArgsConstructor
+public class JournalEvent {
+
+    public enum Type {
+        CREATED,
+        STATUS_CHANGED
+    }
+
+    private long seq;
+    private long timestamp;
+    private Type type;
+    private String orderId;
+    private String userId;
+    private String status;
+    private String previousStatus;
+    private double totalAmount;
+
+    static JournalEvent created(Order order) {
+        JournalEvent event = new JournalEvent();
+        event.setType(Type.CREATED);
+        event.setOrderId(order.getId());
+        event.setUserId(order.getUserId());
+        event.setStatus(order.getStatus() != null ? order.getStatus().name() : null);
+        event.setTotalAmount(order.getTotalAmount());
+        return event;
+    }
+
+    static JournalEvent statusChanged(Order order, OrderStatus previous) {
+        JournalEvent event = created(order);
+        event.setType(Type.STATUS_CHANGED);
+        event.setPreviousStatus(previous != null ? previous.name() : null);
+        return event;
+    }
+}
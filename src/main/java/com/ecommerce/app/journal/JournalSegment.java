@@ -0,0 +1,282 @@
+package com.ecommerce.app.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * One journal file, named after the sequence number of its first event.
+ *
+ * Records are laid out back to back: body length (int), CRC32C of the body (int),
+ * then the body. The body holds the sequence number, timestamp, type, order ID,
+ * user ID, status, previous status and total. The file is preallocated to the
+ * segment size, so a zero length marks the end; a record whose checksum does not
+ * match is a write torn by a crash and ends the segment as well.
+ *
+ * The active segment is mapped read-write and only touched by the journal's writer
+ * thread. Readers map the file read-only and stop at {@link #committed}, which is
+ * published after each group commit.
+ */
+final class JournalSegment {
+
+    static final String SUFFIX = ".journal";
+    static final int RECORD_HEADER_BYTES = 8;
+
+    private static final JournalEvent.Type[] TYPES = JournalEvent.Type.values();
+
+    private final Path path;
+    private final long firstSeq;
+
+    // Writer state, only used by the writer thread while the segment is active
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+
+    private volatile int committed;
+    private volatile long lastSeq;
+    private volatile long firstTimestamp;
+    private volatile long lastTimestamp;
+
+    private JournalSegment(Path path, long firstSeq) {
+        this.path = path;
+        this.firstSeq = firstSeq;
+        this.lastSeq = firstSeq - 1;
+    }
+
+    /**
+     * Creates an empty segment and maps it for appending
+     * @param directory Journal directory
+     * @param firstSeq Sequence number of the first event it will hold
+     * @param capacity File size in bytes
+     * @return The active segment
+     */
+    static JournalSegment create(Path directory, long firstSeq, int capacity) throws IOException {
+        JournalSegment segment = new JournalSegment(directory.resolve(fileName(firstSeq)), firstSeq);
+        segment.openForAppend(capacity);
+        return segment;
+    }
+
+    /**
+     * Scans an existing segment to find its last valid record
+     * @param path The segment file
+     * @return The segment, closed for appending
+     */
+    static JournalSegment recover(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        JournalSegment segment = new JournalSegment(path,
+                Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+        segment.committed = (int) Math.min(Files.size(path), Integer.MAX_VALUE);
+        int end = segment.read(Long.MIN_VALUE, event -> {
+            if (segment.firstTimestamp == 0) {
+                segment.firstTimestamp = event.getTimestamp();
+            }
+            segment.lastSeq = event.getSeq();
+            segment.lastTimestamp = event.getTimestamp();
+            return true;
+        });
+        segment.committed = end;
+        return segment;
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(SUFFIX) && name.length() > SUFFIX.length()
+                && name.substring(0, name.length() - SUFFIX.length()).chars().allMatch(Character::isDigit);
+    }
+
+    /**
+     * Maps the segment read-write for appending after its last valid record. Bytes left
+     * there by a torn write are zeroed, so the end marker is intact again.
+     * @param capacity File size in bytes
+     */
+    void openForAppend(int capacity) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = (int) Math.max(capacity, Math.min(channel.size(), Integer.MAX_VALUE));
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        position = committed;
+        if (position + 4 <= size && buffer.getInt(position) != 0) {
+            for (int i = position; i < size; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Appends an encoded record; called by the writer thread only
+     * @param body Encoded event body, positioned at its start
+     * @param seq The event's sequence number
+     * @param timestamp The event's timestamp
+     * @return False if the record does not fit, so the segment must be rolled
+     */
+    boolean append(ByteBuffer body, long seq, long timestamp) {
+        int length = body.remaining();
+        // Keep room for the zero length that marks the end
+        if (position + RECORD_HEADER_BYTES + length + 4 > buffer.capacity()) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        buffer.putInt(position, length);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + RECORD_HEADER_BYTES, body, body.position(), length);
+        position += RECORD_HEADER_BYTES + length;
+        if (lastSeq < firstSeq) {
+            firstTimestamp = timestamp;
+        }
+        lastSeq = seq;
+        lastTimestamp = timestamp;
+        return true;
+    }
+
+    /**
+     * Flushes appended records to disk and makes them visible to readers
+     * @param sync True to wait until the pages are on disk
+     */
+    void commit(boolean sync) {
+        if (sync) {
+            buffer.force();
+        }
+        committed = position;
+    }
+
+    /**
+     * Drops the writable mapping once the segment is full; readers keep working
+     */
+    void close() throws IOException {
+        committed = position;
+        buffer = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Reads committed records in order
+     * @param fromSeq Records with a lower sequence number are skipped
+     * @param consumer Receives each event; returning false stops the read
+     * @return Byte offset after the last valid record read
+     */
+    int read(long fromSeq, Predicate<JournalEvent> consumer) throws IOException {
+        int limit = committed;
+        if (limit <= 0) {
+            return 0;
+        }
+        MappedByteBuffer view;
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            limit = (int) Math.min(limit, reader.size());
+            view = reader.map(FileChannel.MapMode.READ_ONLY, 0, limit);
+        }
+        CRC32C crc = new CRC32C();
+        int offset = 0;
+        while (offset + RECORD_HEADER_BYTES <= limit) {
+            int length = view.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_BYTES + length > limit) {
+                break;
+            }
+            ByteBuffer body = view.slice(offset + RECORD_HEADER_BYTES, length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != view.getInt(offset + 4)) {
+                break;
+            }
+            offset += RECORD_HEADER_BYTES + length;
+            if (body.getLong(0) >= fromSeq && !consumer.test(decode(body))) {
+                break;
+            }
+        }
+        return offset;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    long firstSeq() {
+        return firstSeq;
+    }
+
+    long lastSeq() {
+        return lastSeq;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    boolean isEmpty() {
+        return lastSeq < firstSeq;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    static String fileName(long firstSeq) {
+        return String.format("%020d%s", firstSeq, SUFFIX);
+    }
+
+    /**
+     * Encodes an event's body into the scratch buffer
+     * @param event The event, with its sequence number and timestamp set
+     * @param scratch Reused buffer; cleared first
+     * @return The scratch buffer, flipped for reading
+     */
+    static ByteBuffer encode(JournalEvent event, ByteBuffer scratch) {
+        scratch.clear();
+        scratch.putLong(event.getSeq());
+        scratch.putLong(event.getTimestamp());
+        scratch.put((byte) event.getType().ordinal());
+        putString(scratch, event.getOrderId());
+        putString(scratch, event.getUserId());
+        putString(scratch, event.getStatus());
+        putString(scratch, event.getPreviousStatus());
+        scratch.putDouble(event.getTotalAmount());
+        return scratch.flip();
+    }
+
+    private static JournalEvent decode(ByteBuffer body) {
+        JournalEvent event = new JournalEvent();
+        event.setSeq(body.getLong());
+        event.setTimestamp(body.getLong());
+        event.setType(TYPES[body.get()]);
+        event.setOrderId(getString(body));
+        event.setUserId(getString(body));
+        event.setStatus(getString(body));
+        event.setPreviousStatus(getString(body));
+        event.setTotalAmount(body.getDouble());
+        return event;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,435 @@
+package com.ecommerce.app.journal;
+
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of order transitions (creation and every status change) in
+ * local memory-mapped segment files under {@code journal.directory}, so order
+ * history can be replayed and audited without scanning orders/ in Firebase.
+ *
+ * - Appends only queue the event; a single writer thread takes everything queued
+ *   (up to {@code journal.max-batch}), writes it and flushes the segment once for
+ *   the whole batch (group commit). Each event gets the next sequence number and a
+ *   timestamp that never goes backwards. When {@code journal.queue-capacity} events
+ *   are waiting, further appends fail at once instead of blocking the request.
+ * - A segment holds up to {@code journal.segment-bytes}; when the next record does
+ *   not fit, a new segment starts. Full segments whose newest event is older than
+ *   {@code journal.retention-ms} are deleted.
+ * - On startup every segment is scanned and the newest one is reopened after its
+ *   last record with a valid checksum, dropping a record torn by a crash.
+ *
+ * The journal is local to each node and is written after Firebase acknowledged the
+ * change; it is an audit trail, not the source of truth.
+ *
+ * Meters: journal.appends and journal.rejected (counters), journal.batch.size
+ * (distribution), journal.commit (timer), journal.queue.depth and journal.segments
+ * (gauges).
+ */
+@Component
+public class OrderJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxBatch;
+    private final long retentionMs;
+    private final boolean sync;
+    private final BlockingQueue<PendingAppend> queue;
+    private final List<JournalSegment> segments = new CopyOnWriteArrayList<>();
+    private final ExecutorService readers;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Writer thread state; active is also read by the retention sweep
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private volatile JournalSegment active;
+    private long nextSeq = 1;
+    private long lastTimestamp;
+
+    private final Counter appends;
+    private final Counter rejected;
+    private final DistributionSummary batchSize;
+    private final Timer commitTime;
+
+    @Autowired
+    public OrderJournal(MeterRegistry registry,
+                        @Value("${journal.enabled:true}") boolean enabled,
+                        @Value("${journal.directory:data/journal}") String directory,
+                        @Value("${journal.segment-bytes:67108864}") int segmentBytes,
+                        @Value("${journal.queue-capacity:10000}") int queueCapacity,
+                        @Value("${journal.max-batch:512}") int maxBatch,
+                        @Value("${journal.retention-ms:2592000000}") long retentionMs,
+                        @Value("${journal.fsync:true}") boolean sync) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.retentionMs = retentionMs;
+        this.sync = sync;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        appends = Counter.builder("journal.appends")
+                .description("Order events written to the journal")
+                .register(registry);
+        rejected = Counter.builder("journal.rejected")
+                .description("Order events not journaled because the queue was full or the write failed")
+                .register(registry);
+        batchSize = DistributionSummary.builder("journal.batch.size")
+                .description("Events written per group commit")
+                .register(registry);
+        commitTime = Timer.builder("journal.commit")
+                .description("Time to flush one group commit to disk")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        Gauge.builder("journal.queue.depth", queue, BlockingQueue::size)
+                .description("Order events waiting for the journal writer")
+                .register(registry);
+        Gauge.builder("journal.segments", segments, List::size)
+                .description("Journal segment files")
+                .register(registry);
+
+        this.readers = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-journal-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::writeLoop, "order-journal-writer");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            try {
+                open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open order journal in " + this.directory.toAbsolutePath(), e);
+            }
+            writer.start();
+        }
+    }
+
+    /**
+     * Journals a newly created order
+     * @param order The saved order
+     */
+    public void orderCreated(Order order) {
+        append(JournalEvent.created(order));
+    }
+
+    /**
+     * Journals a status transition
+     * @param order The order with its new status
+     * @param previous The status before the change
+     */
+    public void statusChanged(Order order, OrderStatus previous) {
+        append(JournalEvent.statusChanged(order, previous));
+    }
+
+    /**
+     * Queues an event for the writer thread
+     * @param event The event; its sequence number and timestamp are assigned when written
+     * @return CompletableFuture containing the sequence number once the event is on disk;
+     *         fails at once if the queue is full
+     */
+    public CompletableFuture<Long> append(JournalEvent event) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        if (!enabled) {
+            future.complete(-1L);
+            return future;
+        }
+        if (!running || !queue.offer(new PendingAppend(event, future))) {
+            rejected.increment();
+            future.completeExceptionally(new IllegalStateException("Order journal queue is full"));
+        }
+        return future;
+    }
+
+    /**
+     * Reads every event from a sequence number on, oldest first, on the calling thread
+     * @param fromSeq First sequence number to return
+     * @param consumer Receives each event; returning false stops the replay
+     * @return Sequence number of the last event read, or fromSeq - 1 if there was none
+     */
+    public long replay(long fromSeq, Predicate<JournalEvent> consumer) throws IOException {
+        LastSeen seen = new LastSeen(fromSeq - 1);
+        for (JournalSegment segment : segments) {
+            if (segment.isEmpty() || segment.lastSeq() < fromSeq) {
+                continue;
+            }
+            segment.read(fromSeq, seen.track(consumer));
+            if (seen.stopped) {
+                break;
+            }
+        }
+        return seen.lastSeq;
+    }
+
+    /**
+     * Reads the events written within a time range, oldest first, on the calling thread.
+     * Segments outside the range are skipped without being read.
+     * @param fromMillis Start of the range, inclusive
+     * @param toMillis End of the range, inclusive
+     * @param consumer Receives each event; returning false stops the scan
+     */
+    public void scan(long fromMillis, long toMillis, Predicate<JournalEvent> consumer) throws IOException {
+        LastSeen seen = new LastSeen(0);
+        for (JournalSegment segment : segments) {
+            if (segment.isEmpty() || segment.lastTimestamp() < fromMillis) {
+                continue;
+            }
+            if (segment.firstTimestamp() > toMillis) {
+                break;
+            }
+            segment.read(Long.MIN_VALUE, seen.track(event -> {
+                if (event.getTimestamp() > toMillis) {
+                    return false;
+                }
+                return event.getTimestamp() < fromMillis || consumer.test(event);
+            }));
+            if (seen.stopped) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Replays the journal for one order's transitions, off the request thread
+     * @param orderId The order
+     * @return CompletableFuture containing the order's events, oldest first
+     */
+    public CompletableFuture<List<JournalEvent>> history(String orderId) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<JournalEvent> events = new ArrayList<>();
+            try {
+                replay(1, event -> {
+                    if (orderId.equals(event.getOrderId())) {
+                        events.add(event);
+                    }
+                    return true;
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return events;
+        }, readers);
+    }
+
+    /**
+     * @return Whether events are being journaled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Deletes full segments whose newest event is older than the retention period
+     */
+    @Scheduled(fixedDelayString = "${journal.retention-check-ms:3600000}",
+            initialDelayString = "${journal.retention-check-ms:3600000}")
+    public void enforceRetention() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        JournalSegment current = active;
+        for (JournalSegment segment : segments) {
+            if (segment == current || segment.lastTimestamp() >= cutoff) {
+                // Segments are in time order, so nothing later is old enough either
+                break;
+            }
+            try {
+                segment.delete();
+                segments.remove(segment);
+                logger.info("Deleted order journal segment {}", segment.path().getFileName());
+            } catch (IOException e) {
+                logger.warn("Failed to delete order journal segment {}: {}", segment.path(), e.getMessage());
+                break;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        readers.shutdownNow();
+        if (!enabled) {
+            return;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(JournalSegment::isSegmentFile).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            JournalSegment segment = JournalSegment.recover(file);
+            segments.add(segment);
+            if (!segment.isEmpty()) {
+                nextSeq = segment.lastSeq() + 1;
+                lastTimestamp = Math.max(lastTimestamp, segment.lastTimestamp());
+            }
+        }
+        if (segments.isEmpty()) {
+            active = JournalSegment.create(directory, nextSeq, segmentBytes);
+            segments.add(active);
+        } else {
+            active = segments.get(segments.size() - 1);
+            active.openForAppend(segmentBytes);
+        }
+        logger.info("Order journal opened in {}: {} segments, next sequence number {}",
+                directory.toAbsolutePath(), segments.size(), nextSeq);
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Order journal writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        try {
+            active.commit(sync);
+            active.close();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to close order journal segment: {}", e.getMessage());
+        }
+    }
+
+    private void writeBatch(List<PendingAppend> batch) {
+        for (PendingAppend pending : batch) {
+            try {
+                write(pending);
+            } catch (IOException | RuntimeException e) {
+                pending.failure = e;
+            }
+        }
+
+        long started = System.nanoTime();
+        RuntimeException commitFailure = null;
+        try {
+            active.commit(sync);
+        } catch (RuntimeException e) {
+            commitFailure = e;
+        }
+        commitTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        batchSize.record(batch.size());
+
+        for (PendingAppend pending : batch) {
+            Throwable failure = pending.failure != null ? pending.failure : commitFailure;
+            if (failure != null) {
+                rejected.increment();
+                logger.warn("Failed to journal {} of order {}: {}", pending.event.getType(),
+                        pending.event.getOrderId(), failure.getMessage());
+                pending.future.completeExceptionally(failure);
+            } else {
+                appends.increment();
+                pending.future.complete(pending.event.getSeq());
+            }
+        }
+    }
+
+    private void write(PendingAppend pending) throws IOException {
+        JournalEvent event = pending.event;
+        event.setSeq(nextSeq);
+        event.setTimestamp(Math.max(System.currentTimeMillis(), lastTimestamp));
+        ByteBuffer body = JournalSegment.encode(event, scratch);
+        if (!active.append(body, event.getSeq(), event.getTimestamp())) {
+            roll();
+            if (!active.append(body, event.getSeq(), event.getTimestamp())) {
+                throw new IOException("Event of " + body.remaining() + " bytes does not fit in a journal segment");
+            }
+        }
+        nextSeq++;
+        lastTimestamp = event.getTimestamp();
+    }
+
+    private void roll() throws IOException {
+        active.commit(sync);
+        active.close();
+        active = JournalSegment.create(directory, nextSeq, segmentBytes);
+        segments.add(active);
+    }
+
+    private static final class PendingAppend {
+        final JournalEvent event;
+        final CompletableFuture<Long> future;
+        Exception failure;
+
+        PendingAppend(JournalEvent event, CompletableFuture<Long> future) {
+            this.event = event;
+            this.future = future;
+        }
+    }
+
+    // Remembers the last event handed out and whether the consumer asked to stop
+    private static final class LastSeen {
+        long lastSeq;
+        boolean stopped;
+
+        LastSeen(long lastSeq) {
+            this.lastSeq = lastSeq;
+        }
+
+        Predicate<JournalEvent> track(Predicate<JournalEvent> consumer) {
+            return event -> {
+                lastSeq = event.getSeq();
+                stopped = !consumer.test(event);
+                return !stopped;
+            };
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.ecommerce.app.metrics;
+
+import com.ecommerce.app.tracing.Span;
+import com.ecommerce.app.tracing.Tracer;
+import com.google.firebase.database.DataSnapshot;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, throughput and payload metrics for every Firebase operation.
+ *
+ * All meters are registered up front, one set per {@link Operation}, so recording
+ * is an array lookup plus a timer update, with no tag lists or registry lookups per
+ * call. {@link #finish} still attaches one completion callback to each future.
+ *
+ * Meters (tag "operation" = the enum name in lower case, in the root locale):
+ * - firebase.operation (timer, tag "outcome" = success/failure)
+ * - firebase.operation.in.flight (gauge)
+ * - firebase.read.children (summary, list reads only)
+ * - firebase.read.payload (summary in bytes, sampled, list reads only)
+ *
+ * For sampled requests each operation is also a tracing span, nested under the
+ * operation or request that started it and ended when its future completes.
+ */
+@Component
+public class FirebaseMetrics {
+
+    public enum Operation {
+        SAVE_USER,
+        GET_USER_BY_EMAIL,
+        GET_USER_BY_ID,
+        GET_ALL_USERS,
+        UPDATE_USER_ROLE,
+        UPDATE_USER_PASSWORD,
+        DELETE_USER,
+        SAVE_PRODUCT,
+        GET_ALL_PRODUCTS,
+        GET_PRODUCT_BY_ID,
+        UPDATE_PRODUCT,
+        DELETE_PRODUCT,
+        SAVE_ORDER,
+        GET_ORDERS_BY_USER_ID,
+        GET_ALL_ORDERS,
+        GET_ORDER_BY_ID,
+        UPDATE_ORDER_STATUS,
+        GET_CART,
+        SAVE_CARTS,
+        GENERATE_ID,
+        RESERVE_IDS,
+        GET_COUNTER,
+        RESET_COUNTER;
+
+        private final String tagValue = name().toLowerCase(Locale.ROOT);
+        private final String spanName = "firebase." + tagValue;
+
+        public String tagValue() {
+            return tagValue;
+        }
+
+        public String spanName() {
+            return spanName;
+        }
+    }
+
+    // Payload size is estimated by walking the decoded value, so only every Nth list read pays for it
+    private static final int PAYLOAD_SAMPLE_RATE = 16;
+
+    private final Timer[] successTimers;
+    private final Timer[] failureTimers;
+    private final AtomicInteger[] inFlight;
+    private final DistributionSummary[] childCounts;
+    private final DistributionSummary[] payloadBytes;
+    private final AtomicLong listReads = new AtomicLong();
+    private final Tracer tracer;
+
+    public FirebaseMetrics(MeterRegistry registry) {
+        this(registry, Tracer.disabled());
+    }
+
+    @Autowired
+    public FirebaseMetrics(MeterRegistry registry, Tracer tracer) {
+        this.tracer = tracer;
+        Operation[] operations = Operation.values();
+        successTimers = new Timer[operations.length];
+        failureTimers = new Timer[operations.length];
+        inFlight = new AtomicInteger[operations.length];
+        childCounts = new DistributionSummary[operations.length];
+        payloadBytes = new DistributionSummary[operations.length];
+
+        for (Operation operation : operations) {
+            int i = operation.ordinal();
+            successTimers[i] = timer(registry, operation, "success");
+            failureTimers[i] = timer(registry, operation, "failure");
+            inFlight[i] = new AtomicInteger();
+            Gauge.builder("firebase.operation.in.flight", inFlight[i], AtomicInteger::get)
+                    .description("Firebase operations started but not yet completed")
+                    .tag("operation", operation.tagValue())
+                    .register(registry);
+            childCounts[i] = DistributionSummary.builder("firebase.read.children")
+                    .description("Children returned by a list read")
+                    .tag("operation", operation.tagValue())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+            payloadBytes[i] = DistributionSummary.builder("firebase.read.payload")
+                    .description("Approximate size of a list read")
+                    .baseUnit("bytes")
+                    .tag("operation", operation.tagValue())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Metrics that go nowhere, for services constructed outside Spring
+     * @return A FirebaseMetrics backed by an empty registry
+     */
+    public static FirebaseMetrics noop() {
+        return new FirebaseMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Marks an operation as started
+     * @param operation The operation
+     * @return Start time to pass to {@link #finish}
+     */
+    public long start(Operation operation) {
+        inFlight[operation.ordinal()].incrementAndGet();
+        long now = System.nanoTime();
+        tracer.enter(operation.spanName(), now);
+        return now;
+    }
+
+    /**
+     * Records the operation's latency and outcome when the future completes
+     * @param operation The operation passed to {@link #start}
+     * @param startNanos Value returned by {@link #start}
+     * @param future The operation's result
+     * @return The same future, for a one-line return
+     */
+    public <T> CompletableFuture<T> finish(Operation operation, long startNanos, CompletableFuture<T> future) {
+        Span span = tracer.exit();
+        future.whenComplete((result, throwable) -> {
+            stop(operation, startNanos, throwable == null);
+            if (span != null) {
+                span.end(throwable);
+            }
+        });
+        return future;
+    }
+
+    private void stop(Operation operation, long startNanos, boolean success) {
+        int i = operation.ordinal();
+        inFlight[i].decrementAndGet();
+        (success ? successTimers[i] : failureTimers[i]).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the size of a list read
+     * @param operation The list operation
+     * @param snapshot The snapshot returned by Firebase
+     */
+    public void recordRead(Operation operation, DataSnapshot snapshot) {
+        int i = operation.ordinal();
+        childCounts[i].record(snapshot.getChildrenCount());
+        if (listReads.incrementAndGet() % PAYLOAD_SAMPLE_RATE == 0) {
+            payloadBytes[i].record(estimateSize(snapshot.getValue()));
+        }
+    }
+
+    // Rough JSON size of a decoded Firebase value
+    static long estimateSize(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof String) {
+            return ((String) value).length() + 2;
+        }
+        if (value instanceof Map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += String.valueOf(entry.getKey()).length() + 4 + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Iterable) {
+            long size = 2;
+            for (Object element : (Iterable<?>) value) {
+                size += 1 + estimateSize(element);
+            }
+            return size;
+        }
+        return 8;
+    }
+
+    private static Timer timer(MeterRegistry registry, Operation operation, String outcome) {
+        return Timer.builder("firebase.operation")
+                .description("Latency of Firebase operations")
+                .tag("operation", operation.tagValue())
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
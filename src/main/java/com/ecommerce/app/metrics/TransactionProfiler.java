@@ -0,0 +1,154 @@
+package com.ecommerce.app.metrics;
+
+import com.ecommerce.app.service.IdGeneratorService.IdType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Contention profile of the counter transactions behind {@code IdGeneratorService}.
+ *
+ * Firebase runs {@code doTransaction} once per attempt and again every time the
+ * server rejects the write because the counter moved, so attempts per transaction
+ * is a direct measure of contention on counters/{type}. Results are published as
+ * meters and kept as plain counters for the admin diagnostics endpoint.
+ *
+ * Meters (tag "type" = the IdType in lower case):
+ * - firebase.transaction.attempts (summary, doTransaction calls per transaction)
+ * - firebase.transaction.duration (timer, start to completion, tag "outcome")
+ * - firebase.transaction.completed (counter, tag "outcome" = committed/uncommitted/error)
+ */
+@Component
+public class TransactionProfiler {
+
+    public enum Outcome {
+        COMMITTED,
+        UNCOMMITTED,
+        ERROR
+    }
+
+    // Attempt histogram buckets: 1, 2, ..., MAX_BUCKET - 1, and MAX_BUCKET or more
+    private static final int MAX_BUCKET = 10;
+
+    private static final class TypeStats {
+        final DistributionSummary attempts;
+        final Timer[] durations = new Timer[Outcome.values().length];
+        final Counter[] completed = new Counter[Outcome.values().length];
+        final AtomicLong[] outcomeCounts = new AtomicLong[Outcome.values().length];
+        final AtomicLongArray attemptBuckets = new AtomicLongArray(MAX_BUCKET);
+        final AtomicLong maxAttempts = new AtomicLong();
+        final AtomicLong totalAttempts = new AtomicLong();
+        final AtomicLong committedNanos = new AtomicLong();
+
+        TypeStats(MeterRegistry registry, IdType type) {
+            String tag = type.name().toLowerCase(Locale.ROOT);
+            attempts = DistributionSummary.builder("firebase.transaction.attempts")
+                    .description("doTransaction invocations per counter transaction")
+                    .tag("type", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+            for (Outcome outcome : Outcome.values()) {
+                String outcomeTag = outcome.name().toLowerCase(Locale.ROOT);
+                durations[outcome.ordinal()] = Timer.builder("firebase.transaction.duration")
+                        .description("Time from starting a counter transaction to its completion")
+                        .tag("type", tag)
+                        .tag("outcome", outcomeTag)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(registry);
+                completed[outcome.ordinal()] = Counter.builder("firebase.transaction.completed")
+                        .tag("type", tag)
+                        .tag("outcome", outcomeTag)
+                        .register(registry);
+                outcomeCounts[outcome.ordinal()] = new AtomicLong();
+            }
+        }
+    }
+
+    private final TypeStats[] stats;
+
+    @Autowired
+    public TransactionProfiler(MeterRegistry registry) {
+        IdType[] types = IdType.values();
+        stats = new TypeStats[types.length];
+        for (IdType type : types) {
+            stats[type.ordinal()] = new TypeStats(registry, type);
+        }
+    }
+
+    /**
+     * Profiler that only keeps in-memory counts, for services constructed outside Spring
+     * @return A TransactionProfiler backed by an empty registry
+     */
+    public static TransactionProfiler noop() {
+        return new TransactionProfiler(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Records one finished counter transaction
+     * @param type The counter the transaction ran on
+     * @param attempts Number of doTransaction invocations
+     * @param startNanos System.nanoTime() when runTransaction was called
+     * @param outcome How the transaction ended
+     */
+    public void record(IdType type, int attempts, long startNanos, Outcome outcome) {
+        long elapsed = System.nanoTime() - startNanos;
+        TypeStats typeStats = stats[type.ordinal()];
+
+        typeStats.attempts.record(attempts);
+        typeStats.durations[outcome.ordinal()].record(elapsed, TimeUnit.NANOSECONDS);
+        typeStats.completed[outcome.ordinal()].increment();
+        typeStats.outcomeCounts[outcome.ordinal()].incrementAndGet();
+        typeStats.attemptBuckets.incrementAndGet(Math.min(Math.max(attempts, 1), MAX_BUCKET) - 1);
+        typeStats.totalAttempts.addAndGet(attempts);
+        typeStats.maxAttempts.accumulateAndGet(attempts, Math::max);
+        if (outcome == Outcome.COMMITTED) {
+            typeStats.committedNanos.addAndGet(elapsed);
+        }
+    }
+
+    /**
+     * Summarizes everything recorded since startup, for the diagnostics endpoint
+     * @return Per-type statistics keyed by IdType name
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (IdType type : IdType.values()) {
+            TypeStats typeStats = stats[type.ordinal()];
+            long committed = typeStats.outcomeCounts[Outcome.COMMITTED.ordinal()].get();
+            long transactions = 0;
+            for (AtomicLong count : typeStats.outcomeCounts) {
+                transactions += count.get();
+            }
+
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < MAX_BUCKET; i++) {
+                histogram.put(i == MAX_BUCKET - 1 ? MAX_BUCKET + "+" : String.valueOf(i + 1),
+                        typeStats.attemptBuckets.get(i));
+            }
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("transactions", transactions);
+            summary.put("committed", committed);
+            summary.put("uncommitted", typeStats.outcomeCounts[Outcome.UNCOMMITTED.ordinal()].get());
+            summary.put("errors", typeStats.outcomeCounts[Outcome.ERROR.ordinal()].get());
+            summary.put("retries", typeStats.totalAttempts.get() - transactions);
+            summary.put("meanAttempts", transactions == 0 ? 0.0 : (double) typeStats.totalAttempts.get() / transactions);
+            summary.put("maxAttempts", typeStats.maxAttempts.get());
+            summary.put("meanCommitMillis", committed == 0 ? 0.0 : typeStats.committedNanos.get() / 1e6 / committed);
+            summary.put("attemptHistogram", histogram);
+            result.put(type.name(), summary);
+        }
+        return result;
+    }
+}
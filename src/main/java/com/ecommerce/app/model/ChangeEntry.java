@@ -0,0 +1,27 @@
+package com.ecommerce.app.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of the change log under changes/{seq}. Upserts carry the entity as
+ * written so a sync never has to read the products or orders nodes. A SKIP entry
+ * marks seq through skipTo as numbers that will never hold an entry.
+ */
+@Data
+@NoArgsConstructor
+public class ChangeEntry {
+    public static final String PRODUCT = "product";
+    public static final String ORDER = "order";
+    public static final String SKIP = "skip";
+
+    private long seq;
+    private String kind; // PRODUCT, ORDER or SKIP
+    private String entityId;
+    private String userId; // Owner of the order, null for products
+    private boolean deleted;
+    private Product product;
+    private Order order;
+    private long timestamp;
+    private long skipTo; // Last number a SKIP entry covers
+}
@@ -6,12 +6,16 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
 import java.util.List;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
+    /** Newest first by creation timestamp, the order lists are returned in */
+    public static final Comparator<Order> NEWEST_FIRST = (o1, o2) -> Long.compare(o2.getTimestamp(), o1.getTimestamp());
+
     private String id;
     private String userId;
     private List<OrderItem> items;
@@ -7,7 +7,7 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-class OrderItem {
+public class OrderItem {
     private String productId;
     private String productName;
     private int quantity;
@@ -4,6 +4,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -14,4 +16,6 @@ public class Product {
     private double price;
     private int quantity;
     private String imageUrl;
+    private String category;
+    private List<String> tags;
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.ecommerce.app.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Appends outbox events to a local file, one JSON object per line, and syncs the
+ * file before the batch counts as delivered. Another process can tail it; events
+ * may repeat after a relay restart, so readers should skip IDs they have seen.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.file.enabled", havingValue = "true", matchIfMissing = true)
+public class FileOutboxSink implements OutboxSink {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path file;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-file-sink");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FileOutboxSink(@Value("${outbox.file.path:logs/outbox-events.jsonl}") String file) {
+        this.file = Paths.get(file);
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public CompletableFuture<Void> deliver(List<OutboxEvent> events) {
+        // Off the Firebase callback thread the relay runs on
+        return CompletableFuture.runAsync(() -> {
+            try {
+                StringBuilder lines = new StringBuilder();
+                for (OutboxEvent event : events) {
+                    lines.append(objectMapper.writeValueAsString(event)).append('\n');
+                }
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, writer);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+    }
+}
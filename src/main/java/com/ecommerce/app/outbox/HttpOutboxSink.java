@@ -0,0 +1,84 @@
+package com.ecommerce.app.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * POSTs each batch as {@code {"events": [...]}} to {@code outbox.http.url}. Any 2xx
+ * response means the batch was accepted. 429 and 503 responses are retried after
+ * their Retry-After delay (in seconds); other responses and connection failures use
+ * the relay's backoff. The X-Outbox-Batch header holds the first and last event ID,
+ * so a receiver can spot a batch it already processed.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.http.url")
+public class HttpOutboxSink implements OutboxSink {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client;
+    private final URI url;
+    private final Duration timeout;
+
+    public HttpOutboxSink(@Value("${outbox.http.url}") String url,
+                          @Value("${outbox.http.timeout-ms:5000}") long timeoutMs) {
+        this.url = URI.create(url);
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public String name() {
+        return "http";
+    }
+
+    @Override
+    public CompletableFuture<Void> deliver(List<OutboxEvent> events) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(Map.of("events", events));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("X-Outbox-Batch", events.get(0).getId() + ".." + events.get(events.size() - 1).getId())
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenAccept(response -> {
+            int status = response.statusCode();
+            if (status >= 200 && status < 300) {
+                return;
+            }
+            long retryAfterMs = 0;
+            if (status == 429 || status == 503) {
+                retryAfterMs = response.headers().firstValue("Retry-After")
+                        .map(HttpOutboxSink::retryAfterMillis)
+                        .orElse(0L);
+            }
+            throw new OutboxDeliveryException("HTTP " + status + " from " + url, retryAfterMs);
+        });
+    }
+
+    private static long retryAfterMillis(String header) {
+        try {
+            return Math.max(0, Long.parseLong(header.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            // HTTP-date form: fall back to the relay's backoff
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecommerce.app.outbox;
+
+import com.ecommerce.app.codec.Codecs;
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderStatus;
+import com.ecommerce.app.model.Product;
+import com.ecommerce.app.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds change events to a write before it is sent, so the change and its outbox/{id}
+ * event land in the same multi-path update: either both are stored or neither is.
+ *
+ * Event IDs start with the zero-padded time in milliseconds, followed by a random
+ * node ID and a per-node counter, so key order is time order and IDs from different
+ * nodes never collide. The {@link OutboxRelay} delivers the events.
+ *
+ * Password hashes never go into an event; user events carry the ID, username,
+ * email and role only.
+ */
+@Component
+public class Outbox {
+
+    static final String OUTBOX = "outbox";
+
+    @Value("${outbox.enabled:true}")
+    private boolean enabled = true;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong counter = new AtomicLong();
+
+    public void userCreated(Map<String, Object> update, User user) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", user.getId());
+        data.put("username", user.getUsername());
+        data.put("email", user.getEmail());
+        data.put("role", user.getRole());
+        record(update, OutboxEvent.Type.USER_CREATED, user.getId(), user.getId(), data);
+    }
+
+    public void userRoleChanged(Map<String, Object> update, String userId, String role) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("role", role);
+        record(update, OutboxEvent.Type.USER_ROLE_CHANGED, userId, userId, data);
+    }
+
+    public void userDeleted(Map<String, Object> update, String userId) {
+        record(update, OutboxEvent.Type.USER_DELETED, userId, userId, null);
+    }
+
+    public void productSaved(Map<String, Object> update, Product product, boolean created) {
+        record(update, created ? OutboxEvent.Type.PRODUCT_CREATED : OutboxEvent.Type.PRODUCT_UPDATED,
+                product.getId(), null, Codecs.PRODUCT.toMap(product));
+    }
+
+    public void productDeleted(Map<String, Object> update, String productId) {
+        record(update, OutboxEvent.Type.PRODUCT_DELETED, productId, null, null);
+    }
+
+    public void orderCreated(Map<String, Object> update, Order order) {
+        record(update, OutboxEvent.Type.ORDER_CREATED, order.getId(), order.getUserId(), Codecs.ORDER.toMap(order));
+    }
+
+    public void orderStatusChanged(Map<String, Object> update, Order order, OrderStatus previous) {
+        Map<String, Object> data = Codecs.ORDER.toMap(order);
+        data.put("previousStatus", previous != null ? previous.name() : null);
+        record(update, OutboxEvent.Type.ORDER_STATUS_CHANGED, order.getId(), order.getUserId(), data);
+    }
+
+    /**
+     * Adds an event to a root-level multi-path update
+     * @param update Paths relative to the database root, about to be written with updateChildren
+     * @param type What changed
+     * @param entityId ID of the changed user, product or order
+     * @param userId User the change belongs to, if any
+     * @param data Event payload, may be null
+     */
+    public void record(Map<String, Object> update, OutboxEvent.Type type, String entityId, String userId,
+                       Map<String, Object> data) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        OutboxEvent event = new OutboxEvent();
+        event.setType(type);
+        event.setEntityId(entityId);
+        event.setUserId(userId);
+        event.setOccurredAt(now);
+        event.setData(data);
+        update.put(OUTBOX + "/" + keyPrefix(now) + "-" + nodeId + "-"
+                + String.format("%010d", counter.incrementAndGet()), event.toMap());
+    }
+
+    /**
+     * @param millis A time in milliseconds
+     * @return The start of every event ID recorded in that millisecond
+     */
+    static String keyPrefix(long millis) {
+        return String.format("%013d", millis);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ecommerce.app.outbox;
+
+/**
+ * Thrown by an {@link OutboxSink} that could not accept a batch, optionally saying
+ * how long to wait before retrying (e.g. from a Retry-After header)
+ */
+public class OutboxDeliveryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMs;
+
+    public OutboxDeliveryException(String message, long retryAfterMs) {
+        super(message);
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * @return Milliseconds to wait before the next attempt, or 0 to use the relay's backoff
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
@@ -0,0 +1,65 @@
+package com.ecommerce.app.outbox;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A change recorded in outbox/{id} by the same write that made it, and delivered
+ * to the sinks by the {@link OutboxRelay}. Delivery is at least once: consumers
+ * should skip IDs they have already processed.
+ */
+@Data
+@NoArgsConstructor
+public class OutboxEvent {
+
+    public enum Type {
+        USER_CREATED,
+        USER_ROLE_CHANGED,
+        USER_DELETED,
+        PRODUCT_CREATED,
+        PRODUCT_UPDATED,
+        PRODUCT_DELETED,
+        ORDER_CREATED,
+        ORDER_STATUS_CHANGED
+    }
+
+    private String id;
+    private Type type;
+    private String entityId;
+    private String userId;
+    private long occurredAt;
+    private Map<String, Object> data;
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", type.name());
+        map.put("entityId", entityId);
+        map.put("userId", userId);
+        map.put("occurredAt", occurredAt);
+        map.put("data", data);
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    static OutboxEvent fromMap(String id, Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<String, Object> map = (Map<String, Object>) value;
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        try {
+            event.setType(Type.valueOf(String.valueOf(map.get("type"))));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        event.setEntityId((String) map.get("entityId"));
+        event.setUserId((String) map.get("userId"));
+        event.setOccurredAt(map.get("occurredAt") instanceof Number ? ((Number) map.get("occurredAt")).longValue() : 0);
+        event.setData(map.get("data") instanceof Map ? (Map<String, Object>) map.get("data") : null);
+        return event;
+    }
+}
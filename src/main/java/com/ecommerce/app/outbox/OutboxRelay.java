@@ -0,0 +1,453 @@
+package com.ecommerce.app.outbox;
+
+import com.google.firebase.database.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers outbox/ events to every {@link OutboxSink}, in key order, at least once.
+ *
+ * - Lease: only the node holding outbox-relay/lease relays. The lease is claimed and
+ *   renewed with a transaction on every run and expires after {@code outbox.lease-ms},
+ *   so another node takes over when the holder dies.
+ * - Checkpoints: each sink's last delivered event ID is stored under
+ *   outbox-relay/checkpoints/{sink} after each batch. A new lease holder resumes from
+ *   there, so a batch that was delivered but not checkpointed is sent again.
+ * - Backpressure: a sink gets its next batch (up to {@code outbox.batch-size} events)
+ *   only after it accepted the previous one. A failed batch is retried after an
+ *   exponential backoff capped at {@code outbox.max-backoff-ms}, or after the delay
+ *   the sink asked for; events wait in Firebase meanwhile.
+ * - Events younger than {@code outbox.settle-ms} are not read yet, so a write that
+ *   got its ID earlier but landed later is normally not skipped by a checkpoint that
+ *   already moved past it. Writes that land later still are found by re-reading the
+ *   {@code outbox.late-window-ms} of keys behind each checkpoint on every run; events
+ *   there that the sink has not delivered are delivered then, out of key order.
+ *
+ * Events are deleted from outbox/ once every sink delivered them. Events further
+ * behind the slowest checkpoint than the late window are deleted too, as they are no
+ * longer re-read.
+ *
+ * Meters: outbox.delivered, outbox.delivery.failures and outbox.late (events found
+ * behind the checkpoint) counters, outbox.delivery (timer), all tagged with "sink".
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final String LEASE = "outbox-relay/lease";
+    private static final String CHECKPOINTS = "outbox-relay/checkpoints";
+    private static final int MAX_BATCHES_PER_RUN = 10;
+    private static final long BASE_BACKOFF_MS = 1000;
+
+    @Autowired
+    private DatabaseReference databaseReference;
+
+    @Value("${outbox.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${outbox.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${outbox.lease-ms:15000}")
+    private long leaseMs = 15000;
+
+    @Value("${outbox.settle-ms:5000}")
+    private long settleMs = 5000;
+
+    @Value("${outbox.max-backoff-ms:60000}")
+    private long maxBackoffMs = 60000;
+
+    @Value("${outbox.late-window-ms:60000}")
+    private long lateWindowMs = 60000;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, SinkState> sinks = new LinkedHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean holdingLease;
+    private String cleanedUpTo;
+
+    @Autowired
+    public OutboxRelay(ObjectProvider<OutboxSink> sinks, MeterRegistry registry) {
+        sinks.orderedStream().forEach(sink -> this.sinks.put(sink.name(), new SinkState(sink, registry)));
+        if (this.sinks.isEmpty()) {
+            logger.warn("No outbox sinks are configured; outbox events are kept until one is");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}",
+            initialDelayString = "${outbox.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled || sinks.isEmpty() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        runOnce().whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                logger.warn("Outbox relay run failed: {}", throwable.getMessage());
+            }
+            running.set(false);
+        });
+    }
+
+    /**
+     * Claims or renews the lease and, if held, delivers pending batches to each sink
+     * @return CompletableFuture completed when the run is over
+     */
+    CompletableFuture<Void> runOnce() {
+        return claimLease().thenCompose(held -> {
+            boolean acquired = held && !holdingLease;
+            holdingLease = held;
+            if (!held) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> ready = acquired ? loadCheckpoints() : CompletableFuture.completedFuture(null);
+            for (SinkState state : sinks.values()) {
+                ready = ready.thenCompose(ignored -> deliverLate(state))
+                        .thenCompose(ignored -> drain(state, MAX_BATCHES_PER_RUN));
+            }
+            return ready.thenCompose(ignored -> cleanup());
+        });
+    }
+
+    boolean isHoldingLease() {
+        return holdingLease;
+    }
+
+    private CompletableFuture<Void> drain(SinkState state, int batchesLeft) {
+        if (batchesLeft == 0 || System.currentTimeMillis() < state.retryAt) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return readBatch(state.checkpoint).thenCompose(events -> {
+            if (events.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return deliver(state, events, true).thenCompose(delivered -> delivered && events.size() >= batchSize
+                    ? drain(state, batchesLeft - 1)
+                    : CompletableFuture.completedFuture(null));
+        });
+    }
+
+    // Delivers events that landed behind the checkpoint after it moved past their keys
+    private CompletableFuture<Void> deliverLate(SinkState state) {
+        if (state.checkpoint == null || System.currentTimeMillis() < state.retryAt) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String checkpoint = state.checkpoint;
+        CompletableFuture<List<OutboxEvent>> read = new CompletableFuture<>();
+        databaseReference.child(Outbox.OUTBOX).orderByKey().startAt(lateWindowStart(checkpoint)).endAt(checkpoint)
+                .limitToFirst(batchSize * MAX_BATCHES_PER_RUN)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        List<OutboxEvent> late = new ArrayList<>();
+                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                            if (snapshot.getKey().equals(checkpoint) || state.delivered.contains(snapshot.getKey())) {
+                                continue;
+                            }
+                            OutboxEvent event = OutboxEvent.fromMap(snapshot.getKey(), snapshot.getValue());
+                            if (event != null) {
+                                late.add(event);
+                            }
+                        }
+                        read.complete(late);
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        read.completeExceptionally(databaseError.toException());
+                    }
+                });
+        return read.thenCompose(late -> {
+            if (late.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            state.late.increment(late.size());
+            logger.warn("Found {} outbox events behind the {} checkpoint, delivering them out of order",
+                    late.size(), state.sink.name());
+            CompletableFuture<Boolean> delivered = CompletableFuture.completedFuture(true);
+            for (int from = 0; from < late.size(); from += batchSize) {
+                List<OutboxEvent> batch = late.subList(from, Math.min(late.size(), from + batchSize));
+                delivered = delivered.thenCompose(ok -> ok
+                        ? deliver(state, batch, false)
+                        : CompletableFuture.completedFuture(false));
+            }
+            return delivered.thenApply(ok -> null);
+        });
+    }
+
+    private CompletableFuture<Boolean> deliver(SinkState state, List<OutboxEvent> events, boolean advance) {
+        long started = System.nanoTime();
+        CompletableFuture<Void> delivery;
+        try {
+            delivery = state.sink.deliver(events);
+        } catch (RuntimeException e) {
+            delivery = CompletableFuture.failedFuture(e);
+        }
+        return delivery.handle((ignored, throwable) -> {
+            state.deliveryTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause() : throwable;
+                state.failures++;
+                long backoff = Math.min(maxBackoffMs, BASE_BACKOFF_MS << Math.min(state.failures - 1, 16));
+                if (cause instanceof OutboxDeliveryException && ((OutboxDeliveryException) cause).getRetryAfterMs() > 0) {
+                    backoff = ((OutboxDeliveryException) cause).getRetryAfterMs();
+                }
+                state.retryAt = System.currentTimeMillis() + backoff;
+                state.failed.increment();
+                logger.warn("Outbox sink {} rejected {} events, retrying in {} ms: {}",
+                        state.sink.name(), events.size(), backoff, cause.getMessage());
+                return false;
+            }
+            state.failures = 0;
+            state.retryAt = 0;
+            state.deliveredCount.increment(events.size());
+            for (OutboxEvent event : events) {
+                state.delivered.add(event.getId());
+            }
+            if (!advance) {
+                return true;
+            }
+            state.checkpoint = events.get(events.size() - 1).getId();
+            // Keys further back are no longer re-read, so there is nothing left to deduplicate against
+            state.delivered.headSet(lateWindowStart(state.checkpoint)).clear();
+            // Not waited for: if it is lost, the next lease holder delivers this batch again
+            databaseReference.child(CHECKPOINTS).child(state.sink.name()).setValue(state.checkpoint, (databaseError, reference) -> {
+                if (databaseError != null) {
+                    logger.warn("Failed to store outbox checkpoint for {}: {}", state.sink.name(), databaseError.getMessage());
+                }
+            });
+            return true;
+        });
+    }
+
+    // Completes with the next events after the checkpoint that are old enough to have settled
+    private CompletableFuture<List<OutboxEvent>> readBatch(String after) {
+        String settled = Outbox.keyPrefix(System.currentTimeMillis() - settleMs) + "~";
+        Query query = databaseReference.child(Outbox.OUTBOX).orderByKey();
+        // startAt is inclusive, so the checkpointed event comes back first and is skipped
+        query = after != null ? query.startAt(after).endAt(settled).limitToFirst(batchSize + 1)
+                : query.endAt(settled).limitToFirst(batchSize);
+
+        CompletableFuture<List<OutboxEvent>> future = new CompletableFuture<>();
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                List<OutboxEvent> events = new ArrayList<>();
+                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                    if (snapshot.getKey().equals(after) || events.size() == batchSize) {
+                        continue;
+                    }
+                    OutboxEvent event = OutboxEvent.fromMap(snapshot.getKey(), snapshot.getValue());
+                    if (event != null) {
+                        events.add(event);
+                    }
+                }
+                future.complete(events);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+        return future;
+    }
+
+    // Completes with true if this node holds the lease after the transaction
+    private CompletableFuture<Boolean> claimLease() {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        long now = System.currentTimeMillis();
+        databaseReference.child(LEASE).runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData mutableData) {
+                Object current = mutableData.getValue();
+                if (current instanceof Map) {
+                    Map<?, ?> lease = (Map<?, ?>) current;
+                    Object expiresAt = lease.get("expiresAt");
+                    if (!nodeId.equals(lease.get("owner"))
+                            && expiresAt instanceof Number && ((Number) expiresAt).longValue() > now) {
+                        return Transaction.abort();
+                    }
+                }
+                Map<String, Object> lease = new HashMap<>();
+                lease.put("owner", nodeId);
+                lease.put("expiresAt", now + leaseMs);
+                mutableData.setValue(lease);
+                return Transaction.success(mutableData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
+                if (databaseError != null) {
+                    future.completeExceptionally(databaseError.toException());
+                } else {
+                    future.complete(committed);
+                }
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<Void> loadCheckpoints() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        databaseReference.child(CHECKPOINTS).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                for (SinkState state : sinks.values()) {
+                    Object stored = dataSnapshot.child(state.sink.name()).getValue();
+                    // Keep whichever is further along: ours may not have been written yet
+                    if (stored instanceof String && (state.checkpoint == null || ((String) stored).compareTo(state.checkpoint) > 0)) {
+                        state.checkpoint = (String) stored;
+                    }
+                }
+                future.complete(null);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+        return future;
+    }
+
+    // Deletes events every sink has delivered, and events too far behind every checkpoint to be re-read
+    private CompletableFuture<Void> cleanup() {
+        String lowest = null;
+        Set<String> deliveredToAll = null;
+        for (SinkState state : sinks.values()) {
+            if (state.checkpoint != null && (lowest == null || state.checkpoint.compareTo(lowest) < 0)) {
+                lowest = state.checkpoint;
+            }
+            if (deliveredToAll == null) {
+                deliveredToAll = new HashSet<>(state.delivered);
+            } else {
+                deliveredToAll.retainAll(state.delivered);
+            }
+        }
+        boolean everySinkStarted = sinks.values().stream().allMatch(state -> state.checkpoint != null);
+        String upTo = everySinkStarted ? lateWindowStart(lowest) : null;
+        if (upTo != null && upTo.equals(cleanedUpTo)) {
+            upTo = null;
+        }
+        Map<String, Object> removals = new HashMap<>();
+        for (String id : deliveredToAll) {
+            removals.put(id, null);
+        }
+        if (upTo == null) {
+            return remove(removals, deliveredToAll);
+        }
+
+        String expiredUpTo = upTo;
+        int limit = batchSize * MAX_BATCHES_PER_RUN;
+        Set<String> removedIds = deliveredToAll;
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        databaseReference.child(Outbox.OUTBOX).orderByKey().endAt(expiredUpTo).limitToFirst(limit)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                            removals.put(snapshot.getKey(), null);
+                        }
+                        if (dataSnapshot.getChildrenCount() < limit) {
+                            cleanedUpTo = expiredUpTo;
+                        }
+                        remove(removals, removedIds).whenComplete((ignored, throwable) -> future.complete(null));
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        future.completeExceptionally(databaseError.toException());
+                    }
+                });
+        return future;
+    }
+
+    private CompletableFuture<Void> remove(Map<String, Object> removals, Set<String> delivered) {
+        if (removals.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        databaseReference.child(Outbox.OUTBOX).updateChildren(removals, (databaseError, reference) -> {
+            if (databaseError != null) {
+                cleanedUpTo = null;
+                logger.warn("Failed to delete {} delivered outbox events: {}", removals.size(),
+                        databaseError.getMessage());
+            } else {
+                for (SinkState state : sinks.values()) {
+                    state.delivered.removeAll(delivered);
+                }
+            }
+            future.complete(null);
+        });
+        return future;
+    }
+
+    // Start of the keys re-read behind a checkpoint, from the time in its "{13-digit millis}-..." key
+    private String lateWindowStart(String checkpoint) {
+        long millis;
+        try {
+            millis = Long.parseLong(checkpoint.substring(0, 13));
+        } catch (RuntimeException e) {
+            return checkpoint;
+        }
+        return Outbox.keyPrefix(Math.max(0, millis - lateWindowMs));
+    }
+
+    private static final class SinkState {
+        final OutboxSink sink;
+        final Counter deliveredCount;
+        final Counter failed;
+        final Counter late;
+        final Timer deliveryTime;
+        // Only touched by the single relay run in progress
+        String checkpoint;
+        int failures;
+        long retryAt;
+        // IDs delivered and not deleted yet, within the late window behind the checkpoint
+        final TreeSet<String> delivered = new TreeSet<>();
+
+        SinkState(OutboxSink sink, MeterRegistry registry) {
+            this.sink = sink;
+            this.deliveredCount = Counter.builder("outbox.delivered")
+                    .description("Outbox events accepted by a sink")
+                    .tag("sink", sink.name())
+                    .register(registry);
+            this.failed = Counter.builder("outbox.delivery.failures")
+                    .description("Outbox batches a sink rejected")
+                    .tag("sink", sink.name())
+                    .register(registry);
+            this.late = Counter.builder("outbox.late")
+                    .description("Outbox events found behind the sink's checkpoint")
+                    .tag("sink", sink.name())
+                    .register(registry);
+            this.deliveryTime = Timer.builder("outbox.delivery")
+                    .description("Time for a sink to accept a batch")
+                    .tag("sink", sink.name())
+                    .register(registry);
+        }
+    }
+}
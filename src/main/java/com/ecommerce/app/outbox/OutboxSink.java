@@ -0,0 +1,26 @@
+package com.ecommerce.app.outbox;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A downstream system the {@link OutboxRelay} delivers change events to. Every
+ * Spring bean implementing it is picked up; each keeps its own checkpoint, so a
+ * sink that is down does not hold back the others.
+ */
+public interface OutboxSink {
+
+    /**
+     * @return Stable name, used as the checkpoint key and the metrics tag
+     */
+    String name();
+
+    /**
+     * Delivers a batch. The relay sends the next batch only after this one
+     * completes, and sends the same events again if it fails.
+     * @param events Events in outbox order
+     * @return CompletableFuture completed once the sink has accepted the whole batch;
+     *         may fail with an {@link OutboxDeliveryException} giving a retry delay
+     */
+    CompletableFuture<Void> deliver(List<OutboxEvent> events);
+}
@@ -0,0 +1,166 @@
+package com.ecommerce.app.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit that adapts to observed latency (AIMD).
+ *
+ * The limiter remembers the lowest latency seen recently as the no-load baseline.
+ * When the smoothed latency exceeds {@code tolerance} times the baseline, or work
+ * fails with a timeout, work is queueing downstream: the limit is multiplied by
+ * {@code backoff}, at most once per baseline interval so one burst of slow responses
+ * counts once. Every other completion grows the limit by 1/limit, i.e. by about one
+ * per round trip. Both only apply while the limiter is at least half busy: below that,
+ * a slow response is not caused by our own concurrency. When Firebase slows down the
+ * limit shrinks, excess work is refused up front, and the requests that are admitted
+ * keep close to baseline latency instead of queueing.
+ *
+ * Lower priorities may only use part of the limit, so when the limiter is saturated
+ * admin and bulk traffic is refused first and checkout last.
+ *
+ * Meters (tag "limiter" = name): concurrency.limit, concurrency.in.flight (gauges),
+ * concurrency.rejected (counter, tag "priority").
+ */
+public class AdaptiveLimiter {
+
+    public enum Priority {
+        CRITICAL(1.0),
+        NORMAL(0.9),
+        LOW(0.5);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+    }
+
+    // Completions per baseline window; the baseline is the minimum over the last two windows
+    private static final int BASELINE_WINDOW = 500;
+
+    // Weight of the newest sample in the smoothed latency, so one stray slow response does not cut the limit
+    private static final double SMOOTHING = 0.1;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoff;
+    private final LongSupplier clock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter[] rejected;
+
+    private volatile double limit;
+    private long baselineNanos = Long.MAX_VALUE;
+    private double smoothedNanos;
+    private long previousWindowMin = Long.MAX_VALUE;
+    private long windowMin = Long.MAX_VALUE;
+    private int windowSamples;
+    private long lastDecrease;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, double tolerance,
+                           double backoff, LongSupplier clock, MeterRegistry registry) {
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoff = backoff;
+        this.clock = clock;
+        this.lastDecrease = clock.getAsLong();
+
+        Gauge.builder("concurrency.limit", this, AdaptiveLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("limiter", name)
+                .register(registry);
+        Gauge.builder("concurrency.in.flight", inFlight, AtomicInteger::get)
+                .description("Work admitted by the limiter and not yet completed")
+                .tag("limiter", name)
+                .register(registry);
+        Priority[] priorities = Priority.values();
+        rejected = new Counter[priorities.length];
+        for (Priority priority : priorities) {
+            rejected[priority.ordinal()] = Counter.builder("concurrency.rejected")
+                    .description("Work refused because the concurrency limit was reached")
+                    .tag("limiter", name)
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Takes a slot if the priority's share of the limit is not used up. Every
+     * successful call must be followed by {@link #release} or {@link #releaseIgnored}.
+     * @param priority Priority of the work
+     * @return true if the work may start
+     */
+    public boolean tryAcquire(Priority priority) {
+        int allowed = Math.max(1, (int) (limit * priority.share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                rejected[priority.ordinal()].increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a slot and adjusts the limit
+     * @param latencyNanos How long the work took
+     * @param dropped true if the work timed out or was abandoned because of overload
+     */
+    public void release(long latencyNanos, boolean dropped) {
+        int busy = inFlight.getAndDecrement();
+        update(latencyNanos, dropped, busy);
+    }
+
+    /**
+     * Gives back a slot without a latency sample, e.g. for work that failed before doing anything
+     */
+    public void releaseIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(long latencyNanos, boolean dropped, int busy) {
+        if (!dropped) {
+            windowMin = Math.min(windowMin, latencyNanos);
+            if (++windowSamples >= BASELINE_WINDOW) {
+                previousWindowMin = windowMin;
+                windowMin = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+            baselineNanos = Math.min(previousWindowMin, windowMin);
+            smoothedNanos = smoothedNanos == 0 ? latencyNanos : smoothedNanos + (latencyNanos - smoothedNanos) * SMOOTHING;
+        }
+
+        // Below half the limit, slowness is not caused by our own concurrency; leave the limit alone
+        if (busy * 2 < limit) {
+            return;
+        }
+        long now = clock.getAsLong();
+        if (dropped || smoothedNanos > tolerance * baselineNanos) {
+            if (now - lastDecrease >= baselineNanos) {
+                limit = Math.max(minLimit, limit * backoff);
+                lastDecrease = now;
+            }
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.ecommerce.app.resilience;
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker.
+ *
+ * CLOSED: calls pass and their outcomes fill a sliding window of the last
+ * {@code windowSize} calls. Once the window holds at least {@code minimumCalls}
+ * outcomes and the failure rate reaches the threshold, the breaker opens.
+ *
+ * OPEN: calls are rejected without touching the database until
+ * {@code openMillis} has passed, then the breaker goes half-open.
+ *
+ * HALF_OPEN: only {@code halfOpenCalls} trial calls are let through. If all of
+ * them succeed the breaker closes with an empty window; any failure opens it again.
+ *
+ * State changes are rare and every call already waits on a network round trip,
+ * so the methods are simply synchronized.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+    private final Consumer<State> onTransition;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openMillis,
+                          int halfOpenCalls, LongSupplier clock, Consumer<State> onTransition) {
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+        this.onTransition = onTransition;
+    }
+
+    /**
+     * Asks to make a call. Every permitted call must be followed by exactly one of
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     * @return true if the call may proceed
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openMillis) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) {
+                return false;
+            }
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit whose call was never made or whose outcome says nothing
+     * about database health
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && trialsStarted > trialsSucceeded) {
+            trialsStarted--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void transition(State target) {
+        state = target;
+        if (target == State.OPEN) {
+            openedAt = clock.getAsLong();
+        } else if (target == State.HALF_OPEN) {
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        } else {
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+        onTransition.accept(target);
+    }
+}
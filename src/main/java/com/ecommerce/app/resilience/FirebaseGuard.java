@@ -0,0 +1,292 @@
+package com.ecommerce.app.resilience;
+
+import com.ecommerce.app.metrics.FirebaseMetrics.Operation;
+import com.google.firebase.database.DatabaseException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Keeps a stalled or failing Firebase from taking the server down with it.
+ *
+ * - Timeouts: every admitted operation's future fails with a TimeoutException after
+ *   {@code firebase.timeout.<operation>} ms (default {@code firebase.timeout.default-ms}).
+ *   The Firebase listener itself cannot be cancelled; a late answer is simply ignored.
+ * - Circuit breaker: timeouts and database errors are counted; when too many recent
+ *   calls fail, operations are rejected immediately until the database recovers.
+ *   Failures such as "Order not found" mean the database answered and count as successes.
+ * - Bulkheads: reads and writes take permits from separate pools, so a burst of slow
+ *   list reads cannot use up the capacity that checkouts need, and vice versa.
+ * - Adaptive limit: within the bulkheads, an {@link AdaptiveLimiter} caps how many
+ *   operations run at once based on Firebase latency. List reads are LOW priority,
+ *   placing orders and the per-request user lookup are CRITICAL.
+ * - Fallback: product and order reads remember their last good result and serve it,
+ *   up to {@code firebase.fallback.max-stale-ms} old, when the database is unavailable.
+ *   User reads never fall back, so stale roles and password hashes are not trusted.
+ *
+ * Meters: firebase.circuit.state (0 closed, 1 open, 2 half-open),
+ * firebase.circuit.transitions (tag "state"), firebase.calls.rejected (tags "pool",
+ * "reason"), firebase.calls.timeout and firebase.fallback.served (tag "operation"),
+ * firebase.bulkhead.available (tag "pool"), plus the limiter's concurrency.* meters
+ * tagged limiter=firebase.
+ */
+@Component
+public class FirebaseGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(FirebaseGuard.class);
+
+    private static final Set<Operation> WRITES = EnumSet.of(
+            Operation.SAVE_USER, Operation.UPDATE_USER_ROLE, Operation.UPDATE_USER_PASSWORD, Operation.DELETE_USER,
+            Operation.SAVE_PRODUCT, Operation.UPDATE_PRODUCT, Operation.DELETE_PRODUCT,
+            Operation.SAVE_ORDER, Operation.UPDATE_ORDER_STATUS, Operation.SAVE_CARTS);
+
+    private static final Set<Operation> CRITICAL = EnumSet.of(Operation.SAVE_ORDER, Operation.GET_USER_BY_EMAIL);
+
+    private static final Set<Operation> LOW = EnumSet.of(
+            Operation.GET_ALL_USERS, Operation.GET_ALL_PRODUCTS, Operation.GET_ALL_ORDERS);
+
+    private final CircuitBreaker breaker;
+    private final Semaphore readPermits;
+    private final Semaphore writePermits;
+    private final AdaptiveLimiter limiter;
+    private final long[] timeoutMillis;
+    private final Counter[] timeouts;
+    private final Counter[] fallbacksServed;
+    private final Counter readRejectedOpen;
+    private final Counter readRejectedFull;
+    private final Counter writeRejectedOpen;
+    private final Counter writeRejectedFull;
+    private final Map<String, Cached> fallback;
+    private final long maxStaleMillis;
+
+    @Autowired
+    public FirebaseGuard(MeterRegistry registry, Environment environment,
+                         @Value("${firebase.bulkhead.read-permits:64}") int readPermits,
+                         @Value("${firebase.bulkhead.write-permits:32}") int writePermits,
+                         @Value("${firebase.circuit.window-size:50}") int windowSize,
+                         @Value("${firebase.circuit.minimum-calls:20}") int minimumCalls,
+                         @Value("${firebase.circuit.failure-rate:0.5}") double failureRate,
+                         @Value("${firebase.circuit.open-ms:10000}") long openMillis,
+                         @Value("${firebase.circuit.half-open-calls:5}") int halfOpenCalls,
+                         @Value("${firebase.fallback.max-entries:1000}") int maxEntries,
+                         @Value("${firebase.fallback.max-stale-ms:600000}") long maxStaleMillis) {
+        this.readPermits = new Semaphore(readPermits);
+        this.writePermits = new Semaphore(writePermits);
+        this.maxStaleMillis = maxStaleMillis;
+
+        Map<CircuitBreaker.State, Counter> transitions = new LinkedHashMap<>();
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            transitions.put(state, Counter.builder("firebase.circuit.transitions")
+                    .description("Circuit breaker state changes")
+                    .tag("state", state.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        this.breaker = new CircuitBreaker(windowSize, minimumCalls, failureRate, openMillis, halfOpenCalls,
+                System::currentTimeMillis, state -> {
+                    transitions.get(state).increment();
+                    logger.warn("Firebase circuit breaker is now {}", state);
+                });
+        Gauge.builder("firebase.circuit.state", breaker, b -> b.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        Gauge.builder("firebase.bulkhead.available", this.readPermits, Semaphore::availablePermits)
+                .tag("pool", "read")
+                .register(registry);
+        Gauge.builder("firebase.bulkhead.available", this.writePermits, Semaphore::availablePermits)
+                .tag("pool", "write")
+                .register(registry);
+        readRejectedOpen = rejected(registry, "read", "circuit_open");
+        readRejectedFull = rejected(registry, "read", "bulkhead_full");
+        writeRejectedOpen = rejected(registry, "write", "circuit_open");
+        writeRejectedFull = rejected(registry, "write", "bulkhead_full");
+
+        limiter = new AdaptiveLimiter("firebase",
+                environment.getProperty("firebase.limit.initial", Integer.class, 64),
+                environment.getProperty("firebase.limit.min", Integer.class, 8),
+                environment.getProperty("firebase.limit.max", Integer.class, readPermits + writePermits),
+                environment.getProperty("firebase.limit.latency-tolerance", Double.class, 2.0),
+                0.9, System::nanoTime, registry);
+
+        long defaultTimeout = environment.getProperty("firebase.timeout.default-ms", Long.class, 5000L);
+        Operation[] operations = Operation.values();
+        timeoutMillis = new long[operations.length];
+        timeouts = new Counter[operations.length];
+        fallbacksServed = new Counter[operations.length];
+        for (Operation operation : operations) {
+            int i = operation.ordinal();
+            timeoutMillis[i] = environment.getProperty("firebase.timeout." + operation.tagValue(), Long.class,
+                    defaultTimeout);
+            timeouts[i] = Counter.builder("firebase.calls.timeout")
+                    .description("Firebase operations abandoned after their timeout")
+                    .tag("operation", operation.tagValue())
+                    .register(registry);
+            fallbacksServed[i] = Counter.builder("firebase.fallback.served")
+                    .description("Reads answered from the last known good result")
+                    .tag("operation", operation.tagValue())
+                    .register(registry);
+        }
+
+        // Access-ordered LinkedHashMap as a small LRU; guarded by its own monitor
+        fallback = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Admits an operation before it touches Firebase. On success the future gets the
+     * operation's timeout and gives its permit back when it completes; otherwise it is
+     * failed with a {@link FirebaseUnavailableException} and the caller must skip the call.
+     * @param operation The operation about to run
+     * @param future The future the operation will complete
+     * @return true if the caller may go ahead and call Firebase
+     */
+    public boolean admit(Operation operation, CompletableFuture<?> future) {
+        boolean write = WRITES.contains(operation);
+        if (!breaker.tryAcquire()) {
+            (write ? writeRejectedOpen : readRejectedOpen).increment();
+            future.completeExceptionally(new FirebaseUnavailableException(
+                    operation.tagValue() + " rejected: circuit breaker is open"));
+            return false;
+        }
+        Semaphore permits = write ? writePermits : readPermits;
+        if (!permits.tryAcquire()) {
+            breaker.onIgnored();
+            (write ? writeRejectedFull : readRejectedFull).increment();
+            future.completeExceptionally(new FirebaseUnavailableException(
+                    operation.tagValue() + " rejected: " + (write ? "write" : "read") + " bulkhead is full"));
+            return false;
+        }
+
+        if (!limiter.tryAcquire(priorityOf(operation))) {
+            permits.release();
+            breaker.onIgnored();
+            future.completeExceptionally(new FirebaseUnavailableException(
+                    operation.tagValue() + " rejected: concurrency limit reached"));
+            return false;
+        }
+
+        int i = operation.ordinal();
+        long started = System.nanoTime();
+        future.orTimeout(timeoutMillis[i], TimeUnit.MILLISECONDS);
+        future.whenComplete((result, throwable) -> {
+            permits.release();
+            Throwable cause = unwrap(throwable);
+            if (cause instanceof TimeoutException) {
+                timeouts[i].increment();
+                limiter.release(System.nanoTime() - started, true);
+                breaker.onFailure();
+            } else if (cause instanceof DatabaseException) {
+                limiter.release(System.nanoTime() - started, false);
+                breaker.onFailure();
+            } else if (cause instanceof FirebaseUnavailableException) {
+                // A nested operation was rejected; it says nothing new about the database
+                limiter.releaseIgnored();
+                breaker.onIgnored();
+            } else {
+                limiter.release(System.nanoTime() - started, false);
+                breaker.onSuccess();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Remembers the read's result and, if the database is unavailable, answers with
+     * the last good result for the same key instead
+     * @param operation The read operation
+     * @param key Identifies what was read, e.g. "orders/ORD-0001"
+     * @param future The read's future
+     * @return A future with the fresh or remembered result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> withFallback(Operation operation, String key, CompletableFuture<T> future) {
+        return future.handle((result, throwable) -> {
+            if (throwable == null) {
+                synchronized (fallback) {
+                    if (result != null) {
+                        fallback.put(key, new Cached(result, System.currentTimeMillis()));
+                    } else {
+                        fallback.remove(key);
+                    }
+                }
+                return CompletableFuture.completedFuture(result);
+            }
+            if (isUnavailable(unwrap(throwable))) {
+                Cached cached;
+                synchronized (fallback) {
+                    cached = fallback.get(key);
+                }
+                if (cached != null && System.currentTimeMillis() - cached.storedAt <= maxStaleMillis) {
+                    fallbacksServed[operation.ordinal()].increment();
+                    return CompletableFuture.completedFuture((T) cached.value);
+                }
+            }
+            return CompletableFuture.<T>failedFuture(throwable);
+        }).thenCompose(Function.identity());
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return breaker.getState();
+    }
+
+    private static AdaptiveLimiter.Priority priorityOf(Operation operation) {
+        if (CRITICAL.contains(operation)) {
+            return AdaptiveLimiter.Priority.CRITICAL;
+        }
+        return LOW.contains(operation) ? AdaptiveLimiter.Priority.LOW : AdaptiveLimiter.Priority.NORMAL;
+    }
+
+    private static boolean isUnavailable(Throwable cause) {
+        return cause instanceof TimeoutException
+                || cause instanceof DatabaseException
+                || cause instanceof FirebaseUnavailableException;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+                && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    private static Counter rejected(MeterRegistry registry, String pool, String reason) {
+        return Counter.builder("firebase.calls.rejected")
+                .description("Firebase operations refused without calling the database")
+                .tag("pool", pool)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static final class Cached {
+        final Object value;
+        final long storedAt;
+
+        Cached(Object value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+}
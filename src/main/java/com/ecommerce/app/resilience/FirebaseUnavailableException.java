@@ -0,0 +1,14 @@
+package com.ecommerce.app.resilience;
+
+/**
+ * Thrown instead of calling Firebase when the circuit breaker is open or the
+ * operation's bulkhead is full
+ */
+public class FirebaseUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public FirebaseUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,116 @@
+package com.ecommerce.app.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits API requests through an {@link AdaptiveLimiter} and answers the rest with
+ * 503 and Retry-After before any session, security or Firebase work is done.
+ *
+ * Priorities: checkout (POST /api/orders and /api/cart/checkout) is CRITICAL, admin and delta sync traffic
+ * is LOW, everything else under /api is NORMAL. The order status stream is not
+ * limited because its connections stay open for minutes without doing work.
+ * A request's latency is measured until its async response completes.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private final AdaptiveLimiter limiter;
+    private final boolean enabled;
+    private final String retryAfterSeconds;
+
+    @Autowired
+    public LoadSheddingFilter(MeterRegistry registry,
+                              @Value("${load-shedding.enabled:true}") boolean enabled,
+                              @Value("${load-shedding.initial-limit:100}") int initialLimit,
+                              @Value("${load-shedding.min-limit:10}") int minLimit,
+                              @Value("${load-shedding.max-limit:1000}") int maxLimit,
+                              @Value("${load-shedding.latency-tolerance:2.0}") double tolerance,
+                              @Value("${load-shedding.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = Integer.toString(retryAfterSeconds);
+        this.limiter = new AdaptiveLimiter("http", initialLimit, minLimit, maxLimit, tolerance, 0.9,
+                System::nanoTime, registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled || !path.startsWith("/api/") || path.equals("/api/orders/stream");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!limiter.tryAcquire(priorityOf(request))) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            return;
+        }
+
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                // The container calls onComplete after a timeout or error too; release once, there
+                AtomicBoolean timedOut = new AtomicBoolean();
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        limiter.release(System.nanoTime() - started, timedOut.get());
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        timedOut.set(true);
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                limiter.release(System.nanoTime() - started, failed);
+            }
+        }
+    }
+
+    static AdaptiveLimiter.Priority priorityOf(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        if ((path.equals("/api/orders") || path.equals("/api/cart/checkout")) && "POST".equals(request.getMethod())) {
+            return AdaptiveLimiter.Priority.CRITICAL;
+        }
+        if (path.startsWith("/api/admin/") || path.startsWith("/api/sync")) {
+            return AdaptiveLimiter.Priority.LOW;
+        }
+        return AdaptiveLimiter.Priority.NORMAL;
+    }
+
+    AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+}
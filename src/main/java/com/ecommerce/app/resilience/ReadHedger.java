@@ -0,0 +1,185 @@
+package com.ecommerce.app.resilience;
+
+import com.ecommerce.app.metrics.FirebaseMetrics.Operation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Hedged reads: if a read has not answered after its usual p95 latency, a second,
+ * equivalent read is sent and whichever answers first is used. A few slow
+ * responses then cost roughly the p95 instead of their full latency.
+ *
+ * Hedging is enabled per operation with {@code firebase.hedge.operations}. The delay
+ * is the {@code firebase.hedge.percentile} of that operation's recent latencies,
+ * and hedges are paid for from a token bucket that earns
+ * {@code firebase.hedge.budget-percent} of a token per read, so hedges can never
+ * add more than that share of extra load.
+ *
+ * Meters (tag "operation"): firebase.hedge.sent, firebase.hedge.wins (the hedge
+ * answered first), firebase.hedge.skipped (no budget left), firebase.hedge.delay (gauge, ms).
+ */
+@Component
+public class ReadHedger {
+
+    // Hedges that may be sent back to back after a quiet period
+    private static final double MAX_TOKENS = 10;
+
+    private static final int SAMPLES = 512;
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final Tracker[] trackers = new Tracker[Operation.values().length];
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public ReadHedger(MeterRegistry registry, Environment environment) {
+        String[] operations = environment.getProperty("firebase.hedge.operations", String[].class, new String[0]);
+        double percentile = environment.getProperty("firebase.hedge.percentile", Double.class, 0.95);
+        long minDelay = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("firebase.hedge.min-delay-ms", Long.class, 5L));
+        long initialDelay = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("firebase.hedge.initial-delay-ms", Long.class, 100L));
+        double budget = environment.getProperty("firebase.hedge.budget-percent", Double.class, 5.0) / 100;
+
+        for (String name : operations) {
+            Operation operation = Operation.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            trackers[operation.ordinal()] = new Tracker(registry, operation, percentile, minDelay, initialDelay, budget);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "read-hedger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs a read, hedging it with a second read if it is slow and hedging is enabled
+     * for the operation
+     * @param operation The read operation
+     * @param primary Starts the normal read
+     * @param hedge Starts the duplicate read; should reach Firebase as a separate request
+     * @return The first successful answer, or the primary read's failure
+     */
+    public <T> CompletableFuture<T> read(Operation operation, Supplier<CompletableFuture<T>> primary,
+                                         Supplier<CompletableFuture<T>> hedge) {
+        Tracker tracker = trackers[operation.ordinal()];
+        if (tracker == null) {
+            return primary.get();
+        }
+
+        long started = System.nanoTime();
+        CompletableFuture<T> first = primary.get();
+        tracker.earn();
+        first.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                tracker.record(System.nanoTime() - started);
+            }
+        });
+        if (first.isDone()) {
+            return first;
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (!tracker.spend()) {
+                tracker.skipped.increment();
+                return;
+            }
+            tracker.sent.increment();
+            hedge.get().whenComplete((value, throwable) -> {
+                if (throwable == null && result.complete(value)) {
+                    tracker.wins.increment();
+                }
+            });
+        }, tracker.delayNanos, TimeUnit.NANOSECONDS);
+
+        first.whenComplete((value, throwable) -> {
+            timer.cancel(false);
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class Tracker {
+        final Counter sent;
+        final Counter wins;
+        final Counter skipped;
+        final double percentile;
+        final long minDelayNanos;
+        final double budget;
+        final long[] samples = new long[SAMPLES];
+
+        volatile long delayNanos;
+        int count;
+        double tokens = MAX_TOKENS;
+
+        Tracker(MeterRegistry registry, Operation operation, double percentile, long minDelayNanos,
+                long initialDelayNanos, double budget) {
+            this.percentile = percentile;
+            this.minDelayNanos = minDelayNanos;
+            this.budget = budget;
+            this.delayNanos = initialDelayNanos;
+            sent = counter(registry, "firebase.hedge.sent", "Duplicate reads sent", operation);
+            wins = counter(registry, "firebase.hedge.wins", "Reads answered by the duplicate first", operation);
+            skipped = counter(registry, "firebase.hedge.skipped", "Hedges not sent because the budget was spent",
+                    operation);
+            Gauge.builder("firebase.hedge.delay", this, tracker -> tracker.delayNanos / 1e6)
+                    .description("Time a read may take before it is hedged")
+                    .baseUnit("milliseconds")
+                    .tag("operation", operation.tagValue())
+                    .register(registry);
+        }
+
+        synchronized void record(long latencyNanos) {
+            samples[count % SAMPLES] = latencyNanos;
+            count++;
+            if (count >= RECOMPUTE_EVERY && count % RECOMPUTE_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(samples, Math.min(count, SAMPLES));
+                Arrays.sort(sorted);
+                delayNanos = Math.max(minDelayNanos, sorted[(int) (percentile * (sorted.length - 1))]);
+            }
+        }
+
+        synchronized void earn() {
+            tokens = Math.min(MAX_TOKENS, tokens + budget);
+        }
+
+        synchronized boolean spend() {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        private static Counter counter(MeterRegistry registry, String name, String description, Operation operation) {
+            return Counter.builder(name)
+                    .description(description)
+                    .tag("operation", operation.tagValue())
+                    .register(registry);
+        }
+    }
+}
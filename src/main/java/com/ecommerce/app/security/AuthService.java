@@ -2,24 +2,29 @@ package com.ecommerce.app.security;
 
 import com.ecommerce.app.model.User;
 import com.ecommerce.app.service.FirebaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class AuthService implements UserDetailsService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
+
     @Autowired
     private FirebaseService firebaseService;
 
-
-    private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Autowired
+    private PasswordHasher passwordHasher;
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
@@ -52,57 +57,97 @@ public class AuthService implements UserDetailsService {
         return firebaseService.getUserByEmail(email).get();
     }
 
-
-    public String hashPassword(String plainPassword) {
-        return passwordEncoder.encode(plainPassword);
-    }
-
-    public boolean verifyPassword(String plainPassword, String hashedPassword) {
-        return passwordEncoder.matches(plainPassword, hashedPassword);
+    public User getUserById(String userId) throws Exception {
+        return firebaseService.getUserById(userId).get();
     }
 
-    public User authenticateUser(String email, String password) throws Exception {
-        User user = firebaseService.getUserByEmail(email).get();
-        if (user == null) {
-            throw new RuntimeException("User not found");
+    /**
+     * Principal of an authenticated request. Sessions created before the principal carried
+     * the user id fall back to one lookup by email.
+     * @param authentication Authentication of the current request
+     * @return CompletableFuture containing the principal, or null if the user no longer exists
+     */
+    public CompletableFuture<AuthenticatedUser> resolvePrincipal(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser) {
+            return CompletableFuture.completedFuture((AuthenticatedUser) authentication.getPrincipal());
         }
+        return firebaseService.getUserByEmail(authentication.getName())
+                .thenApply(user -> user != null ? AuthenticatedUser.from(user) : null);
+    }
 
-        if (!verifyPassword(password, user.getPassword())) {
-            throw new RuntimeException("Invalid credentials");
-        }
 
-        return user;
+    /**
+     * Checks a user's credentials on the password hashing pool. A hash made with a lower
+     * cost than configured is upgraded in the background when the pool is idle.
+     * @param email The user's email
+     * @param password The password to check
+     * @return CompletableFuture containing the user; fails if the credentials are wrong or
+     *         with a {@link PasswordHasherBusyException} if the pool is saturated
+     */
+    public CompletableFuture<User> authenticateUser(String email, String password) {
+        return firebaseService.getUserByEmail(email).thenCompose(user -> {
+            if (user == null) {
+                return CompletableFuture.failedFuture(new RuntimeException("User not found"));
+            }
+            return passwordHasher.verify(password, user.getPassword()).thenApply(matches -> {
+                if (!matches) {
+                    throw new RuntimeException("Invalid credentials");
+                }
+                rehashIfOutdated(user, password);
+                return user;
+            });
+        });
     }
 
-    public User registerUser(String username, String email, String password) throws Exception {
-        User existingUser = firebaseService.getUserByEmail(email).get();
-        if (existingUser != null) {
-            throw new RuntimeException("User already exists with this email");
-        }
+    /**
+     * @param username Display name
+     * @param email Email, which must not be registered yet
+     * @param password Plain password to hash
+     * @return CompletableFuture containing the saved customer
+     */
+    public CompletableFuture<User> registerUser(String username, String email, String password) {
+        return register(username, email, password, "CUSTOMER"); // Default role
+    }
 
-        String hashedPassword = hashPassword(password);
-        User user = new User();
-        user.setUsername(username);
-        user.setEmail(email);
-        user.setPassword(hashedPassword);
-        user.setRole("CUSTOMER"); // Default role
+    /**
+     * @param username Display name
+     * @param email Email, which must not be registered yet
+     * @param password Plain password to hash
+     * @return CompletableFuture containing the saved admin
+     */
+    public CompletableFuture<User> registerAdmin(String username, String email, String password) {
+        return register(username, email, password, "ADMIN");
+    }
 
-        return firebaseService.saveUser(user).get();
+    private CompletableFuture<User> register(String username, String email, String password, String role) {
+        return firebaseService.getUserByEmail(email).thenCompose(existingUser -> {
+            if (existingUser != null) {
+                return CompletableFuture.failedFuture(new RuntimeException("User already exists with this email"));
+            }
+            return passwordHasher.hash(password);
+        }).thenCompose(hashedPassword -> {
+            User user = new User();
+            user.setUsername(username);
+            user.setEmail(email);
+            user.setPassword(hashedPassword);
+            user.setRole(role);
+            return firebaseService.saveUser(user);
+        });
     }
 
-    public User registerAdmin(String username, String email, String password) throws Exception {
-        User existingUser = firebaseService.getUserByEmail(email).get();
-        if (existingUser != null) {
-            throw new RuntimeException("User already exists with this email");
+    // Best effort: a failed or skipped upgrade is retried at the next login
+    private void rehashIfOutdated(User user, String password) {
+        if (!passwordHasher.needsRehash(user.getPassword()) || !passwordHasher.isIdle()) {
+            return;
         }
-
-        String hashedPassword = hashPassword(password);
-        User user = new User();
-        user.setUsername(username);
-        user.setEmail(email);
-        user.setPassword(hashedPassword);
-        user.setRole("ADMIN"); // Admin role
-
-        return firebaseService.saveUser(user).get();
+        passwordHasher.hash(password)
+                .thenCompose(hashedPassword -> firebaseService.updateUserPassword(user.getId(), hashedPassword))
+                .whenComplete((ignored, throwable) -> {
+                    if (throwable != null) {
+                        logger.debug("Password rehash skipped for user {}: {}", user.getId(), throwable.getMessage());
+                    } else {
+                        logger.info("Password hash upgraded for user {}", user.getId());
+                    }
+                });
     }
 }
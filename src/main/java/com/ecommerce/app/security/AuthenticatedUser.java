@@ -0,0 +1,92 @@
+package com.ecommerce.app.security;
+
+import com.ecommerce.app.model.User;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Principal put in the security context at login or read from an access token. It
+ * holds the user id, email and role the user had when they authenticated, so
+ * controllers can act on the current user without looking them up. Serializable
+ * because sessions are persisted across restarts.
+ */
+public final class AuthenticatedUser implements AuthenticatedPrincipal, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String userId;
+    private final String email;
+    private final String role;
+    private final long authenticatedAt;
+
+    public AuthenticatedUser(String userId, String email, String role, long authenticatedAt) {
+        this.userId = userId;
+        this.email = email;
+        this.role = role == null || role.trim().isEmpty() ? "CUSTOMER" : role;
+        this.authenticatedAt = authenticatedAt;
+    }
+
+    /**
+     * @param user User who just proved their credentials
+     * @return Principal authenticated now
+     */
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getRole(), System.currentTimeMillis());
+    }
+
+    /**
+     * @return The principal of the current request, or null when it is anonymous or
+     *         was authenticated some other way
+     */
+    public static AuthenticatedUser current() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser) {
+            return (AuthenticatedUser) authentication.getPrincipal();
+        }
+        return null;
+    }
+
+    /**
+     * @return The email, which stays the principal name for {@code Authentication.getName()}
+     */
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * @return Epoch millis of the login or token issue this principal comes from
+     */
+    public long getAuthenticatedAt() {
+        return authenticatedAt;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        String authority = role.startsWith("ROLE_") ? role : "ROLE_" + role;
+        return Collections.singletonList(new SimpleGrantedAuthority(authority));
+    }
+
+    @Override
+    public String toString() {
+        return email;
+    }
+}
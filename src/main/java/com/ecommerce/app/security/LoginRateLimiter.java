@@ -0,0 +1,160 @@
+package com.ecommerce.app.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits login attempts per account (email) and per client address before any
+ * Firebase lookup or password hash is done.
+ *
+ * Each key is a token bucket kept as a single timestamp (the generic cell rate
+ * algorithm): the time at which the bucket would be full again. An attempt moves
+ * it forward by one interval with a compare-and-set, so checks take no locks and
+ * keys never contend with each other. A key whose bucket is full again holds no
+ * information and is dropped by a periodic sweep. If a bucket map still reaches
+ * {@code auth.rate-limit.max-keys}, new keys share one overflow bucket, so spraying
+ * random emails or addresses cannot grow memory or escape the limit.
+ *
+ * Meters: auth.login.throttled (tag "key" = email/ip), auth.login.rate.keys (gauge,
+ * tag "key").
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final boolean enabled;
+    private final Buckets byEmail;
+    private final Buckets byAddress;
+
+    @Autowired
+    public LoginRateLimiter(MeterRegistry registry,
+                            @Value("${auth.rate-limit.enabled:true}") boolean enabled,
+                            @Value("${auth.rate-limit.email.per-minute:5}") double emailPerMinute,
+                            @Value("${auth.rate-limit.email.burst:5}") int emailBurst,
+                            @Value("${auth.rate-limit.ip.per-minute:30}") double addressPerMinute,
+                            @Value("${auth.rate-limit.ip.burst:30}") int addressBurst,
+                            @Value("${auth.rate-limit.max-keys:100000}") int maxKeys) {
+        this(registry, enabled, emailPerMinute, emailBurst, addressPerMinute, addressBurst, maxKeys, System::nanoTime);
+    }
+
+    LoginRateLimiter(MeterRegistry registry, boolean enabled, double emailPerMinute, int emailBurst,
+                     double addressPerMinute, int addressBurst, int maxKeys, LongSupplier clock) {
+        this.enabled = enabled;
+        this.byEmail = new Buckets(registry, "email", emailPerMinute, emailBurst, maxKeys, clock);
+        this.byAddress = new Buckets(registry, "ip", addressPerMinute, addressBurst, maxKeys, clock);
+    }
+
+    /**
+     * Takes one attempt from the client address's bucket, then from the account's
+     * @param email Email the client is trying to sign in as
+     * @param address Client IP address
+     * @return 0 if the attempt may go ahead, otherwise the nanoseconds until one would
+     */
+    public long tryAcquire(String email, String address) {
+        if (!enabled) {
+            return 0;
+        }
+        long wait = byAddress.tryAcquire(address == null ? "" : address);
+        if (wait > 0) {
+            return wait;
+        }
+        return byEmail.tryAcquire(email == null ? "" : email.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Drops keys whose buckets have refilled
+     */
+    @Scheduled(fixedDelayString = "${auth.rate-limit.sweep-interval-ms:60000}",
+               initialDelayString = "${auth.rate-limit.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        byEmail.evictIdle();
+        byAddress.evictIdle();
+    }
+
+    int size() {
+        return byEmail.cells.size() + byAddress.cells.size();
+    }
+
+    private static final class Buckets {
+        final ConcurrentHashMap<String, AtomicLong> cells = new ConcurrentHashMap<>();
+        final AtomicLong overflow;
+        final AtomicBoolean sweeping = new AtomicBoolean();
+        final Counter throttled;
+        final long intervalNanos;
+        final long capacityNanos;
+        final int maxKeys;
+        final LongSupplier clock;
+
+        Buckets(MeterRegistry registry, String key, double perMinute, int burst, int maxKeys, LongSupplier clock) {
+            this.intervalNanos = (long) (TimeUnit.MINUTES.toNanos(1) / perMinute);
+            this.capacityNanos = intervalNanos * Math.max(1, burst);
+            this.maxKeys = maxKeys;
+            this.clock = clock;
+            this.overflow = new AtomicLong(clock.getAsLong());
+            this.throttled = Counter.builder("auth.login.throttled")
+                    .description("Login attempts refused by the rate limiter")
+                    .tag("key", key)
+                    .register(registry);
+            Gauge.builder("auth.login.rate.keys", cells, ConcurrentHashMap::size)
+                    .description("Keys with a partly used login rate bucket")
+                    .tag("key", key)
+                    .register(registry);
+        }
+
+        long tryAcquire(String key) {
+            long now = clock.getAsLong();
+            AtomicLong cell = cells.get(key);
+            if (cell == null) {
+                cell = insert(key, now);
+            }
+            while (true) {
+                long full = cell.get();
+                long next = Math.max(full, now) + intervalNanos;
+                if (next - now > capacityNanos) {
+                    throttled.increment();
+                    return next - now - capacityNanos;
+                }
+                if (cell.compareAndSet(full, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        private AtomicLong insert(String key, long now) {
+            if (cells.size() >= maxKeys) {
+                evictIdle();
+                if (cells.size() >= maxKeys) {
+                    return overflow;
+                }
+            }
+            AtomicLong created = new AtomicLong(now);
+            AtomicLong existing = cells.putIfAbsent(key, created);
+            return existing != null ? existing : created;
+        }
+
+        void evictIdle() {
+            // One sweep at a time; a caller that loses the race simply goes on. An attempt racing
+            // with the removal of its cell is forgotten, which costs at most one extra attempt
+            if (!sweeping.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                long now = clock.getAsLong();
+                cells.values().removeIf(cell -> cell.get() <= now);
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+}
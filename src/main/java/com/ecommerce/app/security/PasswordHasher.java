@@ -0,0 +1,183 @@
+package com.ecommerce.app.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt hashing and verification on a small dedicated pool instead of the
+ * request threads, so a burst of logins can use at most {@code auth.hash.threads}
+ * cores (default: all of them, but never more) and catalog traffic keeps the rest
+ * of the request threads.
+ *
+ * Admission control: at most {@code auth.hash.queue-capacity} tasks wait for a
+ * thread; beyond that, and for tasks that waited longer than
+ * {@code auth.hash.max-queue-ms} before starting, the future fails at once with a
+ * {@link PasswordHasherBusyException} rather than adding to the backlog.
+ *
+ * The cost factor is {@code auth.bcrypt.cost}. Hashes made with a lower cost still
+ * verify and {@link #needsRehash} reports them, so they can be upgraded at login.
+ *
+ * Meters: auth.hash.queue.depth and auth.hash.active (gauges), auth.hash.queue.wait
+ * (timer), auth.hash.service (timer, tag "operation" = hash/verify), auth.hash.rejected
+ * (tag "reason" = queue_full/queue_timeout).
+ */
+@Component
+public class PasswordHasher {
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueNanos;
+    private final Timer queueWait;
+    private final Timer hashTime;
+    private final Timer verifyTime;
+    private final Counter rejectedFull;
+    private final Counter rejectedTimeout;
+
+    @Autowired
+    public PasswordHasher(MeterRegistry registry,
+                          @Value("${auth.bcrypt.cost:10}") int cost,
+                          @Value("${auth.hash.threads:0}") int threads,
+                          @Value("${auth.hash.queue-capacity:32}") int queueCapacity,
+                          @Value("${auth.hash.max-queue-ms:1000}") long maxQueueMillis) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.encoder = new BCryptPasswordEncoder(cost);
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueMillis);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.hash.queue.depth", executor, e -> e.getQueue().size())
+                .description("Password hashing tasks waiting for a thread")
+                .register(registry);
+        Gauge.builder("auth.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing tasks running")
+                .register(registry);
+        queueWait = Timer.builder("auth.hash.queue.wait")
+                .description("Time password hashing tasks waited for a thread")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        hashTime = serviceTimer(registry, "hash");
+        verifyTime = serviceTimer(registry, "verify");
+        rejectedFull = rejected(registry, "queue_full");
+        rejectedTimeout = rejected(registry, "queue_timeout");
+    }
+
+    /**
+     * Hashes a password with the configured cost
+     * @param plainPassword The password
+     * @return CompletableFuture containing the BCrypt hash
+     */
+    public CompletableFuture<String> hash(String plainPassword) {
+        return submit(hashTime, () -> encoder.encode(plainPassword));
+    }
+
+    /**
+     * Checks a password against its stored hash
+     * @param plainPassword The password to check
+     * @param hashedPassword The stored BCrypt hash
+     * @return CompletableFuture containing true if the password matches
+     */
+    public CompletableFuture<Boolean> verify(String plainPassword, String hashedPassword) {
+        return submit(verifyTime, () -> encoder.matches(plainPassword, hashedPassword));
+    }
+
+    /**
+     * @param hashedPassword A stored BCrypt hash
+     * @return True if it was made with a lower cost than the configured one
+     */
+    public boolean needsRehash(String hashedPassword) {
+        return hashedPassword != null && encoder.upgradeEncoding(hashedPassword);
+    }
+
+    /**
+     * @return True if a task submitted now would start without waiting, so optional work
+     *         such as rehashing does not delay logins
+     */
+    public boolean isIdle() {
+        return executor.getQueue().isEmpty() && executor.getActiveCount() < executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @param throwable A failure, possibly wrapped by a future
+     * @return True if it was caused by the pool refusing work
+     */
+    public static boolean isBusy(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PasswordHasherBusyException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> submit(Timer serviceTime, Supplier<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long enqueued = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long started = System.nanoTime();
+                queueWait.record(started - enqueued, TimeUnit.NANOSECONDS);
+                // The caller has likely given up by now; spend the CPU on a request that is still waiting
+                if (started - enqueued > maxQueueNanos) {
+                    rejectedTimeout.increment();
+                    future.completeExceptionally(new PasswordHasherBusyException("Password hashing queue wait exceeded"));
+                    return;
+                }
+                T result;
+                try {
+                    result = work.get();
+                } catch (RuntimeException e) {
+                    serviceTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    future.completeExceptionally(e);
+                    return;
+                }
+                serviceTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedFull.increment();
+            future.completeExceptionally(new PasswordHasherBusyException("Password hashing queue is full"));
+        }
+        return future;
+    }
+
+    private static Timer serviceTimer(MeterRegistry registry, String operation) {
+        return Timer.builder("auth.hash.service")
+                .description("Time spent hashing or verifying a password")
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    private static Counter rejected(MeterRegistry registry, String reason) {
+        return Counter.builder("auth.hash.rejected")
+                .description("Password hashing tasks refused because the pool was saturated")
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,14 @@
+package com.ecommerce.app.security;
+
+/**
+ * Thrown instead of hashing or checking a password when the hashing pool's queue is
+ * full or the task waited in it longer than allowed
+ */
+public class PasswordHasherBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHasherBusyException(String message) {
+        super(message);
+    }
+}
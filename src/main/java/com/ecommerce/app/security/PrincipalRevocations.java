@@ -0,0 +1,129 @@
+package com.ecommerce.app.security;
+
+import com.ecommerce.app.invalidation.Invalidation;
+import com.ecommerce.app.invalidation.InvalidationBus;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers when each user's role last changed or their account was deleted, so
+ * principals authenticated before that moment, whether in a session or an access
+ * token, stop being accepted and the user has to sign in or refresh again.
+ *
+ * Each revocation is stored at revocations/{userId}, one entry per user that is
+ * overwritten by the next, and sent to the other nodes over the {@link InvalidationBus}
+ * so they stop accepting the user's sessions and tokens within a flush interval. The bus
+ * only keeps recent messages, so a starting node reads the stored revocations, and until
+ * it has them {@link RevokedPrincipalFilter} turns away signed-in requests.
+ */
+@Component
+public class PrincipalRevocations {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalRevocations.class);
+    private static final String REVOCATIONS = "revocations";
+
+    private final Map<String, Long> revokedBefore = new ConcurrentHashMap<>();
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private volatile boolean loaded;
+
+    @Autowired
+    private DatabaseReference databaseReference;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @PostConstruct
+    public void init() {
+        // Subscribe first, so a revocation made while the stored ones load is not missed
+        invalidationBus.addHandler(Invalidation.Entity.USER,
+                invalidation -> revokeBefore(invalidation.getId(), invalidation.getVersion()));
+        load();
+    }
+
+    /**
+     * Reads the stored revocations, unless they are loaded or being read already
+     */
+    @Scheduled(fixedDelayString = "${auth.revocations.load-retry-ms:5000}",
+            initialDelayString = "${auth.revocations.load-retry-ms:5000}")
+    public void load() {
+        if (loaded || !loading.compareAndSet(false, true)) {
+            return;
+        }
+        databaseReference.child(REVOCATIONS).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                for (DataSnapshot child : dataSnapshot.getChildren()) {
+                    Object value = child.getValue();
+                    if (value instanceof Number) {
+                        revokeBefore(child.getKey(), ((Number) value).longValue());
+                    }
+                }
+                loaded = true;
+                loading.set(false);
+                logger.info("Loaded {} principal revocations", revokedBefore.size());
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                loading.set(false);
+                logger.error("Failed to load principal revocations, retrying: {}", databaseError.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return True once the stored revocations have been read
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Rejects every principal of the user authenticated up to now, on every node
+     * @param userId ID of the user whose role changed or who was deleted
+     * @return CompletableFuture that completes once the revocation is stored, so nodes
+     *         started later apply it too
+     */
+    public CompletableFuture<Void> revoke(String userId) {
+        long now = System.currentTimeMillis();
+        revokeBefore(userId, now);
+        invalidationBus.publish(Invalidation.Entity.USER, userId, now);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        databaseReference.child(REVOCATIONS).child(userId).setValue(now, (databaseError, databaseReference) -> {
+            if (databaseError != null) {
+                logger.error("Failed to store revocation for user {}: {}", userId, databaseError.getMessage());
+                future.completeExceptionally(databaseError.toException());
+            } else {
+                future.complete(null);
+            }
+        });
+        return future;
+    }
+
+    private void revokeBefore(String userId, long time) {
+        revokedBefore.merge(userId, time, Math::max);
+    }
+
+    /**
+     * @param principal Principal of the current request
+     * @return True if it was authenticated before the user's last revocation
+     */
+    public boolean isRevoked(AuthenticatedUser principal) {
+        Long revokedAt = revokedBefore.get(principal.getUserId());
+        return revokedAt != null && principal.getAuthenticatedAt() < revokedAt;
+    }
+}
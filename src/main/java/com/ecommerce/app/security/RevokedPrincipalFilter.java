@@ -0,0 +1,54 @@
+package com.ecommerce.app.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Answers 401 to requests whose principal was revoked by a role change or account
+ * deletion, dropping the session so the next login starts clean, and 503 to signed-in
+ * requests until the node has read the stored revocations. The auth endpoints stay
+ * reachable so a user with a stale session can sign in again.
+ */
+public class RevokedPrincipalFilter extends OncePerRequestFilter {
+
+    private final PrincipalRevocations revocations;
+
+    public RevokedPrincipalFilter(PrincipalRevocations revocations) {
+        this.revocations = revocations;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/api/auth/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AuthenticatedUser principal = AuthenticatedUser.current();
+        if (principal != null && !revocations.isLoaded()) {
+            // Without the stored revocations a revoked principal would look valid; keep the session
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Starting up, try again shortly");
+            return;
+        }
+        if (principal != null && revocations.isRevoked(principal)) {
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                session.invalidate();
+            }
+            SecurityContextHolder.clearContext();
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Account changed, sign in again");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
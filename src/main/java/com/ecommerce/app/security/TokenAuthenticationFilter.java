@@ -0,0 +1,69 @@
+package com.ecommerce.app.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates requests carrying {@code Authorization: Bearer <access token>}
+ * from the token's claims alone. The principal is the same {@link AuthenticatedUser}
+ * a session login stores, so controllers work unchanged in either mode. A present but
+ * invalid or expired token is rejected with 401 rather than treated as anonymous,
+ * except under /api/auth/, where a client with a stale token must still be able to
+ * log in, refresh or register.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+    private static final String AUTH_PATH = "/api/auth/";
+
+    private final TokenService tokenService;
+    // Async dispatches of CompletableFuture responses reload the context from here
+    private final SecurityContextRepository contextRepository = new RequestAttributeSecurityContextRepository();
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        TokenService.Claims claims = tokenService.verify(header.substring(BEARER.length()).trim(), TokenService.ACCESS);
+        if (claims == null) {
+            if (request.getRequestURI().startsWith(AUTH_PATH)) {
+                chain.doFilter(request, response);
+                return;
+            }
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired access token");
+            return;
+        }
+
+        AuthenticatedUser principal = new AuthenticatedUser(claims.getUserId(), claims.getEmail(),
+                claims.getRole(), claims.getIssuedAtMillis());
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                principal, null, principal.getAuthorities());
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(authentication);
+        SecurityContextHolder.setContext(context);
+        contextRepository.saveContext(context, request, response);
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,239 @@
+package com.ecommerce.app.security;
+
+import com.ecommerce.app.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Issues and verifies signed tokens for stateless authentication.
+ *
+ * Tokens are JWTs signed with HMAC-SHA256 and carry the user id, email and role, so
+ * a request is authorized from the token alone without a session or database read.
+ * Keys come from a local key ring, {@code auth.token.keys=kid:base64secret,...}: the
+ * first key signs, every key verifies. To rotate, put a new key first on every node
+ * and drop the old one once the longest-lived refresh token signed with it expires.
+ */
+@Component
+public class TokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+
+    public static final String ACCESS = "access";
+    public static final String REFRESH = "refresh";
+
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final long CLOCK_SKEW_SECONDS = 30;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Verified contents of a token
+     */
+    public static final class Claims {
+        private final String userId;
+        private final String email;
+        private final String role;
+        private final String type;
+        private final long issuedAtMillis;
+        private final long expiresAt;
+
+        Claims(String userId, String email, String role, String type, long issuedAtMillis, long expiresAt) {
+            this.userId = userId;
+            this.email = email;
+            this.role = role;
+            this.type = type;
+            this.issuedAtMillis = issuedAtMillis;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getIssuedAtMillis() {
+            return issuedAtMillis;
+        }
+
+        /**
+         * @return Expiry in epoch seconds
+         */
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Mac> keys;
+    private final String signingKeyId;
+    private final long accessTtlSeconds;
+    private final long refreshTtlSeconds;
+    private final LongSupplier clock;
+
+    @Autowired
+    public TokenService(@Value("${auth.token.keys:}") String keys,
+                        @Value("${auth.token.access-ttl-seconds:900}") long accessTtlSeconds,
+                        @Value("${auth.token.refresh-ttl-seconds:1209600}") long refreshTtlSeconds) {
+        this(keys, accessTtlSeconds, refreshTtlSeconds, System::currentTimeMillis);
+    }
+
+    public TokenService(String keys, long accessTtlSeconds, long refreshTtlSeconds, LongSupplier clock) {
+        this.accessTtlSeconds = accessTtlSeconds;
+        this.refreshTtlSeconds = refreshTtlSeconds;
+        this.clock = clock;
+
+        Map<String, Mac> ring = new LinkedHashMap<>();
+        for (String entry : keys.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int colon = entry.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("auth.token.keys entries must be kid:base64secret");
+            }
+            ring.put(entry.substring(0, colon).trim(), mac(Base64.getDecoder().decode(entry.substring(colon + 1).trim())));
+        }
+        if (ring.isEmpty()) {
+            // Fine for one node in development; tokens stop verifying after a restart or on other nodes
+            logger.warn("auth.token.keys is not set, signing tokens with a random key held in memory");
+            byte[] secret = new byte[MIN_SECRET_BYTES];
+            new SecureRandom().nextBytes(secret);
+            ring.put("ephemeral", mac(secret));
+        }
+        this.keys = Collections.unmodifiableMap(ring);
+        this.signingKeyId = ring.keySet().iterator().next();
+    }
+
+    /**
+     * @param user The authenticated user
+     * @return Short-lived token that authorizes API requests
+     */
+    public String issueAccessToken(User user) {
+        return issue(user, ACCESS, accessTtlSeconds);
+    }
+
+    /**
+     * @param user The authenticated user
+     * @return Long-lived token that can only be exchanged for new tokens
+     */
+    public String issueRefreshToken(User user) {
+        return issue(user, REFRESH, refreshTtlSeconds);
+    }
+
+    public long getAccessTtlSeconds() {
+        return accessTtlSeconds;
+    }
+
+    /**
+     * Checks the signature, expiry and type of a token
+     * @param token Compact JWT
+     * @param expectedType {@link #ACCESS} or {@link #REFRESH}
+     * @return The token's claims, or null if it is malformed, forged, expired or of another type
+     */
+    public Claims verify(String token, String expectedType) {
+        if (token == null) {
+            return null;
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            Map<?, ?> header = objectMapper.readValue(DECODER.decode(parts[0]), Map.class);
+            Mac key = keys.get(String.valueOf(header.get("kid")));
+            if (key == null || !"HS256".equals(header.get("alg"))) {
+                return null;
+            }
+            byte[] expected = sign(key, parts[0] + "." + parts[1]);
+            if (!MessageDigest.isEqual(expected, DECODER.decode(parts[2]))) {
+                return null;
+            }
+
+            Map<?, ?> payload = objectMapper.readValue(DECODER.decode(parts[1]), Map.class);
+            long expiresAt = ((Number) payload.get("exp")).longValue();
+            if (clock.getAsLong() / 1000 > expiresAt + CLOCK_SKEW_SECONDS || !expectedType.equals(payload.get("typ"))) {
+                return null;
+            }
+            long issuedAtMillis = Math.round(((Number) payload.get("iat")).doubleValue() * 1000);
+            return new Claims((String) payload.get("sub"), (String) payload.get("email"),
+                    (String) payload.get("role"), (String) payload.get("typ"), issuedAtMillis, expiresAt);
+        } catch (Exception e) {
+            // Bad base64, bad JSON or missing claims: treat like a bad signature
+            return null;
+        }
+    }
+
+    private String issue(User user, String type, long ttlSeconds) {
+        long nowMillis = clock.getAsLong();
+        long now = nowMillis / 1000;
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("alg", "HS256");
+        header.put("typ", "JWT");
+        header.put("kid", signingKeyId);
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("sub", user.getId());
+        payload.put("email", user.getEmail());
+        payload.put("role", user.getRole());
+        payload.put("typ", type);
+        // Fractional seconds, as NumericDate allows, so revocations can be ordered against issue time
+        payload.put("iat", nowMillis / 1000.0);
+        payload.put("exp", now + ttlSeconds);
+        payload.put("jti", UUID.randomUUID().toString());
+
+        try {
+            String signingInput = ENCODER.encodeToString(objectMapper.writeValueAsBytes(header)) + "."
+                    + ENCODER.encodeToString(objectMapper.writeValueAsBytes(payload));
+            return signingInput + "." + ENCODER.encodeToString(sign(keys.get(signingKeyId), signingInput));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to issue token", e);
+        }
+    }
+
+    private static byte[] sign(Mac prototype, String signingInput) throws CloneNotSupportedException {
+        // Mac is not thread-safe; a clone of the initialized prototype is cheaper than init
+        Mac mac = (Mac) prototype.clone();
+        return mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Mac mac(byte[] secret) {
+        if (secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("Token signing keys must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ecommerce.app.service;
+
+/**
+ * Thrown when a cart change or checkout is refused; the reason decides the HTTP status
+ */
+public class CartException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        INVALID,
+        PRODUCT_NOT_FOUND,
+        OUT_OF_STOCK,
+        EMPTY,
+        CHECKOUT_IN_PROGRESS
+    }
+
+    private final Reason reason;
+
+    public CartException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
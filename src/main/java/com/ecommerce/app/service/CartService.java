@@ -0,0 +1,439 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.dto.CartView;
+import com.ecommerce.app.invalidation.Invalidation;
+import com.ecommerce.app.invalidation.InvalidationBus;
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderItem;
+import com.ecommerce.app.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side shopping carts.
+ *
+ * Each cart is kept in memory as product ID to quantity; names, prices and stock
+ * come from the product catalog whenever the cart is read, so the stored cart stays
+ * small and never shows a stale price. Changes lock only that user's cart and
+ * return without touching Firebase: changed lines are written behind, each to its own
+ * carts/{userId}/{productId} path, all of them in one multi-path update every
+ * {@code cart.flush-interval-ms}. Since only changed lines are written, edits made to
+ * different products on different nodes do not overwrite each other. A cart is read
+ * from carts/{userId} the first time it is used on a node and dropped from memory
+ * after {@code cart.idle-ms} without use. Once lines are written, or a checkout
+ * deletes the cart, other nodes are told over the {@link InvalidationBus} and re-read
+ * their copy, keeping their own unwritten changes on top.
+ *
+ * Checkout reads the stored cart again and applies this node's unwritten changes on
+ * top, so lines added through another node are ordered too. It then prices the cart
+ * from the catalog, checks stock, and saves the order and deletes the ordered lines in
+ * a single write with a single ID allocation. A line another node writes in the meantime
+ * stays in the stored cart.
+ */
+@Service
+public class CartService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartService.class);
+
+    @Autowired
+    private FirebaseService firebaseService;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Value("${cart.max-lines:50}")
+    private int maxLines = 50;
+
+    @Value("${cart.max-quantity:99}")
+    private int maxQuantity = 99;
+
+    @Value("${cart.idle-ms:1800000}")
+    private long idleMs = 1800000L;
+
+    private final Map<String, CompletableFuture<UserCart>> carts = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicLong flushes = new AtomicLong();
+
+    /**
+     * Refreshes carts changed on other nodes. The cached cart is updated in place rather
+     * than dropped, so a change being made to it right now is not lost.
+     */
+    @PostConstruct
+    public void subscribeToInvalidations() {
+        invalidationBus.addHandler(Invalidation.Entity.CART, invalidation -> {
+            String userId = invalidation.getId();
+            UserCart cart = loaded(carts.get(userId));
+            if (cart == null) {
+                return;
+            }
+            firebaseService.getCart(userId).whenComplete((stored, throwable) -> {
+                if (throwable != null) {
+                    // Checkout reads the stored cart again anyway, so only the cart view stays stale
+                    logger.warn("Failed to refresh the cart of {}: {}", userId, throwable.getMessage());
+                } else {
+                    cart.merge(stored);
+                }
+            });
+        });
+    }
+
+    /**
+     * @param userId Owner of the cart
+     * @return CompletableFuture containing the cart priced from the current catalog
+     */
+    public CompletableFuture<CartView> getCart(String userId) {
+        return cart(userId).thenCombine(firebaseService.getProductCatalog(),
+                (cart, catalog) -> view(userId, cart.snapshot(), catalog));
+    }
+
+    /**
+     * Sets how many of a product the cart holds
+     * @param userId Owner of the cart
+     * @param productId Product to add, change or remove
+     * @param quantity New quantity; 0 removes the product
+     * @return CompletableFuture containing the updated cart; fails with a {@link CartException}
+     *         if the product does not exist, is out of stock or the quantity is not allowed
+     */
+    public CompletableFuture<CartView> setQuantity(String userId, String productId, int quantity) {
+        if (quantity < 0 || quantity > maxQuantity) {
+            return CompletableFuture.failedFuture(new CartException(CartException.Reason.INVALID,
+                    "Quantity must be between 0 and " + maxQuantity));
+        }
+        return cart(userId).thenCombine(firebaseService.getProductCatalog(), (cart, catalog) -> {
+            if (quantity > 0) {
+                Product product = catalog.getProduct(productId);
+                if (product == null) {
+                    throw new CartException(CartException.Reason.PRODUCT_NOT_FOUND, "Product not found: " + productId);
+                }
+                if (product.getQuantity() < quantity) {
+                    throw new CartException(CartException.Reason.OUT_OF_STOCK,
+                            "Only " + product.getQuantity() + " of " + product.getName() + " in stock");
+                }
+            }
+            if (!cart.set(productId, quantity, maxLines)) {
+                throw new CartException(CartException.Reason.INVALID, "A cart holds at most " + maxLines + " products");
+            }
+            dirty.add(userId);
+            return view(userId, cart.snapshot(), catalog);
+        });
+    }
+
+    /**
+     * @param userId Owner of the cart
+     * @return CompletableFuture containing the now empty cart
+     */
+    public CompletableFuture<CartView> clear(String userId) {
+        return cart(userId).thenApply(cart -> {
+            cart.removeAll(cart.snapshot());
+            dirty.add(userId);
+            CartView view = new CartView();
+            view.setUserId(userId);
+            return view;
+        });
+    }
+
+    /**
+     * Describes what a checkout would order, so a retried checkout can be told from a new one
+     * @param userId Owner of the cart
+     * @return CompletableFuture containing "productId=quantity" lines in product order,
+     *         or null if the cart is empty
+     */
+    public CompletableFuture<String> fingerprint(String userId) {
+        return readThrough(userId).thenApply(cart -> {
+            Map<String, Integer> lines = new TreeMap<>(cart.snapshot());
+            if (lines.isEmpty()) {
+                return null;
+            }
+            StringBuilder fingerprint = new StringBuilder("cart-checkout");
+            lines.forEach((productId, quantity) -> fingerprint.append('\n').append(productId).append('=').append(quantity));
+            return fingerprint.toString();
+        });
+    }
+
+    /**
+     * Turns the cart into an order: one ID allocation and one write that creates the
+     * order and deletes the ordered lines from the stored cart
+     * @param userId Owner of the cart
+     * @return CompletableFuture containing the saved order; fails with a {@link CartException}
+     *         if the cart is empty or a product is gone or short of stock
+     */
+    public CompletableFuture<Order> checkout(String userId) {
+        return checkout(userId, null);
+    }
+
+    /**
+     * Checks out under an idempotency key, storing the key's response in the checkout write
+     * @param userId Owner of the cart
+     * @param completion Adds the idempotency response to the write, may be null
+     * @return CompletableFuture containing the saved order
+     */
+    public CompletableFuture<Order> checkout(String userId, IdempotencyService.Completion<Order> completion) {
+        return readThrough(userId).thenCombine(firebaseService.getProductCatalog(), (cart, catalog) -> {
+            Map<String, Integer> lines = cart.snapshot();
+            if (lines.isEmpty()) {
+                throw new CartException(CartException.Reason.EMPTY, "Cart is empty");
+            }
+            if (!cart.beginCheckout()) {
+                throw new CartException(CartException.Reason.CHECKOUT_IN_PROGRESS, "Checkout is already in progress");
+            }
+            try {
+                return placeOrder(userId, cart, lines, catalog, completion);
+            } catch (RuntimeException e) {
+                cart.endCheckout();
+                throw e;
+            }
+        }).thenCompose(saved -> saved);
+    }
+
+    private CompletableFuture<Order> placeOrder(String userId, UserCart cart, Map<String, Integer> lines,
+                                                CatalogSnapshot catalog,
+                                                IdempotencyService.Completion<Order> completion) {
+        CartView priced = view(userId, lines, catalog);
+        for (OrderItem item : priced.getItems()) {
+            Product product = catalog.getProduct(item.getProductId());
+            if (product == null) {
+                throw new CartException(CartException.Reason.PRODUCT_NOT_FOUND,
+                        "Product no longer available: " + item.getProductId());
+            }
+            if (product.getQuantity() < item.getQuantity()) {
+                throw new CartException(CartException.Reason.OUT_OF_STOCK,
+                        "Only " + product.getQuantity() + " of " + product.getName() + " in stock");
+            }
+        }
+        Order order = new Order(userId, priced.getItems(), priced.getTotalAmount());
+        return firebaseService.saveOrderAndRemoveCartLines(order, lines.keySet(), completion).whenComplete((saved, throwable) -> {
+            if (saved != null) {
+                invalidationBus.publish(Invalidation.Entity.CART, userId, System.currentTimeMillis());
+                // Lines changed while the order was being saved stay in the cart
+                cart.removeAll(lines);
+                // The ordered lines are written as deletions, undoing a flush that landed after the checkout write
+                dirty.add(userId);
+            }
+            cart.endCheckout();
+        });
+    }
+
+    /**
+     * Writes every changed cart line in one multi-path update and drops idle carts from memory
+     */
+    @Scheduled(fixedDelayString = "${cart.flush-interval-ms:2000}",
+            initialDelayString = "${cart.flush-interval-ms:2000}")
+    public void flush() {
+        long flush = flushes.incrementAndGet();
+        Map<String, Object> updates = new HashMap<>();
+        Map<String, UserCart> written = new HashMap<>();
+        for (Iterator<String> it = dirty.iterator(); it.hasNext(); ) {
+            String userId = it.next();
+            // Clear the flag before reading, so a change made after this point is written next time
+            it.remove();
+            UserCart cart = loaded(carts.get(userId));
+            if (cart != null) {
+                Map<String, Integer> changes = cart.takeChanges(flush);
+                if (!changes.isEmpty()) {
+                    changes.forEach((productId, quantity) -> updates.put(userId + "/" + productId, quantity));
+                    written.put(userId, cart);
+                }
+            }
+        }
+
+        long idleBefore = System.currentTimeMillis() - idleMs;
+        carts.entrySet().removeIf(entry -> {
+            UserCart cart = loaded(entry.getValue());
+            return cart != null && cart.lastUsed < idleBefore && !dirty.contains(entry.getKey())
+                    && !cart.hasUnwrittenChanges();
+        });
+
+        if (updates.isEmpty()) {
+            return;
+        }
+        firebaseService.saveCarts(updates).whenComplete((ignored, throwable) -> {
+            boolean failed = throwable != null;
+            written.values().forEach(cart -> cart.settle(flush, failed));
+            if (failed) {
+                logger.warn("Failed to write {} cart lines, retrying at the next flush: {}", updates.size(),
+                        throwable.getMessage());
+                dirty.addAll(written.keySet());
+                return;
+            }
+            long now = System.currentTimeMillis();
+            written.keySet().forEach(userId -> invalidationBus.publish(Invalidation.Entity.CART, userId, now));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Best effort: the write may not be acknowledged before the process exits
+        flush();
+    }
+
+    int cachedCarts() {
+        return carts.size();
+    }
+
+    private CompletableFuture<UserCart> cart(String userId) {
+        CompletableFuture<UserCart> loaded = carts.computeIfAbsent(userId,
+                id -> firebaseService.getCart(id).thenApply(UserCart::new));
+        loaded.whenComplete((cart, throwable) -> {
+            if (throwable != null) {
+                // Let the next request try the read again
+                carts.remove(userId, loaded);
+            } else {
+                cart.lastUsed = System.currentTimeMillis();
+            }
+        });
+        return loaded;
+    }
+
+    // The stored cart with this node's unwritten changes applied on top
+    private CompletableFuture<UserCart> readThrough(String userId) {
+        return cart(userId).thenCombine(firebaseService.getCart(userId), (cart, stored) -> {
+            cart.merge(stored);
+            return cart;
+        });
+    }
+
+    private static UserCart loaded(CompletableFuture<UserCart> future) {
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    private static CartView view(String userId, Map<String, Integer> lines, CatalogSnapshot catalog) {
+        CartView view = new CartView();
+        view.setUserId(userId);
+        List<OrderItem> items = new ArrayList<>(lines.size());
+        double total = 0;
+        int count = 0;
+        for (Map.Entry<String, Integer> line : lines.entrySet()) {
+            Product product = catalog.getProduct(line.getKey());
+            String name = product != null ? product.getName() : null;
+            double price = product != null ? product.getPrice() : 0;
+            items.add(new OrderItem(line.getKey(), name, line.getValue(), price));
+            total += price * line.getValue();
+            count += line.getValue();
+        }
+        view.setItems(items);
+        view.setItemCount(count);
+        view.setTotalAmount(Math.round(total * 100) / 100.0);
+        return view;
+    }
+
+    // One user's cart; its own monitor guards the lines, so users never contend with each other
+    private static final class UserCart {
+        private final LinkedHashMap<String, Integer> lines;
+        // Lines changed since they were last taken for a flush
+        private final Set<String> changed = new HashSet<>();
+        // Lines taken by a flush whose write is not acknowledged yet, with that flush's number
+        private final Map<String, Long> unacknowledged = new HashMap<>();
+        volatile long lastUsed = System.currentTimeMillis();
+        private boolean checkingOut;
+
+        UserCart(Map<String, Integer> stored) {
+            this.lines = new LinkedHashMap<>(stored);
+        }
+
+        synchronized Map<String, Integer> snapshot() {
+            return new LinkedHashMap<>(lines);
+        }
+
+        synchronized boolean set(String productId, int quantity, int maxLines) {
+            if (quantity == 0) {
+                if (lines.remove(productId) != null) {
+                    changed.add(productId);
+                }
+                return true;
+            }
+            if (!lines.containsKey(productId) && lines.size() >= maxLines) {
+                return false;
+            }
+            lines.put(productId, quantity);
+            changed.add(productId);
+            return true;
+        }
+
+        // Current quantity of every changed line, null for removed lines
+        synchronized Map<String, Integer> takeChanges(long flush) {
+            Map<String, Integer> changes = new HashMap<>();
+            for (String productId : changed) {
+                changes.put(productId, lines.get(productId));
+                unacknowledged.put(productId, flush);
+            }
+            changed.clear();
+            return changes;
+        }
+
+        synchronized void settle(long flush, boolean failed) {
+            unacknowledged.entrySet().removeIf(line -> {
+                if (line.getValue() != flush) {
+                    return false;
+                }
+                if (failed) {
+                    changed.add(line.getKey());
+                }
+                return true;
+            });
+        }
+
+        synchronized boolean hasUnwrittenChanges() {
+            return !changed.isEmpty() || !unacknowledged.isEmpty();
+        }
+
+        // Replaces the lines with the stored ones, keeping lines this node changed and has not written
+        synchronized void merge(Map<String, Integer> stored) {
+            Map<String, Integer> local = new HashMap<>();
+            for (String productId : changed) {
+                local.put(productId, lines.get(productId));
+            }
+            for (String productId : unacknowledged.keySet()) {
+                local.put(productId, lines.get(productId));
+            }
+            lines.clear();
+            lines.putAll(stored);
+            local.forEach((productId, quantity) -> {
+                if (quantity == null) {
+                    lines.remove(productId);
+                } else {
+                    lines.put(productId, quantity);
+                }
+            });
+        }
+
+        synchronized boolean beginCheckout() {
+            if (checkingOut) {
+                return false;
+            }
+            checkingOut = true;
+            return true;
+        }
+
+        synchronized void endCheckout() {
+            checkingOut = false;
+        }
+
+        // Removes lines that still have the given quantities
+        synchronized void removeAll(Map<String, Integer> removed) {
+            removed.forEach((productId, quantity) -> {
+                if (lines.remove(productId, quantity)) {
+                    changed.add(productId);
+                }
+            });
+        }
+    }
+}
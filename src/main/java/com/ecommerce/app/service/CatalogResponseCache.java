@@ -0,0 +1,213 @@
+package com.ecommerce.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the full product catalog as ready-to-send JSON bytes, plus gzip and
+ * deflate encoded copies, for the current catalog version.
+ *
+ * Rebuilds run on a single background thread whenever the catalog changes, so
+ * the request path never serializes or compresses the catalog once the cache is
+ * warm; it only copies bytes to the socket.
+ */
+@Component
+public class CatalogResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogResponseCache.class);
+
+    public enum Encoding {
+        IDENTITY(null),
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String headerValue;
+
+        Encoding(String headerValue) {
+            this.headerValue = headerValue;
+        }
+
+        /**
+         * @return Content-Encoding header value, or null for identity
+         */
+        public String getHeaderValue() {
+            return headerValue;
+        }
+
+        /**
+         * Picks the smallest encoding the client accepts
+         * @param acceptEncoding Accept-Encoding request header, may be null
+         * @return GZIP, DEFLATE or IDENTITY
+         */
+        public static Encoding negotiate(String acceptEncoding) {
+            if (acceptEncoding == null) {
+                return IDENTITY;
+            }
+            boolean gzip = false;
+            boolean deflate = false;
+            for (String part : acceptEncoding.split(",")) {
+                String[] tokens = part.trim().split(";");
+                String coding = tokens[0].trim();
+                boolean rejected = tokens.length > 1 && tokens[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+                if (rejected) {
+                    continue;
+                }
+                if (coding.equalsIgnoreCase("gzip") || coding.equals("*")) {
+                    gzip = true;
+                } else if (coding.equalsIgnoreCase("deflate")) {
+                    deflate = true;
+                }
+            }
+            return gzip ? GZIP : deflate ? DEFLATE : IDENTITY;
+        }
+    }
+
+    public static final class Entry {
+        private final String etag;
+        private final byte[] json;
+        private final byte[] gzip;
+        private final byte[] deflate;
+
+        Entry(String etag, byte[] json, byte[] gzip, byte[] deflate) {
+            this.etag = etag;
+            this.json = json;
+            this.gzip = gzip;
+            this.deflate = deflate;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Returns the shared encoded body; callers must not modify it
+         * @param encoding Negotiated content encoding
+         * @return Encoded catalog JSON
+         */
+        public byte[] getBody(Encoding encoding) {
+            switch (encoding) {
+                case GZIP:
+                    return gzip;
+                case DEFLATE:
+                    return deflate;
+                default:
+                    return json;
+            }
+        }
+    }
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${catalog.response-cache.enabled:true}")
+    private boolean enabled = true;
+
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-response-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Entry current;
+
+    @PostConstruct
+    public void init() {
+        productCatalog.addChangeListener(this::scheduleRebuild);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the pre-encoded bodies for the given catalog, if they are already built.
+     * On a miss a background rebuild is scheduled and the caller should fall back to
+     * regular serialization for this request.
+     * @param catalog The catalog snapshot being served
+     * @return Matching cache entry, or null
+     */
+    public Entry get(CatalogSnapshot catalog) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = current;
+        if (entry != null && entry.etag.equals(catalog.getEtag())) {
+            return entry;
+        }
+        scheduleRebuild();
+        return null;
+    }
+
+    private void scheduleRebuild() {
+        if (enabled && rebuildScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                rebuildScheduled.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    private void rebuild() {
+        try {
+            CatalogSnapshot catalog = productCatalog.snapshot();
+            Entry entry = current;
+            if (entry != null && entry.etag.equals(catalog.getEtag())) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            byte[] json = objectMapper.writeValueAsBytes(catalog.getProducts());
+            byte[] gzip = compress(json, Encoding.GZIP);
+            byte[] deflate = compress(json, Encoding.DEFLATE);
+            current = new Entry(catalog.getEtag(), json, gzip, deflate);
+
+            logger.debug("Rebuilt catalog response cache for version {} ({} products): {} bytes, gzip {}, deflate {} in {} ms",
+                    catalog.getVersion(), catalog.size(), json.length, gzip.length, deflate.length,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            logger.error("Failed to rebuild catalog response cache", e);
+        }
+    }
+
+    static byte[] compress(byte[] data, Encoding encoding) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        // Built once per catalog version, so spend the CPU on the best ratio
+        if (encoding == Encoding.GZIP) {
+            try (GZIPOutputStream out = new GZIPOutputStream(buffer) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                out.write(data);
+            }
+        } else {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(buffer, deflater)) {
+                out.write(data);
+            } finally {
+                deflater.end();
+            }
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,405 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.dto.CatalogFacets;
+import com.ecommerce.app.dto.ProductPage;
+import com.ecommerce.app.dto.ProductQuery;
+import com.ecommerce.app.dto.ProductSort;
+import com.ecommerce.app.model.Product;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable, read-optimised view of the product catalog.
+ *
+ * Products are assigned dense ordinals in ascending price order, so every price
+ * range maps to a contiguous ordinal range that is found with two binary searches
+ * over a primitive {@code double[]}. Stock, category and tag membership are
+ * compressed (Roaring) bitmaps over the same ordinals: filters are bitmap
+ * intersections and facet counts are intersection cardinalities, so neither
+ * walks the product list.
+ *
+ * Each snapshot also carries a content hash of the catalog (and of every product)
+ * that is used as a strong HTTP entity tag. The hash only depends on product data,
+ * so every node serving the same catalog hands out the same ETag.
+ */
+public final class CatalogSnapshot {
+
+    static final double[] DEFAULT_PRICE_BUCKETS = {25, 50, 100, 250, 500, 1000};
+
+    private static final Comparator<Product> BY_ID =
+            Comparator.comparing(Product::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(Collections.emptyList(), DEFAULT_PRICE_BUCKETS);
+
+    private static final int ETAG_BYTES = 16;
+
+    private enum Dimension { PRICE, STOCK, CATEGORY }
+
+    private final List<Product> products;
+    private final Product[] byPrice;
+    private final double[] prices;
+    private final RoaringBitmap inStock = new RoaringBitmap();
+    private final Map<String, Facet> categories = new HashMap<>();
+    private final Map<String, Facet> tags = new HashMap<>();
+    private final double[] priceBuckets;
+    private final Map<String, Product> productsById = new HashMap<>();
+    private final Map<String, String> etagsById = new HashMap<>();
+    private final String etag;
+    private final long version;
+    private final long lastModified;
+
+    CatalogSnapshot(Collection<Product> source, double[] priceBuckets) {
+        this(source, priceBuckets, null);
+    }
+
+    /**
+     * Builds a snapshot, carrying the version and modification time over from the
+     * previous one when the content did not change
+     * @param source Current products
+     * @param priceBuckets Upper bounds of the price facet buckets
+     * @param previous Snapshot being replaced, or null
+     */
+    CatalogSnapshot(Collection<Product> source, double[] priceBuckets, CatalogSnapshot previous) {
+        // Catalog order matches the key order Firebase returns for the products node
+        List<Product> ordered = new ArrayList<>(source);
+        ordered.sort(BY_ID);
+        this.products = Collections.unmodifiableList(ordered);
+
+        this.byPrice = ordered.toArray(new Product[0]);
+        Arrays.sort(byPrice, Comparator.comparingDouble(Product::getPrice).thenComparing(BY_ID));
+
+        this.prices = new double[byPrice.length];
+        for (int ordinal = 0; ordinal < byPrice.length; ordinal++) {
+            Product product = byPrice[ordinal];
+            prices[ordinal] = product.getPrice();
+            if (product.getQuantity() > 0) {
+                inStock.add(ordinal);
+            }
+            addToFacet(categories, product.getCategory(), ordinal);
+            if (product.getTags() != null) {
+                for (String tag : product.getTags()) {
+                    addToFacet(tags, tag, ordinal);
+                }
+            }
+        }
+
+        inStock.runOptimize();
+        categories.values().forEach(facet -> facet.bitmap.runOptimize());
+        tags.values().forEach(facet -> facet.bitmap.runOptimize());
+        this.priceBuckets = priceBuckets.clone();
+        Arrays.sort(this.priceBuckets);
+
+        MessageDigest catalogDigest = sha256();
+        for (Product product : ordered) {
+            byte[] productHash = hash(product);
+            catalogDigest.update(productHash);
+            productsById.put(product.getId(), product);
+            etagsById.put(product.getId(), toEtag(productHash));
+        }
+        this.etag = toEtag(catalogDigest.digest());
+
+        if (previous != null && previous.etag.equals(etag)) {
+            this.version = previous.version;
+            this.lastModified = previous.lastModified;
+        } else {
+            this.version = previous != null ? previous.version + 1 : 0;
+            this.lastModified = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * All products in catalog (ID) order
+     * @return Unmodifiable list of products
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public int size() {
+        return byPrice.length;
+    }
+
+    public Product getProduct(String id) {
+        return productsById.get(id);
+    }
+
+    /**
+     * Strong entity tag of the whole catalog; also valid for any filtered view of it
+     * @return Quoted ETag value
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Strong entity tag of a single product in this snapshot
+     * @param id Product ID
+     * @return Quoted ETag value, or null if the product is not in the catalog
+     */
+    public String getProductEtag(String id) {
+        return etagsById.get(id);
+    }
+
+    /**
+     * Increases every time a rebuild changes the catalog content
+     * @return Catalog version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Computes the entity tag of a product that was read outside of a snapshot
+     * @param product The product
+     * @return Quoted ETag value, identical to the one a snapshot would assign
+     */
+    public static String etagOf(Product product) {
+        return toEtag(hash(product));
+    }
+
+    /**
+     * Runs a filtered query against the ordinal indexes
+     * @param query Filter, sort and pagination parameters
+     * @return The requested page and the total number of matches
+     */
+    public ProductPage query(ProductQuery query) {
+        int from = query.getMinPrice() != null ? lowerBound(query.getMinPrice()) : 0;
+        int to = query.getMaxPrice() != null ? upperBound(query.getMaxPrice()) : byPrice.length;
+        if (from >= to) {
+            return new ProductPage(Collections.emptyList(), 0);
+        }
+
+        boolean descending = query.getSort() == ProductSort.PRICE_DESC;
+        RoaringBitmap matches = null;
+        int total = to - from;
+        if (query.isInStockOnly() || hasAttributeFilter(query)) {
+            matches = matches(query, null);
+            total = matches.getCardinality();
+        }
+
+        // long: a large page number must not overflow into a negative offset
+        long requestedOffset = query.getPage() != null ? (long) query.getPage() * query.getSize() : 0;
+        int limit = query.getSize() != null ? query.getSize() : total;
+        if (requestedOffset >= total || limit <= 0) {
+            return new ProductPage(Collections.emptyList(), total);
+        }
+        int offset = (int) requestedOffset;
+
+        List<Product> items = new ArrayList<>(Math.min(limit, total - offset));
+        if (matches == null) {
+            // Pure price range: the matches are the contiguous ordinals [from, to)
+            for (int i = offset; i < total && items.size() < limit; i++) {
+                items.add(byPrice[descending ? to - 1 - i : from + i]);
+            }
+        } else {
+            IntIterator ordinals = descending ? matches.getReverseIntIterator() : matches.getIntIterator();
+            int skipped = 0;
+            while (ordinals.hasNext() && items.size() < limit) {
+                int ordinal = ordinals.next();
+                if (skipped++ >= offset) {
+                    items.add(byPrice[ordinal]);
+                }
+            }
+        }
+        return new ProductPage(items, total);
+    }
+
+    /**
+     * Computes facet counts for a filtered query.
+     *
+     * Category, price bucket and stock counts ignore the query's own constraint on
+     * that dimension, so a client can show the alternatives next to the current
+     * selection. Tag counts are computed against the full filter.
+     * @param query Filter parameters (sort and pagination are ignored)
+     * @return Facet counts
+     */
+    public CatalogFacets facets(ProductQuery query) {
+        RoaringBitmap all = matches(query, null);
+
+        RoaringBitmap withoutCategory = matches(query, Dimension.CATEGORY);
+        Map<String, Integer> categoryCounts = counts(categories, withoutCategory);
+        Map<String, Integer> tagCounts = counts(tags, all);
+
+        RoaringBitmap withoutPrice = matches(query, Dimension.PRICE);
+        List<CatalogFacets.PriceBucket> buckets = new ArrayList<>(priceBuckets.length + 1);
+        for (int i = 0; i <= priceBuckets.length; i++) {
+            Double min = i == 0 ? null : priceBuckets[i - 1];
+            Double max = i == priceBuckets.length ? null : priceBuckets[i];
+            int start = min == null ? 0 : lowerBound(min);
+            int end = max == null ? byPrice.length : lowerBound(max);
+            int count = start < end ? (int) withoutPrice.rangeCardinality(start, end) : 0;
+            buckets.add(new CatalogFacets.PriceBucket(min, max, count));
+        }
+
+        int inStockCount = RoaringBitmap.andCardinality(matches(query, Dimension.STOCK), inStock);
+        return new CatalogFacets(all.getCardinality(), categoryCounts, tagCounts, buckets, inStockCount);
+    }
+
+    // Intersects every constraint in the query except the excluded dimension
+    private RoaringBitmap matches(ProductQuery query, Dimension excluded) {
+        int from = 0;
+        int to = byPrice.length;
+        if (excluded != Dimension.PRICE) {
+            from = query.getMinPrice() != null ? lowerBound(query.getMinPrice()) : 0;
+            to = query.getMaxPrice() != null ? upperBound(query.getMaxPrice()) : byPrice.length;
+        }
+        RoaringBitmap result = from < to ? RoaringBitmap.bitmapOfRange(from, to) : new RoaringBitmap();
+
+        if (excluded != Dimension.STOCK && query.isInStockOnly()) {
+            result.and(inStock);
+        }
+        if (excluded != Dimension.CATEGORY && query.getCategory() != null) {
+            result.and(bitmapFor(categories, query.getCategory()));
+        }
+        if (query.getTags() != null) {
+            for (String tag : query.getTags()) {
+                result.and(bitmapFor(tags, tag));
+            }
+        }
+        return result;
+    }
+
+    private static boolean hasAttributeFilter(ProductQuery query) {
+        return query.getCategory() != null || (query.getTags() != null && !query.getTags().isEmpty());
+    }
+
+    private static RoaringBitmap bitmapFor(Map<String, Facet> facets, String value) {
+        Facet facet = value != null ? facets.get(normalize(value)) : null;
+        return facet != null ? facet.bitmap : new RoaringBitmap();
+    }
+
+    private static Map<String, Integer> counts(Map<String, Facet> facets, RoaringBitmap filter) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(facets.size());
+        for (Facet facet : facets.values()) {
+            int count = RoaringBitmap.andCardinality(filter, facet.bitmap);
+            if (count > 0) {
+                entries.add(Map.entry(facet.name, count));
+            }
+        }
+        // Most populated first, then alphabetical
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        entries.forEach(entry -> counts.put(entry.getKey(), entry.getValue()));
+        return counts;
+    }
+
+    private static void addToFacet(Map<String, Facet> facets, String value, int ordinal) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+        facets.computeIfAbsent(normalize(value), key -> new Facet(value.trim())).bitmap.add(ordinal);
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // First ordinal whose price is >= min
+    private int lowerBound(double min) {
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First ordinal whose price is > max
+    private int upperBound(double max) {
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] <= max) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static byte[] hash(Product product) {
+        MessageDigest digest = sha256();
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            writeNullable(out, product.getId());
+            writeNullable(out, product.getName());
+            writeNullable(out, product.getDescription());
+            out.writeDouble(product.getPrice());
+            out.writeInt(product.getQuantity());
+            writeNullable(out, product.getImageUrl());
+            writeNullable(out, product.getCategory());
+            List<String> productTags = product.getTags();
+            out.writeInt(productTags != null ? productTags.size() : -1);
+            if (productTags != null) {
+                for (String tag : productTags) {
+                    writeNullable(out, tag);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return digest.digest();
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String toEtag(byte[] hash) {
+        return "\"" + HexFormat.of().formatHex(hash, 0, ETAG_BYTES) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Facet {
+        private final String name; // display name of the first product seen with this value
+        private final RoaringBitmap bitmap = new RoaringBitmap();
+
+        private Facet(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.codec.Codecs;
+import com.ecommerce.app.dto.SyncResponse;
+import com.ecommerce.app.model.ChangeEntry;
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.Product;
+import com.google.firebase.database.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Append-only log of product and order writes, used by GET /api/sync so mobile
+ * clients download only what changed since their last sync.
+ *
+ * Every entry gets a sequence number from counters/changes and is stored under
+ * changes/{seq} with a zero-padded key, so key order is sequence order. Numbers are
+ * reserved in blocks through {@link IdGeneratorService#nextNumber}, so recording an
+ * entry normally needs no round trip; a block is used for at most
+ * {@code sync.sequence-block-ms}, and its unused numbers are then skipped. The entry
+ * is added to the same multi-path update as the change it describes, so one is never
+ * stored without the other. Entries older than the retention period are compacted
+ * away; a client whose cursor falls behind the compacted range is told to do a full
+ * download instead.
+ *
+ * A number without an entry is a gap, and sync does not page past a gap while the
+ * number may still be written. With several nodes holding blocks, entries from a later
+ * block wait behind the earlier block's numbers until those are written or skipped:
+ * - Updates holding entries go through {@link #write}. When one fails, or a number is
+ *   never written, a SKIP entry is stored in its place and sync moves on.
+ * - A write not acknowledged within {@code sync.write-deadline-ms} of its number being
+ *   handed out is cancelled, together with every other pending write of this node, so
+ *   it cannot land later; the cancellation then stores the SKIP entry.
+ * - Only a gap with nothing stored for {@code sync.gap-grace-ms}, which must be well
+ *   above the write deadline, is skipped without a SKIP entry. That is left to numbers
+ *   whose node stopped before it could report them.
+ */
+@Service
+public class ChangeLogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeLogService.class);
+
+    private static final String CHANGES = "changes";
+    private static final String COMPACTED_COUNTER = "counters/changes-compacted";
+    private static final int COMPACTION_BATCH = 1000;
+
+    @Autowired
+    private DatabaseReference databaseReference;
+
+    @Autowired
+    private IdGeneratorService idGeneratorService;
+
+    @Value("${sync.page-size:500}")
+    private int pageSize = 500;
+
+    @Value("${sync.retention-ms:604800000}")
+    private long retentionMs = 604800000L;
+
+    @Value("${sync.gap-grace-ms:120000}")
+    private long gapGraceMs = 120000;
+
+    @Value("${sync.gap-retry-ms:1000}")
+    private long gapRetryMs = 1000;
+
+    @Value("${sync.write-deadline-ms:60000}")
+    private long writeDeadlineMs = 60000;
+
+    @Value("${sync.sequence-block-ms:5000}")
+    private long sequenceBlockMs = 5000;
+
+    // Numbers handed out by this node whose write has not completed
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    // SKIP entries whose own write failed, retried by expirePending
+    private final Queue<long[]> unmarked = new ConcurrentLinkedQueue<>();
+
+    private static final class Pending {
+        final long handedOutAt;
+        // Set once, by the write or by expirePending skipping the number, whichever comes first
+        final AtomicBoolean claimed = new AtomicBoolean();
+
+        Pending(long handedOutAt) {
+            this.handedOutAt = handedOutAt;
+        }
+    }
+
+    /**
+     * Allocates a sequence number and adds the product's entry to a pending update
+     * @param update Root multi-path update that also writes the product
+     * @param product The product as written
+     * @return CompletableFuture completed once the entry is in the update
+     */
+    public CompletableFuture<Void> recordProduct(Map<String, Object> update, Product product) {
+        ChangeEntry entry = entry(ChangeEntry.PRODUCT, product.getId(), null);
+        entry.setProduct(product);
+        return append(update, entry);
+    }
+
+    public CompletableFuture<Void> recordProductDeleted(Map<String, Object> update, String productId) {
+        ChangeEntry entry = entry(ChangeEntry.PRODUCT, productId, null);
+        entry.setDeleted(true);
+        return append(update, entry);
+    }
+
+    public CompletableFuture<Void> recordOrder(Map<String, Object> update, Order order) {
+        ChangeEntry entry = entry(ChangeEntry.ORDER, order.getId(), order.getUserId());
+        entry.setOrder(order);
+        return append(update, entry);
+    }
+
+    @PostConstruct
+    public void expireSequenceBlocks() {
+        idGeneratorService.expireBlocks(IdGeneratorService.IdType.CHANGE, sequenceBlockMs);
+    }
+
+    @PreDestroy
+    public void releaseSequenceBlocks() {
+        // Best effort: a node that stops without this leaves the numbers to the gap grace
+        idGeneratorService.releaseAll(IdGeneratorService.IdType.CHANGE).forEach(range -> skip(range[0], range[1]));
+    }
+
+    /**
+     * Writes a root update that holds entries added by the record methods, and stores a
+     * SKIP entry for each of their numbers if the write fails
+     * @param update Root multi-path update
+     * @param listener Called with the outcome of the write
+     */
+    public void write(Map<String, Object> update, DatabaseReference.CompletionListener listener) {
+        List<Long> seqs = new ArrayList<>(1);
+        for (String path : update.keySet()) {
+            if (path.startsWith(CHANGES + "/")) {
+                seqs.add(Long.parseLong(path.substring(CHANGES.length() + 1)));
+            }
+        }
+        for (long seq : seqs) {
+            Pending entry = pending.get(seq);
+            if (entry == null || !entry.claimed.compareAndSet(false, true)) {
+                // Already skipped: written now, it would sit behind clients' cursors
+                listener.onComplete(DatabaseError.fromCode(DatabaseError.WRITE_CANCELED), null);
+                return;
+            }
+        }
+        databaseReference.updateChildren(update, (databaseError, reference) -> {
+            seqs.forEach(pending::remove);
+            if (databaseError != null) {
+                seqs.forEach(seq -> skip(seq, seq));
+            }
+            listener.onComplete(databaseError, reference);
+        });
+    }
+
+    /**
+     * Skips numbers that were never written or whose block expired, and cancels writes
+     * pending past the write deadline
+     */
+    @Scheduled(fixedDelayString = "${sync.gap-check-interval-ms:1000}")
+    public void expirePending() {
+        idGeneratorService.releaseExpired(IdGeneratorService.IdType.CHANGE).forEach(range -> skip(range[0], range[1]));
+        for (long[] range = unmarked.poll(); range != null; range = unmarked.poll()) {
+            skip(range[0], range[1]);
+        }
+        long deadline = System.currentTimeMillis() - writeDeadlineMs;
+        boolean stuck = false;
+        for (Map.Entry<Long, Pending> entry : pending.entrySet()) {
+            if (entry.getValue().handedOutAt >= deadline) {
+                continue;
+            }
+            if (entry.getValue().claimed.compareAndSet(false, true)) {
+                pending.remove(entry.getKey());
+                skip(entry.getKey(), entry.getKey());
+            } else {
+                stuck = true;
+            }
+        }
+        if (stuck) {
+            // The SDK has no way to cancel one write; each cancelled write fails and is skipped
+            logger.error("Change log write pending for over {} ms, cancelling this node's pending writes",
+                    writeDeadlineMs);
+            databaseReference.getDatabase().purgeOutstandingWrites();
+        }
+    }
+
+    /**
+     * Collects product changes and the user's order changes after the given sequence number
+     * @param since Last sequence number the client has applied (0 for none)
+     * @param userId The user whose order changes to include
+     * @return CompletableFuture containing the deduplicated upserts and tombstones
+     */
+    public CompletableFuture<SyncResponse> changesSince(long since, String userId) {
+        CompletableFuture<Long> compacted = readCounter(COMPACTED_COUNTER);
+        CompletableFuture<List<ChangeEntry>> entries = readEntries(since);
+
+        // A null page means entries the client has not seen were compacted away
+        return compacted.thenCombine(entries, (floor, page) -> since >= floor ? page : null)
+                .thenCompose(page -> {
+                    if (page != null) {
+                        return CompletableFuture.completedFuture(buildResponse(since, userId, page, pageSize,
+                                System.currentTimeMillis(), gapGraceMs, gapRetryMs));
+                    }
+                    // Continue from the floor, not the counter: numbers below the counter may still be written
+                    return readCounter(COMPACTED_COUNTER).thenApply(floor -> {
+                        SyncResponse response = new SyncResponse();
+                        response.setSince(since);
+                        response.setNext(floor);
+                        response.setResetRequired(true);
+                        return response;
+                    });
+                });
+    }
+
+    /**
+     * Removes entries older than the retention period, oldest first
+     */
+    @Scheduled(fixedDelayString = "${sync.compaction-interval-ms:3600000}",
+            initialDelayString = "${sync.compaction-interval-ms:3600000}")
+    public void compact() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+
+        databaseReference.child(CHANGES)
+                .orderByKey()
+                .limitToFirst(COMPACTION_BATCH)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        Map<String, Object> removals = new HashMap<>();
+                        long highest = 0;
+                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                            ChangeEntry entry = snapshot.getValue(ChangeEntry.class);
+                            if (entry == null || entry.getTimestamp() >= cutoff) {
+                                break;
+                            }
+                            removals.put(snapshot.getKey(), null);
+                            highest = entry.getSeq();
+                        }
+                        if (removals.isEmpty()) {
+                            return;
+                        }
+                        // Raise the floor before deleting, so no client pages across the hole unnoticed
+                        raiseCompactedFloor(highest, removals);
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        logger.error("Change log compaction read failed: {}", databaseError.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Turns a page of log entries into a sync response, keeping only the latest entry per entity
+     * @param since The client's cursor
+     * @param userId Only order changes for this user are returned
+     * @param entries Entries after since, in sequence order
+     * @param pageSize Maximum entries read per sync
+     * @param now Current time in milliseconds
+     * @param gapGraceMs How long a gap with nothing stored is waited for before it is skipped
+     * @param gapRetryMs Suggested wait before syncing again when stopped at a gap
+     * @return Sync response with the next cursor
+     */
+    static SyncResponse buildResponse(long since, String userId, List<ChangeEntry> entries,
+                                      int pageSize, long now, long gapGraceMs, long gapRetryMs) {
+        Map<String, ChangeEntry> products = new LinkedHashMap<>();
+        Map<String, ChangeEntry> orders = new LinkedHashMap<>();
+        long next = since;
+        long retryAfterMs = 0;
+
+        for (ChangeEntry entry : entries) {
+            if (entry.getSeq() <= next) {
+                continue;
+            }
+            // A missing number is a write still in flight until its SKIP entry arrives;
+            // stop before it so the client picks it up next time
+            if (entry.getSeq() != next + 1 && now - entry.getTimestamp() < gapGraceMs) {
+                retryAfterMs = Math.max(1, Math.min(gapRetryMs, gapGraceMs - (now - entry.getTimestamp())));
+                break;
+            }
+            next = entry.getSeq();
+            if (ChangeEntry.SKIP.equals(entry.getKind())) {
+                next = Math.max(next, entry.getSkipTo());
+            } else if (ChangeEntry.PRODUCT.equals(entry.getKind())) {
+                products.put(entry.getEntityId(), entry);
+            } else if (ChangeEntry.ORDER.equals(entry.getKind()) && userId != null && userId.equals(entry.getUserId())) {
+                orders.put(entry.getEntityId(), entry);
+            }
+        }
+
+        SyncResponse response = new SyncResponse();
+        response.setSince(since);
+        response.setNext(next);
+        // At a gap, more entries are not readable yet: the client waits instead of polling again at once
+        response.setHasMore(retryAfterMs == 0 && entries.size() >= pageSize);
+        response.setRetryAfterMs(retryAfterMs);
+        for (ChangeEntry entry : products.values()) {
+            if (entry.isDeleted() || entry.getProduct() == null) {
+                response.getDeletedProducts().add(entry.getEntityId());
+            } else {
+                response.getProducts().add(entry.getProduct());
+            }
+        }
+        for (ChangeEntry entry : orders.values()) {
+            if (entry.isDeleted() || entry.getOrder() == null) {
+                response.getDeletedOrders().add(entry.getEntityId());
+            } else {
+                response.getOrders().add(entry.getOrder());
+            }
+        }
+        return response;
+    }
+
+    private static ChangeEntry entry(String kind, String entityId, String userId) {
+        ChangeEntry entry = new ChangeEntry();
+        entry.setKind(kind);
+        entry.setEntityId(entityId);
+        entry.setUserId(userId);
+        return entry;
+    }
+
+    private static String key(long seq) {
+        return String.format("%012d", seq);
+    }
+
+    // Fails if no sequence number could be allocated, so the change is not written without its entry
+    private CompletableFuture<Void> append(Map<String, Object> update, ChangeEntry entry) {
+        return idGeneratorService.nextNumber(IdGeneratorService.IdType.CHANGE)
+                .handle((seq, throwable) -> {
+                    if (throwable != null) {
+                        logger.error("Failed to allocate change sequence for {} {}", entry.getKind(), entry.getEntityId());
+                        throw throwable instanceof CompletionException
+                                ? (CompletionException) throwable : new CompletionException(throwable);
+                    }
+                    entry.setSeq(seq);
+                    entry.setTimestamp(System.currentTimeMillis());
+                    update.put(CHANGES + "/" + key(seq), toMap(entry));
+                    pending.put(seq, new Pending(entry.getTimestamp()));
+                    return null;
+                });
+    }
+
+    // Stores a SKIP entry for numbers that will never be written, retried until it is stored
+    private void skip(long first, long last) {
+        ChangeEntry entry = entry(ChangeEntry.SKIP, null, null);
+        entry.setSeq(first);
+        entry.setSkipTo(last);
+        entry.setTimestamp(System.currentTimeMillis());
+        databaseReference.child(CHANGES).child(key(first)).setValue(toMap(entry), (databaseError, reference) -> {
+            if (databaseError != null) {
+                logger.warn("Failed to skip change sequence {}-{}, retrying: {}", first, last, databaseError.getMessage());
+                unmarked.add(new long[] {first, last});
+            }
+        });
+    }
+
+    // Same property names as ChangeEntry, which readers decode it into
+    static Map<String, Object> toMap(ChangeEntry entry) {
+        Map<String, Object> map = new HashMap<>(10);
+        map.put("seq", entry.getSeq());
+        map.put("kind", entry.getKind());
+        if (entry.getEntityId() != null) {
+            map.put("entityId", entry.getEntityId());
+        }
+        if (entry.getSkipTo() != 0) {
+            map.put("skipTo", entry.getSkipTo());
+        }
+        if (entry.getUserId() != null) {
+            map.put("userId", entry.getUserId());
+        }
+        map.put("deleted", entry.isDeleted());
+        if (entry.getProduct() != null) {
+            map.put("product", Codecs.PRODUCT.toMap(entry.getProduct()));
+        }
+        if (entry.getOrder() != null) {
+            map.put("order", Codecs.ORDER.toMap(entry.getOrder()));
+        }
+        map.put("timestamp", entry.getTimestamp());
+        return map;
+    }
+
+    private CompletableFuture<List<ChangeEntry>> readEntries(long since) {
+        CompletableFuture<List<ChangeEntry>> future = new CompletableFuture<>();
+
+        databaseReference.child(CHANGES)
+                .orderByKey()
+                .startAt(key(since + 1))
+                .limitToFirst(pageSize)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        List<ChangeEntry> entries = new ArrayList<>();
+                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                            ChangeEntry entry = snapshot.getValue(ChangeEntry.class);
+                            if (entry != null) {
+                                entries.add(entry);
+                            }
+                        }
+                        future.complete(entries);
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        future.completeExceptionally(databaseError.toException());
+                    }
+                });
+
+        return future;
+    }
+
+    private CompletableFuture<Long> readCounter(String path) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+
+        databaseReference.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                Long value = dataSnapshot.getValue(Long.class);
+                future.complete(value != null ? value : 0L);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        return future;
+    }
+
+    private void raiseCompactedFloor(long highest, Map<String, Object> removals) {
+        databaseReference.child(COMPACTED_COUNTER).runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData mutableData) {
+                Long currentValue = mutableData.getValue(Long.class);
+                mutableData.setValue(currentValue == null ? highest : Math.max(currentValue, highest));
+                return Transaction.success(mutableData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
+                if (databaseError != null || !committed) {
+                    logger.error("Failed to raise change log floor to {}", highest);
+                    return;
+                }
+                databaseReference.child(CHANGES).updateChildren(removals, (error, ref) -> {
+                    if (error != null) {
+                        logger.error("Change log compaction failed: {}", error.getMessage());
+                    } else {
+                        logger.info("Compacted {} change log entries up to sequence {}", removals.size(), highest);
+                    }
+                });
+            }
+        });
+    }
+}
@@ -1,46 +1,108 @@
 package com.ecommerce.app.service;
 
-import com.ecommerce.app.config.FirebaseConfig;
+import com.ecommerce.app.codec.Codecs;
+import com.ecommerce.app.codec.EntityCodec;
+import com.ecommerce.app.invalidation.Invalidation;
+import com.ecommerce.app.invalidation.InvalidationBus;
+import com.ecommerce.app.journal.OrderJournal;
+import com.ecommerce.app.metrics.FirebaseMetrics;
+import com.ecommerce.app.metrics.FirebaseMetrics.Operation;
 import com.ecommerce.app.model.User;
 import com.ecommerce.app.model.Product;
 import com.ecommerce.app.model.Order;
+import com.ecommerce.app.outbox.Outbox;
+import com.ecommerce.app.resilience.FirebaseGuard;
+import com.ecommerce.app.resilience.ReadHedger;
+import com.ecommerce.app.tracing.Tracer;
 import com.google.firebase.database.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 @Service
 public class FirebaseService {
 
     @Autowired
-    private FirebaseConfig firebaseConfig;
-    
+    private DatabaseReference databaseReference;
+
     @Autowired
     private IdGeneratorService idGeneratorService;
 
-    private DatabaseReference databaseReference;
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    @Autowired
+    private OrderJournal orderJournal;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private FirebaseMetrics metrics;
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private FirebaseGuard guard;
+
+    @Autowired
+    private ReadHedger hedger;
 
+    /**
+     * Applies product changes made on other nodes to this node's catalog by re-reading
+     * the product. If the read fails, the whole catalog is reloaded on its next use.
+     */
     @PostConstruct
-    public void init() {
-        this.databaseReference = FirebaseDatabase.getInstance().getReference();
+    public void subscribeToInvalidations() {
+        invalidationBus.addHandler(Invalidation.Entity.PRODUCT, invalidation -> {
+            // A stale catalog is reloaded in full on its next read anyway
+            if (!productCatalog.isFresh()) {
+                return;
+            }
+            String id = invalidation.getId();
+            fetchProductById(id).whenComplete((product, throwable) -> {
+                if (throwable != null) {
+                    productCatalog.markStale();
+                } else if (product != null) {
+                    productCatalog.upsert(product);
+                } else {
+                    productCatalog.remove(id);
+                }
+            });
+        });
     }
 
-
     // User operations
     public CompletableFuture<User> saveUser(User user) {
+        long started = metrics.start(Operation.SAVE_USER);
         CompletableFuture<User> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.SAVE_USER, future)) {
+            return metrics.finish(Operation.SAVE_USER, started, future);
+        }
         
         // Generate custom ID for the user
         idGeneratorService.generateId(IdGeneratorService.IdType.USER)
             .thenAccept(customId -> {
                 user.setId(customId);
-                DatabaseReference userRef = databaseReference.child("users").child(customId);
+                Map<String, Object> update = new HashMap<>();
+                update.put("users/" + customId, Codecs.USER.toMap(user));
+                outbox.userCreated(update, user);
 
-                userRef.setValue(user, (databaseError, databaseReference) -> {
+                databaseReference.updateChildren(update, (databaseError, databaseReference) -> {
                     if (databaseError != null) {
                         future.completeExceptionally(databaseError.toException());
                     } else {
@@ -53,11 +115,15 @@ public class FirebaseService {
                 return null;
             });
 
-        return future;
+        return metrics.finish(Operation.SAVE_USER, started, future);
     }
 
     public CompletableFuture<User> getUserByEmail(String email) {
+        long started = metrics.start(Operation.GET_USER_BY_EMAIL);
         CompletableFuture<User> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.GET_USER_BY_EMAIL, future)) {
+            return metrics.finish(Operation.GET_USER_BY_EMAIL, started, future);
+        }
 
         databaseReference.child("users")
                 .orderByChild("email")
@@ -67,8 +133,7 @@ public class FirebaseService {
                     public void onDataChange(DataSnapshot dataSnapshot) {
                         if (dataSnapshot.exists()) {
                             for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                                User user = snapshot.getValue(User.class);
-                                user.setId(snapshot.getKey());
+                                User user = Codecs.USER.decode(snapshot);
                                 future.complete(user);
                                 return;
                             }
@@ -82,19 +147,22 @@ public class FirebaseService {
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.GET_USER_BY_EMAIL, started, future);
     }
 
     public CompletableFuture<User> getUserById(String userId) {
+        long started = metrics.start(Operation.GET_USER_BY_ID);
         CompletableFuture<User> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.GET_USER_BY_ID, future)) {
+            return metrics.finish(Operation.GET_USER_BY_ID, started, future);
+        }
 
         databaseReference.child("users").child(userId)
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
                         if (dataSnapshot.exists()) {
-                            User user = dataSnapshot.getValue(User.class);
-                            user.setId(dataSnapshot.getKey());
+                            User user = Codecs.USER.decode(dataSnapshot);
                             future.complete(user);
                         } else {
                             future.complete(null);
@@ -107,48 +175,62 @@ public class FirebaseService {
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.GET_USER_BY_ID, started, future);
     }
 
     // Product operations
     public CompletableFuture<Product> saveProduct(Product product) {
+        long started = metrics.start(Operation.SAVE_PRODUCT);
         CompletableFuture<Product> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.SAVE_PRODUCT, future)) {
+            return metrics.finish(Operation.SAVE_PRODUCT, started, future);
+        }
         
         // Generate custom ID for the product
+        Map<String, Object> update = new HashMap<>();
         idGeneratorService.generateId(IdGeneratorService.IdType.PRODUCT)
-            .thenAccept(customId -> {
+            .thenCompose(customId -> {
                 product.setId(customId);
-                DatabaseReference productRef = databaseReference.child("products").child(customId);
-
-                productRef.setValue(product, (databaseError, databaseReference) -> {
-                    if (databaseError != null) {
-                        future.completeExceptionally(databaseError.toException());
-                    } else {
-                        future.complete(product);
-                    }
-                });
+                update.put("products/" + customId, Codecs.PRODUCT.toMap(product));
+                outbox.productSaved(update, product, true);
+                return changeLogService.recordProduct(update, product);
             })
+            .thenRun(() -> changeLogService.write(update, (databaseError, databaseReference) -> {
+                if (databaseError != null) {
+                    future.completeExceptionally(databaseError.toException());
+                } else {
+                    productCatalog.upsert(product);
+                    invalidationBus.publish(Invalidation.Entity.PRODUCT, product.getId(), System.currentTimeMillis());
+                    future.complete(product);
+                }
+            }))
             .exceptionally(throwable -> {
                 future.completeExceptionally(throwable);
                 return null;
             });
 
-        return future;
+        return metrics.finish(Operation.SAVE_PRODUCT, started, future);
     }
 
     public CompletableFuture<List<Product>> getAllProducts() {
+        return guard.withFallback(Operation.GET_ALL_PRODUCTS, "products", fetchAllProducts());
+    }
+
+    private CompletableFuture<List<Product>> fetchAllProducts() {
+        long started = metrics.start(Operation.GET_ALL_PRODUCTS);
         CompletableFuture<List<Product>> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.GET_ALL_PRODUCTS, future)) {
+            return metrics.finish(Operation.GET_ALL_PRODUCTS, started, future);
+        }
 
+        long loadStarted = productCatalog.beginLoad();
         databaseReference.child("products")
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
-                        List<Product> products = new ArrayList<>();
-                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                            Product product = snapshot.getValue(Product.class);
-                            product.setId(snapshot.getKey());
-                            products.add(product);
-                        }
+                        metrics.recordRead(Operation.GET_ALL_PRODUCTS, dataSnapshot);
+                        List<Product> products = Codecs.PRODUCT.decodeChildren(dataSnapshot);
+                        productCatalog.replaceAll(products, loadStarted);
                         future.complete(products);
                     }
 
@@ -158,19 +240,47 @@ public class FirebaseService {
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.GET_ALL_PRODUCTS, started, future);
+    }
+
+    /**
+     * Returns the indexed product catalog, reloading it from Firebase when it is stale
+     * @return CompletableFuture containing the current catalog snapshot
+     */
+    public CompletableFuture<CatalogSnapshot> getProductCatalog() {
+        if (productCatalog.isFresh()) {
+            return CompletableFuture.completedFuture(productCatalog.snapshot());
+        }
+        return getAllProducts().thenApply(products -> productCatalog.snapshot());
+    }
+
+    /**
+     * Returns the indexed product catalog only if it can be served without a Firebase read
+     * @return The current catalog snapshot, or null if it is stale
+     */
+    public CatalogSnapshot peekProductCatalog() {
+        return productCatalog.isFresh() ? productCatalog.snapshot() : null;
     }
 
     public CompletableFuture<Product> getProductById(String id) {
+        return guard.withFallback(Operation.GET_PRODUCT_BY_ID, "products/" + id,
+                hedger.read(Operation.GET_PRODUCT_BY_ID, () -> fetchProductById(id),
+                        () -> readByKeyQuery(Operation.GET_PRODUCT_BY_ID, "products", id, Codecs.PRODUCT)));
+    }
+
+    private CompletableFuture<Product> fetchProductById(String id) {
+        long started = metrics.start(Operation.GET_PRODUCT_BY_ID);
         CompletableFuture<Product> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.GET_PRODUCT_BY_ID, future)) {
+            return metrics.finish(Operation.GET_PRODUCT_BY_ID, started, future);
+        }
 
         databaseReference.child("products").child(id)
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
                         if (dataSnapshot.exists()) {
-                            Product product = dataSnapshot.getValue(Product.class);
-                            product.setId(dataSnapshot.getKey());
+                            Product product = Codecs.PRODUCT.decode(dataSnapshot);
                             future.complete(product);
                         } else {
                             future.complete(null);
@@ -183,54 +293,81 @@ public class FirebaseService {
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.GET_PRODUCT_BY_ID, started, future);
     }
 
     public CompletableFuture<Product> updateProduct(String id, Product product) {
+        long started = metrics.start(Operation.UPDATE_PRODUCT);
         CompletableFuture<Product> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.UPDATE_PRODUCT, future)) {
+            return metrics.finish(Operation.UPDATE_PRODUCT, started, future);
+        }
         product.setId(id);
+        Map<String, Object> update = new HashMap<>();
+        update.put("products/" + id, Codecs.PRODUCT.toMap(product));
+        outbox.productSaved(update, product, false);
+
+        changeLogService.recordProduct(update, product)
+            .thenRun(() -> changeLogService.write(update, (databaseError, databaseReference) -> {
+                if (databaseError != null) {
+                    future.completeExceptionally(databaseError.toException());
+                } else {
+                    productCatalog.upsert(product);
+                    invalidationBus.publish(Invalidation.Entity.PRODUCT, id, System.currentTimeMillis());
+                    future.complete(product);
+                }
+            }))
+            .exceptionally(throwable -> {
+                future.completeExceptionally(throwable);
+                return null;
+            });
 
-        databaseReference.child("products").child(id)
-                .setValue(product, (databaseError, databaseReference) -> {
-                    if (databaseError != null) {
-                        future.completeExceptionally(databaseError.toException());
-                    } else {
-                        future.complete(product);
-                    }
-                });
-
-        return future;
+        return metrics.finish(Operation.UPDATE_PRODUCT, started, future);
     }
 
     public CompletableFuture<Void> deleteProduct(String id) {
+        long started = metrics.start(Operation.DELETE_PRODUCT);
         CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.DELETE_PRODUCT, future)) {
+            return metrics.finish(Operation.DELETE_PRODUCT, started, future);
+        }
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("products/" + id, null);
+        outbox.productDeleted(update, id);
+
+        changeLogService.recordProductDeleted(update, id)
+            .thenRun(() -> changeLogService.write(update, (databaseError, databaseReference) -> {
+                if (databaseError != null) {
+                    future.completeExceptionally(databaseError.toException());
+                } else {
+                    productCatalog.remove(id);
+                    invalidationBus.publish(Invalidation.Entity.PRODUCT, id, System.currentTimeMillis());
+                    future.complete(null);
+                }
+            }))
+            .exceptionally(throwable -> {
+                future.completeExceptionally(throwable);
+                return null;
+            });
 
-        databaseReference.child("products").child(id)
-                .removeValue((databaseError, databaseReference) -> {
-                    if (databaseError != null) {
-                        future.completeExceptionally(databaseError.toException());
-                    } else {
-                        future.complete(null);
-                    }
-                });
-
-        return future;
+        return metrics.finish(Operation.DELETE_PRODUCT, started, future);
     }
 
     // User management operations
     public CompletableFuture<List<User>> getAllUsers() {
+        long started = metrics.start(Operation.GET_ALL_USERS);
         CompletableFuture<List<User>> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.GET_ALL_USERS, future)) {
+            return metrics.finish(Operation.GET_ALL_USERS, started, future);
+        }
 
         databaseReference.child("users")
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
-                        List<User> users = new ArrayList<>();
-                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                            User user = snapshot.getValue(User.class);
-                            user.setId(snapshot.getKey());
-                            users.add(user);
-                        }
+                        metrics.recordRead(Operation.GET_ALL_USERS, dataSnapshot);
+                        List<User> users = Codecs.USER.decodeChildren(dataSnapshot);
                         future.complete(users);
                     }
 
@@ -240,77 +377,233 @@ public class FirebaseService {
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.GET_ALL_USERS, started, future);
     }
 
     public CompletableFuture<User> updateUserRole(String userId, String role) {
+        long started = metrics.start(Operation.UPDATE_USER_ROLE);
         CompletableFuture<User> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.UPDATE_USER_ROLE, future)) {
+            return metrics.finish(Operation.UPDATE_USER_ROLE, started, future);
+        }
+
+        // Fetch the updated user after role update; runs on the Firebase callback thread
+        Runnable fetchUpdatedUser = tracer.wrap(() -> getUserById(userId).thenAccept(user -> {
+            if (user != null) {
+                future.complete(user);
+            } else {
+                future.completeExceptionally(new RuntimeException("User not found after role update"));
+            }
+        }).exceptionally(throwable -> {
+            future.completeExceptionally(throwable);
+            return null;
+        }));
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("users/" + userId + "/role", role);
+        outbox.userRoleChanged(update, userId, role);
+
+        databaseReference.updateChildren(update, (databaseError, databaseReference) -> {
+            if (databaseError != null) {
+                future.completeExceptionally(databaseError.toException());
+            } else {
+                fetchUpdatedUser.run();
+            }
+        });
 
-        databaseReference.child("users").child(userId).child("role")
-                .setValue(role, (databaseError, databaseReference) -> {
+        return metrics.finish(Operation.UPDATE_USER_ROLE, started, future);
+    }
+
+    /**
+     * Replaces a user's password hash, e.g. after rehashing it with a higher cost
+     * @param userId ID of the user
+     * @param passwordHash The new BCrypt hash
+     * @return CompletableFuture completed when the write is acknowledged
+     */
+    public CompletableFuture<Void> updateUserPassword(String userId, String passwordHash) {
+        long started = metrics.start(Operation.UPDATE_USER_PASSWORD);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.UPDATE_USER_PASSWORD, future)) {
+            return metrics.finish(Operation.UPDATE_USER_PASSWORD, started, future);
+        }
+
+        databaseReference.child("users").child(userId).child("password")
+                .setValue(passwordHash, (databaseError, databaseReference) -> {
                     if (databaseError != null) {
                         future.completeExceptionally(databaseError.toException());
                     } else {
-                        // Fetch the updated user after role update
-                        getUserById(userId).thenAccept(user -> {
-                            if (user != null) {
-                                future.complete(user);
-                            } else {
-                                future.completeExceptionally(new RuntimeException("User not found after role update"));
-                            }
-                        }).exceptionally(throwable -> {
-                            future.completeExceptionally(throwable);
-                            return null;
-                        });
+                        future.complete(null);
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.UPDATE_USER_PASSWORD, started, future);
     }
 
     public CompletableFuture<Void> deleteUser(String userId) {
+        long started = metrics.start(Operation.DELETE_USER);
         CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.DELETE_USER, future)) {
+            return metrics.finish(Operation.DELETE_USER, started, future);
+        }
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("users/" + userId, null);
+        outbox.userDeleted(update, userId);
+
+        databaseReference.updateChildren(update, (databaseError, databaseReference) -> {
+            if (databaseError != null) {
+                future.completeExceptionally(databaseError.toException());
+            } else {
+                future.complete(null);
+            }
+        });
 
-        databaseReference.child("users").child(userId)
-                .removeValue((databaseError, databaseReference) -> {
-                    if (databaseError != null) {
+        return metrics.finish(Operation.DELETE_USER, started, future);
+    }
+
+    // Cart operations
+    /**
+     * @param userId Owner of the cart
+     * @return CompletableFuture containing product ID to quantity, empty if the user has no cart
+     */
+    public CompletableFuture<Map<String, Integer>> getCart(String userId) {
+        long started = metrics.start(Operation.GET_CART);
+        CompletableFuture<Map<String, Integer>> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.GET_CART, future)) {
+            return metrics.finish(Operation.GET_CART, started, future);
+        }
+
+        databaseReference.child("carts").child(userId)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        Map<String, Integer> lines = new LinkedHashMap<>();
+                        for (DataSnapshot line : dataSnapshot.getChildren()) {
+                            if (line.getValue() instanceof Number) {
+                                lines.put(line.getKey(), ((Number) line.getValue()).intValue());
+                            }
+                        }
+                        future.complete(lines);
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
                         future.completeExceptionally(databaseError.toException());
-                    } else {
-                        future.complete(null);
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.GET_CART, started, future);
+    }
+
+    /**
+     * Writes cart lines of several users in one multi-path update
+     * @param cartsByUser Paths under carts/, "{userId}/{productId}" to quantity; null deletes the line
+     * @return CompletableFuture completed when the write is acknowledged
+     */
+    public CompletableFuture<Void> saveCarts(Map<String, Object> cartsByUser) {
+        long started = metrics.start(Operation.SAVE_CARTS);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.SAVE_CARTS, future)) {
+            return metrics.finish(Operation.SAVE_CARTS, started, future);
+        }
+
+        databaseReference.child("carts").updateChildren(cartsByUser, (databaseError, databaseReference) -> {
+            if (databaseError != null) {
+                future.completeExceptionally(databaseError.toException());
+            } else {
+                future.complete(null);
+            }
+        });
+
+        return metrics.finish(Operation.SAVE_CARTS, started, future);
     }
 
     // Order operations
+    /**
+     * Saves a new order: takes an ID from the locally reserved block, then writes the
+     * order and its change log entry in one multi-path update
+     * @param order The order to create
+     * @return CompletableFuture containing the saved order with its ID set
+     */
     public CompletableFuture<Order> saveOrder(Order order) {
+        return writeNewOrder(order, Map.of(), null);
+    }
+
+    /**
+     * Saves a new order under an idempotency key, storing the key's response in the same write
+     * @param order The order to create
+     * @param completion Adds the idempotency response to the write
+     * @return CompletableFuture containing the saved order with its ID set
+     */
+    public CompletableFuture<Order> saveOrder(Order order, IdempotencyService.Completion<Order> completion) {
+        return writeNewOrder(order, Map.of(), completion);
+    }
+
+    /**
+     * Saves an order placed from a cart: creates the order and deletes the ordered cart lines
+     * in one multi-path write, so neither can happen without the other. Lines written to the
+     * cart since it was read are left in place
+     * @param order The order to create; its userId names the cart
+     * @param productIds Products whose cart lines were ordered
+     * @param completion Adds an idempotency response to the write, may be null
+     * @return CompletableFuture containing the saved order with its ID set
+     */
+    public CompletableFuture<Order> saveOrderAndRemoveCartLines(Order order, Collection<String> productIds,
+                                                                IdempotencyService.Completion<Order> completion) {
+        Map<String, Object> orderedLines = new HashMap<>();
+        for (String productId : productIds) {
+            orderedLines.put("carts/" + order.getUserId() + "/" + productId, null);
+        }
+        return writeNewOrder(order, orderedLines, completion);
+    }
+
+    // One root update for the order, its change log entry and the extra paths. While order IDs
+    // and change sequence numbers are left in their blocks, nothing waits before the write
+    private CompletableFuture<Order> writeNewOrder(Order order, Map<String, Object> extraPaths,
+                                                   IdempotencyService.Completion<Order> completion) {
+        long started = metrics.start(Operation.SAVE_ORDER);
         CompletableFuture<Order> future = new CompletableFuture<>();
-        
-        // Generate custom ID for the order
-        idGeneratorService.generateId(IdGeneratorService.IdType.ORDER)
-            .thenAccept(customId -> {
-                order.setId(customId);
-                DatabaseReference orderRef = databaseReference.child("orders").child(customId);
+        if (!guard.admit(Operation.SAVE_ORDER, future)) {
+            return metrics.finish(Operation.SAVE_ORDER, started, future);
+        }
 
-                orderRef.setValue(order, (databaseError, databaseReference) -> {
-                    if (databaseError != null) {
-                        future.completeExceptionally(databaseError.toException());
-                    } else {
-                        future.complete(order);
-                    }
-                });
+        Map<String, Object> update = new HashMap<>(extraPaths);
+        idGeneratorService.nextId(IdGeneratorService.IdType.ORDER)
+            .thenCompose(customId -> {
+                order.setId(customId);
+                update.put("orders/" + customId, Codecs.ORDER.toMap(order));
+                outbox.orderCreated(update, order);
+                if (completion != null) {
+                    completion.addTo(update, order);
+                }
+                return changeLogService.recordOrder(update, order);
             })
+            .thenRun(() -> changeLogService.write(update, (databaseError, databaseReference) -> {
+                if (databaseError != null) {
+                    future.completeExceptionally(databaseError.toException());
+                } else {
+                    orderJournal.orderCreated(order);
+                    future.complete(order);
+                }
+            }))
             .exceptionally(throwable -> {
                 future.completeExceptionally(throwable);
                 return null;
             });
 
-        return future;
+        return metrics.finish(Operation.SAVE_ORDER, started, future);
     }
 
     public CompletableFuture<List<Order>> getOrdersByUserId(String userId) {
+        return guard.withFallback(Operation.GET_ORDERS_BY_USER_ID, "orders?userId=" + userId, fetchOrdersByUserId(userId));
+    }
+
+    private CompletableFuture<List<Order>> fetchOrdersByUserId(String userId) {
+        long started = metrics.start(Operation.GET_ORDERS_BY_USER_ID);
         CompletableFuture<List<Order>> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.GET_ORDERS_BY_USER_ID, future)) {
+            return metrics.finish(Operation.GET_ORDERS_BY_USER_ID, started, future);
+        }
 
         databaseReference.child("orders")
                 .orderByChild("userId")
@@ -318,14 +611,10 @@ public class FirebaseService {
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
-                        List<Order> orders = new ArrayList<>();
-                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                            Order order = snapshot.getValue(Order.class);
-                            order.setId(snapshot.getKey());
-                            orders.add(order);
-                        }
+                        metrics.recordRead(Operation.GET_ORDERS_BY_USER_ID, dataSnapshot);
+                        List<Order> orders = Codecs.ORDER.decodeChildren(dataSnapshot);
                         // Sort by timestamp descending (newest first)
-                        orders.sort((o1, o2) -> Long.compare(o2.getTimestamp(), o1.getTimestamp()));
+                        orders.sort(Order.NEWEST_FIRST);
                         future.complete(orders);
                     }
 
@@ -335,24 +624,28 @@ public class FirebaseService {
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.GET_ORDERS_BY_USER_ID, started, future);
     }
 
     public CompletableFuture<List<Order>> getAllOrders() {
+        return guard.withFallback(Operation.GET_ALL_ORDERS, "orders", fetchAllOrders());
+    }
+
+    private CompletableFuture<List<Order>> fetchAllOrders() {
+        long started = metrics.start(Operation.GET_ALL_ORDERS);
         CompletableFuture<List<Order>> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.GET_ALL_ORDERS, future)) {
+            return metrics.finish(Operation.GET_ALL_ORDERS, started, future);
+        }
 
         databaseReference.child("orders")
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
-                        List<Order> orders = new ArrayList<>();
-                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                            Order order = snapshot.getValue(Order.class);
-                            order.setId(snapshot.getKey());
-                            orders.add(order);
-                        }
+                        metrics.recordRead(Operation.GET_ALL_ORDERS, dataSnapshot);
+                        List<Order> orders = Codecs.ORDER.decodeChildren(dataSnapshot);
                         // Sort by timestamp descending (newest first)
-                        orders.sort((o1, o2) -> Long.compare(o2.getTimestamp(), o1.getTimestamp()));
+                        orders.sort(Order.NEWEST_FIRST);
                         future.complete(orders);
                     }
 
@@ -362,19 +655,29 @@ public class FirebaseService {
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.GET_ALL_ORDERS, started, future);
     }
 
     public CompletableFuture<Order> getOrderById(String orderId) {
+        return guard.withFallback(Operation.GET_ORDER_BY_ID, "orders/" + orderId,
+                hedger.read(Operation.GET_ORDER_BY_ID, () -> fetchOrderById(orderId),
+                        () -> readByKeyQuery(Operation.GET_ORDER_BY_ID, "orders", orderId, Codecs.ORDER)));
+    }
+
+    // Always reads the database; used where a remembered order must not be modified and written back
+    private CompletableFuture<Order> fetchOrderById(String orderId) {
+        long started = metrics.start(Operation.GET_ORDER_BY_ID);
         CompletableFuture<Order> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.GET_ORDER_BY_ID, future)) {
+            return metrics.finish(Operation.GET_ORDER_BY_ID, started, future);
+        }
 
         databaseReference.child("orders").child(orderId)
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
                         if (dataSnapshot.exists()) {
-                            Order order = dataSnapshot.getValue(Order.class);
-                            order.setId(dataSnapshot.getKey());
+                            Order order = Codecs.ORDER.decode(dataSnapshot);
                             future.complete(order);
                         } else {
                             future.complete(null);
@@ -387,14 +690,18 @@ public class FirebaseService {
                     }
                 });
 
-        return future;
+        return metrics.finish(Operation.GET_ORDER_BY_ID, started, future);
     }
 
     public CompletableFuture<Order> updateOrderStatus(String orderId, String newStatus) {
+        long started = metrics.start(Operation.UPDATE_ORDER_STATUS);
         CompletableFuture<Order> future = new CompletableFuture<>();
+        if (!guard.admit(Operation.UPDATE_ORDER_STATUS, future)) {
+            return metrics.finish(Operation.UPDATE_ORDER_STATUS, started, future);
+        }
 
         // First get the current order to validate the status transition
-        getOrderById(orderId).thenAccept(order -> {
+        fetchOrderById(orderId).thenAccept(order -> {
             if (order == null) {
                 future.completeExceptionally(new RuntimeException("Order not found"));
                 return;
@@ -405,17 +712,27 @@ public class FirebaseService {
                 com.ecommerce.app.model.OrderStatus orderStatus = com.ecommerce.app.model.OrderStatus.fromString(newStatus);
                 
                 // Update the order status with validation
+                com.ecommerce.app.model.OrderStatus previousStatus = order.getStatus();
                 order.updateStatus(orderStatus);
 
                 // Save the updated order back to Firebase
-                databaseReference.child("orders").child(orderId)
-                        .setValue(order, (databaseError, databaseReference) -> {
-                            if (databaseError != null) {
-                                future.completeExceptionally(databaseError.toException());
-                            } else {
-                                future.complete(order);
-                            }
-                        });
+                Map<String, Object> update = new HashMap<>();
+                update.put("orders/" + orderId, Codecs.ORDER.toMap(order));
+                outbox.orderStatusChanged(update, order, previousStatus);
+
+                changeLogService.recordOrder(update, order)
+                    .thenRun(() -> changeLogService.write(update, (databaseError, databaseReference) -> {
+                        if (databaseError != null) {
+                            future.completeExceptionally(databaseError.toException());
+                        } else {
+                            orderJournal.statusChanged(order, previousStatus);
+                            future.complete(order);
+                        }
+                    }))
+                    .exceptionally(throwable -> {
+                        future.completeExceptionally(throwable);
+                        return null;
+                    });
 
             } catch (IllegalArgumentException e) {
                 future.completeExceptionally(e);
@@ -425,6 +742,37 @@ public class FirebaseService {
             return null;
         });
 
-        return future;
+        return metrics.finish(Operation.UPDATE_ORDER_STATUS, started, future);
+    }
+
+    // Reads path/id through a key query instead of child(id). Firebase treats it as a separate
+    // listen and sends its own request, which is what a hedged read needs.
+    private <T> CompletableFuture<T> readByKeyQuery(Operation operation, String path, String id,
+                                                    EntityCodec<T> codec) {
+        // Recorded under the same operation: the hedge is real load and a real answer
+        long started = metrics.start(operation);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!guard.admit(operation, future)) {
+            return metrics.finish(operation, started, future);
+        }
+
+        databaseReference.child(path).orderByKey().equalTo(id)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                            future.complete(codec.decode(snapshot));
+                            return;
+                        }
+                        future.complete(null);
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        future.completeExceptionally(databaseError.toException());
+                    }
+                });
+
+        return metrics.finish(operation, started, future);
     }
-}
\ No newline at end of file
+}
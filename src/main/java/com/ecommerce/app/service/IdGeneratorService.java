@@ -1,22 +1,47 @@
 package com.ecommerce.app.service;
 
+import com.ecommerce.app.metrics.FirebaseMetrics;
+import com.ecommerce.app.metrics.FirebaseMetrics.Operation;
+import com.ecommerce.app.metrics.TransactionProfiler;
 import com.ecommerce.app.model.IdCounter;
 import com.google.firebase.database.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class IdGeneratorService {
 
+    @Autowired
     private DatabaseReference databaseReference;
 
+    // Replaced by the Spring beans; the defaults keep directly constructed instances working
+    @Autowired
+    private FirebaseMetrics metrics = FirebaseMetrics.noop();
+
+    @Autowired
+    private TransactionProfiler transactionProfiler = TransactionProfiler.noop();
+
+    @Value("${ids.block-size:100}")
+    private int blockSize = 100;
+
+    private final Map<IdType, IdBlock> blocks = new EnumMap<>(IdType.class);
+
     public enum IdType {
         USER("USR", "users"),
         PRODUCT("PRD", "products"),
-        ORDER("ORD", "orders");
+        ORDER("ORD", "orders"),
+        // Change log sequence numbers, handed out as plain numbers by nextNumber
+        CHANGE("CHG", "changes");
 
         private final String prefix;
         private final String counterKey;
@@ -35,46 +60,115 @@ public class IdGeneratorService {
         }
     }
 
-    @PostConstruct
-    public void init() {
-        this.databaseReference = FirebaseDatabase.getInstance().getReference();
-    }
-
     /**
      * Generates a thread-safe sequential ID for the specified type
      * @param type The type of entity (USER, PRODUCT, ORDER)
      * @return CompletableFuture containing the generated ID
      */
     public CompletableFuture<String> generateId(IdType type) {
-        CompletableFuture<String> future = new CompletableFuture<>();
+        long started = metrics.start(Operation.GENERATE_ID);
+        CompletableFuture<String> future = increment(type, 1, started)
+                .thenApply(value -> formatId(type.getPrefix(), value));
+        return metrics.finish(Operation.GENERATE_ID, started, future);
+    }
+
+    /**
+     * Takes the next ID from a block of {@code ids.block-size} IDs this node reserved with
+     * one counter transaction. The next block is reserved while half of the current one
+     * is still left, so the returned future is normally already complete and the caller
+     * can write the entity without waiting for a transaction.
+     *
+     * IDs stay unique across nodes and mix with {@link #generateId}, but they are no longer
+     * handed out in creation order across nodes, and the unused rest of a block is skipped
+     * when the node restarts.
+     * @param type The type of entity (USER, PRODUCT, ORDER)
+     * @return CompletableFuture containing the ID
+     */
+    public CompletableFuture<String> nextId(IdType type) {
+        return block(type).take().thenApply(number -> formatId(type.getPrefix(), number));
+    }
+
+    /**
+     * Same as {@link #nextId} without the prefix, for counters that are not entity IDs
+     * @param type The counter to take from
+     * @return CompletableFuture containing the number
+     */
+    public CompletableFuture<Long> nextNumber(IdType type) {
+        return block(type).take();
+    }
+
+    /**
+     * Stops handing out a type's reserved numbers once their block is older than maxAgeMs,
+     * counted from when its reservation started. Numbers dropped this way are returned
+     * by {@link #releaseExpired}.
+     * @param type The counter whose blocks expire
+     * @param maxAgeMs Longest time a block is used
+     */
+    public void expireBlocks(IdType type, long maxAgeMs) {
+        block(type).setMaxAge(maxAgeMs);
+    }
+
+    /**
+     * @param type The counter whose blocks expire
+     * @return Ranges {first, last} of numbers expired since the last call, which will never be handed out
+     */
+    public List<long[]> releaseExpired(IdType type) {
+        return block(type).release(false);
+    }
+
+    /**
+     * Gives up every number reserved and not yet handed out, e.g. on shutdown
+     * @param type The counter to release
+     * @return Ranges {first, last} of numbers that will never be handed out
+     */
+    public List<long[]> releaseAll(IdType type) {
+        return block(type).release(true);
+    }
+
+    private IdBlock block(IdType type) {
+        synchronized (blocks) {
+            return blocks.computeIfAbsent(type, IdBlock::new);
+        }
+    }
+
+    // Adds delta to the type's counter and completes with the new value
+    private CompletableFuture<Long> increment(IdType type, long delta, long started) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
         
         String counterPath = "counters/" + type.getCounterKey();
         DatabaseReference counterRef = databaseReference.child(counterPath);
         
         // Use Firebase transaction for atomic increment - Firebase handles concurrency
         counterRef.runTransaction(new Transaction.Handler() {
+            // doTransaction runs again every time the counter moved under us
+            private final AtomicInteger attempts = new AtomicInteger();
+
             @Override
             public Transaction.Result doTransaction(MutableData mutableData) {
+                attempts.incrementAndGet();
                 Long currentValue = mutableData.getValue(Long.class);
                 if (currentValue == null) {
                     // Initialize counter if it doesn't exist
-                    mutableData.setValue(1L);
+                    mutableData.setValue(delta);
                 } else {
                     // Increment the counter
-                    mutableData.setValue(currentValue + 1);
+                    mutableData.setValue(currentValue + delta);
                 }
                 return Transaction.success(mutableData);
             }
 
             @Override
             public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
+                transactionProfiler.record(type, attempts.get(), started,
+                        databaseError != null ? TransactionProfiler.Outcome.ERROR
+                                : committed ? TransactionProfiler.Outcome.COMMITTED
+                                : TransactionProfiler.Outcome.UNCOMMITTED);
                 if (databaseError != null) {
                     future.completeExceptionally(databaseError.toException());
                 } else if (committed) {
                     Long newValue = dataSnapshot.getValue(Long.class);
                     if (newValue != null) {
-                        String formattedId = formatId(type.getPrefix(), newValue);
-                        future.complete(formattedId);
+                        future.complete(newValue);
                     } else {
                         future.completeExceptionally(new RuntimeException("Failed to get counter value"));
                     }
@@ -94,7 +188,27 @@ public class IdGeneratorService {
      * @return Formatted ID (e.g., USR-0001)
      */
     private String formatId(String prefix, Long number) {
-        return String.format("%s-%04d", prefix, number);
+        return formatSequentialId(prefix, number);
+    }
+
+    /**
+     * Same output as {@code String.format("%s-%04d", prefix, number)} without parsing a
+     * format string on every ID
+     * @param prefix The prefix (USR, PRD, ORD)
+     * @param number The sequential number
+     * @return Formatted ID (e.g., USR-0001)
+     */
+    public static String formatSequentialId(String prefix, long number) {
+        if (number < 0) {
+            return String.format("%s-%04d", prefix, number);
+        }
+        String digits = Long.toString(number);
+        StringBuilder id = new StringBuilder(prefix.length() + 1 + Math.max(4, digits.length()));
+        id.append(prefix).append('-');
+        for (int i = digits.length(); i < 4; i++) {
+            id.append('0');
+        }
+        return id.append(digits).toString();
     }
 
     /**
@@ -103,6 +217,7 @@ public class IdGeneratorService {
      * @return CompletableFuture containing the current counter value
      */
     public CompletableFuture<Long> getCurrentCounter(IdType type) {
+        long started = metrics.start(Operation.GET_COUNTER);
         CompletableFuture<Long> future = new CompletableFuture<>();
         
         String counterPath = "counters/" + type.getCounterKey();
@@ -121,7 +236,7 @@ public class IdGeneratorService {
             }
         });
         
-        return future;
+        return metrics.finish(Operation.GET_COUNTER, started, future);
     }
 
     /**
@@ -130,6 +245,7 @@ public class IdGeneratorService {
      * @return CompletableFuture indicating completion
      */
     public CompletableFuture<Void> resetCounter(IdType type) {
+        long started = metrics.start(Operation.RESET_COUNTER);
         CompletableFuture<Void> future = new CompletableFuture<>();
         
         String counterPath = "counters/" + type.getCounterKey();
@@ -143,6 +259,156 @@ public class IdGeneratorService {
             }
         });
         
-        return future;
+        return metrics.finish(Operation.RESET_COUNTER, started, future);
+    }
+
+    // IDs reserved for one type: the block being handed out and, once reserved, the next one
+    private final class IdBlock {
+        private final IdType type;
+        private long next = 1;
+        private long last = 0;
+        private long reservedAt;
+        // {first, last, reservedAt}
+        private long[] spare;
+        // 0 keeps numbers until they are used
+        private long maxAgeMs;
+        private boolean reserving;
+        private final Queue<CompletableFuture<Long>> waiting = new ArrayDeque<>();
+        private final List<long[]> expired = new ArrayList<>();
+
+        IdBlock(IdType type) {
+            this.type = type;
+        }
+
+        synchronized void setMaxAge(long maxAgeMs) {
+            this.maxAgeMs = maxAgeMs;
+        }
+
+        CompletableFuture<Long> take() {
+            CompletableFuture<Long> future;
+            boolean reserve;
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                expire(now);
+                useSpareIfEmpty();
+                if (next <= last) {
+                    future = CompletableFuture.completedFuture(next++);
+                } else {
+                    future = new CompletableFuture<>();
+                    waiting.add(future);
+                }
+                reserve = startReserving(now);
+            }
+            if (reserve) {
+                reserve();
+            }
+            return future;
+        }
+
+        synchronized List<long[]> release(boolean all) {
+            if (all) {
+                drop();
+            } else {
+                expire(System.currentTimeMillis());
+            }
+            List<long[]> released = new ArrayList<>(expired);
+            expired.clear();
+            return released;
+        }
+
+        // Called with the lock held
+        private void useSpareIfEmpty() {
+            if (next > last && spare != null) {
+                next = spare[0];
+                last = spare[1];
+                reservedAt = spare[2];
+                spare = null;
+            }
+        }
+
+        // Called with the lock held; moves numbers of blocks past their age to expired
+        private void expire(long now) {
+            if (maxAgeMs <= 0) {
+                return;
+            }
+            if (next <= last && now - reservedAt >= maxAgeMs) {
+                expired.add(new long[] {next, last});
+                next = last + 1;
+            }
+            if (spare != null && now - spare[2] >= maxAgeMs) {
+                expired.add(new long[] {spare[0], spare[1]});
+                spare = null;
+            }
+        }
+
+        // Called with the lock held
+        private void drop() {
+            if (next <= last) {
+                expired.add(new long[] {next, last});
+                next = last + 1;
+            }
+            if (spare != null) {
+                expired.add(new long[] {spare[0], spare[1]});
+                spare = null;
+            }
+        }
+
+        // Called with the lock held; true if the caller must start reserving the next block.
+        // Expiring blocks are replaced once half their age is gone, as well as when half used
+        private boolean startReserving(long now) {
+            if (reserving || spare != null) {
+                return false;
+            }
+            boolean halfUsed = (last - next + 1) * 2 <= blockSize;
+            boolean halfAged = maxAgeMs > 0 && (now - reservedAt) * 2 >= maxAgeMs;
+            if (!halfUsed && !halfAged) {
+                return false;
+            }
+            reserving = true;
+            return true;
+        }
+
+        private void reserve() {
+            long size = Math.max(1, blockSize);
+            long started = metrics.start(Operation.RESERVE_IDS);
+            long reserveStartedAt = System.currentTimeMillis();
+            metrics.finish(Operation.RESERVE_IDS, started, increment(type, size, started))
+                    .whenComplete((end, throwable) -> reserved(end, size, reserveStartedAt, throwable));
+        }
+
+        private void reserved(Long end, long size, long reserveStartedAt, Throwable throwable) {
+            List<CompletableFuture<Long>> served = new ArrayList<>();
+            List<Long> numbers = new ArrayList<>();
+            List<CompletableFuture<Long>> failed = new ArrayList<>();
+            boolean reserveAgain;
+            synchronized (this) {
+                reserving = false;
+                if (throwable != null) {
+                    // Fail only the callers waiting for this block; the next take() tries again
+                    failed.addAll(waiting);
+                    waiting.clear();
+                } else {
+                    // Aged from the start of the reservation, the earliest the counter can have moved
+                    spare = new long[] {end - size + 1, end, reserveStartedAt};
+                    while (!waiting.isEmpty()) {
+                        useSpareIfEmpty();
+                        if (next > last) {
+                            break;
+                        }
+                        served.add(waiting.poll());
+                        numbers.add(next++);
+                    }
+                }
+                reserveAgain = throwable == null && startReserving(System.currentTimeMillis());
+            }
+            // Completed outside the lock: callers continue with the database write inline
+            for (int i = 0; i < served.size(); i++) {
+                served.get(i).complete(numbers.get(i));
+            }
+            failed.forEach(future -> future.completeExceptionally(throwable));
+            if (reserveAgain) {
+                reserve();
+            }
+        }
     }
-}
\ No newline at end of file
+}
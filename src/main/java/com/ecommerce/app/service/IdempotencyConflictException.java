@@ -0,0 +1,26 @@
+package com.ecommerce.app.service;
+
+/**
+ * Thrown when an idempotency key cannot be honoured: the first request with the key
+ * is still running on another node, or the key was reused for a different request
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        IN_PROGRESS,
+        MISMATCH
+    }
+
+    private final Reason reason;
+
+    public IdempotencyConflictException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
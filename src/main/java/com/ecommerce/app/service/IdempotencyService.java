@@ -0,0 +1,330 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.codec.EntityCodec;
+import com.google.firebase.database.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs a create request at most once per idempotency key, so a client retrying
+ * POST /api/orders after a timeout gets the order it already placed instead of a
+ * second one.
+ *
+ * - In memory: the first request for a key stores its future; concurrent and later
+ *   duplicates on this node get that same future, in flight or completed, without
+ *   any database work. Entries expire after {@code idempotency.ttl-ms} and at most
+ *   {@code idempotency.max-entries} are kept; past that, keys are only checked in
+ *   Firebase.
+ * - In Firebase: the key is claimed under idempotency/{hash} with a transaction
+ *   before the request runs, and the response is stored there when it succeeds, so
+ *   a retry routed to another node replays it too. A retry that arrives while the
+ *   first request is still running elsewhere fails with IN_PROGRESS; a claim older
+ *   than {@code idempotency.pending-timeout-ms} is treated as abandoned.
+ *
+ * Keys are scoped to the caller and stored hashed. A key reused with a different
+ * request fingerprint fails with MISMATCH. A request that failed without writing
+ * anything (a validation error, or a write Firebase refused) releases its key so it
+ * can be retried at once. After any other failure, such as a timeout, the write may
+ * still land, so the claim stays pending: retries get IN_PROGRESS until the stored
+ * response shows up or the claim is abandoned. Actions that take a {@link Completion}
+ * store the response in the same multi-path update as their result, so a write that
+ * lands late completes the key with it.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final String IDEMPOTENCY = "idempotency";
+    private static final String PENDING = "pending";
+    private static final String DONE = "done";
+    private static final int CLEANUP_BATCH = 500;
+
+    @Autowired
+    private DatabaseReference databaseReference;
+
+    @Value("${idempotency.ttl-ms:86400000}")
+    private long ttlMs = 86400000L;
+
+    @Value("${idempotency.pending-timeout-ms:60000}")
+    private long pendingTimeoutMs = 60000L;
+
+    @Value("${idempotency.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Marks the key done as part of the action's own write
+     */
+    public interface Completion<T> {
+        /**
+         * Adds the paths that store the response to a root multi-path update
+         * @param update The update that writes the result
+         * @param value The result as it will be stored
+         */
+        void addTo(Map<String, Object> update, T value);
+    }
+
+    /**
+     * Runs the action once for the key, or returns the result of the run that already did.
+     * The response is stored with a separate write once the action succeeds.
+     * @param scope Who the key belongs to, e.g. the caller's email
+     * @param key The client's idempotency key
+     * @param fingerprint Identifies the request's content; a retry must send the same
+     * @param codec Stores and restores the result in Firebase
+     * @param action Performs the request
+     * @return CompletableFuture containing the first run's result; fails with an
+     *         {@link IdempotencyConflictException} if the key cannot be honoured
+     */
+    public <T> CompletableFuture<T> execute(String scope, String key, String fingerprint, EntityCodec<T> codec,
+                                            Supplier<CompletableFuture<T>> action) {
+        return execute(scope, key, fingerprint, codec, completion -> action.get());
+    }
+
+    /**
+     * Runs the action once for the key, or returns the result of the run that already did
+     * @param scope Who the key belongs to, e.g. the caller's email
+     * @param key The client's idempotency key
+     * @param fingerprint Identifies the request's content; a retry must send the same.
+     *                    Null accepts any retry, for requests whose content is gone once they succeed
+     * @param codec Stores and restores the result in Firebase
+     * @param action Performs the request, adding the completion to the update that stores its result
+     * @return CompletableFuture containing the first run's result; fails with an
+     *         {@link IdempotencyConflictException} if the key cannot be honoured
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String scope, String key, String fingerprint, EntityCodec<T> codec,
+                                            Function<Completion<T>, CompletableFuture<T>> action) {
+        String id = sha256(scope + "\n" + key);
+        String requestHash = fingerprint != null ? sha256(fingerprint) : null;
+        long now = System.currentTimeMillis();
+
+        Entry mine = new Entry(requestHash, now + ttlMs);
+        Entry existing = entries.get(id);
+        if (existing == null && (entries.size() < maxEntries || evictExpired(now))) {
+            existing = entries.putIfAbsent(id, mine);
+        }
+        if (existing != null && existing.expiresAt > now) {
+            if (!matches(requestHash, existing.requestHash)) {
+                return CompletableFuture.failedFuture(mismatch());
+            }
+            return (CompletableFuture<T>) existing.future;
+        }
+        if (existing != null) {
+            // Expired but not swept yet
+            entries.replace(id, existing, mine);
+        }
+
+        DatabaseReference node = databaseReference.child(IDEMPOTENCY).child(id);
+        AtomicBoolean claimed = new AtomicBoolean();
+        AtomicBoolean completedInWrite = new AtomicBoolean();
+        Completion<T> completion = (update, value) -> {
+            update.put(IDEMPOTENCY + "/" + id + "/state", DONE);
+            update.put(IDEMPOTENCY + "/" + id + "/response", codec.toMap(value));
+            completedInWrite.set(true);
+        };
+        CompletableFuture<T> result = claim(node, requestHash, now).thenCompose(stored -> {
+            if (stored == null) {
+                claimed.set(true);
+                return action.apply(completion)
+                        .thenApply(value -> completedInWrite.get() ? value : complete(node, codec, value));
+            }
+            return CompletableFuture.completedFuture(replay(stored, requestHash, codec));
+        });
+        result.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                if (claimed.get()) {
+                    if (isDefinitelyNotWritten(throwable)) {
+                        // Release the key so the client's retry runs the request again
+                        node.removeValue(null);
+                    } else {
+                        logger.warn("Outcome of idempotent request {} is unknown, keeping its key pending: {}",
+                                id, throwable.getMessage());
+                    }
+                }
+                // A retry goes to the stored claim, which reports IN_PROGRESS or the response
+                entries.remove(id, mine);
+                mine.future.completeExceptionally(throwable);
+            } else {
+                mine.future.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Drops expired keys from memory and, in batches, from Firebase
+     */
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:600000}",
+            initialDelayString = "${idempotency.cleanup-interval-ms:600000}")
+    public void cleanup() {
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+
+        databaseReference.child(IDEMPOTENCY)
+                .orderByChild("expiresAt")
+                .endAt(now)
+                .limitToFirst(CLEANUP_BATCH)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        Map<String, Object> removals = new HashMap<>();
+                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                            removals.put(snapshot.getKey(), null);
+                        }
+                        if (!removals.isEmpty()) {
+                            databaseReference.child(IDEMPOTENCY).updateChildren(removals, null);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        logger.error("Idempotency key cleanup read failed: {}", databaseError.getMessage());
+                    }
+                });
+    }
+
+    // Completes with null if this request claimed the key, otherwise with the stored claim
+    private CompletableFuture<Map<String, Object>> claim(DatabaseReference node, String requestHash, long now) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        node.runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData mutableData) {
+                Map<String, Object> current = asMap(mutableData.getValue());
+                if (current != null && !isAbandoned(current, now)) {
+                    return Transaction.abort();
+                }
+                Map<String, Object> claim = new HashMap<>();
+                claim.put("request", requestHash);
+                claim.put("state", PENDING);
+                claim.put("claimedAt", now);
+                claim.put("expiresAt", now + ttlMs);
+                mutableData.setValue(claim);
+                return Transaction.success(mutableData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
+                if (databaseError != null) {
+                    future.completeExceptionally(databaseError.toException());
+                } else if (committed) {
+                    future.complete(null);
+                } else {
+                    future.complete(asMap(dataSnapshot.getValue()));
+                }
+            }
+        });
+        return future;
+    }
+
+    // Not waited for: until the write lands, a retry on another node sees the claim and gets IN_PROGRESS
+    private <T> T complete(DatabaseReference node, EntityCodec<T> codec, T value) {
+        Map<String, Object> update = new HashMap<>();
+        update.put("state", DONE);
+        update.put("response", codec.toMap(value));
+        node.updateChildren(update, (databaseError, reference) -> {
+            if (databaseError != null) {
+                logger.warn("Failed to store idempotent response at {}: {}", node.getKey(), databaseError.getMessage());
+            }
+        });
+        return value;
+    }
+
+    private <T> T replay(Map<String, Object> stored, String requestHash, EntityCodec<T> codec) {
+        if (!matches(requestHash, stored.get("request"))) {
+            throw mismatch();
+        }
+        Map<String, Object> response = asMap(stored.get("response"));
+        if (!DONE.equals(stored.get("state")) || response == null) {
+            throw new IdempotencyConflictException(IdempotencyConflictException.Reason.IN_PROGRESS,
+                    "A request with this idempotency key is still in progress");
+        }
+        return codec.fromMap(null, response);
+    }
+
+    private boolean isAbandoned(Map<String, Object> claim, long now) {
+        if (millis(claim.get("expiresAt")) <= now) {
+            return true;
+        }
+        return !DONE.equals(claim.get("state")) && millis(claim.get("claimedAt")) + pendingTimeoutMs <= now;
+    }
+
+    // Validation errors and writes Firebase answered with an error; timeouts and anything else may still land
+    static boolean isDefinitelyNotWritten(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof DatabaseException
+                || cause instanceof IllegalArgumentException
+                || cause instanceof CartException
+                || cause instanceof IdempotencyConflictException;
+    }
+
+    private static boolean matches(String requestHash, Object storedHash) {
+        return requestHash == null || requestHash.equals(storedHash);
+    }
+
+    // Returns true if there is room for another entry afterwards
+    private boolean evictExpired(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        return entries.size() < maxEntries;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static IdempotencyConflictException mismatch() {
+        return new IdempotencyConflictException(IdempotencyConflictException.Reason.MISMATCH,
+                "This idempotency key was already used for a different request");
+    }
+
+    private static long millis(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+        final String requestHash;
+        final long expiresAt;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        Entry(String requestHash, long expiresAt) {
+            this.requestHash = requestHash;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
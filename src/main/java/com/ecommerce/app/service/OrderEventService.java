@@ -0,0 +1,426 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.codec.Codecs;
+import com.ecommerce.app.dto.OrderStatusEvent;
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderStatus;
+import com.google.firebase.database.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pushes order status changes to customers over Server-Sent Events.
+ *
+ * One child listener on the orders node, attached when the first client subscribes,
+ * feeds every connection on this node. Subscribers are kept per user id in a
+ * concurrent map, so fan-out touches only the owner's connections. Recent events sit
+ * in a fixed-size ring buffer; a client that reconnects with Last-Event-ID gets what
+ * it missed, or a "reset" event when the gap is too old to replay.
+ *
+ * Each connection has its own queue, drained by a small sender pool one connection
+ * at a time, so a slow client only delays itself. A connection whose queue reaches
+ * {@code orders.stream.max-pending} events, or whose send has been blocked for
+ * {@code orders.stream.send-timeout-ms}, is closed; the client reconnects and resumes
+ * from its Last-Event-ID. Events are queued at most once per connection, by sequence
+ * number, so a replay racing a live event does not send it twice.
+ */
+@Service
+public class OrderEventService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderEventService.class);
+
+    static final String STATUS_EVENT = "order-status";
+    static final String RESET_EVENT = "reset";
+
+    // Sends per turn before a connection goes to the back of the sender queue
+    private static final int SENDS_PER_TURN = 16;
+
+    private static final class BufferedEvent {
+        final long seq;
+        final String userId;
+        final OrderStatusEvent payload;
+
+        BufferedEvent(long seq, String userId, OrderStatusEvent payload) {
+            this.seq = seq;
+            this.userId = userId;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Connection {
+        final String userId;
+        final SseEmitter emitter;
+        // Guarded by this
+        final ArrayDeque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        long lastQueuedSeq;
+        boolean scheduled;
+        boolean closed;
+        // Start of the send in progress, 0 when idle
+        volatile long sendingSince;
+
+        Connection(String userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+    }
+
+    // Event ids are "{epoch}-{seq}"; ids from another node or an earlier process force a reset
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReferenceArray<BufferedEvent> ring;
+
+    private final Map<String, List<Connection>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicBoolean listening = new AtomicBoolean();
+
+    private final ExecutorService sender;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("order-events-heartbeat"));
+    private final int maxPending;
+
+    @Autowired
+    private DatabaseReference databaseReference;
+
+    @Value("${orders.stream.timeout-ms:1800000}")
+    private long timeoutMs = 1800000;
+
+    @Value("${orders.stream.send-timeout-ms:30000}")
+    private long sendTimeoutMs = 30000;
+
+    @Value("${orders.stream.status-cache:100000}")
+    private int statusCacheSize = 100000;
+
+    // Last status seen per order, to tell transitions from other writes; least recently updated orders are forgotten
+    private final Map<String, OrderStatus> lastStatus = Collections.synchronizedMap(
+            new LinkedHashMap<String, OrderStatus>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, OrderStatus> eldest) {
+                    return size() > statusCacheSize;
+                }
+            });
+
+    public OrderEventService(@Value("${orders.stream.replay-buffer:4096}") int replayBuffer,
+                             @Value("${orders.stream.heartbeat-ms:15000}") long heartbeatMs,
+                             @Value("${orders.stream.send-threads:4}") int sendThreads,
+                             @Value("${orders.stream.max-pending:256}") int maxPending) {
+        this.ring = new AtomicReferenceArray<>(replayBuffer);
+        this.maxPending = maxPending;
+        AtomicInteger threads = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(sendThreads, runnable -> {
+            Thread thread = new Thread(runnable, "order-events-send-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    /**
+     * Opens an event stream for a user, replaying missed events when resuming
+     * @param userId The subscribing user
+     * @param lastEventId Last-Event-ID sent by a reconnecting client, may be null
+     * @return Emitter to return from the controller
+     */
+    public SseEmitter subscribe(String userId, String lastEventId) {
+        startListening();
+        return register(userId, lastEventId, new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter register(String userId, String lastEventId, SseEmitter emitter) {
+        Connection connection = new Connection(userId, emitter);
+        Runnable remove = () -> close(connection, false);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+
+        // Live events for this connection wait until the replay is queued, then skip what it covered
+        synchronized (connection) {
+            subscribers.compute(userId, (key, connections) -> {
+                List<Connection> userConnections = connections != null ? connections : new CopyOnWriteArrayList<>();
+                userConnections.add(connection);
+                return userConnections;
+            });
+            if (lastEventId != null && !lastEventId.isEmpty()) {
+                replay(connection, lastEventId);
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Records a status change and pushes it to the owner's open streams.
+     * Called from the Firebase event thread, so events are published in sequence order.
+     * @param order The order as stored after the change
+     */
+    public void publish(Order order) {
+        if (order.getId() == null || order.getUserId() == null || order.getStatus() == null) {
+            return;
+        }
+        OrderStatus previous = lastStatus.put(order.getId(), order.getStatus());
+        if (previous == order.getStatus()) {
+            return;
+        }
+
+        OrderStatusEvent payload = new OrderStatusEvent(order.getId(), order.getStatus(), previous, order.getUpdatedAt());
+        long seq = sequence.incrementAndGet();
+        BufferedEvent event = new BufferedEvent(seq, order.getUserId(), payload);
+        ring.set(slot(seq), event);
+
+        List<Connection> userConnections = subscribers.get(order.getUserId());
+        if (userConnections != null) {
+            for (Connection connection : userConnections) {
+                enqueue(connection, seq, statusEvent(event));
+            }
+        }
+    }
+
+    /**
+     * @return Number of open streams on this node
+     */
+    public int getSubscriberCount() {
+        int count = 0;
+        for (List<Connection> userConnections : subscribers.values()) {
+            count += userConnections.size();
+        }
+        return count;
+    }
+
+    int getTrackedOrderCount() {
+        return lastStatus.size();
+    }
+
+    private void startListening() {
+        if (!listening.compareAndSet(false, true)) {
+            return;
+        }
+        // Only orders updated from now on; clients load current state from /api/orders/my-orders
+        String since = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        databaseReference.child("orders")
+                .orderByChild("updatedAt")
+                .startAt(since)
+                .addChildEventListener(new ChildEventListener() {
+                    @Override
+                    public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                        onOrder(snapshot);
+                    }
+
+                    @Override
+                    public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+                        onOrder(snapshot);
+                    }
+
+                    @Override
+                    public void onChildRemoved(DataSnapshot snapshot) {
+                        lastStatus.remove(snapshot.getKey());
+                    }
+
+                    @Override
+                    public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        logger.error("Order event listener cancelled: {}", databaseError.getMessage());
+                        listening.set(false);
+                    }
+                });
+        logger.info("Listening for order updates since {}", since);
+    }
+
+    private void onOrder(DataSnapshot snapshot) {
+        try {
+            Order order = Codecs.ORDER.decode(snapshot);
+            if (order != null) {
+                publish(order);
+            }
+        } catch (Exception e) {
+            logger.warn("Skipping unreadable order {}: {}", snapshot.getKey(), e.getMessage());
+        }
+    }
+
+    private void replay(Connection connection, String lastEventId) {
+        long from = parseSeq(lastEventId);
+        long latest = sequence.get();
+        // Unknown id, or older than the ring buffer still holds
+        if (from < 0 || from > latest || latest - from > ring.length()) {
+            sendReset(connection, latest);
+            return;
+        }
+        for (long seq = from + 1; seq <= latest; seq++) {
+            BufferedEvent event = ring.get(slot(seq));
+            if (event == null || event.seq < seq) {
+                // Still being published; it reaches this connection live
+                return;
+            }
+            if (event.seq != seq) {
+                sendReset(connection, latest);
+                return;
+            }
+            if (event.userId.equals(connection.userId)) {
+                enqueue(connection, seq, statusEvent(event));
+            }
+        }
+    }
+
+    private long parseSeq(String eventId) {
+        int dash = eventId.lastIndexOf('-');
+        if (dash <= 0 || !eventId.substring(0, dash).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private SseEmitter.SseEventBuilder statusEvent(BufferedEvent event) {
+        return SseEmitter.event()
+                .id(epoch + "-" + event.seq)
+                .name(STATUS_EVENT)
+                .data(event.payload, MediaType.APPLICATION_JSON);
+    }
+
+    // The client reloads its orders, so live events up to latest are not needed either
+    private void sendReset(Connection connection, long latest) {
+        synchronized (connection) {
+            enqueue(connection, 0, SseEmitter.event()
+                    .id(epoch + "-" + latest)
+                    .name(RESET_EVENT)
+                    .data("reload"));
+            connection.lastQueuedSeq = Math.max(connection.lastQueuedSeq, latest);
+        }
+    }
+
+    /**
+     * Queues an event for one connection and schedules a sender if none is on it
+     * @param seq Sequence number of a status event, 0 for events that are never deduplicated
+     */
+    private void enqueue(Connection connection, long seq, SseEmitter.SseEventBuilder event) {
+        boolean schedule;
+        synchronized (connection) {
+            if (connection.closed || (seq > 0 && seq <= connection.lastQueuedSeq)) {
+                return;
+            }
+            if (connection.pending.size() >= maxPending) {
+                logger.debug("Closing order stream of {}: {} events waiting", connection.userId, maxPending);
+                close(connection, true);
+                return;
+            }
+            if (seq > 0) {
+                connection.lastQueuedSeq = seq;
+            }
+            connection.pending.add(event);
+            schedule = !connection.scheduled;
+            connection.scheduled = true;
+        }
+        if (schedule) {
+            sender.execute(() -> drain(connection));
+        }
+    }
+
+    private void drain(Connection connection) {
+        for (int sent = 0; sent < SENDS_PER_TURN; sent++) {
+            SseEmitter.SseEventBuilder event;
+            synchronized (connection) {
+                event = connection.closed ? null : connection.pending.poll();
+                if (event == null) {
+                    connection.scheduled = false;
+                    return;
+                }
+            }
+            connection.sendingSince = System.currentTimeMillis();
+            try {
+                connection.emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                close(connection, false);
+                return;
+            } finally {
+                connection.sendingSince = 0;
+            }
+        }
+        try {
+            sender.execute(() -> drain(connection));
+        } catch (RuntimeException e) {
+            // Shutting down
+            close(connection, false);
+        }
+    }
+
+    private void sendHeartbeats() {
+        long now = System.currentTimeMillis();
+        subscribers.forEach((userId, userConnections) -> {
+            for (Connection connection : userConnections) {
+                long sendingSince = connection.sendingSince;
+                if (sendingSince != 0 && now - sendingSince > sendTimeoutMs) {
+                    logger.debug("Closing order stream of {}: send blocked for {} ms", userId, now - sendingSince);
+                    close(connection, true);
+                } else {
+                    enqueue(connection, 0, SseEmitter.event().comment("heartbeat"));
+                }
+            }
+        });
+    }
+
+    private void close(Connection connection, boolean complete) {
+        synchronized (connection) {
+            if (connection.closed) {
+                return;
+            }
+            connection.closed = true;
+            connection.pending.clear();
+        }
+        subscribers.computeIfPresent(connection.userId, (key, userConnections) -> {
+            userConnections.remove(connection);
+            return userConnections.isEmpty() ? null : userConnections;
+        });
+        if (complete) {
+            try {
+                connection.emitter.complete();
+            } catch (RuntimeException e) {
+                logger.debug("Failed to complete order stream of {}: {}", connection.userId, e.getMessage());
+            }
+        }
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % ring.length());
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,166 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.model.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory copy of the products node with secondary indexes for range queries.
+ *
+ * FirebaseService feeds every product write and every full product read into the
+ * catalog. Writes only mark the indexes dirty; the next reader rebuilds the
+ * {@link CatalogSnapshot} once, so a burst of admin writes costs a single rebuild.
+ * A rebuild that changes the content bumps the snapshot version and ETag.
+ *
+ * A full read can take long enough for a write to land while it is in flight. Each
+ * write is numbered, and a full read replaces only products that were not written
+ * after the read started, so it cannot bring back an older copy.
+ */
+@Component
+public class ProductCatalog {
+
+    private final Map<String, Product> products = new HashMap<>();
+    // Write number of the last upsert or remove per product, cleared by full loads
+    private final Map<String, Long> writtenAt = new HashMap<>();
+    private long writes;
+    private final Object rebuildLock = new Object();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+    private volatile boolean dirty;
+    private volatile long loadedAt;
+
+    @Value("${catalog.refresh-interval-ms:60000}")
+    private long refreshIntervalMs = 60000;
+
+    @Value("${catalog.price-buckets:25,50,100,250,500,1000}")
+    private double[] priceBuckets = CatalogSnapshot.DEFAULT_PRICE_BUCKETS;
+
+    /**
+     * Whether the catalog was loaded from Firebase recently enough to serve reads
+     * @return true if a full load happened within the refresh interval
+     */
+    public boolean isFresh() {
+        long loaded = loadedAt;
+        return loaded != 0 && System.currentTimeMillis() - loaded < refreshIntervalMs;
+    }
+
+    /**
+     * Makes the next read reload the catalog from Firebase
+     */
+    public void markStale() {
+        loadedAt = 0;
+    }
+
+    /**
+     * Marks the start of a full read of the products node
+     * @return Token to pass to {@link #replaceAll(Collection, long)} when the read completes
+     */
+    public long beginLoad() {
+        synchronized (products) {
+            return writes;
+        }
+    }
+
+    /**
+     * Replaces the catalog contents with a full read of the products node
+     * @param all Every product currently stored
+     */
+    public void replaceAll(Collection<Product> all) {
+        replaceAll(all, beginLoad());
+    }
+
+    /**
+     * Replaces the catalog contents with a full read of the products node, keeping
+     * local writes made after the read started
+     * @param all Every product the read returned
+     * @param loadStarted Token from {@link #beginLoad()} taken before the read was sent
+     */
+    public void replaceAll(Collection<Product> all, long loadStarted) {
+        synchronized (products) {
+            Map<String, Product> newer = new HashMap<>();
+            for (Map.Entry<String, Long> written : writtenAt.entrySet()) {
+                if (written.getValue() > loadStarted) {
+                    newer.put(written.getKey(), products.get(written.getKey()));
+                }
+            }
+            products.clear();
+            for (Product product : all) {
+                if (!newer.containsKey(product.getId())) {
+                    products.put(product.getId(), product);
+                }
+            }
+            for (Map.Entry<String, Product> product : newer.entrySet()) {
+                // null: removed after the read started
+                if (product.getValue() != null) {
+                    products.put(product.getKey(), product.getValue());
+                }
+            }
+            writtenAt.values().removeIf(written -> written <= loadStarted);
+            loadedAt = System.currentTimeMillis();
+            dirty = true;
+        }
+        notifyChanged();
+    }
+
+    public void upsert(Product product) {
+        synchronized (products) {
+            products.put(product.getId(), product);
+            writtenAt.put(product.getId(), ++writes);
+            dirty = true;
+        }
+        notifyChanged();
+    }
+
+    public void remove(String id) {
+        synchronized (products) {
+            writtenAt.put(id, ++writes);
+            if (products.remove(id) == null) {
+                return;
+            }
+            dirty = true;
+        }
+        notifyChanged();
+    }
+
+    /**
+     * Registers a callback that runs on the writing thread after the catalog may have changed.
+     * Callbacks must be cheap and hand any real work off to another thread.
+     * @param listener Callback to run
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Returns the current indexed view, rebuilding it if writes happened since the last read
+     * @return Immutable catalog snapshot
+     */
+    public CatalogSnapshot snapshot() {
+        if (dirty) {
+            synchronized (rebuildLock) {
+                if (dirty) {
+                    Collection<Product> current;
+                    synchronized (products) {
+                        dirty = false;
+                        current = products.values().stream().toList();
+                    }
+                    snapshot = new CatalogSnapshot(current, priceBuckets, snapshot);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private void notifyChanged() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.ecommerce.app.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One timed stage of a sampled request. Spans are created by {@link Tracer} and
+ * handed to the exporter once, when {@link #end} is first called.
+ */
+public final class Span {
+
+    private final Tracer tracer;
+    private final String traceId;
+    private final String spanId;
+    private final Span parent;
+    private final String parentSpanId;
+    private final String name;
+    private final boolean server;
+    private final long startNanos;
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private final AtomicBoolean ended = new AtomicBoolean();
+
+    private volatile long endNanos;
+    private volatile String error;
+
+    Span(Tracer tracer, String traceId, String spanId, Span parent, String parentSpanId,
+         String name, boolean server, long startNanos) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parent = parent;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.server = server;
+        this.startNanos = startNanos;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return W3C traceparent header value identifying this span
+     */
+    public String getTraceparent() {
+        return "00-" + traceId + "-" + spanId + "-01";
+    }
+
+    public Span setAttribute(String key, Object value) {
+        synchronized (attributes) {
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Ends the span and queues it for export; later calls are ignored
+     * @param throwable Failure that ended the stage, or null on success
+     */
+    public void end(Throwable throwable) {
+        if (!ended.compareAndSet(false, true)) {
+            return;
+        }
+        endNanos = System.nanoTime();
+        if (throwable != null) {
+            error = throwable.getClass().getSimpleName() + ": " + throwable.getMessage();
+        }
+        tracer.export(this);
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    boolean isServer() {
+        return server;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    long getEndNanos() {
+        return endNanos;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    Map<String, Object> getAttributes() {
+        synchronized (attributes) {
+            return new LinkedHashMap<>(attributes);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.ecommerce.app.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes finished spans to a local file in the OTLP/JSON file format: one
+ * ExportTraceServiceRequest per line, readable by the OpenTelemetry Collector's
+ * otlpjsonfile receiver and most trace viewers.
+ *
+ * Spans are queued and written by a background thread, so ending a span never
+ * touches the disk. If the queue is full the span is dropped and counted.
+ */
+@Component
+public class SpanExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpanExporter.class);
+
+    private static final int MAX_BATCH = 512;
+
+    private final BlockingQueue<Span> queue;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private final long epochOffsetNanos = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    private final Path file;
+    private final String serviceName;
+    private volatile Thread writer;
+
+    public SpanExporter(@Value("${tracing.export-file:logs/traces.jsonl}") String file,
+                        @Value("${tracing.queue-size:10000}") int queueSize,
+                        @Value("${spring.application.name:ecommerce-app}") String serviceName) {
+        this.file = Paths.get(file);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.serviceName = serviceName;
+    }
+
+    public void export(Span span) {
+        if (!queue.offer(span)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (started.compareAndSet(false, true)) {
+            writer = new Thread(this::drainLoop, "span-exporter");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * @return Spans dropped because the export queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = writer;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        List<Span> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                Span first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } catch (IOException e) {
+            logger.error("Cannot create trace export directory for {}", file, e);
+        }
+    }
+
+    private void write(List<Span> batch) {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(objectMapper.writeValueAsString(toOtlp(batch)));
+            out.newLine();
+        } catch (IOException e) {
+            logger.warn("Failed to export {} spans to {}: {}", batch.size(), file, e.getMessage());
+        }
+    }
+
+    Map<String, Object> toOtlp(List<Span> batch) {
+        List<Map<String, Object>> spans = new ArrayList<>(batch.size());
+        for (Span span : batch) {
+            Map<String, Object> otlp = new LinkedHashMap<>();
+            otlp.put("traceId", span.getTraceId());
+            otlp.put("spanId", span.getSpanId());
+            if (span.getParentSpanId() != null) {
+                otlp.put("parentSpanId", span.getParentSpanId());
+            }
+            otlp.put("name", span.getName());
+            otlp.put("kind", span.isServer() ? 2 : 1); // SERVER : INTERNAL
+            // OTLP/JSON encodes 64-bit integers as strings
+            otlp.put("startTimeUnixNano", Long.toString(epochOffsetNanos + span.getStartNanos()));
+            otlp.put("endTimeUnixNano", Long.toString(epochOffsetNanos + span.getEndNanos()));
+
+            List<Map<String, Object>> attributes = new ArrayList<>();
+            span.getAttributes().forEach((key, value) -> attributes.add(attribute(key, value)));
+            otlp.put("attributes", attributes);
+
+            Map<String, Object> status = new LinkedHashMap<>();
+            if (span.getError() != null) {
+                status.put("code", 2); // ERROR
+                status.put("message", span.getError());
+            } else {
+                status.put("code", 1); // OK
+            }
+            otlp.put("status", status);
+            spans.add(otlp);
+        }
+
+        return Map.of("resourceSpans", List.of(Map.of(
+                "resource", Map.of("attributes", List.of(attribute("service.name", serviceName))),
+                "scopeSpans", List.of(Map.of(
+                        "scope", Map.of("name", "com.ecommerce.app"),
+                        "spans", spans)))));
+    }
+
+    private static Map<String, Object> attribute(String key, Object value) {
+        Map<String, Object> typed = new LinkedHashMap<>();
+        if (value instanceof Integer || value instanceof Long) {
+            typed.put("intValue", value.toString());
+        } else if (value instanceof Number) {
+            typed.put("doubleValue", value);
+        } else if (value instanceof Boolean) {
+            typed.put("boolValue", value);
+        } else {
+            typed.put("stringValue", String.valueOf(value));
+        }
+        return Map.of("key", key, "value", typed);
+    }
+}
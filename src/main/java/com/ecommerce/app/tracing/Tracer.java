@@ -0,0 +1,220 @@
+package com.ecommerce.app.tracing;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Minimal in-process tracer for sampled requests.
+ *
+ * The current span lives in a thread local. Work that hops threads, such as
+ * CompletableFuture stages and Firebase callbacks, carries it along through the
+ * {@code wrap*} helpers, which capture the caller's span and reinstate it around the
+ * wrapped code. When the request is not sampled there is no current span and every
+ * method here returns immediately without allocating.
+ */
+@Component
+public class Tracer {
+
+    /**
+     * Restores the previously current span when closed
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Scope NOOP_SCOPE = () -> { };
+
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+
+    @Value("${tracing.sample-rate:0.0}")
+    private double sampleRate;
+
+    @Autowired(required = false)
+    private SpanExporter exporter;
+
+    /**
+     * Tracer that never samples, for components constructed outside Spring
+     * @return A disabled tracer
+     */
+    public static Tracer disabled() {
+        return new Tracer();
+    }
+
+    /**
+     * Starts the server span for an incoming request, continuing the caller's trace if it sent one
+     * @param name Span name
+     * @param traceparent W3C traceparent request header, may be null
+     * @return The root span, or null if the request is not sampled
+     */
+    public Span startRequest(String name, String traceparent) {
+        String[] parts = traceparent != null ? traceparent.trim().split("-") : null;
+        if (isValidTraceparent(parts)) {
+            // The caller already decided; follow its sampled flag
+            if ((Integer.parseInt(parts[3], 16) & 1) == 0) {
+                return null;
+            }
+            return new Span(this, parts[1], randomHex(16), null, parts[2], name, true, System.nanoTime());
+        }
+        // No usable traceparent: start a new trace under the local sampling rate
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        return new Span(this, randomHex(32), randomHex(16), null, null, name, true, System.nanoTime());
+    }
+
+    /**
+     * @return The span of the current thread, or null when not tracing
+     */
+    public Span current() {
+        return current.get();
+    }
+
+    /**
+     * Makes a span current until the returned scope is closed
+     * @param span Span to activate, may be null
+     * @return Scope to close in a finally block or try-with-resources
+     */
+    public Scope activate(Span span) {
+        if (span == null) {
+            return NOOP_SCOPE;
+        }
+        Span previous = current.get();
+        current.set(span);
+        return () -> {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        };
+    }
+
+    /**
+     * Starts a child of the current span and makes it current. Must be paired with
+     * {@link #exit()} on the same thread.
+     * @param name Span name
+     * @param startNanos System.nanoTime() at the start of the stage
+     */
+    public void enter(String name, long startNanos) {
+        Span parent = current.get();
+        if (parent != null) {
+            current.set(new Span(this, parent.getTraceId(), randomHex(16), parent, parent.getSpanId(),
+                    name, false, startNanos));
+        }
+    }
+
+    /**
+     * Leaves the span started by {@link #enter}, restoring its parent; the caller ends it
+     * @return The span to end when the stage completes, or null when not tracing
+     */
+    public Span exit() {
+        Span span = current.get();
+        if (span == null || span.isServer()) {
+            return null;
+        }
+        if (span.getParent() != null) {
+            current.set(span.getParent());
+        } else {
+            current.remove();
+        }
+        return span;
+    }
+
+    public <T> Supplier<T> wrapSupplier(Supplier<T> supplier) {
+        Span span = current.get();
+        if (span == null) {
+            return supplier;
+        }
+        return () -> {
+            Scope scope = activate(span);
+            try {
+                return supplier.get();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public <T, R> Function<T, R> wrapFunction(Function<T, R> function) {
+        Span span = current.get();
+        if (span == null) {
+            return function;
+        }
+        return value -> {
+            Scope scope = activate(span);
+            try {
+                return function.apply(value);
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public Runnable wrap(Runnable runnable) {
+        Span span = current.get();
+        if (span == null) {
+            return runnable;
+        }
+        return () -> {
+            Scope scope = activate(span);
+            try {
+                runnable.run();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    void export(Span span) {
+        if (exporter != null) {
+            exporter.export(span);
+        }
+    }
+
+    // version-traceid-parentid-flags, lower-case hex, with all-zero ids and version ff invalid
+    private static boolean isValidTraceparent(String[] parts) {
+        if (parts == null || parts.length < 4) {
+            return false;
+        }
+        // Version 00 has exactly four fields; later versions may append more
+        if ((parts[0].equals("00") && parts.length != 4) || parts[0].equals("ff")) {
+            return false;
+        }
+        return isHex(parts[0], 2) && isHex(parts[1], 32) && isHex(parts[2], 16) && isHex(parts[3], 2)
+                && !isZero(parts[1]) && !isZero(parts[2]);
+    }
+
+    private static boolean isHex(String value, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String randomHex(int length) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String hex = String.format("%016x", random.nextLong());
+        return length == 32 ? hex + String.format("%016x", random.nextLong()) : hex;
+    }
+}
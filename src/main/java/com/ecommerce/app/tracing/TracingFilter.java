@@ -0,0 +1,82 @@
+package com.ecommerce.app.tracing;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Opens the root span of a sampled request and closes it when the response is
+ * complete, including responses finished later by an async CompletableFuture.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TracingFilter extends OncePerRequestFilter {
+
+    static final String TRACEPARENT = "traceparent";
+
+    @Autowired
+    private Tracer tracer;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Span root = tracer.startRequest(request.getMethod() + " " + request.getRequestURI(), request.getHeader(TRACEPARENT));
+        if (root == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        root.setAttribute("http.request.method", request.getMethod());
+        root.setAttribute("url.path", request.getRequestURI());
+        response.setHeader(TRACEPARENT, root.getTraceparent());
+
+        Throwable failure = null;
+        Tracer.Scope scope = tracer.activate(root);
+        try {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            scope.close();
+            if (failure == null && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        end(root, response, null);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        end(root, response, event.getThrowable());
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        end(root, response, event.getThrowable());
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                end(root, response, failure);
+            }
+        }
+    }
+
+    private static void end(Span root, HttpServletResponse response, Throwable failure) {
+        root.setAttribute("http.response.status_code", response.getStatus());
+        root.end(failure);
+    }
+}
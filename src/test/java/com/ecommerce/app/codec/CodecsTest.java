@@ -0,0 +1,94 @@
+package com.ecommerce.app.codec;
+
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderItem;
+import com.ecommerce.app.model.OrderStatus;
+import com.ecommerce.app.model.Product;
+import com.ecommerce.app.model.User;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.TestSnapshots;
+import com.google.firebase.database.utilities.encoding.CustomClassMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodecsTest {
+
+    @Test
+    void testDecode_MatchesReflectiveMapping() {
+        // Setup: whole-number prices come back from Firebase as Long
+        Map<String, Object> item1 = Map.of("productId", "PRD-0001", "productName", "Cable", "quantity", 2L, "price", 10L);
+        Map<String, Object> item2 = Map.of("productId", "PRD-0002", "productName", "Charger", "quantity", 1L, "price", 24.5);
+        Map<String, Object> value = Map.of("userId", "USR-0001", "items", List.of(item1, item2),
+                "totalAmount", 44.5, "status", "SHIPPED", "timestamp", 1700000000000L,
+                "createdAt", "2024-01-01T10:00:00", "updatedAt", "2024-01-02T10:00:00");
+        DataSnapshot snapshot = TestSnapshots.dataSnapshot(TestSnapshots.reference("orders/ORD-0001"), value);
+
+        // Execute
+        Order decoded = Codecs.ORDER.decode(snapshot);
+        Order reflective = snapshot.getValue(Order.class);
+        reflective.setId(snapshot.getKey());
+
+        // Verify
+        assertEquals(reflective, decoded);
+        assertEquals(OrderStatus.SHIPPED, decoded.getStatus());
+        assertEquals(new OrderItem("PRD-0001", "Cable", 2, 10.0), decoded.getItems().get(0));
+    }
+
+    @Test
+    void testToMap_SameShapeAsReflectiveMapping() {
+        // Setup
+        Order order = new Order("USR-0001", List.of(new OrderItem("PRD-0001", "Cable", 2, 9.99)), 19.98);
+        order.setId("ORD-0001");
+        order.updateStatus(OrderStatus.CONFIRMED);
+        Product product = new Product("PRD-0001", "Cable", null, 9.99, 3, null, "Accessories", List.of("usb"));
+        User user = new User("USR-0001", "alice", "alice@example.com", "$2a$10$hash", "CUSTOMER");
+
+        // Execute
+        Map<String, Object> orderMap = Codecs.ORDER.toMap(order);
+        Map<String, Object> productMap = Codecs.PRODUCT.toMap(product);
+        Map<String, Object> userMap = Codecs.USER.toMap(user);
+
+        // Verify: the SDK writes null fields as absent
+        assertEquals(withoutNulls(CustomClassMapper.convertToPlainJavaTypes(order)), orderMap);
+        assertEquals(withoutNulls(CustomClassMapper.convertToPlainJavaTypes(product)), productMap);
+        assertEquals(withoutNulls(CustomClassMapper.convertToPlainJavaTypes(user)), userMap);
+        DataSnapshot stored = TestSnapshots.dataSnapshot(TestSnapshots.reference("orders/ORD-0001"), orderMap);
+        assertEquals(order, Codecs.ORDER.decode(stored));
+    }
+
+    @Test
+    void testDecodeChildren_KeyOrderAndSparseArrays() {
+        // Setup: an array with a removed element comes back as a map of index to element
+        Map<String, Object> products = new LinkedHashMap<>();
+        products.put("PRD-0002", Map.of("name", "Charger", "price", 24.5, "quantity", 1L));
+        products.put("PRD-0001", Map.of("name", "Cable", "price", 10L, "quantity", 3L,
+                "tags", Map.of("0", "usb", "2", "cable")));
+        products.put("PRD-0003", "not an object");
+        DataSnapshot snapshot = TestSnapshots.dataSnapshot(TestSnapshots.reference("products"), products);
+
+        // Execute
+        List<Product> decoded = Codecs.PRODUCT.decodeChildren(snapshot);
+
+        // Verify
+        assertEquals(2, decoded.size());
+        assertEquals("PRD-0001", decoded.get(0).getId());
+        assertEquals(10.0, decoded.get(0).getPrice());
+        assertEquals(List.of("usb", "cable"), decoded.get(0).getTags());
+        assertEquals("PRD-0002", decoded.get(1).getId());
+        assertNull(decoded.get(1).getTags());
+        assertNull(Codecs.PRODUCT.decode(TestSnapshots.dataSnapshot(TestSnapshots.reference("products/PRD-0009"), null)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> withoutNulls(Object value) {
+        Map<String, Object> map = new LinkedHashMap<>((Map<String, Object>) value);
+        map.values().removeIf(Objects::isNull);
+        return map;
+    }
+}
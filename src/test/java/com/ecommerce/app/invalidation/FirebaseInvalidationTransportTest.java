@@ -0,0 +1,85 @@
+package com.ecommerce.app.invalidation;
+
+import com.google.firebase.database.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class FirebaseInvalidationTransportTest {
+
+    // Start key and listener of every subscription made on invalidations/
+    private final List<String> starts = new CopyOnWriteArrayList<>();
+    private final List<ChildEventListener> listeners = new CopyOnWriteArrayList<>();
+    private FirebaseInvalidationTransport transport;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseReference databaseReference = mock(DatabaseReference.class);
+        DatabaseReference bus = mock(DatabaseReference.class);
+        Query ordered = mock(Query.class);
+        when(databaseReference.child("invalidations")).thenReturn(bus);
+        when(bus.orderByKey()).thenReturn(ordered);
+        when(ordered.startAt(anyString())).thenAnswer(invocation -> {
+            starts.add(invocation.getArgument(0));
+            Query query = mock(Query.class);
+            when(query.addChildEventListener(any(ChildEventListener.class))).thenAnswer(added -> {
+                listeners.add(added.getArgument(0));
+                return added.getArgument(0);
+            });
+            return query;
+        });
+
+        registry = new SimpleMeterRegistry();
+        transport = new FirebaseInvalidationTransport();
+        ReflectionTestUtils.setField(transport, "databaseReference", databaseReference);
+        ReflectionTestUtils.setField(transport, "registry", registry);
+        ReflectionTestUtils.setField(transport, "resubscribeMinMs", 200L);
+        ReflectionTestUtils.setField(transport, "resubscribeMaxMs", 400L);
+        transport.registerMeters();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transport.shutdown();
+    }
+
+    @Test
+    void testSubscribe_ResubscribesFromLastBatchAfterCancellation() throws Exception {
+        // Setup
+        List<Invalidation> received = new ArrayList<>();
+        transport.subscribe(received::addAll);
+        String key = String.format("%013d", System.currentTimeMillis()) + "-other001-0000000001";
+        listeners.get(0).onChildAdded(TestSnapshots.dataSnapshot(TestSnapshots.reference("invalidations/" + key),
+                Map.of("from", "other001", "items", "c:USR-0001:1705314600000")), null);
+
+        // Execute
+        listeners.get(0).onCancelled(DatabaseError.fromCode(DatabaseError.PERMISSION_DENIED));
+        boolean listeningWhileWaiting = transport.isListening();
+        double gaugeWhileWaiting = registry.get("invalidation.listening").gauge().value();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (listeners.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        // Verify
+        assertEquals(1, received.size());
+        assertFalse(listeningWhileWaiting);
+        assertEquals(0.0, gaugeWhileWaiting);
+        assertEquals(2, listeners.size());
+        assertEquals(key, starts.get(1));
+        assertTrue(transport.isListening());
+    }
+}
@@ -0,0 +1,105 @@
+package com.ecommerce.app.invalidation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation transport for tests: every transport created on the same {@link Hub}
+ * behaves like a node sharing one invalidations/ node, with delivery on the
+ * publishing thread.
+ */
+public class InProcessInvalidationTransport implements InvalidationTransport {
+
+    public static final class Hub {
+        private final List<Message> messages = new ArrayList<>();
+        private final List<InProcessInvalidationTransport> nodes = new ArrayList<>();
+
+        public synchronized int size() {
+            return messages.size();
+        }
+    }
+
+    private static final class Message {
+        final InProcessInvalidationTransport from;
+        final long publishedAt;
+        final List<Invalidation> batch;
+
+        Message(InProcessInvalidationTransport from, long publishedAt, List<Invalidation> batch) {
+            this.from = from;
+            this.publishedAt = publishedAt;
+            this.batch = batch;
+        }
+    }
+
+    private final Hub hub;
+    private Consumer<List<Invalidation>> listener;
+    private int failuresLeft;
+    private final List<List<Invalidation>> published = new ArrayList<>();
+
+    public InProcessInvalidationTransport(Hub hub) {
+        this.hub = hub;
+        synchronized (hub) {
+            hub.nodes.add(this);
+        }
+    }
+
+    /**
+     * @param failures Number of publish calls to fail before succeeding again
+     */
+    public void failNext(int failures) {
+        this.failuresLeft = failures;
+    }
+
+    /**
+     * @return Batches this transport stored, in order
+     */
+    public List<List<Invalidation>> published() {
+        return published;
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(List<Invalidation> batch) {
+        if (failuresLeft > 0) {
+            failuresLeft--;
+            return CompletableFuture.failedFuture(new IllegalStateException("Bus unavailable"));
+        }
+        Message message = new Message(this, System.currentTimeMillis(), List.copyOf(batch));
+        List<InProcessInvalidationTransport> receivers;
+        synchronized (hub) {
+            hub.messages.add(message);
+            receivers = new ArrayList<>(hub.nodes);
+        }
+        published.add(message.batch);
+        for (InProcessInvalidationTransport node : receivers) {
+            if (node != this && node.listener != null) {
+                node.listener.accept(message.batch);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void subscribe(Consumer<List<Invalidation>> listener) {
+        List<Message> backlog;
+        synchronized (hub) {
+            this.listener = listener;
+            backlog = new ArrayList<>(hub.messages);
+        }
+        for (Message message : backlog) {
+            if (message.from != this) {
+                listener.accept(message.batch);
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<Integer> trim(long before) {
+        synchronized (hub) {
+            int size = hub.messages.size();
+            hub.messages.removeIf(message -> message.publishedAt < before);
+            return CompletableFuture.completedFuture(size - hub.messages.size());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ecommerce.app.invalidation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvalidationBusTest {
+
+    private final InProcessInvalidationTransport.Hub hub = new InProcessInvalidationTransport.Hub();
+
+    @Test
+    void testFlush_SendsOneBatchWithNewestVersionPerEntity() {
+        // Setup
+        InProcessInvalidationTransport transport = new InProcessInvalidationTransport(hub);
+        InvalidationBus writer = new InvalidationBus(transport, new SimpleMeterRegistry());
+        InvalidationBus reader = new InvalidationBus(new InProcessInvalidationTransport(hub), new SimpleMeterRegistry());
+        List<Invalidation> writerReceived = new ArrayList<>();
+        List<Invalidation> readerReceived = new ArrayList<>();
+        writer.addHandler(Invalidation.Entity.PRODUCT, writerReceived::add);
+        reader.addHandler(Invalidation.Entity.PRODUCT, readerReceived::add);
+        reader.addHandler(Invalidation.Entity.USER, readerReceived::add);
+
+        // Execute
+        writer.publish(Invalidation.Entity.PRODUCT, "PRD-0001", 100);
+        writer.publish(Invalidation.Entity.PRODUCT, "PRD-0001", 300);
+        writer.publish(Invalidation.Entity.PRODUCT, "PRD-0001", 200);
+        writer.publish(Invalidation.Entity.USER, "USR-0001", 150);
+        writer.flush();
+        writer.flush();
+
+        // Verify
+        assertEquals(1, transport.published().size());
+        assertEquals(List.of("p:PRD-0001:300", "u:USR-0001:150"),
+                readerReceived.stream().map(Invalidation::encode).sorted().collect(Collectors.toList()));
+        assertTrue(writerReceived.isEmpty());
+    }
+
+    @Test
+    void testReceive_IgnoresVersionsAlreadyApplied() {
+        // Setup
+        InvalidationBus bus = new InvalidationBus(new InProcessInvalidationTransport(hub), new SimpleMeterRegistry());
+        List<Long> applied = new ArrayList<>();
+        bus.addHandler(Invalidation.Entity.PRODUCT, invalidation -> applied.add(invalidation.getVersion()));
+
+        // Execute: redelivered and out-of-order messages
+        bus.receive(List.of(new Invalidation(Invalidation.Entity.PRODUCT, "PRD-0001", 500)));
+        bus.receive(List.of(new Invalidation(Invalidation.Entity.PRODUCT, "PRD-0001", 500),
+                new Invalidation(Invalidation.Entity.PRODUCT, "PRD-0001", 400),
+                new Invalidation(Invalidation.Entity.PRODUCT, "PRD-0002", 400)));
+        bus.receive(List.of(new Invalidation(Invalidation.Entity.PRODUCT, "PRD-0001", 600)));
+
+        // Verify
+        assertEquals(List.of(500L, 400L, 600L), applied);
+    }
+
+    @Test
+    void testFlush_RequeuesBatchWhenPublishFails() {
+        // Setup
+        InProcessInvalidationTransport transport = new InProcessInvalidationTransport(hub);
+        InvalidationBus writer = new InvalidationBus(transport, new SimpleMeterRegistry());
+        InvalidationBus reader = new InvalidationBus(new InProcessInvalidationTransport(hub), new SimpleMeterRegistry());
+        List<Invalidation> readerReceived = new ArrayList<>();
+        reader.addHandler(Invalidation.Entity.PRODUCT, readerReceived::add);
+        transport.failNext(1);
+
+        // Execute
+        writer.publish(Invalidation.Entity.PRODUCT, "PRD-0001", 100);
+        writer.flush();
+        int receivedAfterFailure = readerReceived.size();
+        writer.publish(Invalidation.Entity.PRODUCT, "PRD-0002", 100);
+        writer.flush();
+
+        // Verify
+        assertEquals(0, receivedAfterFailure);
+        assertEquals(List.of("p:PRD-0001:100", "p:PRD-0002:100"),
+                readerReceived.stream().map(Invalidation::encode).sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void testTrim_RemovesBatchesOlderThanRetention() throws Exception {
+        // Setup
+        InvalidationBus bus = new InvalidationBus(new InProcessInvalidationTransport(hub), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(bus, "retentionMs", 50L);
+        bus.publish(Invalidation.Entity.PRODUCT, "PRD-0001", System.currentTimeMillis());
+        bus.flush();
+        Thread.sleep(100);
+        bus.publish(Invalidation.Entity.PRODUCT, "PRD-0002", System.currentTimeMillis());
+        bus.flush();
+
+        // Execute
+        bus.trim();
+
+        // Verify
+        assertEquals(1, hub.size());
+    }
+}
@@ -0,0 +1,147 @@
+package com.ecommerce.app.journal;
+
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderItem;
+import com.ecommerce.app.model.OrderStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<OrderJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(OrderJournal::shutdown);
+    }
+
+    @Test
+    void testReplay_ContinuesSequenceAfterReopen() throws Exception {
+        // Setup
+        OrderJournal journal = open(64 * 1024, Long.MAX_VALUE);
+        Order order = order("ORD-0001");
+        journal.append(JournalEvent.created(order)).get(5, TimeUnit.SECONDS);
+        order.updateStatus(OrderStatus.CONFIRMED);
+        journal.append(JournalEvent.statusChanged(order, OrderStatus.PENDING)).get(5, TimeUnit.SECONDS);
+        journal.append(JournalEvent.created(order("ORD-0002"))).get(5, TimeUnit.SECONDS);
+        journal.shutdown();
+
+        // Execute
+        OrderJournal reopened = open(64 * 1024, Long.MAX_VALUE);
+        long appended = reopened.append(JournalEvent.created(order("ORD-0003"))).get(5, TimeUnit.SECONDS);
+        List<JournalEvent> fromTwo = new ArrayList<>();
+        long last = reopened.replay(2, fromTwo::add);
+        List<JournalEvent> history = reopened.history("ORD-0001").get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals(4, appended);
+        assertEquals(4, last);
+        assertEquals(List.of(2L, 3L, 4L), fromTwo.stream().map(JournalEvent::getSeq).collect(Collectors.toList()));
+        assertEquals(2, history.size());
+        assertEquals(JournalEvent.Type.STATUS_CHANGED, history.get(1).getType());
+        assertEquals("PENDING", history.get(1).getPreviousStatus());
+        assertEquals("CONFIRMED", history.get(1).getStatus());
+        assertEquals("USR-0001", history.get(1).getUserId());
+        assertEquals(19.0, history.get(1).getTotalAmount());
+    }
+
+    @Test
+    void testOpen_DropsRecordTornByCrash() throws Exception {
+        // Setup: corrupt the body of the last record, as a write interrupted by a crash would
+        OrderJournal journal = open(64 * 1024, Long.MAX_VALUE);
+        for (int i = 1; i <= 3; i++) {
+            journal.append(JournalEvent.created(order("ORD-000" + i))).get(5, TimeUnit.SECONDS);
+        }
+        journal.shutdown();
+        Path segment = segmentFiles().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        ByteBuffer records = ByteBuffer.wrap(bytes);
+        int offset = 0;
+        int lastRecord = 0;
+        while (records.getInt(offset) > 0) {
+            lastRecord = offset;
+            offset += JournalSegment.RECORD_HEADER_BYTES + records.getInt(offset);
+        }
+        bytes[lastRecord + JournalSegment.RECORD_HEADER_BYTES + 20] ^= 0x5a;
+        Files.write(segment, bytes);
+
+        // Execute
+        OrderJournal reopened = open(64 * 1024, Long.MAX_VALUE);
+        long appended = reopened.append(JournalEvent.created(order("ORD-0004"))).get(5, TimeUnit.SECONDS);
+        List<JournalEvent> events = new ArrayList<>();
+        reopened.replay(1, events::add);
+
+        // Verify
+        assertEquals(3, appended);
+        assertEquals(List.of("ORD-0001", "ORD-0002", "ORD-0004"),
+                events.stream().map(JournalEvent::getOrderId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testRollScanAndRetention() throws Exception {
+        // Setup: segments small enough for a couple of records each
+        OrderJournal journal = open(256, 0);
+        List<CompletableFuture<Long>> appends = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            appends.add(journal.append(JournalEvent.created(order(String.format("ORD-%04d", i)))));
+        }
+        for (CompletableFuture<Long> append : appends) {
+            append.get(5, TimeUnit.SECONDS);
+        }
+        int segmentsBefore = journal.segmentCount();
+
+        // Execute
+        List<JournalEvent> inRange = new ArrayList<>();
+        journal.scan(0, Long.MAX_VALUE, inRange::add);
+        List<JournalEvent> future = new ArrayList<>();
+        journal.scan(System.currentTimeMillis() + 60000, Long.MAX_VALUE, future::add);
+        journal.enforceRetention();
+        List<JournalEvent> retained = new ArrayList<>();
+        journal.replay(1, retained::add);
+
+        // Verify: only the active segment survives a zero retention period
+        assertTrue(segmentsBefore > 2);
+        assertEquals(10, inRange.size());
+        assertTrue(future.isEmpty());
+        assertEquals(1, journal.segmentCount());
+        assertEquals(1, segmentFiles().size());
+        assertFalse(retained.isEmpty());
+        assertEquals(10, retained.get(retained.size() - 1).getSeq());
+    }
+
+    private OrderJournal open(int segmentBytes, long retentionMs) {
+        OrderJournal journal = new OrderJournal(new SimpleMeterRegistry(), true, directory.toString(),
+                segmentBytes, 100, 512, retentionMs, false);
+        opened.add(journal);
+        return journal;
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(JournalSegment::isSegmentFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static Order order(String id) {
+        Order order = new Order("USR-0001", List.of(new OrderItem("PRD-0001", "Mug", 2, 9.5)), 19.0);
+        order.setId(id);
+        return order;
+    }
+}
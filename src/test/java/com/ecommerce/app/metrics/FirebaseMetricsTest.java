@@ -0,0 +1,67 @@
+package com.ecommerce.app.metrics;
+
+import com.ecommerce.app.metrics.FirebaseMetrics.Operation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FirebaseMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private FirebaseMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new FirebaseMetrics(registry);
+    }
+
+    @Test
+    void testFinish_RecordsOutcomeAndInFlight() {
+        // Setup
+        CompletableFuture<String> ok = new CompletableFuture<>();
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        long okStarted = metrics.start(Operation.GET_USER_BY_ID);
+        long failedStarted = metrics.start(Operation.GET_USER_BY_ID);
+        metrics.finish(Operation.GET_USER_BY_ID, okStarted, ok);
+        metrics.finish(Operation.GET_USER_BY_ID, failedStarted, failed);
+        assertEquals(2.0, inFlight(Operation.GET_USER_BY_ID));
+
+        // Execute
+        ok.complete("USR-0001");
+        failed.completeExceptionally(new RuntimeException("boom"));
+
+        // Verify
+        assertEquals(0.0, inFlight(Operation.GET_USER_BY_ID));
+        assertEquals(1, timerCount(Operation.GET_USER_BY_ID, "success"));
+        assertEquals(1, timerCount(Operation.GET_USER_BY_ID, "failure"));
+        assertEquals(0, timerCount(Operation.SAVE_USER, "success"));
+    }
+
+    @Test
+    void testEstimateSize_NestedValues() {
+        Map<String, Object> product = Map.of("name", "Cable", "tags", List.of("usb"), "price", 9.5);
+
+        long size = FirebaseMetrics.estimateSize(Map.of("PRD-0001", product));
+
+        // {"PRD-0001":{"name":"Cable","tags":["usb"],"price":9.5}} is 56 characters
+        assertTrue(size > 40 && size < 80, "estimate was " + size);
+    }
+
+    private double inFlight(Operation operation) {
+        return registry.get("firebase.operation.in.flight").tag("operation", operation.tagValue()).gauge().value();
+    }
+
+    private long timerCount(Operation operation, String outcome) {
+        return registry.get("firebase.operation")
+                .tag("operation", operation.tagValue())
+                .tag("outcome", outcome)
+                .timer().count();
+    }
+}
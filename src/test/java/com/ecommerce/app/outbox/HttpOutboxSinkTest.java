@@ -0,0 +1,89 @@
+package com.ecommerce.app.outbox;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpOutboxSinkTest {
+
+    // Local stub of the downstream endpoint: answers with the configured status
+    private HttpServer server;
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicReference<String> receivedBody = new AtomicReference<>();
+    private final AtomicReference<String> receivedBatch = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/events", exchange -> {
+            receivedBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            receivedBatch.set(exchange.getRequestHeaders().getFirst("X-Outbox-Batch"));
+            if (status.get() == 503) {
+                exchange.getResponseHeaders().add("Retry-After", "7");
+            }
+            exchange.sendResponseHeaders(status.get(), -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testDeliver_PostsBatchAsJson() throws Exception {
+        // Setup
+        HttpOutboxSink sink = newSink();
+
+        // Execute
+        sink.deliver(List.of(event("A1", "ORD-0001"), event("A2", "ORD-0002"))).get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals("A1..A2", receivedBatch.get());
+        assertTrue(receivedBody.get().startsWith("{\"events\":["));
+        assertTrue(receivedBody.get().contains("\"entityId\":\"ORD-0002\""));
+        assertTrue(receivedBody.get().contains("\"type\":\"ORDER_CREATED\""));
+    }
+
+    @Test
+    void testDeliver_UnavailableFailsWithRetryAfter() {
+        // Setup
+        HttpOutboxSink sink = newSink();
+        status.set(503);
+
+        // Execute
+        CompletableFuture<Void> unavailable = sink.deliver(List.of(event("A1", "ORD-0001")));
+
+        // Verify
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> unavailable.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(OutboxDeliveryException.class, failure.getCause());
+        assertEquals(7000, ((OutboxDeliveryException) failure.getCause()).getRetryAfterMs());
+    }
+
+    private HttpOutboxSink newSink() {
+        return new HttpOutboxSink("http://127.0.0.1:" + server.getAddress().getPort() + "/events", 5000);
+    }
+
+    private static OutboxEvent event(String id, String orderId) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setType(OutboxEvent.Type.ORDER_CREATED);
+        event.setEntityId(orderId);
+        event.setOccurredAt(System.currentTimeMillis());
+        return event;
+    }
+}
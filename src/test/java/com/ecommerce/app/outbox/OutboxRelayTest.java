@@ -0,0 +1,274 @@
+package com.ecommerce.app.outbox;
+
+import com.google.firebase.database.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class OutboxRelayTest {
+
+    // outbox/, outbox-relay/lease and outbox-relay/checkpoints, standing in for Firebase
+    private final TreeMap<String, Object> outbox = new TreeMap<>();
+    private final Map<String, Object> checkpoints = new HashMap<>();
+    private Object lease;
+    private DatabaseReference databaseReference;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        databaseReference = mock(DatabaseReference.class);
+
+        DatabaseReference outboxReference = mock(DatabaseReference.class);
+        when(databaseReference.child("outbox")).thenReturn(outboxReference);
+        when(outboxReference.orderByKey()).thenAnswer(invocation -> query(null, null, 0));
+        doAnswer(invocation -> {
+            ((Map<String, Object>) invocation.getArgument(0)).keySet().forEach(outbox::remove);
+            ((DatabaseReference.CompletionListener) invocation.getArgument(1)).onComplete(null, outboxReference);
+            return null;
+        }).when(outboxReference).updateChildren(anyMap(), any());
+
+        DatabaseReference leaseReference = mock(DatabaseReference.class);
+        when(databaseReference.child("outbox-relay/lease")).thenReturn(leaseReference);
+        doAnswer(invocation -> {
+            Transaction.Handler handler = invocation.getArgument(0);
+            MutableData data = TestSnapshots.mutableData(lease);
+            boolean committed = handler.doTransaction(data).isSuccess();
+            if (committed) {
+                lease = data.getValue();
+            }
+            handler.onComplete(null, committed, TestSnapshots.dataSnapshot(TestSnapshots.reference("outbox-relay/lease"), lease));
+            return null;
+        }).when(leaseReference).runTransaction(any(Transaction.Handler.class));
+
+        DatabaseReference checkpointsReference = mock(DatabaseReference.class);
+        when(databaseReference.child("outbox-relay/checkpoints")).thenReturn(checkpointsReference);
+        doAnswer(invocation -> {
+            ((ValueEventListener) invocation.getArgument(0)).onDataChange(
+                    TestSnapshots.dataSnapshot(TestSnapshots.reference("outbox-relay/checkpoints"), new HashMap<>(checkpoints)));
+            return null;
+        }).when(checkpointsReference).addListenerForSingleValueEvent(any(ValueEventListener.class));
+        when(checkpointsReference.child(anyString())).thenAnswer(invocation -> {
+            String sink = invocation.getArgument(0);
+            DatabaseReference checkpoint = mock(DatabaseReference.class);
+            doAnswer(write -> {
+                checkpoints.put(sink, write.getArgument(0));
+                return null;
+            }).when(checkpoint).setValue(any(), any(DatabaseReference.CompletionListener.class));
+            return checkpoint;
+        });
+    }
+
+    @Test
+    void testRunOnce_DeliversSettledEventsInBatchesAndDeletesThem() throws Exception {
+        // Setup
+        RecordingSink warehouse = new RecordingSink("warehouse", 0);
+        RecordingSink email = new RecordingSink("email", 0);
+        OutboxRelay relay = newRelay(warehouse, email);
+        addEvents(System.currentTimeMillis() - 60000, 1, 3);
+        addEvents(System.currentTimeMillis(), 4, 1);
+        String lastSettledKey = outboxKey(3);
+
+        // Execute
+        relay.runOnce().get(5, TimeUnit.SECONDS);
+
+        // Verify: the event written just now waits for the settle period
+        assertEquals(List.of(List.of("ORD-0001", "ORD-0002"), List.of("ORD-0003")), warehouse.batches());
+        assertEquals(warehouse.batches(), email.batches());
+        assertEquals(lastSettledKey, checkpoints.get("warehouse"));
+        assertEquals(1, outbox.size());
+        assertTrue(outbox.firstKey().endsWith(String.format("%010d", 4)));
+    }
+
+    @Test
+    void testRunOnce_FailedSinkRetriesSameEventsWithoutHoldingBackOthers() throws Exception {
+        // Setup
+        RecordingSink warehouse = new RecordingSink("warehouse", 0);
+        RecordingSink email = new RecordingSink("email", 1);
+        OutboxRelay relay = newRelay(warehouse, email);
+        addEvents(System.currentTimeMillis() - 60000, 1, 2);
+
+        // Execute
+        relay.runOnce().get(5, TimeUnit.SECONDS);
+        int keptWhileEmailFailing = outbox.size();
+        relay.runOnce().get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals(2, keptWhileEmailFailing);
+        assertEquals(List.of(List.of("ORD-0001", "ORD-0002")), warehouse.batches());
+        assertEquals(List.of(List.of("ORD-0001", "ORD-0002"), List.of("ORD-0001", "ORD-0002")), email.attempts);
+        assertTrue(outbox.isEmpty());
+    }
+
+    @Test
+    void testRunOnce_WaitsForLeaseAndResumesFromStoredCheckpoint() throws Exception {
+        // Setup: another node holds the lease and already delivered the first event
+        RecordingSink warehouse = new RecordingSink("warehouse", 0);
+        OutboxRelay relay = newRelay(warehouse);
+        addEvents(System.currentTimeMillis() - 60000, 1, 3);
+        checkpoints.put("warehouse", outboxKey(1));
+        Map<String, Object> otherLease = new HashMap<>();
+        otherLease.put("owner", "other-node");
+        otherLease.put("expiresAt", System.currentTimeMillis() + 60000);
+        lease = otherLease;
+
+        // Execute
+        relay.runOnce().get(5, TimeUnit.SECONDS);
+        boolean heldWhileOtherLeaseValid = relay.isHoldingLease();
+        otherLease.put("expiresAt", System.currentTimeMillis() - 1);
+        relay.runOnce().get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertFalse(heldWhileOtherLeaseValid);
+        assertTrue(relay.isHoldingLease());
+        assertEquals(List.of(List.of("ORD-0002", "ORD-0003")), warehouse.batches());
+    }
+
+    @Test
+    void testRunOnce_DeliversEventLandingBehindCheckpointOnce() throws Exception {
+        // Setup
+        RecordingSink warehouse = new RecordingSink("warehouse", 0);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OutboxRelay relay = newRelay(registry, warehouse);
+        addEvents(System.currentTimeMillis() - 60000, 1, 2);
+        relay.runOnce().get(5, TimeUnit.SECONDS);
+
+        // Execute: an event keyed a second before the checkpoint lands after it moved on
+        addEvents(System.currentTimeMillis() - 61000, 3, 1);
+        relay.runOnce().get(5, TimeUnit.SECONDS);
+        relay.runOnce().get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals(List.of(List.of("ORD-0001", "ORD-0002"), List.of("ORD-0003")), warehouse.batches());
+        assertEquals(1.0, registry.counter("outbox.late", "sink", "warehouse").count());
+        assertTrue(outbox.isEmpty());
+    }
+
+    @Test
+    void testRunOnce_KeepsEventsWithinLateWindowDeliveredBeforeFailover() throws Exception {
+        // Setup: another node delivered the first event and stopped before deleting it
+        RecordingSink warehouse = new RecordingSink("warehouse", 0);
+        OutboxRelay relay = newRelay(warehouse);
+        addEvents(System.currentTimeMillis() - 60000, 1, 2);
+        checkpoints.put("warehouse", outboxKey(1));
+
+        // Execute
+        relay.runOnce().get(5, TimeUnit.SECONDS);
+
+        // Verify: only what this node delivered is deleted, the rest once the window passes
+        assertEquals(List.of(List.of("ORD-0002")), warehouse.batches());
+        assertEquals(1, outbox.size());
+        assertTrue(outbox.firstKey().endsWith(String.format("%010d", 1)));
+    }
+
+    private OutboxRelay newRelay(OutboxSink... sinks) {
+        return newRelay(new SimpleMeterRegistry(), sinks);
+    }
+
+    @SuppressWarnings("unchecked")
+    private OutboxRelay newRelay(SimpleMeterRegistry registry, OutboxSink... sinks) {
+        ObjectProvider<OutboxSink> provider = mock(ObjectProvider.class);
+        when(provider.orderedStream()).thenAnswer(invocation -> Stream.of(sinks));
+        OutboxRelay relay = new OutboxRelay(provider, registry);
+        ReflectionTestUtils.setField(relay, "databaseReference", databaseReference);
+        ReflectionTestUtils.setField(relay, "batchSize", 2);
+        ReflectionTestUtils.setField(relay, "maxBackoffMs", 0L);
+        return relay;
+    }
+
+    // Orders ORD-{first} onwards, recorded at the given time
+    private void addEvents(long millis, int first, int count) {
+        for (int i = first; i < first + count; i++) {
+            OutboxEvent event = new OutboxEvent();
+            event.setType(OutboxEvent.Type.ORDER_CREATED);
+            event.setEntityId(String.format("ORD-%04d", i));
+            event.setUserId("USR-0001");
+            event.setOccurredAt(millis);
+            outbox.put(Outbox.keyPrefix(millis) + "-node0001-" + String.format("%010d", i), event.toMap());
+        }
+    }
+
+    private String outboxKey(int counter) {
+        String suffix = String.format("%010d", counter);
+        return outbox.keySet().stream().filter(key -> key.endsWith(suffix)).findFirst().orElseThrow();
+    }
+
+    // Key-ordered query over the outbox map, bounds inclusive as in Firebase
+    private Query query(String start, String end, int limit) {
+        Query query = mock(Query.class);
+        when(query.startAt(anyString())).thenAnswer(invocation -> query(invocation.getArgument(0), end, limit));
+        when(query.endAt(anyString())).thenAnswer(invocation -> query(start, invocation.getArgument(0), limit));
+        when(query.limitToFirst(anyInt())).thenAnswer(invocation -> query(start, end, invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            NavigableMap<String, Object> range = outbox;
+            if (start != null) {
+                range = range.tailMap(start, true);
+            }
+            if (end != null) {
+                range = range.headMap(end, true);
+            }
+            Map<String, Object> page = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : range.entrySet()) {
+                if (limit > 0 && page.size() == limit) {
+                    break;
+                }
+                page.put(entry.getKey(), entry.getValue());
+            }
+            ((ValueEventListener) invocation.getArgument(0)).onDataChange(
+                    TestSnapshots.dataSnapshot(TestSnapshots.reference("outbox"), page));
+            return null;
+        }).when(query).addListenerForSingleValueEvent(any(ValueEventListener.class));
+        return query;
+    }
+
+    // Records every batch it is offered and fails the first few
+    private static final class RecordingSink implements OutboxSink {
+        private final String name;
+        private int failuresLeft;
+        final List<List<String>> attempts = new ArrayList<>();
+        private final List<List<String>> delivered = new ArrayList<>();
+
+        RecordingSink(String name, int failures) {
+            this.name = name;
+            this.failuresLeft = failures;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public CompletableFuture<Void> deliver(List<OutboxEvent> events) {
+            List<String> ids = events.stream().map(OutboxEvent::getEntityId).collect(Collectors.toList());
+            attempts.add(ids);
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                return CompletableFuture.failedFuture(new OutboxDeliveryException("Sink unavailable", 0));
+            }
+            delivered.add(ids);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<List<String>> batches() {
+            return delivered;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.ecommerce.app.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the AIMD limiter plus a load test against an in-process storage
+ * stub whose latency doubles halfway through the run.
+ *
+ * The load tests depend on timing, so they only run when asked for; this runs the
+ * p99 check and prints the comparison table for several offered loads:
+ * mvn test -Dtest=AdaptiveLimiterTest -Dload.report=true
+ */
+public class AdaptiveLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    /**
+     * Storage with a fixed number of parallel workers; calls beyond that queue,
+     * like requests waiting on a saturated database connection.
+     */
+    static class StorageStub {
+        private final Semaphore workers;
+        volatile long serviceNanos;
+
+        StorageStub(int workers, long serviceNanos) {
+            this.workers = new Semaphore(workers, true);
+            this.serviceNanos = serviceNanos;
+        }
+
+        void call() {
+            workers.acquireUninterruptibly();
+            try {
+                LockSupport.parkNanos(serviceNanos);
+            } finally {
+                workers.release();
+            }
+        }
+    }
+
+    private static class Result {
+        final long p50Millis;
+        final long p99Millis;
+        final double rejectedShare;
+        final int finalLimit;
+
+        Result(long p50Millis, long p99Millis, double rejectedShare, int finalLimit) {
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.rejectedShare = rejectedShare;
+            this.finalLimit = finalLimit;
+        }
+    }
+
+    @Test
+    void testRelease_BacksOffWhenLatencyRises() {
+        // Setup
+        AtomicLong now = new AtomicLong();
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 100, 10, 200, 2.0, 0.9, now::get,
+                new SimpleMeterRegistry());
+        for (int i = 0; i < 90; i++) {
+            assertTrue(limiter.tryAcquire(AdaptiveLimiter.Priority.NORMAL));
+        }
+
+        // Execute
+        for (int i = 0; i < 30; i++) {
+            now.addAndGet(5 * MS);
+            limiter.release(5 * MS, false);
+        }
+        int afterHealthy = limiter.getLimit();
+        for (int i = 0; i < 10; i++) {
+            now.addAndGet(5 * MS);
+            limiter.release(20 * MS, false);
+        }
+
+        // Verify
+        assertEquals(100, afterHealthy);
+        assertTrue(limiter.getLimit() < 100 * 0.9 * 0.9 * 0.9);
+        assertEquals(50, limiter.getInFlight());
+    }
+
+    @Test
+    void testTryAcquire_LowPriorityRefusedFirst() {
+        // Setup
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 10, 1, 10, 2.0, 0.9, System::nanoTime,
+                new SimpleMeterRegistry());
+
+        // Execute
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(AdaptiveLimiter.Priority.LOW));
+        }
+        boolean low = limiter.tryAcquire(AdaptiveLimiter.Priority.LOW);
+        boolean normal = limiter.tryAcquire(AdaptiveLimiter.Priority.NORMAL);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire(AdaptiveLimiter.Priority.NORMAL);
+        }
+        boolean normalAtShare = limiter.tryAcquire(AdaptiveLimiter.Priority.NORMAL);
+        boolean critical = limiter.tryAcquire(AdaptiveLimiter.Priority.CRITICAL);
+
+        // Verify
+        assertFalse(low);
+        assertTrue(normal);
+        assertFalse(normalAtShare);
+        assertTrue(critical);
+        assertEquals(10, limiter.getInFlight());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "load.report", matches = "true")
+    void testLoad_P99BoundedWhenLatencyDoubles() throws Exception {
+        // Setup: 8 workers at 2 ms handle 4000 req/s; at 4 ms only 2000 req/s
+        int offered = 2500;
+
+        // Execute
+        Result unlimited = run(offered, false, 2000);
+        Result limited = run(offered, true, 2000);
+
+        // Verify
+        assertTrue(limited.rejectedShare > 0, "limiter should shed the excess");
+        assertTrue(limited.p99Millis * 2 < unlimited.p99Millis,
+                "p99 with limiter " + limited.p99Millis + " ms, without " + unlimited.p99Millis + " ms");
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "load.report", matches = "true")
+    void testLoad_Report() throws Exception {
+        System.out.printf("%8s %8s %8s %8s %10s %6s%n", "offered", "limiter", "p50 ms", "p99 ms", "rejected", "limit");
+        for (int offered : new int[] {1000, 1500, 2500, 3500}) {
+            for (boolean enabled : new boolean[] {false, true}) {
+                Result result = run(offered, enabled, 4000);
+                System.out.printf("%8d %8s %8d %8d %9.1f%% %6s%n", offered, enabled ? "on" : "off",
+                        result.p50Millis, result.p99Millis, result.rejectedShare * 100,
+                        enabled ? Integer.toString(result.finalLimit) : "-");
+            }
+        }
+    }
+
+    /**
+     * Open-loop load: requests arrive at a fixed rate whether or not earlier ones have
+     * finished, and latency is measured from the scheduled arrival. Storage latency
+     * doubles from 2 ms to 4 ms halfway through.
+     */
+    private Result run(int requestsPerSecond, boolean limited, long durationMillis) throws Exception {
+        StorageStub storage = new StorageStub(8, 2 * MS);
+        AdaptiveLimiter limiter = new AdaptiveLimiter("load", 20, 4, 200, 2.0, 0.9, System::nanoTime,
+                new SimpleMeterRegistry());
+        ExecutorService callers = Executors.newFixedThreadPool(256);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong rejected = new AtomicLong();
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long total = requestsPerSecond * durationMillis / 1000;
+        long start = System.nanoTime();
+        for (long n = 0; n < total; n++) {
+            long arrival = start + n * interval;
+            if (n == total / 2) {
+                storage.serviceNanos = 4 * MS;
+            }
+            long wait = arrival - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            callers.execute(() -> {
+                if (limited && !limiter.tryAcquire(AdaptiveLimiter.Priority.NORMAL)) {
+                    rejected.incrementAndGet();
+                    return;
+                }
+                long admitted = System.nanoTime();
+                storage.call();
+                long done = System.nanoTime();
+                if (limited) {
+                    limiter.release(done - admitted, false);
+                }
+                latencies.add(done - arrival);
+            });
+        }
+        callers.shutdown();
+        assertTrue(callers.awaitTermination(60, TimeUnit.SECONDS));
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p50 = sorted.isEmpty() ? 0 : sorted.get(sorted.size() / 2);
+        long p99 = sorted.isEmpty() ? 0 : sorted.get((int) (sorted.size() * 0.99));
+        return new Result(p50 / MS, p99 / MS, (double) rejected.get() / total, limiter.getLimit());
+    }
+}
@@ -0,0 +1,118 @@
+package com.ecommerce.app.resilience;
+
+import com.ecommerce.app.metrics.FirebaseMetrics.Operation;
+import com.google.firebase.database.DatabaseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FirebaseGuardTest {
+
+    private SimpleMeterRegistry registry;
+    private FirebaseGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("firebase.timeout.default-ms", "5000")
+                .withProperty("firebase.timeout.get_all_orders", "20")
+                .withProperty("firebase.limit.initial", "100")
+                .withProperty("firebase.limit.max", "100");
+        // 2 read permits, 1 write permit, breaker opens after 4 calls at 50% failures
+        guard = new FirebaseGuard(registry, environment, 2, 1, 10, 4, 0.5, 60_000, 1, 100, 60_000);
+    }
+
+    @Test
+    void testCircuitBreaker_OpensHalfOpensAndCloses() {
+        // Setup
+        AtomicLong now = new AtomicLong();
+        List<CircuitBreaker.State> transitions = new ArrayList<>();
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1000, 2, now::get, transitions::add);
+
+        // Execute
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess();
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        boolean whileOpen = breaker.tryAcquire();
+        now.set(1000);
+        boolean firstTrial = breaker.tryAcquire();
+        boolean secondTrial = breaker.tryAcquire();
+        boolean thirdTrial = breaker.tryAcquire();
+        breaker.onSuccess();
+        breaker.onSuccess();
+
+        // Verify
+        assertFalse(whileOpen);
+        assertTrue(firstTrial);
+        assertTrue(secondTrial);
+        assertFalse(thirdTrial);
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED),
+                transitions);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testAdmit_SeparateBulkheadsAndTimeouts() {
+        // Setup
+        CompletableFuture<Object> slowList = new CompletableFuture<>();
+        CompletableFuture<Object> read = new CompletableFuture<>();
+        CompletableFuture<Object> overflow = new CompletableFuture<>();
+        CompletableFuture<Object> write = new CompletableFuture<>();
+
+        // Execute
+        assertTrue(guard.admit(Operation.GET_ALL_ORDERS, slowList));
+        assertTrue(guard.admit(Operation.GET_PRODUCT_BY_ID, read));
+        boolean overflowAdmitted = guard.admit(Operation.GET_PRODUCT_BY_ID, overflow);
+        boolean writeAdmitted = guard.admit(Operation.SAVE_ORDER, write);
+        ExecutionException timedOut = assertThrows(ExecutionException.class, slowList::get);
+
+        // Verify
+        assertFalse(overflowAdmitted);
+        assertInstanceOf(FirebaseUnavailableException.class, overflow.handle((r, t) -> t).join());
+        assertTrue(writeAdmitted);
+        assertInstanceOf(TimeoutException.class, timedOut.getCause());
+        assertEquals(1.0, registry.get("firebase.calls.timeout").tag("operation", "get_all_orders").counter().count());
+        assertEquals(1.0, registry.get("firebase.calls.rejected").tag("pool", "read").tag("reason", "bulkhead_full")
+                .counter().count());
+        // The timed out read gave its permit back
+        assertTrue(guard.admit(Operation.GET_PRODUCT_BY_ID, new CompletableFuture<>()));
+    }
+
+    @Test
+    void testWithFallback_ServesLastGoodResultWhenUnavailable() throws Exception {
+        // Setup
+        guard.withFallback(Operation.GET_ORDER_BY_ID, "orders/ORD-0001",
+                CompletableFuture.completedFuture("cached order")).get();
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        CompletableFuture<String> notFound = new CompletableFuture<>();
+
+        // Execute
+        CompletableFuture<String> fallback = guard.withFallback(Operation.GET_ORDER_BY_ID, "orders/ORD-0001", failing);
+        CompletableFuture<String> business = guard.withFallback(Operation.GET_ORDER_BY_ID, "orders/ORD-0001", notFound);
+        CompletableFuture<String> unknown = guard.withFallback(Operation.GET_ORDER_BY_ID, "orders/ORD-0002",
+                CompletableFuture.failedFuture(new DatabaseException("Disconnected")));
+        failing.completeExceptionally(new DatabaseException("Disconnected"));
+        notFound.completeExceptionally(new RuntimeException("Order not found"));
+
+        // Verify
+        assertEquals("cached order", fallback.get());
+        assertThrows(ExecutionException.class, business::get);
+        assertThrows(ExecutionException.class, unknown::get);
+        assertEquals(1.0, registry.get("firebase.fallback.served").tag("operation", "get_order_by_id")
+                .counter().count());
+    }
+}
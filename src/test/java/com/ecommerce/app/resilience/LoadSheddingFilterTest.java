@@ -0,0 +1,105 @@
+package com.ecommerce.app.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadSheddingFilterTest {
+
+    @Test
+    void testPriorityOf_CheckoutCriticalAdminAndSyncLow() {
+        // Verify
+        assertEquals(AdaptiveLimiter.Priority.CRITICAL, LoadSheddingFilter.priorityOf(request("POST", "/api/orders")));
+        assertEquals(AdaptiveLimiter.Priority.CRITICAL,
+                LoadSheddingFilter.priorityOf(request("POST", "/api/cart/checkout")));
+        assertEquals(AdaptiveLimiter.Priority.NORMAL, LoadSheddingFilter.priorityOf(request("GET", "/api/orders")));
+        assertEquals(AdaptiveLimiter.Priority.LOW, LoadSheddingFilter.priorityOf(request("GET", "/api/admin/users")));
+        assertEquals(AdaptiveLimiter.Priority.LOW, LoadSheddingFilter.priorityOf(request("GET", "/api/sync")));
+        assertEquals(AdaptiveLimiter.Priority.NORMAL, LoadSheddingFilter.priorityOf(request("GET", "/api/products")));
+    }
+
+    @Test
+    void testDoFilter_RejectsWith503AndRetryAfterWhenFull() throws Exception {
+        // Setup: a limit of one, already taken
+        LoadSheddingFilter filter = filter(1);
+        assertTrue(filter.getLimiter().tryAcquire(AdaptiveLimiter.Priority.CRITICAL));
+        AtomicInteger calls = new AtomicInteger();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Execute
+        filter.doFilter(request("GET", "/api/products"), response, (req, res) -> calls.incrementAndGet());
+
+        // Verify
+        assertEquals(503, response.getStatus());
+        assertEquals("2", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(0, calls.get());
+        assertEquals(1, filter.getLimiter().getInFlight());
+    }
+
+    @Test
+    void testDoFilter_SkipsOrderStream() throws Exception {
+        // Setup
+        LoadSheddingFilter filter = filter(1);
+        assertTrue(filter.getLimiter().tryAcquire(AdaptiveLimiter.Priority.CRITICAL));
+        AtomicInteger calls = new AtomicInteger();
+
+        // Execute
+        filter.doFilter(request("GET", "/api/orders/stream"), new MockHttpServletResponse(),
+                (req, res) -> calls.incrementAndGet());
+
+        // Verify
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testDoFilter_ReleasesPermitWhenAsyncResponseCompletes() throws Exception {
+        // Setup
+        LoadSheddingFilter filter = filter(10);
+        MockHttpServletRequest request = request("GET", "/api/products");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> req.startAsync();
+
+        // Execute
+        filter.doFilter(request, response, chain);
+        int inFlightWhileAsync = filter.getLimiter().getInFlight();
+        request.getAsyncContext().complete();
+
+        // Verify
+        assertEquals(1, inFlightWhileAsync);
+        assertEquals(0, filter.getLimiter().getInFlight());
+    }
+
+    @Test
+    void testDoFilter_ReleasesPermitWhenChainThrows() {
+        // Setup
+        LoadSheddingFilter filter = filter(10);
+        FilterChain chain = (req, res) -> {
+            throw new IllegalStateException("boom");
+        };
+
+        // Execute
+        assertThrows(IllegalStateException.class,
+                () -> filter.doFilter(request("GET", "/api/products"), new MockHttpServletResponse(), chain));
+
+        // Verify
+        assertEquals(0, filter.getLimiter().getInFlight());
+    }
+
+    private static LoadSheddingFilter filter(int limit) {
+        return new LoadSheddingFilter(new SimpleMeterRegistry(), true, limit, 1, limit, 2.0, 2);
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRequestURI(path);
+        return request;
+    }
+}
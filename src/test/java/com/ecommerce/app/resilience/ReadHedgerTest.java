@@ -0,0 +1,104 @@
+package com.ecommerce.app.resilience;
+
+import com.ecommerce.app.metrics.FirebaseMetrics.Operation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadHedgerTest {
+
+    private SimpleMeterRegistry registry;
+    private ReadHedger hedger;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("firebase.hedge.operations", "get_product_by_id")
+                .withProperty("firebase.hedge.initial-delay-ms", "20")
+                .withProperty("firebase.hedge.budget-percent", "10");
+        hedger = new ReadHedger(registry, environment);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hedger.shutdown();
+    }
+
+    @Test
+    void testRead_SlowPrimaryIsHedgedAndHedgeWins() throws Exception {
+        // Setup
+        CompletableFuture<String> primary = new CompletableFuture<>();
+
+        // Execute
+        CompletableFuture<String> result = hedger.read(Operation.GET_PRODUCT_BY_ID, () -> primary,
+                () -> CompletableFuture.completedFuture("from hedge"));
+
+        // Verify
+        assertEquals("from hedge", result.get(5, TimeUnit.SECONDS));
+        primary.complete("from primary");
+        assertEquals("from hedge", result.get());
+        assertEquals(1.0, count("firebase.hedge.sent"));
+        // The win is counted just after the result completes, on the hedger's thread
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count("firebase.hedge.wins") < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1.0, count("firebase.hedge.wins"));
+    }
+
+    @Test
+    void testRead_FastPrimaryAndDisabledOperationsAreNotHedged() throws Exception {
+        // Setup
+        AtomicInteger hedges = new AtomicInteger();
+
+        // Execute
+        String fast = hedger.read(Operation.GET_PRODUCT_BY_ID, () -> CompletableFuture.completedFuture("primary"),
+                () -> CompletableFuture.completedFuture("hedge " + hedges.incrementAndGet())).get();
+        CompletableFuture<String> slowOrder = new CompletableFuture<>();
+        CompletableFuture<String> order = hedger.read(Operation.GET_ORDER_BY_ID, () -> slowOrder,
+                () -> CompletableFuture.completedFuture("hedge " + hedges.incrementAndGet()));
+        Thread.sleep(100);
+        slowOrder.complete("order");
+
+        // Verify
+        assertEquals("primary", fast);
+        assertEquals("order", order.get());
+        assertEquals(0, hedges.get());
+    }
+
+    @Test
+    void testRead_BudgetCapsHedges() throws Exception {
+        // Setup: the bucket starts full with 10 tokens, and reads cannot earn past that
+        AtomicInteger hedges = new AtomicInteger();
+        CompletableFuture<?>[] results = new CompletableFuture<?>[30];
+
+        // Execute
+        for (int i = 0; i < results.length; i++) {
+            CompletableFuture<String> neverAnswers = new CompletableFuture<>();
+            results[i] = hedger.read(Operation.GET_PRODUCT_BY_ID, () -> neverAnswers, () -> {
+                hedges.incrementAndGet();
+                return CompletableFuture.completedFuture("hedge");
+            });
+        }
+        Thread.sleep(200);
+
+        // Verify
+        assertEquals(10, hedges.get());
+        assertEquals(20.0, count("firebase.hedge.skipped"));
+        assertEquals(10, Arrays.stream(results).filter(CompletableFuture::isDone).count());
+    }
+
+    private double count(String name) {
+        return registry.get(name).tag("operation", "get_product_by_id").counter().count();
+    }
+}
@@ -0,0 +1,109 @@
+package com.ecommerce.app.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatWebServerFactoryCustomizer;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs Tomcat with the server settings from application.properties and keys a login limiter
+ * on the request's client address, as AuthController does
+ */
+public class ForwardedClientAddressTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private WebServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testLogin_ClientsBehindTrustedProxyGetTheirOwnBuckets() throws Exception {
+        // Setup: the test connects from loopback, which the default allowlist trusts
+        startServer(Map.of());
+
+        // Execute
+        HttpResponse<String> first = login("203.0.113.7");
+        HttpResponse<String> otherClient = login("203.0.113.8");
+        HttpResponse<String> repeated = login("203.0.113.7");
+
+        // Verify
+        assertEquals(200, first.statusCode());
+        assertEquals("203.0.113.7", first.body());
+        assertEquals(200, otherClient.statusCode());
+        assertEquals(429, repeated.statusCode());
+    }
+
+    @Test
+    void testLogin_IgnoresForwardedHeaderFromUntrustedPeer() throws Exception {
+        // Setup: only the balancer at 10.0.0.1 is trusted
+        startServer(Map.of("TRUSTED_PROXIES", "10\\.0\\.0\\.1"));
+
+        // Execute
+        HttpResponse<String> first = login("203.0.113.7");
+        HttpResponse<String> spoofed = login("203.0.113.8");
+
+        // Verify
+        assertEquals(200, first.statusCode());
+        assertEquals("127.0.0.1", first.body());
+        assertEquals(429, spoofed.statusCode());
+    }
+
+    private void startServer(Map<String, Object> overrides) throws IOException {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("overrides", overrides));
+        environment.getPropertySources().addLast(new ResourcePropertySource("classpath:application.properties"));
+        ServerProperties serverProperties = Binder.get(environment).bind("server", ServerProperties.class).get();
+
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        new TomcatWebServerFactoryCustomizer(environment, serverProperties).customize(factory);
+
+        // One attempt per client address, and plenty per account
+        LoginRateLimiter limiter = new LoginRateLimiter(new SimpleMeterRegistry(), true, 1000, 1000, 1, 1, 100,
+                System::nanoTime);
+        HttpServlet login = new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                String address = request.getRemoteAddr();
+                if (limiter.tryAcquire(request.getParameter("email"), address) > 0) {
+                    response.setStatus(429);
+                }
+                response.getWriter().write(address);
+            }
+        };
+        server = factory.getWebServer(servletContext -> servletContext.addServlet("login", login).addMapping("/login"));
+        server.start();
+    }
+
+    private HttpResponse<String> login(String forwardedFor) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create("http://127.0.0.1:" + server.getPort() + "/login?email=" + forwardedFor + "@example.com"))
+                .header("X-Forwarded-For", forwardedFor)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
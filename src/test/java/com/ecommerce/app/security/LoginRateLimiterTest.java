@@ -0,0 +1,97 @@
+package com.ecommerce.app.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginRateLimiterTest {
+
+    private AtomicLong now;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testTryAcquire_BurstThenOnePerInterval() {
+        // Setup: 6 per minute per account, so one attempt every 10 s after a burst of 3
+        LoginRateLimiter limiter = new LoginRateLimiter(registry, true, 6, 3, 1000, 1000, 100, now::get);
+
+        // Execute
+        long[] burst = new long[4];
+        for (int i = 0; i < burst.length; i++) {
+            burst[i] = limiter.tryAcquire("Alice@Example.com ", "10.0.0.1");
+        }
+        long otherAccount = limiter.tryAcquire("bob@example.com", "10.0.0.1");
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        long afterInterval = limiter.tryAcquire("alice@example.com", "10.0.0.1");
+
+        // Verify
+        assertEquals(0, burst[0]);
+        assertEquals(0, burst[1]);
+        assertEquals(0, burst[2]);
+        assertEquals(TimeUnit.SECONDS.toNanos(10), burst[3]);
+        assertEquals(0, otherAccount);
+        assertEquals(0, afterInterval);
+        assertEquals(1.0, registry.get("auth.login.throttled").tag("key", "email").counter().count());
+    }
+
+    @Test
+    void testTryAcquire_LimitsAddressAcrossAccounts() {
+        // Setup
+        LoginRateLimiter limiter = new LoginRateLimiter(registry, true, 1000, 1000, 2, 2, 100, now::get);
+
+        // Execute
+        long first = limiter.tryAcquire("a@example.com", "10.0.0.1");
+        long second = limiter.tryAcquire("b@example.com", "10.0.0.1");
+        long third = limiter.tryAcquire("c@example.com", "10.0.0.1");
+        long otherAddress = limiter.tryAcquire("c@example.com", "10.0.0.2");
+
+        // Verify
+        assertEquals(0, first);
+        assertEquals(0, second);
+        assertTrue(third > 0);
+        assertEquals(0, otherAddress);
+    }
+
+    @Test
+    void testEvictIdle_DropsRefilledBucketsAndBoundsKeys() {
+        // Setup: room for two keys per map
+        LoginRateLimiter limiter = new LoginRateLimiter(registry, true, 60, 1, 1000, 1000, 2, now::get);
+        limiter.tryAcquire("a@example.com", "10.0.0.1");
+        limiter.tryAcquire("b@example.com", "10.0.0.1");
+
+        // Execute: new accounts share the overflow bucket while the map is full of busy keys
+        long firstOverflow = limiter.tryAcquire("c@example.com", "10.0.0.1");
+        long secondOverflow = limiter.tryAcquire("d@example.com", "10.0.0.1");
+        int sizeWhileBusy = limiter.size();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        limiter.evictIdle();
+
+        // Verify
+        assertEquals(0, firstOverflow);
+        assertTrue(secondOverflow > 0);
+        assertEquals(3, sizeWhileBusy);
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    void testTryAcquire_DisabledAlwaysAdmits() {
+        // Setup
+        LoginRateLimiter limiter = new LoginRateLimiter(registry, false, 1, 1, 1, 1, 1, now::get);
+
+        // Execute & Verify
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire("a@example.com", "10.0.0.1"));
+        }
+        assertEquals(0, limiter.size());
+    }
+}
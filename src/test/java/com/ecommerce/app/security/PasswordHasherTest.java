@@ -0,0 +1,92 @@
+package com.ecommerce.app.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHasherTest {
+
+    private SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Test
+    void testHashAndVerify_RoundTripOnPool() throws Exception {
+        // Setup
+        hasher = new PasswordHasher(registry, 4, 1, 4, 5000);
+
+        // Execute
+        String hash = hasher.hash("secret-password").get();
+
+        // Verify
+        assertTrue(hasher.verify("secret-password", hash).get());
+        assertFalse(hasher.verify("wrong-password", hash).get());
+        assertEquals(3, registry.get("auth.hash.service").timers().stream().mapToLong(t -> t.count()).sum());
+    }
+
+    @Test
+    void testNeedsRehash_OnlyForLowerCost() {
+        // Setup
+        hasher = new PasswordHasher(registry, 6, 1, 4, 5000);
+
+        // Execute & Verify
+        assertTrue(hasher.needsRehash(new BCryptPasswordEncoder(4).encode("pw")));
+        assertFalse(hasher.needsRehash(new BCryptPasswordEncoder(6).encode("pw")));
+        assertFalse(hasher.needsRehash(new BCryptPasswordEncoder(8).encode("pw")));
+    }
+
+    @Test
+    void testHash_RejectsWhenQueueIsFull() throws Exception {
+        // Setup: one thread busy with a slow hash and room for one more task
+        hasher = new PasswordHasher(registry, 12, 1, 1, 60_000);
+        List<CompletableFuture<String>> accepted = new ArrayList<>();
+        accepted.add(hasher.hash("first"));
+        while (hasher.isIdle()) {
+            Thread.sleep(1);
+        }
+        accepted.add(hasher.hash("second"));
+
+        // Execute
+        CompletableFuture<String> rejected = hasher.hash("third");
+
+        // Verify
+        assertTrue(rejected.isCompletedExceptionally());
+        ExecutionException failure = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(PasswordHasher.isBusy(failure));
+        assertEquals(1.0, registry.get("auth.hash.rejected").tag("reason", "queue_full").counter().count());
+        for (CompletableFuture<String> future : accepted) {
+            assertNotNull(future.get());
+        }
+    }
+
+    @Test
+    void testHash_RejectsTasksThatWaitedTooLong() throws Exception {
+        // Setup: the second task waits behind a cost-12 hash, far longer than 20 ms
+        hasher = new PasswordHasher(registry, 12, 1, 4, 20);
+        CompletableFuture<String> first = hasher.hash("first");
+        while (hasher.isIdle()) {
+            Thread.sleep(1);
+        }
+
+        // Execute
+        CompletableFuture<String> second = hasher.hash("second");
+
+        // Verify
+        assertNotNull(first.get());
+        ExecutionException failure = assertThrows(ExecutionException.class, second::get);
+        assertTrue(PasswordHasher.isBusy(failure));
+        assertEquals(1.0, registry.get("auth.hash.rejected").tag("reason", "queue_timeout").counter().count());
+    }
+}
@@ -0,0 +1,149 @@
+package com.ecommerce.app.security;
+
+import com.ecommerce.app.invalidation.InProcessInvalidationTransport;
+import com.ecommerce.app.invalidation.InvalidationBus;
+import com.google.firebase.database.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PrincipalRevocationsTest {
+
+    // revocations/, shared by every node in a test
+    private final Map<String, Object> stored = new HashMap<>();
+
+    @Test
+    void testIsRevoked_OnlyPrincipalsAuthenticatedBeforeRevocation() {
+        // Setup
+        PrincipalRevocations revocations = revocationsOn(newBus(new InProcessInvalidationTransport.Hub()));
+        long now = System.currentTimeMillis();
+        AuthenticatedUser stale = new AuthenticatedUser("USR-0001", "alice@example.com", "CUSTOMER", now - 60_000);
+        AuthenticatedUser fresh = new AuthenticatedUser("USR-0001", "alice@example.com", "ADMIN", now + 60_000);
+        AuthenticatedUser other = new AuthenticatedUser("USR-0002", "bob@example.com", "CUSTOMER", now - 60_000);
+
+        // Execute
+        boolean staleBefore = revocations.isRevoked(stale);
+        revocations.revoke("USR-0001");
+
+        // Verify
+        assertFalse(staleBefore);
+        assertTrue(revocations.isRevoked(stale));
+        assertFalse(revocations.isRevoked(fresh));
+        assertFalse(revocations.isRevoked(other));
+    }
+
+    @Test
+    void testRevoke_ReachesOtherNodesAfterFlush() {
+        // Setup: two nodes joined by an in-process bus
+        InProcessInvalidationTransport.Hub hub = new InProcessInvalidationTransport.Hub();
+        InvalidationBus writerBus = newBus(hub);
+        PrincipalRevocations writer = revocationsOn(writerBus);
+        PrincipalRevocations reader = revocationsOn(newBus(hub));
+        AuthenticatedUser stale = new AuthenticatedUser("USR-0001", "alice@example.com", "CUSTOMER", System.currentTimeMillis() - 60_000);
+
+        // Execute
+        writer.revoke("USR-0001");
+        boolean revokedBeforeFlush = reader.isRevoked(stale);
+        writerBus.flush();
+
+        // Verify
+        assertFalse(revokedBeforeFlush);
+        assertTrue(reader.isRevoked(stale));
+    }
+
+    @Test
+    void testInit_NodeStartedAfterBusRetentionLoadsStoredRevocation() throws Exception {
+        // Setup: the revocation's bus message is long gone by the time the new node starts
+        AuthenticatedUser stale = new AuthenticatedUser("USR-0001", "alice@example.com", "CUSTOMER", System.currentTimeMillis() - 60_000);
+        revocationsOn(newBus(new InProcessInvalidationTransport.Hub())).revoke("USR-0001").get(5, TimeUnit.SECONDS);
+
+        // Execute
+        PrincipalRevocations restarted = revocationsOn(newBus(new InProcessInvalidationTransport.Hub()));
+
+        // Verify
+        assertEquals(1, stored.size());
+        assertTrue(restarted.isRevoked(stale));
+    }
+
+    @Test
+    void testLoad_RetriesUntilStoredRevocationsAreRead() {
+        // Setup: the first read is refused
+        stored.put("USR-0001", System.currentTimeMillis());
+        DatabaseReference databaseReference = mock(DatabaseReference.class);
+        DatabaseReference revocationsReference = mock(DatabaseReference.class);
+        when(databaseReference.child("revocations")).thenReturn(revocationsReference);
+        doAnswer(invocation -> {
+            ((ValueEventListener) invocation.getArgument(0)).onCancelled(DatabaseError.fromCode(DatabaseError.PERMISSION_DENIED));
+            return null;
+        }).doAnswer(invocation -> {
+            ((ValueEventListener) invocation.getArgument(0)).onDataChange(
+                    TestSnapshots.dataSnapshot(TestSnapshots.reference("revocations"), new HashMap<>(stored)));
+            return null;
+        }).when(revocationsReference).addListenerForSingleValueEvent(any(ValueEventListener.class));
+        PrincipalRevocations revocations = new PrincipalRevocations();
+        ReflectionTestUtils.setField(revocations, "databaseReference", databaseReference);
+        ReflectionTestUtils.setField(revocations, "invalidationBus", newBus(new InProcessInvalidationTransport.Hub()));
+        AuthenticatedUser stale = new AuthenticatedUser("USR-0001", "alice@example.com", "CUSTOMER", System.currentTimeMillis() - 60_000);
+
+        // Execute
+        revocations.init();
+        boolean loadedAfterRefusal = revocations.isLoaded();
+        revocations.load();
+        revocations.load();
+
+        // Verify
+        assertFalse(loadedAfterRefusal);
+        assertTrue(revocations.isLoaded());
+        assertTrue(revocations.isRevoked(stale));
+        verify(revocationsReference, times(2)).addListenerForSingleValueEvent(any(ValueEventListener.class));
+    }
+
+    @Test
+    void testGetAuthorities_DefaultsToCustomerRole() {
+        // Execute
+        AuthenticatedUser principal = new AuthenticatedUser("USR-0003", "carol@example.com", null, 0);
+
+        // Verify
+        assertEquals("carol@example.com", principal.getName());
+        assertEquals("ROLE_CUSTOMER", principal.getAuthorities().get(0).getAuthority());
+    }
+
+    private PrincipalRevocations revocationsOn(InvalidationBus bus) {
+        DatabaseReference databaseReference = mock(DatabaseReference.class);
+        DatabaseReference revocationsReference = mock(DatabaseReference.class);
+        when(databaseReference.child("revocations")).thenReturn(revocationsReference);
+        doAnswer(invocation -> {
+            ((ValueEventListener) invocation.getArgument(0)).onDataChange(
+                    TestSnapshots.dataSnapshot(TestSnapshots.reference("revocations"), new HashMap<>(stored)));
+            return null;
+        }).when(revocationsReference).addListenerForSingleValueEvent(any(ValueEventListener.class));
+        when(revocationsReference.child(anyString())).thenAnswer(invocation -> {
+            String userId = invocation.getArgument(0);
+            DatabaseReference revocation = mock(DatabaseReference.class);
+            doAnswer(write -> {
+                stored.put(userId, write.getArgument(0));
+                ((DatabaseReference.CompletionListener) write.getArgument(1)).onComplete(null, revocation);
+                return null;
+            }).when(revocation).setValue(any(), any(DatabaseReference.CompletionListener.class));
+            return revocation;
+        });
+
+        PrincipalRevocations revocations = new PrincipalRevocations();
+        ReflectionTestUtils.setField(revocations, "databaseReference", databaseReference);
+        ReflectionTestUtils.setField(revocations, "invalidationBus", bus);
+        revocations.init();
+        return revocations;
+    }
+
+    private static InvalidationBus newBus(InProcessInvalidationTransport.Hub hub) {
+        return new InvalidationBus(new InProcessInvalidationTransport(hub), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,89 @@
+package com.ecommerce.app.security;
+
+import com.ecommerce.app.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenAuthenticationFilterTest {
+
+    private final TokenService tokens = new TokenService("k1:" + secret('a'), 900, 3600, System::currentTimeMillis);
+    private final TokenAuthenticationFilter filter = new TokenAuthenticationFilter(tokens);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testDoFilter_InvalidTokenRejectedOutsideAuthEndpoints() throws Exception {
+        // Setup
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<Authentication> seen = new ArrayList<>();
+
+        // Execute
+        filter.doFilter(request("/api/orders/my-orders", "expired"), response,
+                (req, res) -> seen.add(SecurityContextHolder.getContext().getAuthentication()));
+
+        // Verify
+        assertEquals(401, response.getStatus());
+        assertTrue(seen.isEmpty());
+    }
+
+    @Test
+    void testDoFilter_InvalidTokenIsAnonymousOnAuthEndpoints() throws Exception {
+        // Setup
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<Authentication> seen = new ArrayList<>();
+
+        // Execute
+        filter.doFilter(request("/api/auth/login", "expired"), response,
+                (req, res) -> seen.add(SecurityContextHolder.getContext().getAuthentication()));
+
+        // Verify
+        assertEquals(200, response.getStatus());
+        assertEquals(1, seen.size());
+        assertNull(seen.get(0));
+    }
+
+    @Test
+    void testDoFilter_ValidTokenAuthenticatesOnAuthEndpoints() throws Exception {
+        // Setup
+        User user = new User();
+        user.setId("USR-0001");
+        user.setEmail("alice@example.com");
+        user.setRole("USER");
+        List<Authentication> seen = new ArrayList<>();
+
+        // Execute
+        filter.doFilter(request("/api/auth/session-status", tokens.issueAccessToken(user)),
+                new MockHttpServletResponse(),
+                (req, res) -> seen.add(SecurityContextHolder.getContext().getAuthentication()));
+
+        // Verify
+        assertEquals("USR-0001", ((AuthenticatedUser) seen.get(0).getPrincipal()).getUserId());
+    }
+
+    private static MockHttpServletRequest request(String path, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return request;
+    }
+
+    private static String secret(char fill) {
+        byte[] bytes = new byte[32];
+        Arrays.fill(bytes, (byte) fill);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,101 @@
+package com.ecommerce.app.security;
+
+import com.ecommerce.app.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenServiceTest {
+
+    private static final String OLD_KEY = "k1:" + secret('a');
+    private static final String NEW_KEY = "k2:" + secret('b');
+
+    private AtomicLong now;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_700_000_000_000L);
+        user = new User();
+        user.setId("USR-0001");
+        user.setEmail("alice@example.com");
+        user.setRole("ADMIN");
+    }
+
+    @Test
+    void testVerify_AccessTokenCarriesClaims() {
+        // Setup
+        TokenService tokens = new TokenService(OLD_KEY, 900, 3600, now::get);
+
+        // Execute
+        TokenService.Claims claims = tokens.verify(tokens.issueAccessToken(user), TokenService.ACCESS);
+
+        // Verify
+        assertNotNull(claims);
+        assertEquals("USR-0001", claims.getUserId());
+        assertEquals("alice@example.com", claims.getEmail());
+        assertEquals("ADMIN", claims.getRole());
+        assertEquals(1_700_000_000L + 900, claims.getExpiresAt());
+    }
+
+    @Test
+    void testVerify_RejectsTamperedExpiredAndWrongType() {
+        // Setup
+        TokenService tokens = new TokenService(OLD_KEY, 900, 3600, now::get);
+        String access = tokens.issueAccessToken(user);
+        String[] parts = access.split("\\.");
+        String escalated = parts[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(
+                new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                        .replace("ADMIN", "OWNER").getBytes(StandardCharsets.UTF_8)) + "." + parts[2];
+
+        // Execute
+        TokenService.Claims tampered = tokens.verify(escalated, TokenService.ACCESS);
+        TokenService.Claims asRefresh = tokens.verify(access, TokenService.REFRESH);
+        TokenService.Claims garbage = tokens.verify("not-a-token", TokenService.ACCESS);
+        now.addAndGet(900_000 + 31_000);
+        TokenService.Claims expired = tokens.verify(access, TokenService.ACCESS);
+
+        // Verify
+        assertNull(tampered);
+        assertNull(asRefresh);
+        assertNull(garbage);
+        assertNull(expired);
+    }
+
+    @Test
+    void testVerify_KeyRotation() {
+        // Setup
+        TokenService before = new TokenService(OLD_KEY, 900, 3600, now::get);
+        TokenService during = new TokenService(NEW_KEY + "," + OLD_KEY, 900, 3600, now::get);
+        TokenService after = new TokenService(NEW_KEY, 900, 3600, now::get);
+        String oldToken = before.issueRefreshToken(user);
+
+        // Execute
+        String newToken = during.issueRefreshToken(user);
+
+        // Verify
+        assertNotNull(during.verify(oldToken, TokenService.REFRESH));
+        assertNotNull(after.verify(newToken, TokenService.REFRESH));
+        assertNull(after.verify(oldToken, TokenService.REFRESH));
+        assertNull(before.verify(newToken, TokenService.REFRESH));
+    }
+
+    @Test
+    void testConstructor_RejectsShortKeys() {
+        // Execute & Verify
+        assertThrows(IllegalArgumentException.class, () ->
+                new TokenService("k1:" + Base64.getEncoder().encodeToString(new byte[16]), 900, 3600, now::get));
+    }
+
+    private static String secret(char fill) {
+        byte[] bytes = new byte[32];
+        Arrays.fill(bytes, (byte) fill);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,307 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.dto.CartView;
+import com.ecommerce.app.invalidation.InProcessInvalidationTransport;
+import com.ecommerce.app.invalidation.InvalidationBus;
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CartServiceTest {
+
+    private final InProcessInvalidationTransport.Hub hub = new InProcessInvalidationTransport.Hub();
+    private FirebaseService firebaseService;
+    private InvalidationBus invalidationBus;
+    private CartService cartService;
+
+    @BeforeEach
+    void setUp() {
+        firebaseService = mock(FirebaseService.class);
+        CatalogSnapshot catalog = new CatalogSnapshot(List.of(
+                product("PRD-0001", "Mug", 9.5, 10),
+                product("PRD-0002", "Lamp", 25.0, 1)), CatalogSnapshot.DEFAULT_PRICE_BUCKETS);
+        when(firebaseService.getProductCatalog()).thenReturn(CompletableFuture.completedFuture(catalog));
+        when(firebaseService.getCart(anyString())).thenReturn(CompletableFuture.completedFuture(new HashMap<>()));
+        when(firebaseService.saveCarts(anyMap())).thenReturn(CompletableFuture.completedFuture(null));
+
+        invalidationBus = newBus();
+        cartService = newCartService(invalidationBus);
+    }
+
+    @Test
+    void testSetQuantity_PricesFromCatalogAndValidates() throws Exception {
+        // Execute
+        cartService.setQuantity("USR-0001", "PRD-0001", 2).get(5, TimeUnit.SECONDS);
+        CartView cart = cartService.setQuantity("USR-0001", "PRD-0002", 1).get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals(2, cart.getItems().size());
+        assertEquals("Mug", cart.getItems().get(0).getProductName());
+        assertEquals(3, cart.getItemCount());
+        assertEquals(44.0, cart.getTotalAmount());
+        assertEquals(CartException.Reason.OUT_OF_STOCK,
+                reasonOf(cartService.setQuantity("USR-0001", "PRD-0002", 2)));
+        assertEquals(CartException.Reason.PRODUCT_NOT_FOUND,
+                reasonOf(cartService.setQuantity("USR-0001", "PRD-9999", 1)));
+        assertEquals(CartException.Reason.INVALID,
+                reasonOf(cartService.setQuantity("USR-0001", "PRD-0001", -1)));
+        verify(firebaseService, times(1)).getCart("USR-0001");
+    }
+
+    @Test
+    void testFlush_WritesChangedCartsInOneUpdate() throws Exception {
+        // Setup
+        cartService.setQuantity("USR-0001", "PRD-0001", 2).get(5, TimeUnit.SECONDS);
+        cartService.setQuantity("USR-0002", "PRD-0001", 1).get(5, TimeUnit.SECONDS);
+        cartService.clear("USR-0002").get(5, TimeUnit.SECONDS);
+
+        // Execute
+        cartService.flush();
+        cartService.flush();
+
+        // Verify: the second flush has nothing to write
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(firebaseService, times(1)).saveCarts(updates.capture());
+        assertEquals(2, updates.getValue().get("USR-0001/PRD-0001"));
+        assertTrue(updates.getValue().containsKey("USR-0002/PRD-0001"));
+        assertNull(updates.getValue().get("USR-0002/PRD-0001"));
+        assertEquals(2, updates.getValue().size());
+    }
+
+    @Test
+    void testFlush_WritesOnlyChangedLines() throws Exception {
+        // Setup: the stored cart already holds a line written by another node
+        Map<String, Integer> stored = new HashMap<>(Map.of("PRD-0002", 1));
+        when(firebaseService.getCart("USR-0001")).thenReturn(CompletableFuture.completedFuture(stored));
+
+        // Execute
+        cartService.setQuantity("USR-0001", "PRD-0001", 2).get(5, TimeUnit.SECONDS);
+        cartService.flush();
+
+        // Verify
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(firebaseService).saveCarts(updates.capture());
+        assertEquals(Map.of("USR-0001/PRD-0001", 2), updates.getValue());
+    }
+
+    @Test
+    void testFlush_RetriesLinesOfAFailedWrite() throws Exception {
+        // Setup
+        when(firebaseService.saveCarts(anyMap()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Firebase unavailable")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        cartService.setQuantity("USR-0001", "PRD-0001", 2).get(5, TimeUnit.SECONDS);
+
+        // Execute
+        cartService.flush();
+        cartService.flush();
+        cartService.flush();
+
+        // Verify
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(firebaseService, times(2)).saveCarts(updates.capture());
+        assertEquals(Map.of("USR-0001/PRD-0001", 2), updates.getAllValues().get(1));
+    }
+
+    @Test
+    void testCheckout_IncludesLinesAddedOnAnotherNode() throws Exception {
+        // Setup: this node loaded the cart, then another node added a lamp and raised the mug to 3
+        when(firebaseService.getCart("USR-0001"))
+                .thenReturn(CompletableFuture.completedFuture(new HashMap<>(Map.of("PRD-0001", 1))))
+                .thenReturn(CompletableFuture.completedFuture(new HashMap<>(Map.of("PRD-0001", 3, "PRD-0002", 1))));
+        when(firebaseService.saveOrderAndRemoveCartLines(any(Order.class), anyCollection(), any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.getArgument(0)));
+        cartService.getCart("USR-0001").get(5, TimeUnit.SECONDS);
+
+        // Execute
+        Order order = cartService.checkout("USR-0001").get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals(2, order.getItems().size());
+        assertEquals(3 * 9.5 + 25.0, order.getTotalAmount());
+    }
+
+    @Test
+    void testCheckout_UnwrittenLocalChangesWinOverStoredLines() throws Exception {
+        // Setup
+        when(firebaseService.getCart("USR-0001"))
+                .thenReturn(CompletableFuture.completedFuture(new HashMap<>(Map.of("PRD-0001", 1))))
+                .thenReturn(CompletableFuture.completedFuture(new HashMap<>(Map.of("PRD-0001", 1, "PRD-0002", 1))));
+        when(firebaseService.saveOrderAndRemoveCartLines(any(Order.class), anyCollection(), any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.getArgument(0)));
+        cartService.setQuantity("USR-0001", "PRD-0001", 4).get(5, TimeUnit.SECONDS);
+
+        // Execute
+        Order order = cartService.checkout("USR-0001").get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals(4 * 9.5 + 25.0, order.getTotalAmount());
+    }
+
+    @Test
+    void testFingerprint_DependsOnContentsNotOrder() throws Exception {
+        // Setup
+        cartService.setQuantity("USR-0001", "PRD-0002", 1).get(5, TimeUnit.SECONDS);
+        cartService.setQuantity("USR-0001", "PRD-0001", 2).get(5, TimeUnit.SECONDS);
+        cartService.setQuantity("USR-0002", "PRD-0001", 2).get(5, TimeUnit.SECONDS);
+        cartService.setQuantity("USR-0002", "PRD-0002", 1).get(5, TimeUnit.SECONDS);
+
+        // Execute
+        String first = cartService.fingerprint("USR-0001").get(5, TimeUnit.SECONDS);
+        String sameContents = cartService.fingerprint("USR-0002").get(5, TimeUnit.SECONDS);
+        cartService.setQuantity("USR-0002", "PRD-0001", 3).get(5, TimeUnit.SECONDS);
+        String changed = cartService.fingerprint("USR-0002").get(5, TimeUnit.SECONDS);
+        cartService.clear("USR-0002").get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals(first, sameContents);
+        assertNotEquals(first, changed);
+        assertNull(cartService.fingerprint("USR-0002").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCheckout_SavesOrderAndEmptiesCart() throws Exception {
+        // Setup
+        when(firebaseService.saveOrderAndRemoveCartLines(any(Order.class), anyCollection(), any())).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            order.setId("ORD-0001");
+            return CompletableFuture.completedFuture(order);
+        });
+        cartService.setQuantity("USR-0001", "PRD-0001", 2).get(5, TimeUnit.SECONDS);
+
+        // Execute
+        Order order = cartService.checkout("USR-0001").get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals("ORD-0001", order.getId());
+        assertEquals("USR-0001", order.getUserId());
+        assertEquals(19.0, order.getTotalAmount());
+        assertTrue(cartService.getCart("USR-0001").get(5, TimeUnit.SECONDS).getItems().isEmpty());
+        assertEquals(CartException.Reason.EMPTY, reasonOf(cartService.checkout("USR-0001")));
+        verify(firebaseService, times(1)).saveOrderAndRemoveCartLines(any(Order.class), anyCollection(), any());
+    }
+
+    @Test
+    void testCheckout_DeletesOnlyTheOrderedLines() throws Exception {
+        // Setup
+        when(firebaseService.getCart("USR-0001"))
+                .thenReturn(CompletableFuture.completedFuture(new HashMap<>(Map.of("PRD-0001", 2))));
+        when(firebaseService.saveOrderAndRemoveCartLines(any(Order.class), anyCollection(), any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.getArgument(0)));
+
+        // Execute: another node may write a lamp line between the read and the checkout write
+        cartService.checkout("USR-0001").get(5, TimeUnit.SECONDS);
+
+        // Verify
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> productIds = ArgumentCaptor.forClass(Collection.class);
+        verify(firebaseService).saveOrderAndRemoveCartLines(any(Order.class), productIds.capture(), any());
+        assertEquals(Set.of("PRD-0001"), Set.copyOf(productIds.getValue()));
+    }
+
+    @Test
+    void testCheckout_FailedSaveKeepsCart() throws Exception {
+        // Setup
+        when(firebaseService.saveOrderAndRemoveCartLines(any(Order.class), anyCollection(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Firebase write failed")));
+        cartService.setQuantity("USR-0001", "PRD-0001", 2).get(5, TimeUnit.SECONDS);
+
+        // Execute
+        CompletableFuture<Order> checkout = cartService.checkout("USR-0001");
+
+        // Verify: the cart is intact and a retry is not blocked as in progress
+        assertThrows(ExecutionException.class, () -> checkout.get(5, TimeUnit.SECONDS));
+        assertEquals(2, cartService.getCart("USR-0001").get(5, TimeUnit.SECONDS).getItemCount());
+        when(firebaseService.saveOrderAndRemoveCartLines(any(Order.class), anyCollection(), any()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(0)));
+        assertNotNull(cartService.checkout("USR-0001").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFlush_OtherNodesRefreshTheCartAndKeepTheirUnwrittenChanges() throws Exception {
+        // Setup: another node has the cart loaded and an unwritten lamp line
+        InvalidationBus otherBus = newBus();
+        CartService otherNode = newCartService(otherBus);
+        otherNode.setQuantity("USR-0001", "PRD-0002", 1).get(5, TimeUnit.SECONDS);
+        cartService.setQuantity("USR-0001", "PRD-0001", 2).get(5, TimeUnit.SECONDS);
+        when(firebaseService.getCart("USR-0001"))
+                .thenReturn(CompletableFuture.completedFuture(new HashMap<>(Map.of("PRD-0001", 2))));
+
+        // Execute
+        cartService.flush();
+        invalidationBus.flush();
+
+        // Verify
+        CartView refreshed = otherNode.getCart("USR-0001").get(5, TimeUnit.SECONDS);
+        assertEquals(2, refreshed.getItems().size());
+        assertEquals(2 * 9.5 + 25.0, refreshed.getTotalAmount());
+    }
+
+    @Test
+    void testCheckout_EmptiesTheCartOnOtherNodes() throws Exception {
+        // Setup
+        when(firebaseService.saveOrderAndRemoveCartLines(any(Order.class), anyCollection(), any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.getArgument(0)));
+        InvalidationBus otherBus = newBus();
+        CartService otherNode = newCartService(otherBus);
+        when(firebaseService.getCart("USR-0001"))
+                .thenReturn(CompletableFuture.completedFuture(new HashMap<>(Map.of("PRD-0001", 2))));
+        otherNode.getCart("USR-0001").get(5, TimeUnit.SECONDS);
+        cartService.getCart("USR-0001").get(5, TimeUnit.SECONDS);
+
+        // Execute
+        cartService.checkout("USR-0001").get(5, TimeUnit.SECONDS);
+        when(firebaseService.getCart("USR-0001")).thenReturn(CompletableFuture.completedFuture(new HashMap<>()));
+        invalidationBus.flush();
+
+        // Verify
+        assertTrue(otherNode.getCart("USR-0001").get(5, TimeUnit.SECONDS).getItems().isEmpty());
+    }
+
+    private InvalidationBus newBus() {
+        return new InvalidationBus(new InProcessInvalidationTransport(hub), new SimpleMeterRegistry());
+    }
+
+    private CartService newCartService(InvalidationBus bus) {
+        CartService service = new CartService();
+        ReflectionTestUtils.setField(service, "firebaseService", firebaseService);
+        ReflectionTestUtils.setField(service, "invalidationBus", bus);
+        service.subscribeToInvalidations();
+        return service;
+    }
+
+    private static Product product(String id, String name, double price, int quantity) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setPrice(price);
+        product.setQuantity(quantity);
+        return product;
+    }
+
+    private static CartException.Reason reasonOf(CompletableFuture<?> future) {
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CartException.class, failure.getCause());
+        return ((CartException) failure.getCause()).getReason();
+    }
+}
@@ -0,0 +1,38 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.service.CatalogResponseCache.Encoding;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogResponseCacheTest {
+
+    @Test
+    void testNegotiate_PrefersGzip() {
+        assertEquals(Encoding.IDENTITY, Encoding.negotiate(null));
+        assertEquals(Encoding.GZIP, Encoding.negotiate("deflate, gzip;q=0.8, br"));
+        assertEquals(Encoding.DEFLATE, Encoding.negotiate("br, deflate"));
+        assertEquals(Encoding.DEFLATE, Encoding.negotiate("gzip;q=0, deflate"));
+        assertEquals(Encoding.IDENTITY, Encoding.negotiate("br"));
+    }
+
+    @Test
+    void testCompress_RoundTrip() throws Exception {
+        // Setup
+        byte[] json = "[{\"id\":\"PRD-0001\",\"name\":\"Cable\"},{\"id\":\"PRD-0002\",\"name\":\"Cable\"}]"
+                .getBytes(StandardCharsets.UTF_8);
+
+        // Execute
+        byte[] gzip = CatalogResponseCache.compress(json, Encoding.GZIP);
+        byte[] deflate = CatalogResponseCache.compress(json, Encoding.DEFLATE);
+
+        // Verify
+        assertArrayEquals(json, new GZIPInputStream(new ByteArrayInputStream(gzip)).readAllBytes());
+        assertArrayEquals(json, new InflaterInputStream(new ByteArrayInputStream(deflate)).readAllBytes());
+    }
+}
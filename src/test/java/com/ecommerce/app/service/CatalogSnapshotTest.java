@@ -0,0 +1,196 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.dto.CatalogFacets;
+import com.ecommerce.app.dto.ProductPage;
+import com.ecommerce.app.dto.ProductQuery;
+import com.ecommerce.app.dto.ProductSort;
+import com.ecommerce.app.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogSnapshotTest {
+
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new CatalogSnapshot(List.of(
+                product("PRD-0003", 50.0, 0, "Audio", List.of("wireless")),
+                product("PRD-0001", 10.0, 5, "Accessories", List.of("cable")),
+                product("PRD-0005", 500.0, 1, "Phones", List.of("wireless", "5g")),
+                product("PRD-0002", 25.0, 0, "accessories", null),
+                product("PRD-0004", 100.0, 3, "Audio", List.of("Wireless"))
+        ), new double[] {50, 250});
+    }
+
+    @Test
+    void testGetProducts_CatalogOrder() {
+        assertEquals(List.of("PRD-0001", "PRD-0002", "PRD-0003", "PRD-0004", "PRD-0005"), ids(snapshot.getProducts()));
+    }
+
+    @Test
+    void testQuery_PriceRangeInclusive() {
+        ProductQuery query = new ProductQuery();
+        query.setMinPrice(25.0);
+        query.setMaxPrice(100.0);
+
+        ProductPage page = snapshot.query(query);
+
+        assertEquals(3, page.getTotal());
+        assertEquals(List.of("PRD-0002", "PRD-0003", "PRD-0004"), ids(page.getItems()));
+    }
+
+    @Test
+    void testQuery_InStockOnlyDescending() {
+        ProductQuery query = new ProductQuery();
+        query.setInStockOnly(true);
+        query.setSort(ProductSort.PRICE_DESC);
+
+        ProductPage page = snapshot.query(query);
+
+        assertEquals(3, page.getTotal());
+        assertEquals(List.of("PRD-0005", "PRD-0004", "PRD-0001"), ids(page.getItems()));
+    }
+
+    @Test
+    void testQuery_Pagination() {
+        ProductQuery query = new ProductQuery();
+        query.setPage(1);
+        query.setSize(2);
+
+        ProductPage page = snapshot.query(query);
+
+        assertEquals(5, page.getTotal());
+        assertEquals(List.of("PRD-0003", "PRD-0004"), ids(page.getItems()));
+
+        query.setInStockOnly(true);
+        query.setSort(ProductSort.PRICE_DESC);
+        page = snapshot.query(query);
+
+        assertEquals(3, page.getTotal());
+        assertEquals(List.of("PRD-0001"), ids(page.getItems()));
+    }
+
+    @Test
+    void testQuery_PagePastEndWithoutOverflow() {
+        ProductQuery query = new ProductQuery();
+        query.setPage(Integer.MAX_VALUE);
+        query.setSize(100);
+
+        ProductPage page = snapshot.query(query);
+
+        assertEquals(5, page.getTotal());
+        assertTrue(page.getItems().isEmpty());
+
+        query.setInStockOnly(true);
+        page = snapshot.query(query);
+
+        assertEquals(3, page.getTotal());
+        assertTrue(page.getItems().isEmpty());
+    }
+
+    @Test
+    void testQuery_EmptyRange() {
+        ProductQuery query = new ProductQuery();
+        query.setMinPrice(600.0);
+
+        ProductPage page = snapshot.query(query);
+
+        assertEquals(0, page.getTotal());
+        assertTrue(page.getItems().isEmpty());
+    }
+
+    @Test
+    void testQuery_CategoryAndTagFilters() {
+        ProductQuery query = new ProductQuery();
+        query.setCategory("audio");
+        query.setTags(List.of("WIRELESS"));
+        query.setInStockOnly(true);
+
+        ProductPage page = snapshot.query(query);
+
+        assertEquals(1, page.getTotal());
+        assertEquals(List.of("PRD-0004"), ids(page.getItems()));
+
+        query.setCategory("Toys");
+        assertEquals(0, snapshot.query(query).getTotal());
+    }
+
+    @Test
+    void testFacets_Unfiltered() {
+        CatalogFacets facets = snapshot.facets(new ProductQuery());
+
+        assertEquals(5, facets.getTotal());
+        assertEquals(3, facets.getInStock());
+        assertEquals(Map.of("Accessories", 2, "Audio", 2, "Phones", 1), facets.getCategories());
+        assertEquals(3, facets.getTags().get("wireless"));
+        assertEquals(List.of(2, 2, 1), facets.getPriceBuckets().stream()
+                .map(CatalogFacets.PriceBucket::getCount).collect(Collectors.toList()));
+        assertNull(facets.getPriceBuckets().get(0).getMin());
+        assertNull(facets.getPriceBuckets().get(2).getMax());
+    }
+
+    @Test
+    void testFacets_ExcludeOwnDimension() {
+        ProductQuery query = new ProductQuery();
+        query.setCategory("Audio");
+        query.setInStockOnly(true);
+
+        CatalogFacets facets = snapshot.facets(query);
+
+        assertEquals(1, facets.getTotal());
+        // Category counts ignore the category filter but keep the stock filter
+        assertEquals(Map.of("Accessories", 1, "Audio", 1, "Phones", 1), facets.getCategories());
+        // Stock count ignores the stock filter but keeps the category filter
+        assertEquals(1, facets.getInStock());
+        assertEquals(List.of(0, 1, 0), facets.getPriceBuckets().stream()
+                .map(CatalogFacets.PriceBucket::getCount).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testEtag_StableForSameContent() {
+        List<Product> products = List.of(
+                product("PRD-0002", 25.0, 0, null, null),
+                product("PRD-0001", 10.0, 5, "Accessories", List.of("cable")));
+        CatalogSnapshot first = new CatalogSnapshot(products, new double[] {50}, null);
+        CatalogSnapshot reloaded = new CatalogSnapshot(List.of(products.get(1), products.get(0)), new double[] {50}, first);
+
+        assertEquals(first.getEtag(), reloaded.getEtag());
+        assertEquals(first.getVersion(), reloaded.getVersion());
+        assertEquals(first.getLastModified(), reloaded.getLastModified());
+        assertTrue(first.getEtag().startsWith("\"") && first.getEtag().endsWith("\""));
+    }
+
+    @Test
+    void testEtag_ChangesWithContent() {
+        Product changed = product("PRD-0001", 12.0, 5, "Accessories", List.of("cable"));
+        CatalogSnapshot next = new CatalogSnapshot(List.of(changed), new double[] {50}, snapshot);
+
+        assertNotEquals(snapshot.getEtag(), next.getEtag());
+        assertEquals(snapshot.getVersion() + 1, next.getVersion());
+        assertNotEquals(snapshot.getProductEtag("PRD-0001"), next.getProductEtag("PRD-0001"));
+        assertEquals(CatalogSnapshot.etagOf(changed), next.getProductEtag("PRD-0001"));
+        assertNull(next.getProductEtag("PRD-0002"));
+    }
+
+    @Test
+    void testProductSort_FromString() {
+        assertEquals(ProductSort.PRICE_ASC, ProductSort.fromString(null));
+        assertEquals(ProductSort.PRICE_DESC, ProductSort.fromString(" PRICE_DESC "));
+        assertThrows(IllegalArgumentException.class, () -> ProductSort.fromString("name"));
+    }
+
+    private static Product product(String id, double price, int quantity, String category, List<String> tags) {
+        return new Product(id, "Product " + id, "", price, quantity, null, category, tags);
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).collect(Collectors.toList());
+    }
+}
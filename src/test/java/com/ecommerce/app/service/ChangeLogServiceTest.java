@@ -0,0 +1,301 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.dto.SyncResponse;
+import com.ecommerce.app.model.ChangeEntry;
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.Product;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.TestSnapshots;
+import com.google.firebase.database.Transaction;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+public class ChangeLogServiceTest {
+
+    private static final long NOW = 1_000_000L;
+    private static final long OLD = NOW - 600_000;
+    private static final long GRACE = 120_000;
+    private static final long RETRY = 1000;
+
+    @Test
+    void testBuildResponse_LatestEntryWinsAndTombstones() {
+        // Setup
+        List<ChangeEntry> entries = List.of(
+                productEntry(11, "PRD-0001", 10.0, OLD),
+                productEntry(12, "PRD-0002", 20.0, OLD),
+                orderEntry(13, "ORD-0001", "USR-0001", OLD),
+                orderEntry(14, "ORD-0002", "USR-0002", OLD),
+                productEntry(15, "PRD-0001", 12.0, OLD),
+                deletedProductEntry(16, "PRD-0002", OLD));
+
+        // Execute
+        SyncResponse response = ChangeLogService.buildResponse(10, "USR-0001", entries, 500, NOW, GRACE, RETRY);
+
+        // Verify
+        assertEquals(16, response.getNext());
+        assertFalse(response.isHasMore());
+        assertEquals(1, response.getProducts().size());
+        assertEquals(12.0, response.getProducts().get(0).getPrice());
+        assertEquals(List.of("PRD-0002"), response.getDeletedProducts());
+        // Only the caller's own orders are returned
+        assertEquals(1, response.getOrders().size());
+        assertEquals("ORD-0001", response.getOrders().get(0).getId());
+    }
+
+    @Test
+    void testBuildResponse_StopsBeforeFreshGap() {
+        // Setup: sequence 12 is allocated but not written yet
+        List<ChangeEntry> entries = List.of(
+                productEntry(11, "PRD-0001", 10.0, NOW - 1000),
+                productEntry(13, "PRD-0003", 30.0, NOW - 1000));
+
+        // Execute
+        SyncResponse response = ChangeLogService.buildResponse(10, "USR-0001", entries, 500, NOW, GRACE, RETRY);
+
+        // Verify: the client waits a little instead of paging on
+        assertEquals(11, response.getNext());
+        assertFalse(response.isHasMore());
+        assertEquals(RETRY, response.getRetryAfterMs());
+        assertEquals(1, response.getProducts().size());
+    }
+
+    @Test
+    void testBuildResponse_SkipsStaleGap() {
+        // Setup: sequence 12 was allocated long ago and never written
+        List<ChangeEntry> entries = List.of(
+                productEntry(11, "PRD-0001", 10.0, OLD),
+                productEntry(13, "PRD-0003", 30.0, OLD));
+
+        // Execute
+        SyncResponse response = ChangeLogService.buildResponse(10, "USR-0001", entries, 500, NOW, GRACE, RETRY);
+
+        // Verify
+        assertEquals(13, response.getNext());
+        assertFalse(response.isHasMore());
+        assertEquals(2, response.getProducts().size());
+    }
+
+    @Test
+    void testBuildResponse_WaitsForEntryLandingLongAfterItsNumber() {
+        // Setup: sequence 12 is still being written half a minute after 13 was stored
+        List<ChangeEntry> withGap = List.of(
+                productEntry(11, "PRD-0001", 10.0, NOW - 30_000),
+                productEntry(13, "PRD-0003", 30.0, NOW - 30_000));
+        List<ChangeEntry> afterLanding = List.of(
+                productEntry(12, "PRD-0002", 20.0, NOW - 31_000),
+                productEntry(13, "PRD-0003", 30.0, NOW - 30_000));
+
+        // Execute
+        SyncResponse first = ChangeLogService.buildResponse(10, "USR-0001", withGap, 500, NOW, GRACE, RETRY);
+        SyncResponse second = ChangeLogService.buildResponse(first.getNext(), "USR-0001", afterLanding, 500,
+                NOW + 5000, GRACE, RETRY);
+
+        // Verify: the late entry is not lost behind the cursor
+        assertEquals(11, first.getNext());
+        assertEquals(13, second.getNext());
+        assertEquals(2, second.getProducts().size());
+        assertEquals("PRD-0002", second.getProducts().get(0).getId());
+    }
+
+    @Test
+    void testBuildResponse_SkipEntryClosesGapAtOnce() {
+        // Setup: 12 to 14 will never be written
+        ChangeEntry skip = entry(12, ChangeEntry.SKIP, null, null, NOW - 100);
+        skip.setSkipTo(14);
+        List<ChangeEntry> entries = List.of(
+                productEntry(11, "PRD-0001", 10.0, NOW - 1000),
+                skip,
+                productEntry(15, "PRD-0005", 50.0, NOW - 100));
+
+        // Execute
+        SyncResponse response = ChangeLogService.buildResponse(10, "USR-0001", entries, 500, NOW, GRACE, RETRY);
+
+        // Verify
+        assertEquals(15, response.getNext());
+        assertEquals(0, response.getRetryAfterMs());
+        assertEquals(2, response.getProducts().size());
+    }
+
+    @Test
+    void testWrite_FailedWriteStoresSkipEntry() throws Exception {
+        // Setup
+        DatabaseReference root = rootWithCounter(41L);
+        DatabaseReference skipped = mock(DatabaseReference.class);
+        DatabaseReference changes = mock(DatabaseReference.class);
+        when(root.child("changes")).thenReturn(changes);
+        when(changes.child("000000000042")).thenReturn(skipped);
+        DatabaseError error = DatabaseError.fromCode(DatabaseError.DISCONNECTED);
+        doAnswer(invocation -> {
+            ((DatabaseReference.CompletionListener) invocation.getArgument(1)).onComplete(error, root);
+            return null;
+        }).when(root).updateChildren(anyMap(), any(DatabaseReference.CompletionListener.class));
+        ChangeLogService changeLogService = newChangeLogService(root);
+        Map<String, Object> update = new HashMap<>();
+        changeLogService.recordProductDeleted(update, "PRD-0001").get(5, TimeUnit.SECONDS);
+        DatabaseError[] outcome = new DatabaseError[1];
+
+        // Execute
+        changeLogService.write(update, (databaseError, reference) -> outcome[0] = databaseError);
+
+        // Verify
+        assertSame(error, outcome[0]);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> marker = ArgumentCaptor.forClass(Map.class);
+        verify(skipped).setValue(marker.capture(), any(DatabaseReference.CompletionListener.class));
+        assertEquals(ChangeEntry.SKIP, marker.getValue().get("kind"));
+        assertEquals(42L, marker.getValue().get("skipTo"));
+    }
+
+    @Test
+    void testExpirePending_SkipsNumbersNeverWrittenAndRefusesTheirLateWrite() throws Exception {
+        // Setup
+        DatabaseReference root = rootWithCounter(41L);
+        DatabaseReference skipped = mock(DatabaseReference.class);
+        DatabaseReference changes = mock(DatabaseReference.class);
+        when(root.child("changes")).thenReturn(changes);
+        when(changes.child("000000000042")).thenReturn(skipped);
+        ChangeLogService changeLogService = newChangeLogService(root);
+        ReflectionTestUtils.setField(changeLogService, "writeDeadlineMs", -1L);
+        Map<String, Object> update = new HashMap<>();
+        changeLogService.recordProductDeleted(update, "PRD-0001").get(5, TimeUnit.SECONDS);
+
+        // Execute
+        changeLogService.expirePending();
+        DatabaseError[] outcome = new DatabaseError[1];
+        changeLogService.write(update, (databaseError, reference) -> outcome[0] = databaseError);
+
+        // Verify
+        verify(skipped).setValue(anyMap(), any(DatabaseReference.CompletionListener.class));
+        assertEquals(DatabaseError.WRITE_CANCELED, outcome[0].getCode());
+        verify(root, never()).updateChildren(anyMap(), any(DatabaseReference.CompletionListener.class));
+    }
+
+    @Test
+    void testRecord_TakesNumbersFromReservedBlockAndSkipsExpiredRest() throws Exception {
+        // Setup
+        DatabaseReference root = rootWithCounter(41L);
+        DatabaseReference skipped = mock(DatabaseReference.class);
+        DatabaseReference changes = mock(DatabaseReference.class);
+        when(root.child("changes")).thenReturn(changes);
+        when(changes.child("000000000044")).thenReturn(skipped);
+        ChangeLogService changeLogService = newChangeLogService(root);
+        ReflectionTestUtils.setField(changeLogService, "sequenceBlockMs", 60_000L);
+        changeLogService.expireSequenceBlocks();
+        Map<String, Object> update = new HashMap<>();
+
+        // Execute
+        changeLogService.recordProductDeleted(update, "PRD-0001").get(5, TimeUnit.SECONDS);
+        changeLogService.recordProductDeleted(update, "PRD-0002").get(5, TimeUnit.SECONDS);
+        changeLogService.releaseSequenceBlocks();
+
+        // Verify: one counter transaction for both, and the unused 44-51 become one skip entry
+        assertTrue(update.containsKey("changes/000000000042"));
+        assertTrue(update.containsKey("changes/000000000043"));
+        verify(root.child("counters/changes"), times(1)).runTransaction(any(Transaction.Handler.class));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> marker = ArgumentCaptor.forClass(Map.class);
+        verify(skipped).setValue(marker.capture(), any(DatabaseReference.CompletionListener.class));
+        assertEquals(51L, marker.getValue().get("skipTo"));
+    }
+
+    @Test
+    void testBuildResponse_NoChanges() {
+        SyncResponse response = ChangeLogService.buildResponse(42, "USR-0001", List.of(), 500, NOW, GRACE, RETRY);
+
+        assertEquals(42, response.getNext());
+        assertFalse(response.isHasMore());
+        assertTrue(response.getProducts().isEmpty());
+        assertTrue(response.getOrders().isEmpty());
+    }
+
+    @Test
+    void testRecordOrder_AddsEntryToTheSameUpdate() throws Exception {
+        // Setup: counters/changes is at 41
+        DatabaseReference root = rootWithCounter(41L);
+        ChangeLogService changeLogService = newChangeLogService(root);
+        Order order = new Order();
+        order.setId("ORD-0001");
+        order.setUserId("USR-0001");
+        Map<String, Object> update = new HashMap<>();
+
+        // Execute
+        changeLogService.recordOrder(update, order).get(5, TimeUnit.SECONDS);
+
+        // Verify: nothing is written on its own, the caller's update carries the entry
+        verify(root, never()).child("changes");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> entry = (Map<String, Object>) update.get("changes/000000000042");
+        assertEquals(42L, entry.get("seq"));
+        assertEquals(ChangeEntry.ORDER, entry.get("kind"));
+        assertEquals("USR-0001", entry.get("userId"));
+        assertEquals("ORD-0001", ((Map<?, ?>) entry.get("order")).get("id"));
+    }
+
+    private static DatabaseReference rootWithCounter(long value) {
+        DatabaseReference root = mock(DatabaseReference.class);
+        DatabaseReference counter = mock(DatabaseReference.class);
+        when(root.child("counters/changes")).thenReturn(counter);
+        doAnswer(invocation -> {
+            Transaction.Handler handler = invocation.getArgument(0);
+            MutableData data = TestSnapshots.mutableData(value);
+            handler.doTransaction(data);
+            handler.onComplete(null, true, TestSnapshots.dataSnapshot(TestSnapshots.reference("counters/changes"), data.getValue()));
+            return null;
+        }).when(counter).runTransaction(any(Transaction.Handler.class));
+        return root;
+    }
+
+    private static ChangeLogService newChangeLogService(DatabaseReference root) {
+        IdGeneratorService idGeneratorService = new IdGeneratorService();
+        ReflectionTestUtils.setField(idGeneratorService, "databaseReference", root);
+        ReflectionTestUtils.setField(idGeneratorService, "blockSize", 10);
+        ChangeLogService changeLogService = new ChangeLogService();
+        ReflectionTestUtils.setField(changeLogService, "databaseReference", root);
+        ReflectionTestUtils.setField(changeLogService, "idGeneratorService", idGeneratorService);
+        return changeLogService;
+    }
+
+    private static ChangeEntry productEntry(long seq, String id, double price, long timestamp) {
+        ChangeEntry entry = entry(seq, ChangeEntry.PRODUCT, id, null, timestamp);
+        entry.setProduct(new Product(id, "Product " + id, "", price, 1, null, null, null));
+        return entry;
+    }
+
+    private static ChangeEntry deletedProductEntry(long seq, String id, long timestamp) {
+        ChangeEntry entry = entry(seq, ChangeEntry.PRODUCT, id, null, timestamp);
+        entry.setDeleted(true);
+        return entry;
+    }
+
+    private static ChangeEntry orderEntry(long seq, String id, String userId, long timestamp) {
+        ChangeEntry entry = entry(seq, ChangeEntry.ORDER, id, userId, timestamp);
+        Order order = new Order();
+        order.setId(id);
+        order.setUserId(userId);
+        entry.setOrder(order);
+        return entry;
+    }
+
+    private static ChangeEntry entry(long seq, String kind, String id, String userId, long timestamp) {
+        ChangeEntry entry = new ChangeEntry();
+        entry.setSeq(seq);
+        entry.setKind(kind);
+        entry.setEntityId(id);
+        entry.setUserId(userId);
+        entry.setTimestamp(timestamp);
+        return entry;
+    }
+}
@@ -0,0 +1,152 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.metrics.TransactionProfiler;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.TestSnapshots;
+import com.google.firebase.database.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Stress harness for counter transactions: N concurrent generators, each standing in
+ * for a separate app node, race on one in-process counter that behaves like a Firebase
+ * transaction (read, round trip, compare-and-set, rerun doTransaction on conflict).
+ *
+ * The full throughput-versus-contention table runs with:
+ * mvn test -Dtest=IdGeneratorContentionTest -Dcontention.report=true
+ */
+public class IdGeneratorContentionTest {
+
+    /**
+     * Optimistic counter store. The park between reading and committing is the
+     * network round trip during which another client can move the counter.
+     */
+    static class InMemoryCounterStore {
+        private final AtomicLong value = new AtomicLong();
+        private final long roundTripNanos;
+
+        InMemoryCounterStore(long roundTripNanos) {
+            this.roundTripNanos = roundTripNanos;
+        }
+
+        void runTransaction(Transaction.Handler handler) {
+            while (true) {
+                long seen = value.get();
+                MutableData data = TestSnapshots.mutableData(seen == 0 ? null : seen);
+                handler.doTransaction(data);
+                long proposed = data.getValue(Long.class);
+                LockSupport.parkNanos(roundTripNanos);
+                if (value.compareAndSet(seen, proposed)) {
+                    handler.onComplete(null, true, TestSnapshots.dataSnapshot(null, proposed));
+                    return;
+                }
+            }
+        }
+
+        long get() {
+            return value.get();
+        }
+    }
+
+    private static class Result {
+        final double idsPerSecond;
+        final Map<String, Object> orderStats;
+
+        Result(double idsPerSecond, Map<String, Object> orderStats) {
+            this.idsPerSecond = idsPerSecond;
+            this.orderStats = orderStats;
+        }
+    }
+
+    @Test
+    void testGenerateId_UniqueUnderContention() throws Exception {
+        // Setup
+        InMemoryCounterStore store = new InMemoryCounterStore(TimeUnit.MICROSECONDS.toNanos(200));
+        TransactionProfiler profiler = TransactionProfiler.noop();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        // Execute
+        run(store, profiler, 8, 50, ids);
+
+        // Verify
+        assertEquals(400, ids.size());
+        assertEquals(400, store.get());
+        Map<String, Object> stats = profiler.snapshot().get("ORDER");
+        assertEquals(400L, stats.get("committed"));
+        assertEquals(0L, stats.get("uncommitted"));
+        assertTrue((Long) stats.get("retries") > 0, "expected retries with 8 concurrent generators: " + stats);
+        assertTrue((Long) stats.get("maxAttempts") > 1);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "contention.report", matches = "true")
+    void reportThroughputVersusContention() throws Exception {
+        System.out.printf("%10s %12s %14s %13s %12s%n", "generators", "ids/s", "mean attempts", "max attempts", "commit ms");
+        for (int generators : new int[] {1, 2, 4, 8, 16, 32}) {
+            InMemoryCounterStore store = new InMemoryCounterStore(TimeUnit.MILLISECONDS.toNanos(1));
+            TransactionProfiler profiler = TransactionProfiler.noop();
+            Result result = run(store, profiler, generators, Math.max(20, 400 / generators), ConcurrentHashMap.newKeySet());
+            System.out.printf("%10d %12.0f %14.2f %13d %12.2f%n", generators, result.idsPerSecond,
+                    result.orderStats.get("meanAttempts"), result.orderStats.get("maxAttempts"),
+                    result.orderStats.get("meanCommitMillis"));
+        }
+    }
+
+    private Result run(InMemoryCounterStore store, TransactionProfiler profiler,
+                       int generators, int idsPerGenerator, Set<String> ids) throws Exception {
+        DatabaseReference root = mock(DatabaseReference.class);
+        DatabaseReference counter = mock(DatabaseReference.class);
+        when(root.child(anyString())).thenReturn(counter);
+        doAnswer(invocation -> {
+            store.runTransaction(invocation.getArgument(0));
+            return null;
+        }).when(counter).runTransaction(any(Transaction.Handler.class));
+
+        IdGeneratorService service = new IdGeneratorService();
+        ReflectionTestUtils.setField(service, "databaseReference", root);
+        ReflectionTestUtils.setField(service, "transactionProfiler", profiler);
+
+        ExecutorService pool = Executors.newFixedThreadPool(generators);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int g = 0; g < generators; g++) {
+            workers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < idsPerGenerator; i++) {
+                    ids.add(service.generateId(IdGeneratorService.IdType.ORDER).get(10, TimeUnit.SECONDS));
+                }
+                return null;
+            }));
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+        pool.shutdown();
+
+        return new Result(generators * idsPerGenerator / seconds, profiler.snapshot().get("ORDER"));
+    }
+}
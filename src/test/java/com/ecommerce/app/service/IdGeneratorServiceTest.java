@@ -10,6 +10,9 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -258,4 +261,96 @@ public class IdGeneratorServiceTest {
         String result4 = (String) formatIdMethod.invoke(idGeneratorService, "USR", 10000L);
         assertEquals("USR-10000", result4);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFormatSequentialId_MatchesStringFormat() {
+        // Setup
+        long[] numbers = {0L, 1L, 42L, 999L, 9999L, 10000L, 123456789L, -7L};
+
+        // Execute & Verify
+        for (long number : numbers) {
+            assertEquals(String.format("%s-%04d", "ORD", number), IdGeneratorService.formatSequentialId("ORD", number));
+        }
+    }
+
+    @Test
+    void testNextId_ReservesNextBlockBeforeCurrentRunsOut() throws Exception {
+        // Setup: another node already took IDs up to 10; transactions complete when the test says so
+        ReflectionTestUtils.setField(idGeneratorService, "blockSize", 4);
+        when(databaseReference.child("counters/orders")).thenReturn(counterReference);
+        long[] counter = {10L};
+        Queue<Transaction.Handler> pending = new ArrayDeque<>();
+        doAnswer(invocation -> pending.add(invocation.getArgument(0)))
+                .when(counterReference).runTransaction(any(Transaction.Handler.class));
+
+        // Execute & Verify: the first caller waits for the first block
+        CompletableFuture<String> first = idGeneratorService.nextId(IdGeneratorService.IdType.ORDER);
+        assertFalse(first.isDone());
+        commit(pending.poll(), counter);
+        assertEquals("ORD-0011", first.get(5, TimeUnit.SECONDS));
+
+        // Half the block used: the next one is reserved while IDs are still handed out without waiting
+        assertEquals("ORD-0012", idGeneratorService.nextId(IdGeneratorService.IdType.ORDER).getNow(null));
+        assertEquals(1, pending.size());
+        assertEquals("ORD-0013", idGeneratorService.nextId(IdGeneratorService.IdType.ORDER).getNow(null));
+        assertEquals("ORD-0014", idGeneratorService.nextId(IdGeneratorService.IdType.ORDER).getNow(null));
+        commit(pending.poll(), counter);
+        assertEquals("ORD-0015", idGeneratorService.nextId(IdGeneratorService.IdType.ORDER).getNow(null));
+        assertEquals(18L, counter[0]);
+    }
+
+    @Test
+    void testNextId_FailedReservationFailsWaitersAndRetries() throws Exception {
+        // Setup
+        when(databaseReference.child("counters/orders")).thenReturn(counterReference);
+        DatabaseError error = mock(DatabaseError.class);
+        when(error.toException()).thenReturn(new DatabaseException("Database error"));
+        long[] counter = {0L};
+        doAnswer(invocation -> {
+            ((Transaction.Handler) invocation.getArgument(0)).onComplete(error, false, null);
+            return null;
+        }).doAnswer(invocation -> {
+            commit(invocation.getArgument(0), counter);
+            return null;
+        }).when(counterReference).runTransaction(any(Transaction.Handler.class));
+
+        // Execute
+        CompletableFuture<String> failed = idGeneratorService.nextId(IdGeneratorService.IdType.ORDER);
+        CompletableFuture<String> retried = idGeneratorService.nextId(IdGeneratorService.IdType.ORDER);
+
+        // Verify
+        assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals("ORD-0001", retried.get(5, TimeUnit.SECONDS));
+        assertEquals(100L, counter[0]);
+    }
+
+    @Test
+    void testNextNumber_ExpiredBlockIsReleasedAndReplaced() throws Exception {
+        // Setup
+        ReflectionTestUtils.setField(idGeneratorService, "blockSize", 4);
+        when(databaseReference.child("counters/changes")).thenReturn(counterReference);
+        long[] counter = {0L};
+        doAnswer(invocation -> {
+            commit(invocation.getArgument(0), counter);
+            return null;
+        }).when(counterReference).runTransaction(any(Transaction.Handler.class));
+        idGeneratorService.expireBlocks(IdGeneratorService.IdType.CHANGE, 50);
+        assertEquals(1L, idGeneratorService.nextNumber(IdGeneratorService.IdType.CHANGE).get(5, TimeUnit.SECONDS));
+
+        // Execute
+        Thread.sleep(100);
+        List<long[]> released = idGeneratorService.releaseExpired(IdGeneratorService.IdType.CHANGE);
+        long afterExpiry = idGeneratorService.nextNumber(IdGeneratorService.IdType.CHANGE).get(5, TimeUnit.SECONDS);
+
+        // Verify: the rest of the first block is never handed out
+        assertEquals(List.of("2-4"), released.stream().map(range -> range[0] + "-" + range[1]).toList());
+        assertEquals(5L, afterExpiry);
+    }
+
+    private static void commit(Transaction.Handler handler, long[] counter) {
+        MutableData data = TestSnapshots.mutableData(counter[0]);
+        handler.doTransaction(data);
+        counter[0] = data.getValue(Long.class);
+        handler.onComplete(null, true, TestSnapshots.dataSnapshot(TestSnapshots.reference("counters/orders"), counter[0]));
+    }
+}
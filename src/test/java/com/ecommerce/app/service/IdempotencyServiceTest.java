@@ -0,0 +1,233 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.codec.Codecs;
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderItem;
+import com.google.firebase.database.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class IdempotencyServiceTest {
+
+    // Children of the idempotency node, shared by every service instance, standing in for Firebase
+    private final Map<String, Object> stored = new ConcurrentHashMap<>();
+    private DatabaseReference databaseReference;
+    private AtomicInteger runs;
+
+    @BeforeEach
+    void setUp() {
+        runs = new AtomicInteger();
+        databaseReference = mock(DatabaseReference.class);
+        DatabaseReference idempotencyReference = mock(DatabaseReference.class);
+        when(databaseReference.child("idempotency")).thenReturn(idempotencyReference);
+        when(idempotencyReference.child(anyString())).thenAnswer(invocation -> node(invocation.getArgument(0)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private DatabaseReference node(String key) {
+        DatabaseReference node = mock(DatabaseReference.class);
+        doAnswer(invocation -> {
+            Transaction.Handler handler = invocation.getArgument(0);
+            MutableData data = TestSnapshots.mutableData(stored.get(key));
+            Transaction.Result result = handler.doTransaction(data);
+            if (result.isSuccess()) {
+                stored.put(key, data.getValue());
+            }
+            handler.onComplete(null, result.isSuccess(),
+                    TestSnapshots.dataSnapshot(TestSnapshots.reference("idempotency/" + key), stored.get(key)));
+            return null;
+        }).when(node).runTransaction(any(Transaction.Handler.class));
+        doAnswer(invocation -> {
+            Map<String, Object> merged = new HashMap<>((Map<String, Object>) stored.get(key));
+            merged.putAll(invocation.getArgument(0));
+            stored.put(key, merged);
+            ((DatabaseReference.CompletionListener) invocation.getArgument(1)).onComplete(null, node);
+            return null;
+        }).when(node).updateChildren(anyMap(), any());
+        doAnswer(invocation -> {
+            stored.remove(key);
+            return null;
+        }).when(node).removeValue(any());
+        return node;
+    }
+
+    @Test
+    void testExecute_ConcurrentDuplicatesShareOneRun() throws Exception {
+        // Setup
+        IdempotencyService service = newService();
+        CompletableFuture<Order> saving = new CompletableFuture<>();
+
+        // Execute
+        CompletableFuture<Order> first = service.execute("alice@example.com", "key-1", "fp", Codecs.ORDER,
+                () -> { runs.incrementAndGet(); return saving; });
+        CompletableFuture<Order> retry = service.execute("alice@example.com", "key-1", "fp", Codecs.ORDER,
+                () -> { runs.incrementAndGet(); return CompletableFuture.completedFuture(order("ORD-0002")); });
+        saving.complete(order("ORD-0001"));
+
+        // Verify
+        assertEquals(1, runs.get());
+        assertEquals("ORD-0001", first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("ORD-0001", retry.get(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    void testExecute_ReplaysStoredResponseOnAnotherNode() throws Exception {
+        // Setup
+        IdempotencyService nodeA = newService();
+        IdempotencyService nodeB = newService();
+        nodeA.execute("alice@example.com", "key-1", "fp", Codecs.ORDER, this::saveOrder).get(5, TimeUnit.SECONDS);
+
+        // Execute
+        Order replayed = nodeB.execute("alice@example.com", "key-1", "fp", Codecs.ORDER, this::saveOrder)
+                .get(5, TimeUnit.SECONDS);
+        Order otherUser = nodeB.execute("bob@example.com", "key-1", "fp", Codecs.ORDER, this::saveOrder)
+                .get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals("ORD-0001", replayed.getId());
+        assertEquals(1, replayed.getItems().get(0).getQuantity());
+        assertEquals("ORD-0002", otherUser.getId());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void testExecute_RejectsInProgressAndMismatchedRequests() {
+        // Setup: node A claimed the key and is still saving
+        IdempotencyService nodeA = newService();
+        IdempotencyService nodeB = newService();
+        nodeA.execute("alice@example.com", "key-1", "fp", Codecs.ORDER, CompletableFuture::new);
+
+        // Execute
+        CompletableFuture<Order> inProgress = nodeB.execute("alice@example.com", "key-1", "fp", Codecs.ORDER,
+                this::saveOrder);
+        CompletableFuture<Order> mismatch = nodeB.execute("alice@example.com", "key-1", "other", Codecs.ORDER,
+                this::saveOrder);
+        CompletableFuture<Order> mismatchLocal = nodeA.execute("alice@example.com", "key-1", "other", Codecs.ORDER,
+                this::saveOrder);
+
+        // Verify
+        assertEquals(IdempotencyConflictException.Reason.IN_PROGRESS, reasonOf(inProgress));
+        assertEquals(IdempotencyConflictException.Reason.MISMATCH, reasonOf(mismatch));
+        assertEquals(IdempotencyConflictException.Reason.MISMATCH, reasonOf(mismatchLocal));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void testExecute_RejectedWriteReleasesKey() throws Exception {
+        // Setup
+        IdempotencyService service = newService();
+        CompletableFuture<Order> failed = service.execute("alice@example.com", "key-1", "fp", Codecs.ORDER,
+                () -> CompletableFuture.failedFuture(DatabaseError.fromCode(DatabaseError.PERMISSION_DENIED).toException()));
+
+        // Execute
+        Order retried = service.execute("alice@example.com", "key-1", "fp", Codecs.ORDER, this::saveOrder)
+                .get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals("ORD-0001", retried.getId());
+        assertEquals(1, service.size());
+    }
+
+    @Test
+    void testExecute_UnknownOutcomeKeepsKeyPending() {
+        // Setup: the write timed out and may still land
+        IdempotencyService service = newService();
+        CompletableFuture<Order> timedOut = service.execute("alice@example.com", "key-1", "fp", Codecs.ORDER,
+                () -> CompletableFuture.failedFuture(new TimeoutException()));
+
+        // Execute
+        CompletableFuture<Order> retry = service.execute("alice@example.com", "key-1", "fp", Codecs.ORDER,
+                this::saveOrder);
+
+        // Verify
+        assertTrue(timedOut.isCompletedExceptionally());
+        assertEquals(IdempotencyConflictException.Reason.IN_PROGRESS, reasonOf(retry));
+        assertEquals(0, runs.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testExecute_CompletionLandsWithTheActionsWrite() throws Exception {
+        // Setup: the action's write times out on node A, then lands with the response in it
+        IdempotencyService nodeA = newService();
+        IdempotencyService nodeB = newService();
+        Map<String, Object> update = new HashMap<>();
+        CompletableFuture<Order> timedOut = nodeA.execute("alice@example.com", "key-1", "fp", Codecs.ORDER,
+                completion -> {
+                    completion.addTo(update, order("ORD-0001"));
+                    return CompletableFuture.failedFuture(new TimeoutException());
+                });
+        for (Map.Entry<String, Object> path : update.entrySet()) {
+            String[] parts = path.getKey().split("/");
+            assertEquals("idempotency", parts[0]);
+            ((Map<String, Object>) stored.get(parts[1])).put(parts[2], path.getValue());
+        }
+
+        // Execute
+        Order replayed = nodeB.execute("alice@example.com", "key-1", "fp", Codecs.ORDER, this::saveOrder)
+                .get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertTrue(timedOut.isCompletedExceptionally());
+        assertEquals("ORD-0001", replayed.getId());
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void testExecute_NullFingerprintReplaysAnyRequest() throws Exception {
+        // Setup
+        IdempotencyService nodeA = newService();
+        IdempotencyService nodeB = newService();
+        nodeA.execute("alice@example.com", "key-1", "cart with a mug", Codecs.ORDER, this::saveOrder)
+                .get(5, TimeUnit.SECONDS);
+
+        // Execute: the retry finds the cart already emptied by the first checkout
+        Order local = nodeA.execute("alice@example.com", "key-1", null, Codecs.ORDER, this::saveOrder)
+                .get(5, TimeUnit.SECONDS);
+        Order remote = nodeB.execute("alice@example.com", "key-1", null, Codecs.ORDER, this::saveOrder)
+                .get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertEquals("ORD-0001", local.getId());
+        assertEquals("ORD-0001", remote.getId());
+        assertEquals(1, runs.get());
+    }
+
+    private IdempotencyService newService() {
+        IdempotencyService service = new IdempotencyService();
+        ReflectionTestUtils.setField(service, "databaseReference", databaseReference);
+        return service;
+    }
+
+    private CompletableFuture<Order> saveOrder() {
+        return CompletableFuture.completedFuture(order(String.format("ORD-%04d", runs.incrementAndGet())));
+    }
+
+    private static Order order(String id) {
+        Order order = new Order("USR-0001", List.of(new OrderItem("PRD-0001", "Mug", 1, 9.5)), 9.5);
+        order.setId(id);
+        return order;
+    }
+
+    private static IdempotencyConflictException.Reason reasonOf(CompletableFuture<Order> future) {
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IdempotencyConflictException.class, failure.getCause());
+        return ((IdempotencyConflictException) failure.getCause()).getReason();
+    }
+}
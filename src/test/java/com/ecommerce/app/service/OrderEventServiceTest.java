@@ -0,0 +1,246 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.model.Order;
+import com.ecommerce.app.model.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderEventServiceTest {
+
+    private OrderEventService orderEventService;
+
+    @BeforeEach
+    void setUp() {
+        orderEventService = new OrderEventService(4, 60000, 2, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderEventService.shutdown();
+    }
+
+    @Test
+    void testPublish_OnlyOwnerReceivesTransitions() throws Exception {
+        // Setup
+        RecordingEmitter alice = new RecordingEmitter();
+        RecordingEmitter bob = new RecordingEmitter();
+        orderEventService.register("USR-0001", null, alice);
+        orderEventService.register("USR-0002", null, bob);
+
+        // Execute
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.PENDING));
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.PENDING)); // no transition
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.CONFIRMED));
+
+        // Verify
+        alice.awaitEvents(2);
+        assertTrue(alice.text().contains("\"status\":\"CONFIRMED\""));
+        assertTrue(alice.text().contains("\"previousStatus\":\"PENDING\""));
+        assertEquals(0, bob.events.size());
+        assertEquals(2, orderEventService.getSubscriberCount());
+    }
+
+    @Test
+    void testRegister_ResumesFromLastEventId() throws Exception {
+        // Setup
+        RecordingEmitter first = new RecordingEmitter();
+        orderEventService.register("USR-0001", null, first);
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.PENDING));
+        first.awaitEvents(1);
+        String lastEventId = first.lastEventId();
+
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.CONFIRMED));
+        orderEventService.publish(order("ORD-0002", "USR-0002", OrderStatus.PENDING));
+
+        // Execute
+        RecordingEmitter resumed = new RecordingEmitter();
+        orderEventService.register("USR-0001", lastEventId, resumed);
+
+        // Verify: only the missed event for this user is replayed
+        resumed.awaitEvents(1);
+        assertTrue(resumed.text().contains("CONFIRMED"));
+        assertFalse(resumed.text().contains("ORD-0002"));
+    }
+
+    @Test
+    void testRegister_ResetWhenIdTooOld() throws Exception {
+        // Setup: the ring buffer holds 4 events
+        RecordingEmitter first = new RecordingEmitter();
+        orderEventService.register("USR-0001", null, first);
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.PENDING));
+        first.awaitEvents(1);
+        String lastEventId = first.lastEventId();
+        for (int i = 2; i <= 7; i++) {
+            orderEventService.publish(order(String.format("ORD-%04d", i), "USR-0002", OrderStatus.PENDING));
+        }
+
+        // Execute
+        RecordingEmitter resumed = new RecordingEmitter();
+        orderEventService.register("USR-0001", lastEventId, resumed);
+        RecordingEmitter foreign = new RecordingEmitter();
+        orderEventService.register("USR-0001", "other-node-5", foreign);
+
+        // Verify
+        resumed.awaitEvents(1);
+        foreign.awaitEvents(1);
+        assertTrue(resumed.text().contains("event:" + OrderEventService.RESET_EVENT));
+        assertTrue(foreign.text().contains("event:" + OrderEventService.RESET_EVENT));
+    }
+
+    @Test
+    void testPublish_BlockedClientDoesNotDelayOthers() throws Exception {
+        // Setup
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingEmitter stuck = new BlockingEmitter(release);
+        RecordingEmitter other = new RecordingEmitter();
+        orderEventService.register("USR-0001", null, stuck);
+        orderEventService.register("USR-0002", null, other);
+
+        // Execute
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.PENDING));
+        assertTrue(stuck.entered.await(5, TimeUnit.SECONDS));
+        orderEventService.publish(order("ORD-0002", "USR-0002", OrderStatus.PENDING));
+
+        // Verify
+        other.awaitEvents(1);
+        release.countDown();
+    }
+
+    @Test
+    void testPublish_ClosesConnectionThatFallsBehind() throws Exception {
+        // Setup: at most 3 events may wait per connection
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingEmitter stuck = new BlockingEmitter(release);
+        orderEventService.register("USR-0001", null, stuck);
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.PENDING));
+        assertTrue(stuck.entered.await(5, TimeUnit.SECONDS));
+
+        // Execute
+        for (int i = 2; i <= 5; i++) {
+            orderEventService.publish(order(String.format("ORD-%04d", i), "USR-0001", OrderStatus.PENDING));
+        }
+
+        // Verify
+        assertEquals(0, orderEventService.getSubscriberCount());
+        release.countDown();
+    }
+
+    @Test
+    void testRegister_EventsPublishedDuringReplayAreSentOnce() throws Exception {
+        // Setup
+        RecordingEmitter first = new RecordingEmitter();
+        orderEventService.register("USR-0001", null, first);
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.PENDING));
+        first.awaitEvents(1);
+        String lastEventId = first.lastEventId();
+        orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.CONFIRMED));
+
+        // Execute: the replay of CONFIRMED races with the live SHIPPED event
+        RecordingEmitter resumed = new RecordingEmitter();
+        Thread publisher = new Thread(() ->
+                orderEventService.publish(order("ORD-0001", "USR-0001", OrderStatus.SHIPPED)));
+        publisher.start();
+        orderEventService.register("USR-0001", lastEventId, resumed);
+        publisher.join();
+
+        // Verify
+        resumed.awaitEvents(2);
+        Thread.sleep(50);
+        assertEquals(2, resumed.events.size());
+        assertTrue(resumed.events.get(0).contains("CONFIRMED"));
+        assertTrue(resumed.events.get(1).contains("SHIPPED"));
+    }
+
+    @Test
+    void testPublish_ForgetsLeastRecentlyUpdatedOrders() {
+        // Setup
+        ReflectionTestUtils.setField(orderEventService, "statusCacheSize", 2);
+
+        // Execute
+        for (int i = 1; i <= 5; i++) {
+            orderEventService.publish(order(String.format("ORD-%04d", i), "USR-0001", OrderStatus.PENDING));
+        }
+
+        // Verify
+        assertEquals(2, orderEventService.getTrackedOrderCount());
+    }
+
+    private static Order order(String id, String userId, OrderStatus status) {
+        Order order = new Order();
+        order.setId(id);
+        order.setUserId(userId);
+        order.setStatus(status);
+        return order;
+    }
+
+    private static class BlockingEmitter extends SseEmitter {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release;
+
+        BlockingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            Set<DataWithMediaType> parts = builder.build();
+            events.add(parts.stream().map(part -> part.getData() instanceof String
+                            ? (String) part.getData()
+                            : toJson(part.getData()))
+                    .collect(Collectors.joining()));
+        }
+
+        void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(events.size() >= count, "Expected " + count + " events but got " + events);
+        }
+
+        String text() {
+            return String.join("\n", events);
+        }
+
+        String lastEventId() {
+            String event = events.get(events.size() - 1);
+            int start = event.indexOf("id:") + 3;
+            return event.substring(start, event.indexOf('\n', start));
+        }
+
+        private static String toJson(Object value) {
+            try {
+                return new ObjectMapper().writeValueAsString(value);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ecommerce.app.service;
+
+import com.ecommerce.app.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductCatalogTest {
+
+    @Test
+    void testReplaceAll_KeepsWritesMadeDuringTheRead() {
+        // Setup
+        ProductCatalog catalog = new ProductCatalog();
+        catalog.replaceAll(List.of(product("PRD-0001", 10.0), product("PRD-0002", 20.0), product("PRD-0003", 30.0)));
+
+        // Execute: the read starts, then an update and a delete land before it completes
+        long loadStarted = catalog.beginLoad();
+        catalog.upsert(product("PRD-0001", 15.0));
+        catalog.remove("PRD-0002");
+        catalog.replaceAll(List.of(product("PRD-0001", 10.0), product("PRD-0002", 20.0), product("PRD-0003", 30.0)),
+                loadStarted);
+
+        // Verify
+        List<Product> products = catalog.snapshot().getProducts();
+        assertEquals(List.of("PRD-0001", "PRD-0003"), products.stream().map(Product::getId).collect(Collectors.toList()));
+        assertEquals(15.0, products.get(0).getPrice());
+    }
+
+    @Test
+    void testReplaceAll_LaterReadWinsOverEarlierWrites() {
+        // Setup
+        ProductCatalog catalog = new ProductCatalog();
+        catalog.upsert(product("PRD-0001", 15.0));
+
+        // Execute
+        catalog.replaceAll(List.of(product("PRD-0001", 12.0)), catalog.beginLoad());
+
+        // Verify
+        assertEquals(12.0, catalog.snapshot().getProducts().get(0).getPrice());
+    }
+
+    private static Product product(String id, double price) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(id);
+        product.setPrice(price);
+        return product;
+    }
+}
@@ -0,0 +1,152 @@
+package com.ecommerce.app.tracing;
+
+import com.ecommerce.app.metrics.FirebaseMetrics;
+import com.ecommerce.app.metrics.FirebaseMetrics.Operation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TracerTest {
+
+    private final List<Span> exported = new CopyOnWriteArrayList<>();
+    private SpanExporter exporter;
+    private Tracer tracer;
+
+    @BeforeEach
+    void setUp() {
+        exporter = new SpanExporter("target/traces-test.jsonl", 100, "ecommerce-app") {
+            @Override
+            public void export(Span span) {
+                exported.add(span);
+            }
+        };
+        tracer = new Tracer();
+        ReflectionTestUtils.setField(tracer, "sampleRate", 1.0);
+        ReflectionTestUtils.setField(tracer, "exporter", exporter);
+    }
+
+    @Test
+    void testFirebaseStages_NestUnderRequestAcrossThreads() throws Exception {
+        // Setup
+        FirebaseMetrics metrics = new FirebaseMetrics(new SimpleMeterRegistry(), tracer);
+        Span root = tracer.startRequest("GET /api/orders/my-orders", null);
+        CompletableFuture<String> firebaseRead = new CompletableFuture<>();
+        CompletableFuture<String> result;
+
+        // Execute
+        Tracer.Scope scope = tracer.activate(root);
+        try {
+            long started = metrics.start(Operation.GET_ORDERS_BY_USER_ID);
+            result = metrics.finish(Operation.GET_ORDERS_BY_USER_ID, started, firebaseRead)
+                    .thenApplyAsync(tracer.wrapFunction(orders -> {
+                        long nested = metrics.start(Operation.GET_USER_BY_ID);
+                        metrics.finish(Operation.GET_USER_BY_ID, nested, CompletableFuture.completedFuture("USR-0001"));
+                        return orders;
+                    }));
+            assertSame(root, tracer.current());
+        } finally {
+            scope.close();
+        }
+        assertNull(tracer.current());
+        Thread firebaseCallback = new Thread(() -> firebaseRead.complete("[]"));
+        firebaseCallback.start();
+        firebaseCallback.join();
+        result.get();
+        root.end(null);
+
+        // Verify
+        assertEquals(3, exported.size());
+        Span read = find("firebase.get_orders_by_user_id");
+        Span nested = find("firebase.get_user_by_id");
+        assertEquals(root.getSpanId(), read.getParentSpanId());
+        assertEquals(root.getSpanId(), nested.getParentSpanId());
+        assertEquals(root.getTraceId(), nested.getTraceId());
+        assertTrue(read.getEndNanos() >= read.getStartNanos());
+    }
+
+    @Test
+    void testStartRequest_FollowsTraceparentSampledFlag() {
+        // Setup
+        ReflectionTestUtils.setField(tracer, "sampleRate", 0.0);
+        String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+        // Execute
+        Span sampled = tracer.startRequest("GET /api/products", "00-" + traceId + "-00f067aa0ba902b7-01");
+        Span notSampled = tracer.startRequest("GET /api/products", "00-" + traceId + "-00f067aa0ba902b7-00");
+        Span local = tracer.startRequest("GET /api/products", null);
+
+        // Verify
+        assertNotNull(sampled);
+        assertEquals(traceId, sampled.getTraceId());
+        assertEquals("00f067aa0ba902b7", sampled.getParentSpanId());
+        assertTrue(sampled.getTraceparent().startsWith("00-" + traceId + "-"));
+        assertNull(notSampled);
+        assertNull(local);
+    }
+
+    @Test
+    void testStartRequest_ReadsFlagsAsHexAndIgnoresMalformedHeaders() {
+        // Setup
+        ReflectionTestUtils.setField(tracer, "sampleRate", 0.0);
+        String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+        // Execute
+        Span otherFlagsSampled = tracer.startRequest("GET /api/products", "00-" + traceId + "-00f067aa0ba902b7-09");
+        Span otherFlagsNotSampled = tracer.startRequest("GET /api/products", "00-" + traceId + "-00f067aa0ba902b7-10");
+        Span badFlags = tracer.startRequest("GET /api/products", "00-" + traceId + "-00f067aa0ba902b7-x1");
+        Span zeroTraceId = tracer.startRequest("GET /api/products",
+                "00-00000000000000000000000000000000-00f067aa0ba902b7-01");
+        Span badTraceId = tracer.startRequest("GET /api/products",
+                "00-4BF92F3577B34DA6A3CE929D0E0E473G-00f067aa0ba902b7-01");
+
+        // Verify
+        assertNotNull(otherFlagsSampled);
+        assertNull(otherFlagsNotSampled);
+        assertNull(badFlags);
+        assertNull(zeroTraceId);
+        assertNull(badTraceId);
+
+        // With local sampling on, a malformed header starts a new trace instead of continuing it
+        ReflectionTestUtils.setField(tracer, "sampleRate", 1.0);
+        Span restarted = tracer.startRequest("GET /api/products", "00-" + traceId + "-00f067aa0ba902b7-x1");
+        assertNotNull(restarted);
+        assertNotEquals(traceId, restarted.getTraceId());
+        assertNull(restarted.getParentSpanId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testToOtlp_ExportRequestShape() {
+        // Setup
+        Span root = tracer.startRequest("PUT /api/admin/orders/ORD-0001/status", null);
+        root.setAttribute("http.response.status_code", 500);
+        root.end(new IllegalStateException("Invalid transition"));
+
+        // Execute
+        Map<String, Object> request = exporter.toOtlp(exported);
+
+        // Verify
+        Map<String, Object> resourceSpans = ((List<Map<String, Object>>) request.get("resourceSpans")).get(0);
+        Map<String, Object> scopeSpans = ((List<Map<String, Object>>) resourceSpans.get("scopeSpans")).get(0);
+        Map<String, Object> span = ((List<Map<String, Object>>) scopeSpans.get("spans")).get(0);
+        assertEquals(root.getTraceId(), span.get("traceId"));
+        assertEquals(2, span.get("kind"));
+        assertFalse(span.containsKey("parentSpanId"));
+        assertEquals(2, ((Map<String, Object>) span.get("status")).get("code"));
+        Map<String, Object> attribute = ((List<Map<String, Object>>) span.get("attributes")).get(0);
+        assertEquals("http.response.status_code", attribute.get("key"));
+        assertEquals(Map.of("intValue", "500"), attribute.get("value"));
+    }
+
+    private Span find(String name) {
+        return exported.stream().filter(span -> span.getName().equals(name)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,32 @@
+package com.google.firebase.database;
+
+import com.google.firebase.database.core.Path;
+import com.google.firebase.database.snapshot.IndexedNode;
+import com.google.firebase.database.snapshot.NodeUtilities;
+
+/**
+ * Builds real MutableData and DataSnapshot instances from plain values, for tests
+ * that drive transaction handlers and listeners without a database.
+ * Lives in the SDK package because the constructors are package-private.
+ */
+public final class TestSnapshots {
+
+    private TestSnapshots() {
+    }
+
+    public static MutableData mutableData(Object value) {
+        return new MutableData(NodeUtilities.NodeFromJSON(value));
+    }
+
+    /**
+     * A reference that only knows its path, enough for snapshot keys and children;
+     * it cannot read or write
+     */
+    public static DatabaseReference reference(String path) {
+        return new DatabaseReference(null, new Path(path));
+    }
+
+    public static DataSnapshot dataSnapshot(DatabaseReference reference, Object value) {
+        return new DataSnapshot(reference, IndexedNode.from(NodeUtilities.NodeFromJSON(value)));
+    }
+}